@@ -0,0 +1,71 @@
+package no.unit.nva.cognito;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+/**
+ * Lambda context of the benchmarked invocations. It reports the same remaining time on every call.
+ */
+public class BenchmarkContext implements Context {
+
+    public static final String FUNCTION_NAME = "benchmark";
+    public static final int REMAINING_TIME_IN_MILLIS = 30_000;
+    public static final int MEMORY_LIMIT_IN_MB = 1024;
+
+    @Override
+    public String getAwsRequestId() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getFunctionName() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+        return REMAINING_TIME_IN_MILLIS;
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        return MEMORY_LIMIT_IN_MB;
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return null;
+    }
+}
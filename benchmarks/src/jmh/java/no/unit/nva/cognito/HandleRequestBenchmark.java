@@ -0,0 +1,77 @@
+package no.unit.nva.cognito;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import com.amazonaws.services.lambda.runtime.Context;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import no.unit.nva.cognito.metrics.MetricsPublisher;
+import no.unit.nva.cognito.model.ClaimsDeliveryMode;
+import no.unit.nva.cognito.service.ClaimsDeliverySettings;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.warmup.NoOpUserPoolClient;
+import no.unit.nva.cognito.warmup.WarmUpCustomerApi;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.cognito.warmup.WarmUpUserApi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Runs {@link PostAuthenticationHandler} and {@link PostAuthenticationStreamHandler} end to end against in-memory user
+ * and customer services and a user pool client that writes nothing, so that only the work done by the handlers
+ * themselves is measured.
+ */
+@State(Scope.Benchmark)
+public class HandleRequestBenchmark {
+
+    @Param({"ATTRIBUTES", "CLAIMS", "CLAIMS_AND_ATTRIBUTES"})
+    public ClaimsDeliveryMode claimsDeliveryMode;
+
+    private final Context context = new BenchmarkContext();
+    private Map<String, Object> event;
+    private byte[] eventJson;
+    private PostAuthenticationHandler handlerWithExistingUser;
+    private PostAuthenticationStreamHandler streamHandlerWithExistingUser;
+
+    /**
+     * Reads the sample event and creates the sample user, so that later logins find it.
+     */
+    @Setup
+    public void prepare() {
+        event = WarmUpSamples.sampleEvent();
+        eventJson = WarmUpSamples.sampleEventJson().getBytes(UTF_8);
+        handlerWithExistingUser = newHandler();
+        handlerWithExistingUser.handleRequest(event, context);
+        streamHandlerWithExistingUser = new PostAuthenticationStreamHandler(handlerWithExistingUser);
+    }
+
+    @Benchmark
+    public Map<String, Object> handleRequestForExistingUser() {
+        return handlerWithExistingUser.handleRequest(event, context);
+    }
+
+    @Benchmark
+    public Map<String, Object> handleRequestForNewUser() {
+        return newHandler().handleRequest(event, context);
+    }
+
+    @Benchmark
+    public byte[] handleStreamRequestForExistingUser() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(eventJson.length * 2);
+        streamHandlerWithExistingUser.handleRequest(new ByteArrayInputStream(eventJson), output, context);
+        return output.toByteArray();
+    }
+
+    private PostAuthenticationHandler newHandler() {
+        return new PostAuthenticationHandler(
+            new UserService(new WarmUpUserApi(), new NoOpUserPoolClient()),
+            new WarmUpCustomerApi(),
+            new ClaimsDeliverySettings(claimsDeliveryMode, Collections.emptyMap()),
+            MetricsPublisher.discarding());
+    }
+}
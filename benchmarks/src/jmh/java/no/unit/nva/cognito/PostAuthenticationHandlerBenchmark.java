@@ -0,0 +1,76 @@
+package no.unit.nva.cognito;
+
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import no.unit.nva.cognito.model.Event;
+import no.unit.nva.cognito.service.UserDetails;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.warmup.NoOpUserPoolClient;
+import no.unit.nva.cognito.warmup.WarmUpCustomerApi;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.cognito.warmup.WarmUpUserApi;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the steps of {@link PostAuthenticationHandler} that do not call other services. The benchmark is in the
+ * package of the handler, so that it can call the package-private steps.
+ */
+@State(Scope.Benchmark)
+public class PostAuthenticationHandlerBenchmark {
+
+    public static final String HOSTED_AFFILIATION =
+        "[member@zs.bibsys.no, employee@zs.bibsys.no, staff@zs.bibsys.no]";
+    public static final String USER = "User";
+    public static final String CREATOR = "Creator";
+    public static final Set<String> USER_ACCESS_RIGHTS = Set.of("READ_DOI_REQUEST");
+    public static final Set<String> CREATOR_ACCESS_RIGHTS = Set.of("APPROVE_DOI_REQUEST", "REJECT_DOI_REQUEST");
+
+    private PostAuthenticationHandler handler;
+    private Map<String, Object> event;
+    private UserDetails userDetails;
+    private UserDto user;
+
+    /**
+     * Creates a handler without any services behind it, and the inputs of the measured steps.
+     *
+     * @throws InvalidEntryInternalException if the sample user cannot be built
+     */
+    @Setup
+    public void prepare() throws InvalidEntryInternalException {
+        handler = new PostAuthenticationHandler(new UserService(new WarmUpUserApi(), new NoOpUserPoolClient()),
+                                                new WarmUpCustomerApi());
+        event = WarmUpSamples.sampleEvent();
+        Event parsedEvent = handler.parseEventFromInput(event);
+        userDetails = new UserDetails(parsedEvent.getRequest().getUserAttributes(), WarmUpSamples.sampleCustomer());
+        user = WarmUpSamples.sampleUser().copy()
+                   .withRoles(List.of(role(USER, USER_ACCESS_RIGHTS), role(CREATOR, CREATOR_ACCESS_RIGHTS)))
+                   .build();
+    }
+
+    @Benchmark
+    public Event parseEventFromInput() {
+        return handler.parseEventFromInput(event);
+    }
+
+    @Benchmark
+    public List<AttributeType> createUserAttributes() {
+        return handler.createUserAttributes(userDetails, user);
+    }
+
+    @Benchmark
+    public String extractAffiliationFromHostedUser() {
+        return handler.extractAffiliationFromHostedUSer(HOSTED_AFFILIATION);
+    }
+
+    private static RoleDto role(String name, Set<String> accessRights) throws InvalidEntryInternalException {
+        return RoleDto.newBuilder().withName(name).withAccessRights(accessRights).build();
+    }
+}
@@ -0,0 +1,59 @@
+package no.unit.nva.cognito.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares reading and writing a user through the {@link JsonCodec} with decoding the body into a {@code String} and
+ * using the object mapper, as the clients used to. Run with the gc profiler to compare the allocations per operation.
+ */
+@State(Scope.Benchmark)
+public class JsonCodecBenchmark {
+
+    private ObjectMapper objectMapper;
+    private JsonCodec codec;
+    private UserDto user;
+    private byte[] body;
+
+    /**
+     * Serializes the sample user as the response body.
+     *
+     * @throws IOException                   if the sample user cannot be serialized
+     * @throws InvalidEntryInternalException if the sample user cannot be built
+     */
+    @Setup
+    public void prepare() throws IOException, InvalidEntryInternalException {
+        objectMapper = new ObjectMapper();
+        codec = new JsonCodec(objectMapper);
+        user = WarmUpSamples.sampleUser();
+        body = objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public UserDto readUserFromString() throws IOException {
+        return objectMapper.readValue(new String(body, StandardCharsets.UTF_8), UserDto.class);
+    }
+
+    @Benchmark
+    public UserDto readUserFromBytes() throws IOException {
+        return codec.readUser(body);
+    }
+
+    @Benchmark
+    public byte[] writeUserAsString() throws IOException {
+        return objectMapper.writeValueAsString(user).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeUserAsBytes() throws IOException {
+        return codec.writeUser(user);
+    }
+}
@@ -0,0 +1,55 @@
+package no.unit.nva.cognito.service;
+
+import java.util.List;
+import no.unit.nva.cognito.model.UserAttributes;
+import no.unit.nva.cognito.warmup.NoOpUserPoolClient;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.cognito.warmup.WarmUpUserApi;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the role update of a login, {@link UserService#updatePolicy(UserDetails)} followed by
+ * {@link UpdatePolicy#updatedRoles(UserDto)}, for a user that keeps the Creator role and for a user that loses it.
+ */
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    public static final String CREATOR = "Creator";
+
+    @Param({"[member, employee, staff]", "[member, student]"})
+    public String affiliation;
+
+    private UserService userService;
+    private UserDto existingUser;
+    private UserDetails userDetails;
+
+    /**
+     * Creates an existing user with the User and Creator roles, and the details of a login with the affiliation.
+     *
+     * @throws InvalidEntryInternalException if the sample user cannot be built
+     */
+    @Setup
+    public void prepare() throws InvalidEntryInternalException {
+        userService = new UserService(new WarmUpUserApi(), new NoOpUserPoolClient());
+        existingUser = WarmUpSamples.sampleUser().copy()
+                           .withRoles(List.of(RoleDto.newBuilder().withName(WarmUpSamples.WARM_UP_ROLE).build(),
+                                              RoleDto.newBuilder().withName(CREATOR).build()))
+                           .build();
+        UserAttributes userAttributes = new UserAttributes();
+        userAttributes.setFeideId(WarmUpSamples.WARM_UP_USERNAME);
+        userAttributes.setAffiliation(affiliation);
+        userDetails = new UserDetails(userAttributes, WarmUpSamples.sampleCustomer());
+    }
+
+    @Benchmark
+    public List<RoleDto> updateRoles() {
+        return userService.updatePolicy(userDetails).updatedRoles(existingUser);
+    }
+}
@@ -0,0 +1,50 @@
+package no.unit.nva.cognito.stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import no.unit.nva.cognito.model.UserClaims;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures reading an event with {@link StreamedEventReader} and writing a response by splicing in the claims, the
+ * streaming counterparts of converting the event map and serializing the response map.
+ */
+@State(Scope.Benchmark)
+public class StreamedEventBenchmark {
+
+    public static final Map<String, String> CLAIMS =
+        Map.of(UserClaims.CUSTOM_APPLICATION, UserClaims.NVA,
+               UserClaims.CUSTOM_CUSTOMER_ID, WarmUpSamples.WARM_UP_CUSTOMER_ID);
+
+    private byte[] json;
+    private StreamedEvent event;
+
+    /**
+     * Reads the sample event.
+     *
+     * @throws IOException if the sample event cannot be read
+     */
+    @Setup
+    public void prepare() throws IOException {
+        json = WarmUpSamples.sampleEventJson().getBytes(UTF_8);
+        event = StreamedEventReader.read(json);
+    }
+
+    @Benchmark
+    public StreamedEvent read() throws IOException {
+        return StreamedEventReader.read(json);
+    }
+
+    @Benchmark
+    public byte[] writeWithClaims() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(json.length * 2);
+        event.writeWithClaims(json, CLAIMS, output);
+        return output.toByteArray();
+    }
+}
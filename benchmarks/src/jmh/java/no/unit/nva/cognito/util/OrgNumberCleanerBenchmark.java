@@ -0,0 +1,21 @@
+package no.unit.nva.cognito.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link OrgNumberCleaner#removeCountryPrefix(String)} with and without a country prefix.
+ */
+@State(Scope.Benchmark)
+public class OrgNumberCleanerBenchmark {
+
+    @Param({"NO919477822", "919477822"})
+    public String orgNumber;
+
+    @Benchmark
+    public String removeCountryPrefix() {
+        return OrgNumberCleaner.removeCountryPrefix(orgNumber);
+    }
+}
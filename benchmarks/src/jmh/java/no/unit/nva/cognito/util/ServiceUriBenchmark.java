@@ -0,0 +1,33 @@
+package no.unit.nva.cognito.util;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import org.apache.http.client.utils.URIBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares resolving a user URI against a {@link ServiceUri} with building it with a {@link URIBuilder} on every call,
+ * as the clients used to. Run with the gc profiler to compare the allocations per operation.
+ */
+@State(Scope.Benchmark)
+public class ServiceUriBenchmark {
+
+    public static final String SCHEME = "https";
+    public static final String HOST = "api.example.org";
+    public static final String PATH = "/users-roles-internal/service/users";
+    public static final String USERNAME = "1234567@unit.no";
+
+    private final ServiceUri users = new ServiceUri(SCHEME, HOST, PATH);
+
+    @Benchmark
+    public URI buildWithUriBuilder() throws URISyntaxException {
+        return new URIBuilder().setScheme(SCHEME).setHost(HOST).setPath(PATH + "/" + USERNAME).build();
+    }
+
+    @Benchmark
+    public URI resolveAgainstBase() {
+        return users.resolve(USERNAME);
+    }
+}
@@ -1,53 +1,73 @@
 package no.unit.nva.cognito;
 
 import static java.util.Objects.nonNull;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_LOOKUP;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.EVENT_PARSE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.REMAINING_BUDGET;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.TRIGGER_SOURCE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_CREATE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_GET;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_POOL_UPDATE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_UPDATE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_UPSERT;
 import static no.unit.nva.cognito.util.OrgNumberCleaner.removeCountryPrefix;
 import static nva.commons.core.StringUtils.isNotBlank;
-import static nva.commons.core.attempt.Try.attempt;
-import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProviderClient;
 import com.amazonaws.services.cognitoidp.model.AttributeType;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.net.http.HttpClient;
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.metrics.MetricsPublisher;
+import no.unit.nva.cognito.model.ClaimsDeliveryMode;
 import no.unit.nva.cognito.model.CustomerResponse;
 import no.unit.nva.cognito.model.Event;
 import no.unit.nva.cognito.model.UserAttributes;
+import no.unit.nva.cognito.model.UserClaims;
+import no.unit.nva.cognito.service.ClaimsDeliverySettings;
 import no.unit.nva.cognito.service.CustomerApi;
 import no.unit.nva.cognito.service.CustomerApiClient;
+import no.unit.nva.cognito.service.CustomerDirectory;
+import no.unit.nva.cognito.service.HttpTransport;
+import no.unit.nva.cognito.service.HttpUserPoolClient;
+import no.unit.nva.cognito.service.RoleRules;
+import no.unit.nva.cognito.service.SdkUserPoolClient;
 import no.unit.nva.cognito.service.UserApiClient;
 import no.unit.nva.cognito.service.UserDetails;
+import no.unit.nva.cognito.service.UserPoolClient;
 import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.service.UserServiceFallback;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.DeferredWrites;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.ParallelWrites;
+import no.unit.nva.cognito.warmup.NoOpUserPoolClient;
+import no.unit.nva.cognito.warmup.WarmUpCustomerApi;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.cognito.warmup.WarmUpUserApi;
 import no.unit.nva.useraccessmanagement.model.RoleDto;
 import no.unit.nva.useraccessmanagement.model.UserDto;
 import nva.commons.core.Environment;
 import nva.commons.core.JacocoGenerated;
 import nva.commons.core.JsonUtils;
-import nva.commons.core.attempt.Try;
 import nva.commons.secrets.SecretsReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class PostAuthenticationHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
 
-    public static final String CUSTOM_APPLICATION_ROLES = "custom:applicationRoles";
-    public static final String CUSTOM_APPLICATION = "custom:application";
-    public static final String CUSTOM_CUSTOMER_ID = "custom:customerId";
-    public static final String CUSTOM_IDENTIFIERS = "custom:identifiers";
-    public static final String CUSTOM_CRISTIN_ID = "custom:cristinId";
-    public static final String CUSTOM_APPLICATION_ACCESS_RIGHTS = "custom:accessRights";
-
     public static final String COMMA_DELIMITER = ",";
-    public static final String FEIDE_PREFIX = "feide:";
-    public static final String NVA = "NVA";
     public static final String BIBSYS_HOST = "@bibsys.no";
     public static final String EMPTY_STRING = "";
     public static final int START_OF_STRING = 0;
@@ -58,42 +78,262 @@ public class PostAuthenticationHandler implements RequestHandler<Map<String, Obj
     public static final String APPLICATION_ROLES_MESSAGE = "applicationRoles: ";
     public static final String HOSTED_AFFILIATION_MESSAGE =
         "Overriding orgNumber({}) with hostedOrgNumber({}) and hostedAffiliation";
+    public static final String USER_POOL_CLIENT = "USER_POOL_CLIENT";
+    public static final String HTTP_USER_POOL_CLIENT = "http";
+    public static final String SDK_USER_POOL_CLIENT = "sdk";
+    public static final String USER_SERVICE_WRITE = "userServiceWrite";
+    public static final String USER_POOL_WRITE = "userPoolWrite";
+    public static final String RESPONSE = "response";
+    public static final String CLAIMS_OVERRIDE_DETAILS = "claimsOverrideDetails";
+    public static final String CLAIMS_TO_ADD_OR_OVERRIDE = "claimsToAddOrOverride";
+    public static final String WARM_UP_TRIGGER_SOURCE = "WarmUp";
+    public static final String WARM_UP_CONNECTION_FAILED =
+        "Opening connections during warm-up failed, the first request will open them";
     private static final Logger logger = LoggerFactory.getLogger(PostAuthenticationHandler.class);
     private final UserService userService;
     private final CustomerApi customerApi;
+    private final ClaimsDeliverySettings claimsDeliverySettings;
+    private final MetricsPublisher metricsPublisher;
+    private final UserServiceFallback userServiceFallback;
+    private final DeferredWrites deferredWrites = new DeferredWrites();
 
+    /**
+     * Creates the handler the Lambda runtime uses, and opens the connections to the user and customer services while
+     * the container initializes.
+     */
     @JacocoGenerated
     public PostAuthenticationHandler() {
-        this(newUserService(), newCustomerApiClient());
+        this(newUserService(), newCustomerApi(), ClaimsDeliverySettings.fromEnvironment(new Environment()));
+        HttpTransport.shared().prewarm(new Environment()).join();
     }
 
     public PostAuthenticationHandler(UserService userService, CustomerApi customerApi) {
+        this(userService, customerApi, ClaimsDeliverySettings.attributesOnly());
+    }
+
+    public PostAuthenticationHandler(UserService userService,
+                                     CustomerApi customerApi,
+                                     ClaimsDeliverySettings claimsDeliverySettings) {
+        this(userService, customerApi, claimsDeliverySettings, MetricsPublisher.fromEnvironment(new Environment()));
+    }
+
+    public PostAuthenticationHandler(UserService userService,
+                                     CustomerApi customerApi,
+                                     ClaimsDeliverySettings claimsDeliverySettings,
+                                     MetricsPublisher metricsPublisher) {
+        this(userService, customerApi, claimsDeliverySettings, metricsPublisher,
+             UserServiceFallback.fromEnvironment(new Environment()));
+    }
+
+    public PostAuthenticationHandler(UserService userService,
+                                     CustomerApi customerApi,
+                                     ClaimsDeliverySettings claimsDeliverySettings,
+                                     MetricsPublisher metricsPublisher,
+                                     UserServiceFallback userServiceFallback) {
         this.userService = userService;
         this.customerApi = customerApi;
+        this.claimsDeliverySettings = claimsDeliverySettings;
+        this.metricsPublisher = metricsPublisher;
+        this.userServiceFallback = userServiceFallback;
     }
 
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
-        long start = System.currentTimeMillis();
-        Event event = parseEventFromInput(input);
+        if (WARM_UP_TRIGGER_SOURCE.equals(input.get(Event.TRIGGER_SOURCE))) {
+            warmUp(context);
+            return input;
+        }
+        Deadline deadline = Deadline.fromContext(context);
+        return metricsPublisher.record(() -> processRequest(input, deadline));
+    }
+
+    public MetricsPublisher getMetricsPublisher() {
+        return metricsPublisher;
+    }
+
+    public UserService getUserService() {
+        return userService;
+    }
+
+    /**
+     * Waits for the user pool writes that were started after the claims were returned, at most for the timeout.
+     *
+     * @param timeout how long to wait
+     * @return {@code true} if every deferred write had completed
+     */
+    public boolean awaitDeferredWrites(Duration timeout) {
+        return deferredWrites.awaitPending(timeout);
+    }
+
+    /**
+     * Creates or updates the user in the user service and delivers the user attributes according to the claims
+     * delivery mode of the trigger source. Every downstream call is given the time that remains of the deadline. When
+     * the user service fallback is enabled, a failing user service degrades the login instead of failing it.
+     *
+     * @param event    the event
+     * @param deadline the deadline of the invocation
+     * @return the claims to add or override in the issued tokens, or empty if the claims are not returned in the
+     *     response
+     */
+    public Optional<Map<String, String>> handleEvent(Event event, Deadline deadline) {
+        deadline.attach();
+        try {
+            return handleEventWithinDeadline(event);
+        } finally {
+            deadline.detach();
+            logger.info("handleRequest took {} ms", deadline.getBudget().minus(deadline.remaining()).toMillis());
+            InvocationMetrics metrics = InvocationMetrics.current();
+            metrics.record(REMAINING_BUDGET, deadline.remaining().toNanos());
+            deadline.reportBudgetUse(metrics.getTimings());
+        }
+    }
+
+    private Optional<Map<String, String>> handleEventWithinDeadline(Event event) {
+        InvocationMetrics metrics = InvocationMetrics.current();
+        if (nonNull(event.getTriggerSource())) {
+            metrics.dimension(TRIGGER_SOURCE, event.getTriggerSource());
+        }
+        ClaimsDeliveryMode claimsDeliveryMode = claimsDeliverySettings.modeFor(event.getTriggerSource());
+        UserAttributes userAttributes = extractUserAttributes(event.getRequest().getUserAttributes());
+
+        return userService.upsertsInOneRequest()
+                   ? upsertAndIssueClaims(event, claimsDeliveryMode, userAttributes)
+                   : lookUpAndIssueClaims(event, claimsDeliveryMode, userAttributes);
+    }
+
+    /**
+     * Upserts the user in a single request. The customer is the institution of the user, so the customer lookup
+     * completes before the upsert is sent, and the user pool is updated with the user as stored.
+     */
+    private Optional<Map<String, String>> upsertAndIssueClaims(Event event,
+                                                               ClaimsDeliveryMode claimsDeliveryMode,
+                                                               UserAttributes userAttributes) {
+        InvocationMetrics metrics = InvocationMetrics.current();
+        UserDetails userDetails =
+            Futures.join(metrics.timeAsync(CUSTOMER_LOOKUP, () -> fetchUserDetails(userAttributes)));
+        CompletableFuture<UserDto> storedUser = metrics.timeAsync(
+            USER_UPSERT, () -> userServiceFallback.bound(userService.upsertUserAsync(userDetails)));
+        return userServiceFallback.claimsOrLastKnownClaims(
+            storedUser, user -> issueClaims(event, claimsDeliveryMode, userDetails, user, new ParallelWrites()),
+            userAttributes, claimsDeliveryMode);
+    }
+
+    /**
+     * Looks the user up while the customer is looked up. A new user is created before anything else is written,
+     * because the user pool attributes depend on the created user. An update only depends on the locally computed
+     * user, so its write runs in parallel with the user pool update.
+     */
+    private Optional<Map<String, String>> lookUpAndIssueClaims(Event event,
+                                                               ClaimsDeliveryMode claimsDeliveryMode,
+                                                               UserAttributes userAttributes) {
+        InvocationMetrics metrics = InvocationMetrics.current();
+        CompletableFuture<Optional<UserDto>> existingUser = metrics.timeAsync(
+            USER_GET, () -> userServiceFallback.bound(userService.getUserAsync(userAttributes.getFeideId())));
+        UserDetails userDetails =
+            Futures.join(metrics.timeAsync(CUSTOMER_LOOKUP, () -> fetchUserDetails(userAttributes)));
+        return userServiceFallback.claimsOrLastKnownClaims(
+            existingUser,
+            user -> user.map(storedUser -> updateAndIssueClaims(event, claimsDeliveryMode, userDetails, storedUser))
+                        .orElseGet(() -> createAndIssueClaims(event, claimsDeliveryMode, userDetails, userAttributes)),
+            userAttributes, claimsDeliveryMode);
+    }
+
+    private Optional<Map<String, String>> createAndIssueClaims(Event event,
+                                                               ClaimsDeliveryMode claimsDeliveryMode,
+                                                               UserDetails userDetails,
+                                                               UserAttributes userAttributes) {
+        CompletableFuture<UserDto> createdUser = InvocationMetrics.current().timeAsync(
+            USER_CREATE, () -> userServiceFallback.bound(userService.createUserAsync(userDetails)));
+        return userServiceFallback.claimsOrLastKnownClaims(
+            createdUser, user -> issueClaims(event, claimsDeliveryMode, userDetails, user, new ParallelWrites()),
+            userAttributes, claimsDeliveryMode);
+    }
+
+    private Optional<Map<String, String>> updateAndIssueClaims(Event event,
+                                                               ClaimsDeliveryMode claimsDeliveryMode,
+                                                               UserDetails userDetails,
+                                                               UserDto storedUser) {
+        InvocationMetrics metrics = InvocationMetrics.current();
+        ParallelWrites writes = new ParallelWrites();
+        UserDto updatedUser = userService.prepareUpdate(storedUser, userDetails);
+        writes.add(USER_SERVICE_WRITE, () -> metrics.timeAsync(USER_UPDATE, () -> userServiceFallback.tolerateFailure(
+            userService.writeUpdateAsync(storedUser, updatedUser), metrics)));
+        return issueClaims(event, claimsDeliveryMode, userDetails, updatedUser, writes);
+    }
+
+    private Optional<Map<String, String>> issueClaims(Event event,
+                                                      ClaimsDeliveryMode claimsDeliveryMode,
+                                                      UserDetails userDetails,
+                                                      UserDto user,
+                                                      ParallelWrites writes) {
+        InvocationMetrics metrics = InvocationMetrics.current();
+        List<AttributeType> cognitoUserAttributes = createUserAttributes(userDetails, user);
+        userServiceFallback.remember(userDetails.getFeideId(), toClaims(cognitoUserAttributes));
+        if (claimsDeliveryMode.returnsClaims() && claimsDeliveryMode.writesAttributes()) {
+            deferredWrites.start(USER_POOL_WRITE, () -> updateUserDetailsInUserPool(event, cognitoUserAttributes));
+        } else if (claimsDeliveryMode.writesAttributes()) {
+            writes.add(USER_POOL_WRITE, () -> metrics.timeAsync(USER_POOL_UPDATE,
+                () -> updateUserDetailsInUserPool(event, cognitoUserAttributes)));
+        }
+        writes.awaitAll();
+
+        return claimsDeliveryMode.returnsClaims()
+                   ? Optional.of(toClaims(cognitoUserAttributes))
+                   : Optional.empty();
+    }
 
-        String userPoolId = event.getUserPoolId();
-        String userName = event.getUserName();
-        UserDetails userDetails = extractUserDetails(event);
-        UserDto user = getAndUpdateUserDetails(userDetails);
+    /**
+     * Prepares a new instance for real logins without side effects. The connections to the user and customer services
+     * are opened with lookups that find nothing, while the whole pipeline runs twice against stand-ins, first creating
+     * and then updating the sample user, to load the classes and let Jackson introspect the event and user types. The
+     * stand-ins assign roles with the configured role rules, so that the rules of real logins are the ones warmed up.
+     *
+     * @param context the Lambda context
+     */
+    public void warmUp(Context context) {
+        final long start = System.currentTimeMillis();
+        CompletableFuture<Void> connections = CompletableFuture.allOf(userService.warmUp(), customerApi.warmUp());
+
+        PostAuthenticationHandler standIn = new PostAuthenticationHandler(
+            new UserService(new WarmUpUserApi(), new NoOpUserPoolClient(), userService.getRoleRules()),
+            new WarmUpCustomerApi(),
+            new ClaimsDeliverySettings(ClaimsDeliveryMode.CLAIMS_AND_ATTRIBUTES, Collections.emptyMap()),
+            MetricsPublisher.discarding(),
+            UserServiceFallback.disabled());
+        standIn.handleRequest(WarmUpSamples.sampleEvent(), context);
+        standIn.handleRequest(WarmUpSamples.sampleEvent(), context);
+
+        connections.exceptionally(this::logWarmUpConnectionFailure).join();
+        logger.info("warmUp took {} ms", System.currentTimeMillis() - start);
+    }
 
-        updateUserDetailsInUserPool(userPoolId, userName, userDetails, user);
+    private Map<String, Object> processRequest(Map<String, Object> input, Deadline deadline) {
+        Event event = InvocationMetrics.current().time(EVENT_PARSE, () -> parseEventFromInput(input));
+        return handleEvent(event, deadline)
+                   .map(claims -> withClaimsOverride(input, claims))
+                   .orElse(input);
+    }
 
-        logger.info("handleRequest took {} ms", System.currentTimeMillis() - start);
-        return input;
+    private Void logWarmUpConnectionFailure(Throwable exception) {
+        logger.warn(WARM_UP_CONNECTION_FAILED, Futures.unwrap(exception));
+        return null;
     }
 
+    /**
+     * The customer service is asked only for the organizations that are not in the packaged customer directory, if
+     * there is one.
+     */
     @JacocoGenerated
-    private static CustomerApiClient newCustomerApiClient() {
-        return new CustomerApiClient(
-            HttpClient.newHttpClient(),
-            new ObjectMapper(),
-            new Environment());
+    private static CustomerApi newCustomerApi() {
+        Environment environment = new Environment();
+        return CustomerDirectory.fromEnvironment(
+            environment,
+            new CustomerApiClient(newHttpClient(), new ObjectMapper(), environment));
+    }
+
+    @JacocoGenerated
+    private static HttpClient newHttpClient() {
+        return HttpTransport.shared().getHttpClient();
     }
 
     @JacocoGenerated
@@ -105,25 +345,49 @@ public class PostAuthenticationHandler implements RequestHandler<Map<String, Obj
     private static UserService newUserService() {
         return new UserService(
             defaultUserApiClient(),
-            AWSCognitoIdentityProviderClient.builder().build()
+            defaultUserPoolClient(new Environment()),
+            RoleRules.fromEnvironment(new Environment())
         );
     }
 
+    /**
+     * The JDK HTTP client based user pool client is used unless {@code USER_POOL_CLIENT} is set to {@code sdk}, because
+     * the AWS SDK client adds considerably to the cold start time.
+     */
+    @JacocoGenerated
+    private static UserPoolClient defaultUserPoolClient(Environment environment) {
+        String userPoolClient = environment.readEnvOpt(USER_POOL_CLIENT).orElse(HTTP_USER_POOL_CLIENT);
+        if (SDK_USER_POOL_CLIENT.equalsIgnoreCase(userPoolClient)) {
+            return SdkUserPoolClient.defaultClient();
+        }
+        return HttpUserPoolClient.fromEnvironment(newHttpClient(), environment);
+    }
+
     @JacocoGenerated
     private static UserApiClient defaultUserApiClient() {
         return new UserApiClient(
-            HttpClient.newHttpClient(),
+            newHttpClient(),
             new ObjectMapper(),
             defaultSecretsReader(),
             new Environment());
     }
 
-    private UserDetails extractUserDetails(Event event) {
-        UserAttributes userAttributes = event.getRequest().getUserAttributes();
+    /**
+     * Looks up the details a login with the user attributes would have, the way a login does, without writing
+     * anything.
+     *
+     * @param userAttributes the user attributes, as in the event or in the user pool
+     * @return the user details including customer information when a customer exists
+     */
+    public CompletableFuture<UserDetails> userDetailsAsync(UserAttributes userAttributes) {
+        return fetchUserDetails(extractUserAttributes(userAttributes));
+    }
+
+    private UserAttributes extractUserAttributes(UserAttributes userAttributes) {
         if (userIsBibsysHosted(userAttributes)) {
             injectInformationForBibsysHostedCustomer(userAttributes);
         }
-        return createUserDetails(userAttributes);
+        return userAttributes;
     }
 
     private void injectInformationForBibsysHostedCustomer(UserAttributes userAttributes) {
@@ -132,10 +396,23 @@ public class PostAuthenticationHandler implements RequestHandler<Map<String, Obj
         userAttributes.setAffiliation(extractAffiliationFromHostedUSer(userAttributes.getHostedAffiliation()));
     }
 
-    private UserDetails createUserDetails(UserAttributes userAttributes) {
+    /**
+     * Looks up the customer of the user's organization. The customer is the institution of the user, so the lookup
+     * completes before the user is upserted or written, but it does not depend on the user lookup.
+     *
+     * @param userAttributes the user attributes of the event
+     * @return user details including customer information when a customer exists
+     */
+    private CompletableFuture<UserDetails> fetchUserDetails(UserAttributes userAttributes) {
         return Optional.ofNullable(userAttributes.getOrgNumber())
-                   .flatMap(orgNum -> mapOrgNumberToCustomer(removeCountryPrefix(orgNum)))
-                   .map(customer -> new UserDetails(userAttributes, customer))
+                   .map(orgNum -> mapOrgNumberToCustomer(removeCountryPrefix(orgNum)))
+                   .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty()))
+                   .thenApply(customer -> createUserDetails(userAttributes, customer));
+    }
+
+    private UserDetails createUserDetails(UserAttributes userAttributes, Optional<CustomerResponse> customer) {
+        return customer
+                   .map(customerResponse -> new UserDetails(userAttributes, customerResponse))
                    .orElse(new UserDetails(userAttributes));
     }
 
@@ -146,50 +423,56 @@ public class PostAuthenticationHandler implements RequestHandler<Map<String, Obj
      * @param input event json as map
      * @return event
      */
-    private Event parseEventFromInput(Map<String, Object> input) {
+    @SuppressWarnings("PMD.DefaultPackage")
+    /* default */ Event parseEventFromInput(Map<String, Object> input) {
         return JsonUtils.objectMapper.convertValue(input, Event.class);
     }
 
-    private void updateUserDetailsInUserPool(String userPoolId,
-                                             String userName,
-                                             UserDetails userDetails,
-                                             UserDto user) {
-        long start = System.currentTimeMillis();
-        List<AttributeType> cognitoUserAttributes = createUserAttributes(userDetails, user);
-        userService.updateUserAttributes(userPoolId, userName, cognitoUserAttributes);
-        logger.info("updateUserDetailsInUserPool took {} ms", System.currentTimeMillis() - start);
+    /**
+     * Returns a copy of the input event with the claims to add or override in the issued tokens.
+     *
+     * @param input  event json as map
+     * @param claims the claims
+     * @return the response event
+     */
+    private Map<String, Object> withClaimsOverride(Map<String, Object> input, Map<String, String> claims) {
+        var response = new HashMap<>(input);
+        response.put(RESPONSE, Map.of(CLAIMS_OVERRIDE_DETAILS, Map.of(CLAIMS_TO_ADD_OR_OVERRIDE, claims)));
+        return response;
     }
 
-    private UserDto getAndUpdateUserDetails(UserDetails userDetails) {
-        return userService.getUser(userDetails.getFeideId())
-                   .map(attempt(user -> userService.updateUser(user, userDetails)))
-                   .map(Try::orElseThrow)
-                   .orElseGet(() -> userService.createUser(userDetails));
+    private Map<String, String> toClaims(List<AttributeType> cognitoUserAttributes) {
+        return cognitoUserAttributes.stream()
+                   .collect(Collectors.toMap(AttributeType::getName, AttributeType::getValue));
     }
 
-    private Optional<CustomerResponse> mapOrgNumberToCustomer(String orgNumber) {
-        return customerApi.getCustomer(orgNumber);
+    private CompletableFuture<Void> updateUserDetailsInUserPool(Event event,
+                                                                List<AttributeType> cognitoUserAttributes) {
+        return userService.updateUserAttributesAsync(event.getUserPoolId(), event.getUserName(),
+                                                     cognitoUserAttributes);
     }
 
-    private List<AttributeType> createUserAttributes(UserDetails userDetails, UserDto user) {
-        List<AttributeType> userAttributeTypes = new ArrayList<>();
-
-        if (user.getInstitution() != null) {
-            userAttributeTypes.add(toAttributeType(CUSTOM_CUSTOMER_ID, user.getInstitution()));
-        }
-        userDetails.getCristinId()
-            .ifPresent(cristinId -> userAttributeTypes.add(toAttributeType(CUSTOM_CRISTIN_ID, cristinId)));
-
-        userAttributeTypes.add(toAttributeType(CUSTOM_APPLICATION, NVA));
-        userAttributeTypes.add(toAttributeType(CUSTOM_IDENTIFIERS, FEIDE_PREFIX + userDetails.getFeideId()));
-
-        String applicationRoles = applicationRolesString(user);
-        userAttributeTypes.add(toAttributeType(CUSTOM_APPLICATION_ROLES, applicationRoles));
-
-        String accessRightsString = accessRightsString(user);
-        userAttributeTypes.add(toAttributeType(CUSTOM_APPLICATION_ACCESS_RIGHTS, accessRightsString));
+    private CompletableFuture<Optional<CustomerResponse>> mapOrgNumberToCustomer(String orgNumber) {
+        return customerApi.getCustomerAsync(orgNumber);
+    }
 
-        return userAttributeTypes;
+    /**
+     * Creates the user pool attributes, which are also the claims, of the user.
+     *
+     * @param userDetails the user details of the login
+     * @param user        the user as stored in the user service
+     * @return the user attributes
+     */
+    public List<AttributeType> createUserAttributes(UserDetails userDetails, UserDto user) {
+        Map<String, String> claims = UserClaims.create(user.getInstitution(),
+                                                       userDetails.getCristinId().orElse(null),
+                                                       userDetails.getFeideId(),
+                                                       applicationRolesString(user),
+                                                       accessRightsString(user));
+        return claims.entrySet()
+                   .stream()
+                   .map(claim -> toAttributeType(claim.getKey(), claim.getValue()))
+                   .collect(Collectors.toList());
     }
 
     private String accessRightsString(UserDto user) {
@@ -225,7 +508,15 @@ public class PostAuthenticationHandler implements RequestHandler<Map<String, Obj
                && nonNull(userAttributes.getHostedOrgNumber());
     }
 
-    private String extractAffiliationFromHostedUSer(String hostedAffiliation) {
+    /**
+     * Removes the scope from each affiliation of a BIBSYS hosted user, for instance {@code [staff@zs.bibsys.no]}
+     * becomes {@code [staff]}.
+     *
+     * @param hostedAffiliation the hosted affiliation attribute
+     * @return the affiliation without scopes
+     */
+    @SuppressWarnings("PMD.DefaultPackage")
+    /* default */ String extractAffiliationFromHostedUSer(String hostedAffiliation) {
 
         List<String> shortenedAffiliations = Arrays.stream(hostedAffiliation.split(COMMA))
                                                  .map(this::extractAffiliation)
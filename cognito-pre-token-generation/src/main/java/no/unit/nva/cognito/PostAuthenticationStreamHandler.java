@@ -0,0 +1,84 @@
+package no.unit.nva.cognito;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static no.unit.nva.cognito.PostAuthenticationHandler.WARM_UP_TRIGGER_SOURCE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.EVENT_PARSE;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.model.UserClaims;
+import no.unit.nva.cognito.stream.StreamedEvent;
+import no.unit.nva.cognito.stream.StreamedEventReader;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import nva.commons.core.JacocoGenerated;
+
+/**
+ * Entry point that reads the Cognito event from the raw request stream. Only the fields that the handler uses are
+ * parsed, and the response is written by copying the input bytes, with the claims spliced in when the claims are
+ * returned in the response. The Lambda runtime therefore neither builds a map of the whole event nor serializes one
+ * back.
+ */
+public class PostAuthenticationStreamHandler implements RequestStreamHandler {
+
+    public static final Map<String, String> WARM_UP_CLAIMS =
+        Map.of(UserClaims.CUSTOM_APPLICATION, UserClaims.NVA);
+    private final PostAuthenticationHandler handler;
+
+    @JacocoGenerated
+    public PostAuthenticationStreamHandler() {
+        this(new PostAuthenticationHandler());
+    }
+
+    public PostAuthenticationStreamHandler(PostAuthenticationHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        InvocationMetrics metrics = new InvocationMetrics();
+        byte[] json = input.readAllBytes();
+        StreamedEvent event = metrics.time(EVENT_PARSE, () -> StreamedEventReader.read(json));
+        if (WARM_UP_TRIGGER_SOURCE.equals(event.getEvent().getTriggerSource())) {
+            warmUp(context);
+            output.write(json);
+            return;
+        }
+        Deadline deadline = Deadline.fromContext(context);
+        handler.getMetricsPublisher().record(metrics, () -> writeResponse(json, event, deadline, output));
+    }
+
+    /**
+     * Waits for the user pool writes that were started after the claims were returned, at most for the timeout.
+     *
+     * @param timeout how long to wait
+     * @return {@code true} if every deferred write had completed
+     */
+    public boolean awaitDeferredWrites(Duration timeout) {
+        return handler.awaitDeferredWrites(timeout);
+    }
+
+    private Void writeResponse(byte[] json, StreamedEvent event, Deadline deadline, OutputStream output)
+        throws IOException {
+        Optional<Map<String, String>> claims = handler.handleEvent(event.getEvent(), deadline);
+        if (claims.isPresent()) {
+            event.writeWithClaims(json, claims.get(), output);
+        } else {
+            output.write(json);
+        }
+        return null;
+    }
+
+    private void warmUp(Context context) throws IOException {
+        handler.warmUp(context);
+        byte[] sampleEvent = WarmUpSamples.sampleEventJson().getBytes(UTF_8);
+        StreamedEventReader.read(sampleEvent)
+            .writeWithClaims(sampleEvent, WARM_UP_CLAIMS, OutputStream.nullOutputStream());
+    }
+}
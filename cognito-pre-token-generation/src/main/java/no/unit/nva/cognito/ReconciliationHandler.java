@@ -0,0 +1,178 @@
+package no.unit.nva.cognito;
+
+import static nva.commons.core.attempt.Try.attempt;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import no.unit.nva.cognito.reconciliation.AttributeReconciler;
+import no.unit.nva.cognito.reconciliation.ReconciliationCheckpoint;
+import no.unit.nva.cognito.reconciliation.ReconciliationOutcome;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.RateLimiter;
+import nva.commons.core.Environment;
+import nva.commons.core.JacocoGenerated;
+import nva.commons.core.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batch entry point that pages through the user pool with ListUsers and brings the attributes of every user up to
+ * date, so that the logins after a bulk change of roles or customers find their attributes already correct. The input
+ * and the output are a {@link ReconciliationCheckpoint}: an empty input starts with the first page of the user pool in
+ * {@code USER_POOL_ID}, and the handler stops starting new pages when less than the time reserve of the Lambda is left
+ * and returns where it stopped, so that a run of any size is completed by invoking the handler with its output until
+ * the output is done. A page that fails ends the run with the checkpoint before it, which records the failure, and
+ * the invocation fails instead once the same page has failed {@code RECONCILIATION_MAX_FAILURES} times in a row, so
+ * that a driver does not retry a page that always fails forever. A run without a user pool fails at once. The pages
+ * are fetched at most {@code RECONCILIATION_PAGES_PER_SECOND}, to stay below the ListUsers quota.
+ */
+public class ReconciliationHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+
+    public static final String USER_POOL_ID = "USER_POOL_ID";
+    public static final String RECONCILIATION_PAGES_PER_SECOND = "RECONCILIATION_PAGES_PER_SECOND";
+    public static final String RECONCILIATION_TIME_RESERVE_SECONDS = "RECONCILIATION_TIME_RESERVE_SECONDS";
+    public static final String RECONCILIATION_MAX_FAILURES = "RECONCILIATION_MAX_FAILURES";
+    public static final double DEFAULT_PAGES_PER_SECOND = 2;
+    public static final Duration DEFAULT_TIME_RESERVE = Duration.ofSeconds(60);
+    public static final int DEFAULT_MAX_FAILURES = 3;
+    public static final String PAGE_RECONCILED = "Reconciled {}";
+    public static final String PAGE_FAILED = "Reconciling the page after {} failed, returning the last checkpoint";
+    public static final String MISSING_USER_POOL_ID =
+        "No user pool to reconcile: the input names none and " + USER_POOL_ID + " is not set";
+    public static final String TOO_MANY_FAILURES = "Giving up on the page after ";
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationHandler.class);
+
+    private final UserService userService;
+    private final AttributeReconciler reconciler;
+    private final RateLimiter pageRateLimiter;
+    private final String defaultUserPoolId;
+    private final Duration timeReserve;
+    private final int maxFailures;
+
+    @JacocoGenerated
+    public ReconciliationHandler() {
+        this(new PostAuthenticationHandler(), new Environment());
+    }
+
+    /**
+     * Creates a handler that reconciles with the lookups and attributes of the login handler, and with the settings of
+     * the environment.
+     *
+     * @param handler     the login handler
+     * @param environment the environment
+     */
+    public ReconciliationHandler(PostAuthenticationHandler handler, Environment environment) {
+        this(handler.getUserService(),
+             AttributeReconciler.fromEnvironment(handler, environment),
+             new RateLimiter(environment.readEnvOpt(RECONCILIATION_PAGES_PER_SECOND)
+                                 .map(Double::parseDouble)
+                                 .orElse(DEFAULT_PAGES_PER_SECOND), Clock.systemUTC()),
+             environment.readEnvOpt(USER_POOL_ID).filter(userPoolId -> !userPoolId.isBlank()).orElse(null),
+             environment.readEnvOpt(RECONCILIATION_TIME_RESERVE_SECONDS)
+                 .map(Long::parseLong)
+                 .map(Duration::ofSeconds)
+                 .orElse(DEFAULT_TIME_RESERVE),
+             environment.readEnvOpt(RECONCILIATION_MAX_FAILURES).map(Integer::parseInt).orElse(DEFAULT_MAX_FAILURES));
+    }
+
+    /**
+     * Creates a handler.
+     *
+     * @param userService       the user service that lists the users of the user pool
+     * @param reconciler        the reconciler of the users of a page
+     * @param pageRateLimiter   spaces the ListUsers calls
+     * @param defaultUserPoolId the user pool of a checkpoint that names none
+     * @param timeReserve       the remaining time below which no new page is started
+     * @param maxFailures       how many times in a row a page may fail before the invocation fails
+     */
+    public ReconciliationHandler(UserService userService,
+                                 AttributeReconciler reconciler,
+                                 RateLimiter pageRateLimiter,
+                                 String defaultUserPoolId,
+                                 Duration timeReserve,
+                                 int maxFailures) {
+        this.userService = userService;
+        this.reconciler = reconciler;
+        this.pageRateLimiter = pageRateLimiter;
+        this.defaultUserPoolId = defaultUserPoolId;
+        this.timeReserve = timeReserve;
+        this.maxFailures = maxFailures;
+    }
+
+    @Override
+    public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+        ReconciliationCheckpoint checkpoint = JsonUtils.objectMapper
+                                                  .convertValue(input, ReconciliationCheckpoint.class)
+                                                  .withUserPoolIdOrDefault(defaultUserPoolId);
+        if (checkpoint.getUserPoolId() == null || checkpoint.getUserPoolId().isBlank()) {
+            throw new IllegalArgumentException(MISSING_USER_POOL_ID);
+        }
+        while (!checkpoint.isDone() && hasTimeForAnotherPage(context)) {
+            ReconciliationCheckpoint next = tryNextPage(checkpoint);
+            if (next.getFailures() > checkpoint.getFailures()) {
+                return failedRun(next);
+            }
+            checkpoint = next;
+        }
+        return toOutput(checkpoint);
+    }
+
+    /**
+     * Reconciles the page after the checkpoint.
+     *
+     * @param checkpoint where the run is
+     * @return the checkpoint after the page
+     */
+    public ReconciliationCheckpoint reconcileNextPage(ReconciliationCheckpoint checkpoint) {
+        pageRateLimiter.acquireAsync().join();
+        ListUsersResult page = Futures.join(userService.listUsersAsync(checkpoint.getUserPoolId(),
+                                                                       checkpoint.getPaginationToken()));
+        Map<ReconciliationOutcome, Long> outcomes = reconciler.reconcile(checkpoint.getUserPoolId(), page.getUsers());
+        return checkpoint.next(page.getPaginationToken(), outcomes);
+    }
+
+    /**
+     * Reconciles the page after the checkpoint, or records why it failed, so that the run returns the checkpoint of
+     * the pages that were finished and the next invocation retries the failed page. The failures of a checkpoint that
+     * is given as input are carried over, and cleared by the first page that succeeds.
+     */
+    private ReconciliationCheckpoint tryNextPage(ReconciliationCheckpoint checkpoint) {
+        return attempt(() -> reconcileNextPage(checkpoint))
+                   .map(ReconciliationHandler::logReconciled)
+                   .orElse(failure -> failedPage(checkpoint, Futures.unwrap(failure.getException())));
+    }
+
+    private static ReconciliationCheckpoint logReconciled(ReconciliationCheckpoint checkpoint) {
+        logger.info(PAGE_RECONCILED, checkpoint);
+        return checkpoint;
+    }
+
+    private static ReconciliationCheckpoint failedPage(ReconciliationCheckpoint checkpoint, Throwable exception) {
+        logger.warn(PAGE_FAILED, checkpoint, exception);
+        return checkpoint.failed(String.valueOf(exception));
+    }
+
+    private Map<String, Object> failedRun(ReconciliationCheckpoint checkpoint) {
+        if (checkpoint.getFailures() >= maxFailures) {
+            throw new IllegalStateException(TOO_MANY_FAILURES + checkpoint);
+        }
+        return toOutput(checkpoint);
+    }
+
+    private static Map<String, Object> toOutput(ReconciliationCheckpoint checkpoint) {
+        return JsonUtils.objectMapper.convertValue(checkpoint, new TypeReference<Map<String, Object>>() {});
+    }
+
+    /**
+     * A context that reports no remaining time, as in a local run, leaves time for every page.
+     */
+    private boolean hasTimeForAnotherPage(Context context) {
+        long remainingMillis = context.getRemainingTimeInMillis();
+        return remainingMillis <= 0 || remainingMillis > timeReserve.toMillis();
+    }
+}
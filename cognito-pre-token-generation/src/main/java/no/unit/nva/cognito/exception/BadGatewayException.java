@@ -6,7 +6,7 @@ public class BadGatewayException extends RuntimeException {
         super(message);
     }
 
-    public BadGatewayException(String message, Exception cause) {
+    public BadGatewayException(String message, Throwable cause) {
         super(message,cause);
     }
 }
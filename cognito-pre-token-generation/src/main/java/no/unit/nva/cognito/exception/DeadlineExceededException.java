@@ -0,0 +1,8 @@
+package no.unit.nva.cognito.exception;
+
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
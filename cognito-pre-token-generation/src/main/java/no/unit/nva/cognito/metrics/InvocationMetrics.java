@@ -0,0 +1,184 @@
+package no.unit.nva.cognito.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Phase timings, counts and dimensions of a single invocation. The instance of the invocation that is being recorded
+ * on the current thread is available through {@link #current()}, so that code deep in the call chain, such as the
+ * customer cache, can add to it without every signature carrying it. Timings are measured with
+ * {@link System#nanoTime()} and may be recorded from the threads that complete asynchronous calls.
+ */
+public class InvocationMetrics {
+
+    public static final String EVENT_PARSE = "EventParse";
+    public static final String CUSTOMER_LOOKUP = "CustomerLookup";
+    public static final String USER_GET = "UserGet";
+    public static final String USER_CREATE = "UserCreate";
+    public static final String USER_UPDATE = "UserUpdate";
+    public static final String USER_UPSERT = "UserUpsert";
+    public static final String USER_POOL_UPDATE = "UserPoolUpdate";
+    public static final String TOTAL = "Total";
+    public static final String REMAINING_BUDGET = "RemainingBudget";
+
+    public static final String HEDGEABLE_REQUESTS = "HedgeableRequests";
+    public static final String HEDGED_REQUESTS = "HedgedRequests";
+    public static final String HEDGE_WINS = "HedgeWins";
+    public static final String COALESCED_REQUESTS = "CoalescedRequests";
+    public static final String USER_CACHE_HITS = "UserCacheHits";
+    public static final String USER_CACHE_MISSES = "UserCacheMisses";
+    public static final String SKIPPED_USER_WRITES = "SkippedUserWrites";
+
+    public static final String TRIGGER_SOURCE = "TriggerSource";
+    public static final String OUTCOME = "Outcome";
+    public static final String CUSTOMER_CACHE = "CustomerCache";
+
+    public static final String UNKNOWN = "Unknown";
+    public static final String SUCCESS = "Success";
+    public static final String FAILURE = "Failure";
+    public static final String DEGRADED = "Degraded";
+    public static final String HIT = "Hit";
+    public static final String MISS = "Miss";
+    public static final String DIRECTORY = "Directory";
+    public static final String NONE = "None";
+
+    private static final ThreadLocal<InvocationMetrics> ATTACHED = new ThreadLocal<>();
+
+    private final long start;
+    private final Map<String, Long> timings = new ConcurrentHashMap<>();
+    private final Map<String, Long> counts = new ConcurrentHashMap<>();
+    private final Map<String, String> dimensions = new ConcurrentHashMap<>();
+
+    public InvocationMetrics() {
+        this.start = System.nanoTime();
+        dimensions.put(TRIGGER_SOURCE, UNKNOWN);
+        dimensions.put(OUTCOME, UNKNOWN);
+        dimensions.put(CUSTOMER_CACHE, NONE);
+    }
+
+    /**
+     * Returns the metrics of the invocation that is being recorded on the current thread. Outside of a recorded
+     * invocation a detached instance is returned, and whatever is added to it is discarded.
+     *
+     * @return the metrics of the current invocation
+     */
+    public static InvocationMetrics current() {
+        InvocationMetrics metrics = ATTACHED.get();
+        return metrics == null ? new InvocationMetrics() : metrics;
+    }
+
+    /**
+     * Makes these metrics the current metrics of the calling thread until {@link #detach()} is called.
+     */
+    public void attach() {
+        ATTACHED.set(this);
+    }
+
+    /**
+     * Removes the current metrics of the calling thread.
+     */
+    public void detach() {
+        ATTACHED.remove();
+    }
+
+    /**
+     * Runs a synchronous phase and records how long it took, also when it fails.
+     *
+     * @param phase  the name of the phase
+     * @param action the phase
+     * @param <T>    the result type of the phase
+     * @param <E>    the exception the phase may throw
+     * @return the result of the phase
+     * @throws E when the phase fails
+     */
+    public <T, E extends Exception> T time(String phase, TimedAction<T, E> action) throws E {
+        long phaseStart = System.nanoTime();
+        try {
+            return action.run();
+        } finally {
+            record(phase, System.nanoTime() - phaseStart);
+        }
+    }
+
+    /**
+     * Starts an asynchronous phase and records how long it took when the returned future completes.
+     *
+     * @param phase  the name of the phase
+     * @param action starts the phase
+     * @param <T>    the result type of the phase
+     * @return the phase, completing after its timing has been recorded
+     */
+    public <T> CompletableFuture<T> timeAsync(String phase, Supplier<CompletableFuture<T>> action) {
+        long phaseStart = System.nanoTime();
+        return action.get().whenComplete((result, exception) -> record(phase, System.nanoTime() - phaseStart));
+    }
+
+    /**
+     * Adds a duration to a phase. A phase that runs more than once is reported with its accumulated duration.
+     *
+     * @param phase the name of the phase
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(String phase, long nanos) {
+        timings.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Adds to a count. Adding zero makes the count part of the published metrics, so that averages over invocations
+     * also include the invocations where nothing was counted.
+     *
+     * @param name   the name of the count
+     * @param amount the amount to add
+     */
+    public void count(String name, long amount) {
+        counts.merge(name, amount, Long::sum);
+    }
+
+    public void dimension(String name, String value) {
+        dimensions.put(name, value);
+    }
+
+    /**
+     * Sets a dimension unless a value other than {@link #UNKNOWN} has already been set.
+     *
+     * @param name  the name of the dimension
+     * @param value the value
+     */
+    public void dimensionIfUnknown(String name, String value) {
+        dimensions.replace(name, UNKNOWN, value);
+    }
+
+    /**
+     * Records the total duration of the invocation, measured from the creation of this instance.
+     */
+    public void stop() {
+        record(TOTAL, System.nanoTime() - start);
+    }
+
+    public Map<String, Long> getTimings() {
+        return Collections.unmodifiableMap(timings);
+    }
+
+    public Map<String, Long> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    public Map<String, String> getDimensions() {
+        return Collections.unmodifiableMap(dimensions);
+    }
+
+    /**
+     * A synchronous phase that may throw a checked exception.
+     *
+     * @param <T> the result type
+     * @param <E> the exception type
+     */
+    @FunctionalInterface
+    public interface TimedAction<T, E extends Exception> {
+
+        T run() throws E;
+    }
+}
@@ -0,0 +1,88 @@
+package no.unit.nva.cognito.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear latency histogram in the style of HdrHistogram. Values are recorded in microseconds. Every
+ * power of two is split into {@value #SUB_BUCKET_COUNT} linear sub-buckets, so a reported percentile is at most 1/16
+ * (6.25 %) above the recorded value, while the whole histogram needs fewer than 600 counters. Values above
+ * {@link #HIGHEST_TRACKABLE_MICROS} are counted in the highest bucket, but the maximum is kept exactly.
+ */
+public class LatencyHistogram {
+
+    public static final int SUB_BUCKET_BITS = 4;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    public static final long HIGHEST_TRACKABLE_MICROS = (1L << 40) - 1;
+    public static final long NANOS_PER_MICRO = 1000L;
+    public static final double MAX_PERCENTILE = 100.0;
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(HIGHEST_TRACKABLE_MICROS) + 1);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0L, nanos / NANOS_PER_MICRO);
+        counts.incrementAndGet(bucketIndex(Math.min(micros, HIGHEST_TRACKABLE_MICROS)));
+        totalCount.increment();
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Returns the value that the given percentage of the recorded values are at or below, as the highest value of the
+     * bucket it falls in, but never more than the maximum recorded value.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value in microseconds, or 0 if nothing has been recorded
+     */
+    public long valueAtPercentile(double percentile) {
+        long count = getCount();
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, MAX_PERCENTILE) / MAX_PERCENTILE * count));
+        long seen = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return Math.min(highestValueInBucket(index), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * Values below {@link #SUB_BUCKET_COUNT} get a bucket each. Above that, the position of the highest set bit selects
+     * the power of two and the next {@link #SUB_BUCKET_BITS} bits select the linear sub-bucket within it.
+     */
+    private static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long lowestValue = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,176 @@
+package no.unit.nva.cognito.metrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import nva.commons.core.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Container-level latency histograms of the calls to downstream dependencies, one per dependency and status class.
+ * Recording is lock-free. When a summary interval has passed, the next recorded call swaps every histogram for an
+ * empty one and logs the p50, p90, p99 and max of the interval. A Lambda container is frozen between invocations, so
+ * the summaries are written by a call rather than by a timer.
+ */
+public class LatencyHistograms {
+
+    public static final String LATENCY_SUMMARY_INTERVAL_SECONDS = "LATENCY_SUMMARY_INTERVAL_SECONDS";
+    public static final Duration DEFAULT_SUMMARY_INTERVAL = Duration.ofMinutes(1);
+    public static final String ERROR = "error";
+    public static final String STATUS_CLASS_SUFFIX = "xx";
+    public static final int STATUS_CLASS_DIVISOR = 100;
+    public static final String KEY_SEPARATOR = " ";
+    public static final double MICROS_PER_MILLISECOND = 1000.0;
+    public static final double NANOS_PER_MILLISECOND = 1_000_000.0;
+    public static final String CALL_TOOK_MESSAGE = "{} {} took {} ms";
+    public static final String LATENCY_SUMMARY_MESSAGE =
+        "Latency of {} {} over {} calls: p50={} ms p90={} ms p99={} ms max={} ms";
+    private static final Logger logger = LoggerFactory.getLogger(LatencyHistograms.class);
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final Duration summaryInterval;
+    private final Clock clock;
+    private final AtomicLong nextSummary;
+
+    public LatencyHistograms(Duration summaryInterval, Clock clock) {
+        this.summaryInterval = summaryInterval;
+        this.clock = clock;
+        this.nextSummary = new AtomicLong(clock.millis() + summaryInterval.toMillis());
+    }
+
+    /**
+     * Reads the summary interval from {@code LATENCY_SUMMARY_INTERVAL_SECONDS}.
+     *
+     * @param environment the environment
+     * @return the histograms
+     */
+    public static LatencyHistograms fromEnvironment(Environment environment) {
+        Duration summaryInterval = environment.readEnvOpt(LATENCY_SUMMARY_INTERVAL_SECONDS)
+                                       .map(Long::parseLong)
+                                       .map(Duration::ofSeconds)
+                                       .orElse(DEFAULT_SUMMARY_INTERVAL);
+        return new LatencyHistograms(summaryInterval, Clock.systemUTC());
+    }
+
+    /**
+     * Histograms that record nothing, for calls that should not count towards the latencies of the container, such as
+     * the lookups that open the connections during warm-up.
+     *
+     * @return the histograms
+     */
+    public static LatencyHistograms discarding() {
+        return new LatencyHistograms(DEFAULT_SUMMARY_INTERVAL, Clock.systemUTC()) {
+            @Override
+            public void record(String dependency, String statusClass, long nanos) {
+                // discarded
+            }
+        };
+    }
+
+    /**
+     * Returns the status class of an HTTP status code, for instance {@code 4xx} for 404.
+     *
+     * @param statusCode the HTTP status code
+     * @return the status class
+     */
+    public static String statusClass(int statusCode) {
+        return statusCode / STATUS_CLASS_DIVISOR + STATUS_CLASS_SUFFIX;
+    }
+
+    /**
+     * Starts timing a call.
+     *
+     * @param dependency the name of the called operation, for instance {@code getUser}
+     * @return the span to end when the call has completed
+     */
+    public LatencySpan start(String dependency) {
+        return new LatencySpan(this, dependency);
+    }
+
+    /**
+     * Records a call and writes the summaries if the summary interval has passed.
+     *
+     * @param dependency  the name of the called operation
+     * @param statusClass the status class of the response
+     * @param nanos       the duration of the call in nanoseconds
+     */
+    public void record(String dependency, String statusClass, long nanos) {
+        Series calls = series.computeIfAbsent(key(dependency, statusClass), key -> new Series(dependency, statusClass));
+        calls.histogram.get().record(nanos);
+        logger.info(CALL_TOOK_MESSAGE, dependency, statusClass, nanos / NANOS_PER_MILLISECOND);
+        summarizeIfDue();
+    }
+
+    /**
+     * Returns the histogram of the current interval.
+     *
+     * @param dependency  the name of the called operation
+     * @param statusClass the status class
+     * @return the histogram, or empty if no such call has been recorded
+     */
+    public Optional<LatencyHistogram> histogram(String dependency, String statusClass) {
+        return Optional.ofNullable(series.get(key(dependency, statusClass)))
+                   .map(entry -> entry.histogram.get());
+    }
+
+    /**
+     * Starts a new interval for every histogram and logs the summaries of the interval that ended. A call recorded
+     * while the histograms are swapped may be counted in either interval.
+     *
+     * @return the summaries of the histograms that recorded any calls
+     */
+    public List<LatencySummary> summarize() {
+        List<LatencySummary> summaries = series.values().stream()
+                                             .map(Series::endInterval)
+                                             .filter(summary -> summary.getCount() > 0)
+                                             .collect(Collectors.toList());
+        summaries.forEach(LatencyHistograms::logSummary);
+        return summaries;
+    }
+
+    private static String key(String dependency, String statusClass) {
+        return dependency + KEY_SEPARATOR + statusClass;
+    }
+
+    private void summarizeIfDue() {
+        long now = clock.millis();
+        long due = nextSummary.get();
+        if (now >= due && nextSummary.compareAndSet(due, now + summaryInterval.toMillis())) {
+            summarize();
+        }
+    }
+
+    private static void logSummary(LatencySummary summary) {
+        logger.info(LATENCY_SUMMARY_MESSAGE,
+                    summary.getDependency(),
+                    summary.getStatusClass(),
+                    summary.getCount(),
+                    summary.getP50Micros() / MICROS_PER_MILLISECOND,
+                    summary.getP90Micros() / MICROS_PER_MILLISECOND,
+                    summary.getP99Micros() / MICROS_PER_MILLISECOND,
+                    summary.getMaxMicros() / MICROS_PER_MILLISECOND);
+    }
+
+    private static class Series {
+
+        private final String dependency;
+        private final String statusClass;
+        private final AtomicReference<LatencyHistogram> histogram = new AtomicReference<>(new LatencyHistogram());
+
+        public Series(String dependency, String statusClass) {
+            this.dependency = dependency;
+            this.statusClass = statusClass;
+        }
+
+        public LatencySummary endInterval() {
+            return new LatencySummary(dependency, statusClass, histogram.getAndSet(new LatencyHistogram()));
+        }
+    }
+}
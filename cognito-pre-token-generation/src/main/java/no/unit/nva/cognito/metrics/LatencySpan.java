@@ -0,0 +1,55 @@
+package no.unit.nva.cognito.metrics;
+
+import java.net.http.HttpResponse;
+import no.unit.nva.cognito.metrics.InvocationMetrics.TimedAction;
+
+/**
+ * Times one call to a downstream dependency and records it in the container's histograms under the status class of
+ * the response, or under {@link LatencyHistograms#ERROR} when no response was received.
+ */
+public class LatencySpan {
+
+    private final LatencyHistograms histograms;
+    private final String dependency;
+    private final long start;
+
+    public LatencySpan(LatencyHistograms histograms, String dependency) {
+        this.histograms = histograms;
+        this.dependency = dependency;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Runs a synchronous call and records how long it took.
+     *
+     * @param call the call
+     * @param <T>  the body type of the response
+     * @param <E>  the exception the call may throw
+     * @return the response of the call
+     * @throws E when the call fails
+     */
+    public <T, E extends Exception> HttpResponse<T> time(TimedAction<HttpResponse<T>, E> call) throws E {
+        try {
+            HttpResponse<T> response = call.run();
+            end(response, null);
+            return response;
+        } catch (Exception e) {
+            end(null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Ends the span with the outcome of the call. Has the shape of a {@code whenComplete} callback, so that it can end
+     * the span of an asynchronous call.
+     *
+     * @param response  the response, or {@code null} if the call failed
+     * @param exception the failure, or {@code null} if the call succeeded
+     */
+    public void end(HttpResponse<?> response, Throwable exception) {
+        String statusClass = exception == null && response != null
+                                 ? LatencyHistograms.statusClass(response.statusCode())
+                                 : LatencyHistograms.ERROR;
+        histograms.record(dependency, statusClass, System.nanoTime() - start);
+    }
+}
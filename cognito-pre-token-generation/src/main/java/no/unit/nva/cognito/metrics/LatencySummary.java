@@ -0,0 +1,57 @@
+package no.unit.nva.cognito.metrics;
+
+/**
+ * Percentiles of the calls to one dependency with one status class during a summary interval, in microseconds.
+ */
+public class LatencySummary {
+
+    public static final double P50 = 50.0;
+    public static final double P90 = 90.0;
+    public static final double P99 = 99.0;
+
+    private final String dependency;
+    private final String statusClass;
+    private final long count;
+    private final long p50Micros;
+    private final long p90Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+
+    public LatencySummary(String dependency, String statusClass, LatencyHistogram histogram) {
+        this.dependency = dependency;
+        this.statusClass = statusClass;
+        this.count = histogram.getCount();
+        this.p50Micros = histogram.valueAtPercentile(P50);
+        this.p90Micros = histogram.valueAtPercentile(P90);
+        this.p99Micros = histogram.valueAtPercentile(P99);
+        this.maxMicros = histogram.getMaxMicros();
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public String getStatusClass() {
+        return statusClass;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP90Micros() {
+        return p90Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+}
@@ -0,0 +1,203 @@
+package no.unit.nva.cognito.metrics;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_CACHE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.FAILURE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.OUTCOME;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.SUCCESS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.TRIGGER_SOURCE;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import no.unit.nva.cognito.metrics.InvocationMetrics.TimedAction;
+import nva.commons.core.Environment;
+import nva.commons.core.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the metrics of each invocation and writes them as one CloudWatch Embedded Metric Format record, which
+ * CloudWatch turns into metrics when the record is written to the Lambda log. Every phase is reported in milliseconds
+ * with nanosecond precision and every count as a count, once per dimension set, so that percentiles can be read both
+ * across and per customer cache outcome.
+ */
+public class MetricsPublisher {
+
+    public static final String METRICS_NAMESPACE = "METRICS_NAMESPACE";
+    public static final String DEFAULT_NAMESPACE = "NVA/CognitoPreTokenGeneration";
+    public static final String AWS = "_aws";
+    public static final String TIMESTAMP = "Timestamp";
+    public static final String CLOUD_WATCH_METRICS = "CloudWatchMetrics";
+    public static final String NAMESPACE = "Namespace";
+    public static final String DIMENSIONS = "Dimensions";
+    public static final String METRICS = "Metrics";
+    public static final String NAME = "Name";
+    public static final String UNIT = "Unit";
+    public static final String MILLISECONDS = "Milliseconds";
+    public static final String COUNT = "Count";
+    public static final double NANOS_PER_MILLISECOND = 1_000_000.0;
+    public static final List<List<String>> DIMENSION_SETS = List.of(
+        List.of(TRIGGER_SOURCE, OUTCOME),
+        List.of(TRIGGER_SOURCE, OUTCOME, CUSTOMER_CACHE));
+    public static final String PUBLISHING_METRICS_FAILED = "Writing the invocation metrics failed";
+    private static final Logger logger = LoggerFactory.getLogger(MetricsPublisher.class);
+
+    private final String namespace;
+    private final Consumer<String> sink;
+    private final Clock clock;
+
+    public MetricsPublisher(String namespace, Consumer<String> sink, Clock clock) {
+        this.namespace = namespace;
+        this.sink = sink;
+        this.clock = clock;
+    }
+
+    /**
+     * Writes the records to standard output, where the Lambda runtime forwards them to the log. The namespace is read
+     * from {@code METRICS_NAMESPACE}.
+     *
+     * @param environment the environment
+     * @return the publisher
+     */
+    public static MetricsPublisher fromEnvironment(Environment environment) {
+        String namespace = environment.readEnvOpt(METRICS_NAMESPACE).orElse(DEFAULT_NAMESPACE);
+        return new MetricsPublisher(namespace, System.out::println, Clock.systemUTC());
+    }
+
+    /**
+     * A publisher that builds the records but discards them, used where invocations should not be counted.
+     *
+     * @return the publisher
+     */
+    public static MetricsPublisher discarding() {
+        return new MetricsPublisher(DEFAULT_NAMESPACE, record -> { }, Clock.systemUTC());
+    }
+
+    /**
+     * Runs an invocation with fresh metrics attached to the current thread, and writes the metrics when it has
+     * completed, with the outcome set to whether it failed. An outcome set by the invocation itself, such as
+     * {@link InvocationMetrics#DEGRADED}, is kept when the invocation succeeds.
+     *
+     * @param invocation the invocation
+     * @param <T>        the result type of the invocation
+     * @param <E>        the exception the invocation may throw
+     * @return the result of the invocation
+     * @throws E when the invocation fails
+     */
+    public <T, E extends Exception> T record(TimedAction<T, E> invocation) throws E {
+        return record(new InvocationMetrics(), invocation);
+    }
+
+    /**
+     * Runs an invocation with the given metrics attached to the current thread. Used when a phase, such as parsing the
+     * event, had to run before it was known whether the invocation should be recorded.
+     *
+     * @param metrics    the metrics of the invocation
+     * @param invocation the invocation
+     * @param <T>        the result type of the invocation
+     * @param <E>        the exception the invocation may throw
+     * @return the result of the invocation
+     * @throws E when the invocation fails
+     */
+    public <T, E extends Exception> T record(InvocationMetrics metrics, TimedAction<T, E> invocation) throws E {
+        metrics.attach();
+        try {
+            T result = invocation.run();
+            metrics.dimensionIfUnknown(OUTCOME, SUCCESS);
+            return result;
+        } catch (Exception e) {
+            metrics.dimension(OUTCOME, FAILURE);
+            throw e;
+        } finally {
+            metrics.detach();
+            metrics.stop();
+            publish(metrics);
+        }
+    }
+
+    /**
+     * Writes the metrics as one Embedded Metric Format record.
+     *
+     * @param metrics the metrics of an invocation
+     */
+    public void publish(InvocationMetrics metrics) {
+        try {
+            sink.accept(toEmf(metrics));
+        } catch (IOException e) {
+            logger.warn(PUBLISHING_METRICS_FAILED, e);
+        }
+    }
+
+    /**
+     * Serializes the metrics as an Embedded Metric Format record.
+     *
+     * @param metrics the metrics of an invocation
+     * @return the record
+     * @throws IOException when the record cannot be written
+     */
+    public String toEmf(InvocationMetrics metrics) throws IOException {
+        var timings = new TreeMap<>(metrics.getTimings());
+        var counts = new TreeMap<>(metrics.getCounts());
+        StringWriter record = new StringWriter();
+        try (JsonGenerator generator = JsonUtils.objectMapper.getFactory().createGenerator(record)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart(AWS);
+            generator.writeNumberField(TIMESTAMP, clock.millis());
+            generator.writeArrayFieldStart(CLOUD_WATCH_METRICS);
+            generator.writeStartObject();
+            generator.writeStringField(NAMESPACE, namespace);
+            writeDimensionSets(generator);
+            writeMetricDefinitions(generator, timings.keySet(), counts.keySet());
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+            for (Map.Entry<String, String> dimension : metrics.getDimensions().entrySet()) {
+                generator.writeStringField(dimension.getKey(), dimension.getValue());
+            }
+            for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                generator.writeNumberField(timing.getKey(), timing.getValue() / NANOS_PER_MILLISECOND);
+            }
+            for (Map.Entry<String, Long> count : counts.entrySet()) {
+                generator.writeNumberField(count.getKey(), count.getValue());
+            }
+            generator.writeEndObject();
+        }
+        return record.toString();
+    }
+
+    private static void writeDimensionSets(JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart(DIMENSIONS);
+        for (List<String> dimensionSet : DIMENSION_SETS) {
+            generator.writeStartArray();
+            for (String dimension : dimensionSet) {
+                generator.writeString(dimension);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeMetricDefinitions(JsonGenerator generator, Set<String> timings, Set<String> counts)
+        throws IOException {
+        generator.writeArrayFieldStart(METRICS);
+        for (String name : timings) {
+            writeMetricDefinition(generator, name, MILLISECONDS);
+        }
+        for (String name : counts) {
+            writeMetricDefinition(generator, name, COUNT);
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeMetricDefinition(JsonGenerator generator, String name, String unit) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField(NAME, name);
+        generator.writeStringField(UNIT, unit);
+        generator.writeEndObject();
+    }
+}
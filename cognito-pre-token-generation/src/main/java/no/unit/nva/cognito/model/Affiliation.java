@@ -0,0 +1,76 @@
+package no.unit.nva.cognito.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The values of eduPersonAffiliation. A set of affiliations is represented as a bitmask with one bit per value, so
+ * that the affiliations of a login can be matched against the role rules without allocating.
+ *
+ * @see <a href="https://www.feide.no/attribute/edupersonaffiliation">Feide eduPersonAffiliation</a>
+ */
+public enum Affiliation {
+    FACULTY("faculty"),
+    STUDENT("student"),
+    STAFF("staff"),
+    ALUM("alum"),
+    MEMBER("member"),
+    AFFILIATE("affiliate"),
+    EMPLOYEE("employee"),
+    LIBRARY_WALK_IN("library-walk-in");
+
+    public static final int NONE = 0;
+    private static final Pattern VALUE_SEPARATOR = Pattern.compile("[^a-z-]+");
+    private static final Map<String, Affiliation> BY_VALUE =
+        Arrays.stream(values()).collect(Collectors.toUnmodifiableMap(Affiliation::getValue, Function.identity()));
+
+    private final String value;
+    private final int mask;
+
+    Affiliation(String value) {
+        this.value = value;
+        this.mask = 1 << ordinal();
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns the affiliation with the value, ignoring case.
+     *
+     * @param value the eduPersonAffiliation value
+     * @return the affiliation, or empty if the value is not an eduPersonAffiliation value
+     */
+    public static Optional<Affiliation> fromValue(String value) {
+        return Optional.ofNullable(BY_VALUE.get(value.strip().toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Parses the affiliation attribute of a login, for instance {@code [member, employee, staff]}, into a bitmask.
+     * Scoped values such as {@code staff@unit.no} count as their affiliation, and unknown values are ignored.
+     *
+     * @param affiliation the affiliation attribute, or {@code null}
+     * @return the bitmask of the affiliations
+     */
+    public static int maskOf(String affiliation) {
+        if (affiliation == null) {
+            return NONE;
+        }
+        return VALUE_SEPARATOR.splitAsStream(affiliation.toLowerCase(Locale.ROOT))
+                   .map(BY_VALUE::get)
+                   .filter(Objects::nonNull)
+                   .mapToInt(Affiliation::getMask)
+                   .reduce(NONE, (left, right) -> left | right);
+    }
+}
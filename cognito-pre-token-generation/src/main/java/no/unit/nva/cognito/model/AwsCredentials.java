@@ -0,0 +1,46 @@
+package no.unit.nva.cognito.model;
+
+import java.util.Optional;
+import nva.commons.core.Environment;
+
+public class AwsCredentials {
+
+    public static final String AWS_ACCESS_KEY_ID = "AWS_ACCESS_KEY_ID";
+    public static final String AWS_SECRET_ACCESS_KEY = "AWS_SECRET_ACCESS_KEY";
+    public static final String AWS_SESSION_TOKEN = "AWS_SESSION_TOKEN";
+
+    private final String accessKeyId;
+    private final String secretAccessKey;
+    private final String sessionToken;
+
+    public AwsCredentials(String accessKeyId, String secretAccessKey, String sessionToken) {
+        this.accessKeyId = accessKeyId;
+        this.secretAccessKey = secretAccessKey;
+        this.sessionToken = sessionToken;
+    }
+
+    /**
+     * Reads the credentials that the Lambda runtime exposes through the environment.
+     *
+     * @param environment the environment
+     * @return the credentials of the execution role
+     */
+    public static AwsCredentials fromEnvironment(Environment environment) {
+        return new AwsCredentials(
+            environment.readEnv(AWS_ACCESS_KEY_ID),
+            environment.readEnv(AWS_SECRET_ACCESS_KEY),
+            environment.readEnvOpt(AWS_SESSION_TOKEN).orElse(null));
+    }
+
+    public String getAccessKeyId() {
+        return accessKeyId;
+    }
+
+    public String getSecretAccessKey() {
+        return secretAccessKey;
+    }
+
+    public Optional<String> getSessionToken() {
+        return Optional.ofNullable(sessionToken);
+    }
+}
@@ -0,0 +1,36 @@
+package no.unit.nva.cognito.model;
+
+/**
+ * How the user's claims are handed to Cognito.
+ */
+public enum ClaimsDeliveryMode {
+    /**
+     * Claims are written as user attributes with AdminUpdateUserAttributes and the event is returned unchanged.
+     */
+    ATTRIBUTES(false, true),
+    /**
+     * Claims are returned in the response's claimsOverrideDetails and no user attributes are written.
+     */
+    CLAIMS(true, false),
+    /**
+     * Claims are returned in the response's claimsOverrideDetails, and written as user attributes by a write that is
+     * started but not waited for. A failed write is logged and does not fail the login.
+     */
+    CLAIMS_AND_ATTRIBUTES(true, true);
+
+    private final boolean returnsClaims;
+    private final boolean writesAttributes;
+
+    ClaimsDeliveryMode(boolean returnsClaims, boolean writesAttributes) {
+        this.returnsClaims = returnsClaims;
+        this.writesAttributes = writesAttributes;
+    }
+
+    public boolean returnsClaims() {
+        return returnsClaims;
+    }
+
+    public boolean writesAttributes() {
+        return writesAttributes;
+    }
+}
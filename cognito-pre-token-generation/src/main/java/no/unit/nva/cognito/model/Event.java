@@ -9,11 +9,18 @@ import nva.commons.core.JacocoGenerated;
 
 public class Event {
 
-    @JsonProperty("userPoolId")
+    public static final String USER_POOL_ID = "userPoolId";
+    public static final String USER_NAME = "userName";
+    public static final String TRIGGER_SOURCE = "triggerSource";
+    public static final String REQUEST = "request";
+
+    @JsonProperty(USER_POOL_ID)
     private String userPoolId;
-    @JsonProperty("userName")
+    @JsonProperty(USER_NAME)
     private String userName;
-    @JsonProperty("request")
+    @JsonProperty(TRIGGER_SOURCE)
+    private String triggerSource;
+    @JsonProperty(REQUEST)
     private Request request;
     @JsonAnySetter
     private Map<String, Object> otherProperties;
@@ -38,6 +45,14 @@ public class Event {
         this.userName = userName;
     }
 
+    public String getTriggerSource() {
+        return triggerSource;
+    }
+
+    public void setTriggerSource(String triggerSource) {
+        this.triggerSource = triggerSource;
+    }
+
     public Request getRequest() {
         return request;
     }
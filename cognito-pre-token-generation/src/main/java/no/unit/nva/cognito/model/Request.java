@@ -4,7 +4,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class Request {
 
-    @JsonProperty("userAttributes")
+    public static final String USER_ATTRIBUTES = "userAttributes";
+
+    @JsonProperty(USER_ATTRIBUTES)
     private UserAttributes userAttributes;
 
     public Request() {
@@ -4,27 +4,51 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class UserAttributes {
 
-    @JsonProperty("custom:feideId")
+    public static final String FEIDE_ID = "custom:feideId";
+    public static final String ORG_NUMBER = "custom:orgNumber";
+    public static final String AFFILIATION = "custom:affiliation";
+    public static final String GIVEN_NAME = "given_name";
+    public static final String FAMILY_NAME = "family_name";
+    public static final String HOSTED_ORG_NUMBER = "custom:hostedOrgNumber";
+    public static final String HOSTED_AFFILIATION = "custom:hostedAffiliation";
+    public static final String CUSTOMER_ID = UserClaims.CUSTOM_CUSTOMER_ID;
+    public static final String CRISTIN_ID = UserClaims.CUSTOM_CRISTIN_ID;
+    public static final String APPLICATION_ROLES = UserClaims.CUSTOM_APPLICATION_ROLES;
+    public static final String ACCESS_RIGHTS = UserClaims.CUSTOM_APPLICATION_ACCESS_RIGHTS;
+
+    @JsonProperty(FEIDE_ID)
     private String feideId;
 
-    @JsonProperty("custom:orgNumber")
+    @JsonProperty(ORG_NUMBER)
     private String orgNumber;
 
-    @JsonProperty("custom:affiliation")
+    @JsonProperty(AFFILIATION)
     private String affiliation;
 
-    @JsonProperty("given_name")
+    @JsonProperty(GIVEN_NAME)
     private String givenName;
 
-    @JsonProperty("family_name")
+    @JsonProperty(FAMILY_NAME)
     private String familyName;
 
-    @JsonProperty("custom:hostedOrgNumber")
+    @JsonProperty(HOSTED_ORG_NUMBER)
     private String hostedOrgNumber;
 
-    @JsonProperty("custom:hostedAffiliation")
+    @JsonProperty(HOSTED_AFFILIATION)
     private String hostedAffiliation;
 
+    @JsonProperty(CUSTOMER_ID)
+    private String customerId;
+
+    @JsonProperty(CRISTIN_ID)
+    private String cristinId;
+
+    @JsonProperty(APPLICATION_ROLES)
+    private String applicationRoles;
+
+    @JsonProperty(ACCESS_RIGHTS)
+    private String accessRights;
+
     public String getFeideId() {
         return feideId;
     }
@@ -80,4 +104,36 @@ public class UserAttributes {
     public void setHostedAffiliation(String hostedAffiliation) {
         this.hostedAffiliation = hostedAffiliation;
     }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getCristinId() {
+        return cristinId;
+    }
+
+    public void setCristinId(String cristinId) {
+        this.cristinId = cristinId;
+    }
+
+    public String getApplicationRoles() {
+        return applicationRoles;
+    }
+
+    public void setApplicationRoles(String applicationRoles) {
+        this.applicationRoles = applicationRoles;
+    }
+
+    public String getAccessRights() {
+        return accessRights;
+    }
+
+    public void setAccessRights(String accessRights) {
+        this.accessRights = accessRights;
+    }
 }
@@ -0,0 +1,51 @@
+package no.unit.nva.cognito.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The custom claims of a user, which are both the user pool attributes and the claims of the token. The login handler,
+ * the fallback that answers with the last known claims and the reconciliation all build the claims here, so that they
+ * name and format them the same way.
+ */
+public final class UserClaims {
+
+    public static final String CUSTOM_APPLICATION_ROLES = "custom:applicationRoles";
+    public static final String CUSTOM_APPLICATION = "custom:application";
+    public static final String CUSTOM_CUSTOMER_ID = "custom:customerId";
+    public static final String CUSTOM_IDENTIFIERS = "custom:identifiers";
+    public static final String CUSTOM_CRISTIN_ID = "custom:cristinId";
+    public static final String CUSTOM_APPLICATION_ACCESS_RIGHTS = "custom:accessRights";
+    public static final String FEIDE_PREFIX = "feide:";
+    public static final String NVA = "NVA";
+    public static final String NO_ACCESS_RIGHTS = "";
+
+    private UserClaims() {
+    }
+
+    /**
+     * Builds the claims of a user, in the order they are written to the user pool.
+     *
+     * @param customerId       the customer of the user, or {@code null} if the user has none
+     * @param cristinId        the Cristin id of the user, or {@code null} if the user has none
+     * @param feideId          the Feide id of the user
+     * @param applicationRoles the roles of the user, comma separated
+     * @param accessRights     the access rights of the user, comma separated, or {@code null} if the user has none
+     * @return the claims
+     */
+    public static Map<String, String> create(String customerId,
+                                             String cristinId,
+                                             String feideId,
+                                             String applicationRoles,
+                                             String accessRights) {
+        var claims = new LinkedHashMap<String, String>();
+        Optional.ofNullable(customerId).ifPresent(value -> claims.put(CUSTOM_CUSTOMER_ID, value));
+        Optional.ofNullable(cristinId).ifPresent(value -> claims.put(CUSTOM_CRISTIN_ID, value));
+        claims.put(CUSTOM_APPLICATION, NVA);
+        claims.put(CUSTOM_IDENTIFIERS, FEIDE_PREFIX + feideId);
+        claims.put(CUSTOM_APPLICATION_ROLES, applicationRoles);
+        claims.put(CUSTOM_APPLICATION_ACCESS_RIGHTS, Optional.ofNullable(accessRights).orElse(NO_ACCESS_RIGHTS));
+        return claims;
+    }
+}
@@ -0,0 +1,175 @@
+package no.unit.nva.cognito.reconciliation;
+
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.UserType;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import no.unit.nva.cognito.PostAuthenticationHandler;
+import no.unit.nva.cognito.model.UserAttributes;
+import no.unit.nva.cognito.service.UserDetails;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.RateLimiter;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import nva.commons.core.Environment;
+import nva.commons.core.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings the attributes of the users in the user pool up to date without waiting for their next login. The attributes
+ * of a user are computed the way a login computes them, from the customer of its organization and the stored user
+ * with the login applied to it, and only the attributes that differ from the user pool are written. Nothing is written
+ * to the user service. At most {@code RECONCILIATION_PARALLELISM} users are reconciled at a time, and the writes to
+ * the user pool are spaced to at most {@code RECONCILIATION_WRITES_PER_SECOND}, so that the logins, which share the
+ * AdminUpdateUserAttributes quota, are not throttled.
+ */
+public class AttributeReconciler {
+
+    public static final String RECONCILIATION_PARALLELISM = "RECONCILIATION_PARALLELISM";
+    public static final String RECONCILIATION_WRITES_PER_SECOND = "RECONCILIATION_WRITES_PER_SECOND";
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final double DEFAULT_WRITES_PER_SECOND = 10;
+    public static final String RECONCILIATION_FAILED = "Reconciling the attributes of {} failed";
+    public static final String UPDATING_ATTRIBUTES = "Updating {} of {}";
+    private static final Logger logger = LoggerFactory.getLogger(AttributeReconciler.class);
+
+    private final PostAuthenticationHandler handler;
+    private final UserService userService;
+    private final int parallelism;
+    private final RateLimiter writeRateLimiter;
+
+    /**
+     * Creates a reconciler.
+     *
+     * @param handler          the handler whose lookups and attributes are used
+     * @param parallelism      the number of users that are reconciled at a time
+     * @param writeRateLimiter spaces the writes to the user pool
+     */
+    public AttributeReconciler(PostAuthenticationHandler handler, int parallelism, RateLimiter writeRateLimiter) {
+        this.handler = handler;
+        this.userService = handler.getUserService();
+        this.parallelism = parallelism;
+        this.writeRateLimiter = writeRateLimiter;
+    }
+
+    /**
+     * Creates a reconciler with the parallelism and write rate of the environment.
+     *
+     * @param handler     the handler whose lookups and attributes are used
+     * @param environment the environment
+     * @return the reconciler
+     */
+    public static AttributeReconciler fromEnvironment(PostAuthenticationHandler handler, Environment environment) {
+        int parallelism = environment.readEnvOpt(RECONCILIATION_PARALLELISM)
+                              .map(Integer::parseInt)
+                              .orElse(DEFAULT_PARALLELISM);
+        double writesPerSecond = environment.readEnvOpt(RECONCILIATION_WRITES_PER_SECOND)
+                                     .map(Double::parseDouble)
+                                     .orElse(DEFAULT_WRITES_PER_SECOND);
+        return new AttributeReconciler(handler, parallelism, new RateLimiter(writesPerSecond, Clock.systemUTC()));
+    }
+
+    /**
+     * Reconciles a page of users and waits until every user of the page is done. A user that fails is counted and
+     * logged, and does not stop the others.
+     *
+     * @param userPoolId the user pool
+     * @param users      the users, with their attributes in the user pool
+     * @return the number of users with each outcome
+     */
+    public Map<ReconciliationOutcome, Long> reconcile(String userPoolId, List<UserType> users) {
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<ReconciliationOutcome>> outcomes = new ArrayList<>(users.size());
+        for (UserType user : users) {
+            permits.acquireUninterruptibly();
+            outcomes.add(reconcileAsync(userPoolId, user).whenComplete((outcome, exception) -> permits.release()));
+        }
+        var counts = new EnumMap<ReconciliationOutcome, Long>(ReconciliationOutcome.class);
+        outcomes.forEach(outcome -> counts.merge(outcome.join(), 1L, Long::sum));
+        return counts;
+    }
+
+    /**
+     * Reconciles one user.
+     *
+     * @param userPoolId the user pool
+     * @param user       the user, with its attributes in the user pool
+     * @return a future with the outcome, which never fails
+     */
+    public CompletableFuture<ReconciliationOutcome> reconcileAsync(String userPoolId, UserType user) {
+        Map<String, String> currentAttributes = byName(user.getAttributes());
+        UserAttributes userAttributes = JsonUtils.objectMapper.convertValue(currentAttributes, UserAttributes.class);
+        if (userAttributes.getFeideId() == null) {
+            return CompletableFuture.completedFuture(ReconciliationOutcome.SKIPPED);
+        }
+        return Futures.completed(() -> handler.userDetailsAsync(userAttributes))
+                   .thenCompose(Function.identity())
+                   .thenCompose(details -> reconcileDetails(userPoolId, user.getUsername(), details, currentAttributes))
+                   .exceptionally(exception -> failed(user.getUsername(), exception));
+    }
+
+    /**
+     * Returns the attributes whose value differs from the current value, or that are missing.
+     *
+     * @param attributes        the attributes a login would write
+     * @param currentAttributes the attributes in the user pool, by name
+     * @return the attributes to write
+     */
+    public static List<AttributeType> changedAttributes(List<AttributeType> attributes,
+                                                        Map<String, String> currentAttributes) {
+        return attributes.stream()
+                   .filter(attribute -> !attribute.getValue().equals(currentAttributes.get(attribute.getName())))
+                   .collect(Collectors.toList());
+    }
+
+    private static Map<String, String> byName(List<AttributeType> attributes) {
+        var attributesByName = new HashMap<String, String>();
+        for (AttributeType attribute : attributes) {
+            attributesByName.put(attribute.getName(), attribute.getValue());
+        }
+        return attributesByName;
+    }
+
+    private CompletableFuture<ReconciliationOutcome> reconcileDetails(String userPoolId,
+                                                                      String username,
+                                                                      UserDetails details,
+                                                                      Map<String, String> currentAttributes) {
+        return userService.projectedUserAsync(details)
+                   .thenCompose(storedUser -> writeChanges(userPoolId, username, details, storedUser,
+                                                           currentAttributes));
+    }
+
+    private CompletableFuture<ReconciliationOutcome> writeChanges(String userPoolId,
+                                                                  String username,
+                                                                  UserDetails details,
+                                                                  Optional<UserDto> storedUser,
+                                                                  Map<String, String> currentAttributes) {
+        if (storedUser.isEmpty()) {
+            return CompletableFuture.completedFuture(ReconciliationOutcome.SKIPPED);
+        }
+        List<AttributeType> changes = changedAttributes(handler.createUserAttributes(details, storedUser.get()),
+                                                        currentAttributes);
+        if (changes.isEmpty()) {
+            return CompletableFuture.completedFuture(ReconciliationOutcome.UNCHANGED);
+        }
+        logger.info(UPDATING_ATTRIBUTES, changes, username);
+        return writeRateLimiter.acquireAsync()
+                   .thenCompose(slot -> userService.updateUserAttributesAsync(userPoolId, username, changes))
+                   .thenApply(written -> ReconciliationOutcome.UPDATED);
+    }
+
+    private ReconciliationOutcome failed(String username, Throwable exception) {
+        logger.warn(RECONCILIATION_FAILED, username, Futures.unwrap(exception));
+        return ReconciliationOutcome.FAILED;
+    }
+}
@@ -0,0 +1,159 @@
+package no.unit.nva.cognito.reconciliation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * How far a reconciliation of a user pool has come: the pagination token of the next page, the number of pages done
+ * and the outcome counts so far. It is both the input and the output of the reconciliation handler, so a run that is
+ * cut short by the Lambda timeout is resumed by invoking the handler with its output, and a page that was reconciled
+ * twice is harmless, because only the attributes that differ are written. A page that fails is recorded with the
+ * number of times in a row the next page has failed and the last error, so that a run that keeps failing on the same
+ * page can be told from one that was cut short.
+ */
+public class ReconciliationCheckpoint {
+
+    public static final String USER_POOL_ID = "userPoolId";
+    public static final String PAGINATION_TOKEN = "paginationToken";
+    public static final String PAGES = "pages";
+    public static final String OUTCOMES = "outcomes";
+    public static final String DONE = "done";
+    public static final String FAILURES = "failures";
+    public static final String LAST_ERROR = "lastError";
+
+    @JsonProperty(USER_POOL_ID)
+    private final String userPoolId;
+    @JsonProperty(PAGINATION_TOKEN)
+    private final String paginationToken;
+    @JsonProperty(PAGES)
+    private final long pages;
+    @JsonProperty(OUTCOMES)
+    private final Map<ReconciliationOutcome, Long> outcomes;
+    @JsonProperty(DONE)
+    private final boolean done;
+    @JsonProperty(FAILURES)
+    private final int failures;
+    @JsonProperty(LAST_ERROR)
+    private final String lastError;
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param userPoolId      the user pool
+     * @param paginationToken the token of the next page, or {@code null} for the first page or when done
+     * @param pages           the number of pages reconciled
+     * @param outcomes        the number of users with each outcome
+     * @param done            whether the last page has been reconciled
+     */
+    public ReconciliationCheckpoint(String userPoolId,
+                                    String paginationToken,
+                                    long pages,
+                                    Map<ReconciliationOutcome, Long> outcomes,
+                                    boolean done) {
+        this(userPoolId, paginationToken, pages, outcomes, done, 0, null);
+    }
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param userPoolId      the user pool
+     * @param paginationToken the token of the next page, or {@code null} for the first page or when done
+     * @param pages           the number of pages reconciled
+     * @param outcomes        the number of users with each outcome
+     * @param done            whether the last page has been reconciled
+     * @param failures        how many times in a row the next page has failed
+     * @param lastError       the error of the last failure, or {@code null}
+     */
+    @JsonCreator
+    public ReconciliationCheckpoint(@JsonProperty(USER_POOL_ID) String userPoolId,
+                                    @JsonProperty(PAGINATION_TOKEN) String paginationToken,
+                                    @JsonProperty(PAGES) long pages,
+                                    @JsonProperty(OUTCOMES) Map<ReconciliationOutcome, Long> outcomes,
+                                    @JsonProperty(DONE) boolean done,
+                                    @JsonProperty(FAILURES) int failures,
+                                    @JsonProperty(LAST_ERROR) String lastError) {
+        this.userPoolId = userPoolId;
+        this.paginationToken = paginationToken;
+        this.pages = pages;
+        this.outcomes = outcomes == null || outcomes.isEmpty()
+                            ? new EnumMap<>(ReconciliationOutcome.class)
+                            : new EnumMap<>(outcomes);
+        this.done = done;
+        this.failures = failures;
+        this.lastError = lastError;
+    }
+
+    public String getUserPoolId() {
+        return userPoolId;
+    }
+
+    public String getPaginationToken() {
+        return paginationToken;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    public Map<ReconciliationOutcome, Long> getOutcomes() {
+        return outcomes;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Returns the checkpoint of the same run for another user pool, which is used when the input names none.
+     *
+     * @param defaultUserPoolId the user pool
+     * @return the checkpoint
+     */
+    public ReconciliationCheckpoint withUserPoolIdOrDefault(String defaultUserPoolId) {
+        return userPoolId == null
+                   ? new ReconciliationCheckpoint(defaultUserPoolId, paginationToken, pages, outcomes, done, failures,
+                                                  lastError)
+                   : this;
+    }
+
+    /**
+     * Returns the same checkpoint with one more failure of the next page.
+     *
+     * @param error the error the page failed with
+     * @return the checkpoint
+     */
+    public ReconciliationCheckpoint failed(String error) {
+        return new ReconciliationCheckpoint(userPoolId, paginationToken, pages, outcomes, done, failures + 1, error);
+    }
+
+    /**
+     * Returns the checkpoint after one more page, which clears the failures of the page.
+     *
+     * @param nextPaginationToken the token of the page after it, or {@code null} if it was the last page
+     * @param pageOutcomes        the number of users of the page with each outcome
+     * @return the checkpoint
+     */
+    public ReconciliationCheckpoint next(String nextPaginationToken, Map<ReconciliationOutcome, Long> pageOutcomes) {
+        var sum = new EnumMap<>(outcomes);
+        pageOutcomes.forEach((outcome, count) -> sum.merge(outcome, count, Long::sum));
+        return new ReconciliationCheckpoint(userPoolId, nextPaginationToken, pages + 1, sum,
+                                            nextPaginationToken == null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s page %d %s next %s%s%s", userPoolId, pages, outcomes, paginationToken,
+                             done ? " (done)" : "",
+                             failures > 0 ? String.format(" (failed %d times: %s)", failures, lastError) : "");
+    }
+}
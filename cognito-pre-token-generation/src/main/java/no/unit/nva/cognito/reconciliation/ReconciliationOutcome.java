@@ -0,0 +1,15 @@
+package no.unit.nva.cognito.reconciliation;
+
+/**
+ * What the reconciliation did with a user of the user pool.
+ */
+public enum ReconciliationOutcome {
+    /** Some attributes differed from what a login would write, and those attributes were written. */
+    UPDATED,
+    /** The attributes were already what a login would write. */
+    UNCHANGED,
+    /** The user is not a Feide user, or is not stored in the user service yet, so its next login sets it up. */
+    SKIPPED,
+    /** Looking the user up or writing its attributes failed. Its next login, or the next run, corrects it. */
+    FAILED
+}
@@ -0,0 +1,120 @@
+package no.unit.nva.cognito.server;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import no.unit.nva.cognito.util.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Lambda context of a trigger event that is served by the {@link TriggerServer}. The remaining time counts down
+ * the time Cognito waits for the trigger from when the server accepted the request, so that the time the request
+ * waited for a worker is taken from the budget of its downstream calls, like the time a Lambda invocation waits for a
+ * container. The fields that only exist in Lambda are {@code null}, and the logger writes to slf4j.
+ */
+public class ServerContext implements Context {
+
+    public static final String FUNCTION_NAME = "TriggerServer";
+    public static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+    public static final int LEAST_REMAINING_MILLIS = 1;
+    private static final LambdaLogger LOGGER = new Slf4jLambdaLogger();
+
+    private final String requestId = UUID.randomUUID().toString();
+    private final Instant expiresAt;
+    private final Clock clock;
+
+    /**
+     * Creates the context of a request.
+     *
+     * @param acceptedAt when the server accepted the request
+     * @param clock      the clock the remaining time is measured with
+     */
+    public ServerContext(Instant acceptedAt, Clock clock) {
+        this.expiresAt = acceptedAt.plus(Deadline.COGNITO_TRIGGER_TIMEOUT);
+        this.clock = clock;
+    }
+
+    @Override
+    public String getAwsRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return null;
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return null;
+    }
+
+    @Override
+    public String getFunctionName() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return null;
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return null;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    /**
+     * Returns the time left of the Cognito timeout, and at least one millisecond once it has passed, because a context
+     * that reports no remaining time is taken to have the whole timeout left.
+     *
+     * @return the remaining time in milliseconds
+     */
+    @Override
+    public int getRemainingTimeInMillis() {
+        long remainingMillis = Duration.between(clock.instant(), expiresAt).toMillis();
+        return (int) Math.max(LEAST_REMAINING_MILLIS, remainingMillis);
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        return (int) (Runtime.getRuntime().maxMemory() / BYTES_PER_MEGABYTE);
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return LOGGER;
+    }
+
+    private static class Slf4jLambdaLogger implements LambdaLogger {
+
+        private static final Logger logger = LoggerFactory.getLogger(TriggerServer.class);
+
+        @Override
+        public void log(String message) {
+            logger.info(message);
+        }
+
+        @Override
+        public void log(byte[] message) {
+            logger.info(new String(message, StandardCharsets.UTF_8));
+        }
+    }
+}
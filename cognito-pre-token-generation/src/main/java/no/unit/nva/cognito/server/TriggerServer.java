@@ -0,0 +1,274 @@
+package no.unit.nva.cognito.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import no.unit.nva.cognito.PostAuthenticationStreamHandler;
+import nva.commons.core.Environment;
+import nva.commons.core.JacocoGenerated;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the trigger from a long-running process instead of a Lambda container per concurrent login. A trigger event is
+ * posted to {@value #TRIGGER_PATH} and answered with the response Lambda would return, by the same
+ * {@link PostAuthenticationStreamHandler}, so that every login in the process shares its connection pools, caches and
+ * API key. The events are handled concurrently on the workers of the executor, each with the deadline of its own
+ * login, and {@value #HEALTH_PATH} answers {@code 200} until the server drains. An event that is not a JSON object
+ * is answered {@code 400}, and an event larger than the limit {@code 413} without being read to the end.
+ *
+ * <p>Closing the server drains it: the listener is closed, health checks are answered {@code 503}, the responses of
+ * open connections ask the client to close them, and the events that were accepted are completed before the workers
+ * are stopped. The user pool writes that were started after the claims were returned are then given what remains of
+ * the drain timeout, so that the whole drain completes within it.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public class TriggerServer implements AutoCloseable {
+
+    public static final String SERVER_PORT = "SERVER_PORT";
+    public static final String SERVER_THREADS = "SERVER_THREADS";
+    public static final String SERVER_DRAIN_SECONDS = "SERVER_DRAIN_SECONDS";
+    public static final String SERVER_MAX_EVENT_BYTES = "SERVER_MAX_EVENT_BYTES";
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_THREADS = 64;
+    public static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+    public static final int DEFAULT_MAX_EVENT_BYTES = 256 * 1024;
+    public static final String TRIGGER_PATH = "/trigger";
+    public static final String HEALTH_PATH = "/health";
+    public static final String POST = "POST";
+    public static final String CONTENT_TYPE = "Content-Type";
+    public static final String APPLICATION_JSON = "application/json";
+    public static final String CONNECTION = "Connection";
+    public static final String CONNECTION_CLOSE = "close";
+    public static final int NO_BODY = -1;
+    public static final int CLAIMS_CAPACITY = 1024;
+    public static final String SERVING_MESSAGE = "Serving trigger events on port {} with {} workers";
+    public static final String DRAINING_MESSAGE = "Draining, waiting at most {} for the accepted events";
+    public static final String DRAIN_INCOMPLETE_MESSAGE =
+        "Stopping the workers that did not finish within the drain timeout";
+    public static final String TRIGGER_FAILED = "Handling a trigger event failed";
+    public static final String EVENT_REJECTED = "Rejecting a trigger event that is not a JSON object";
+    public static final String EVENT_TOO_LARGE = "Rejecting a trigger event larger than {} bytes";
+    private static final Logger logger = LoggerFactory.getLogger(TriggerServer.class);
+    private static final ThreadLocal<Instant> ACCEPTED_AT = new ThreadLocal<>();
+
+    private final PostAuthenticationStreamHandler handler;
+    private final ExecutorService executor;
+    private final Duration drainTimeout;
+    private final int maxEventBytes;
+    private final Clock clock;
+    private final HttpServer server;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * Starts a server.
+     *
+     * @param handler       the handler of the trigger events
+     * @param address       the address to listen on, with port 0 for a free port
+     * @param executor      the workers that handle the events, which the server shuts down when it is closed
+     * @param drainTimeout  how long closing waits for the accepted events
+     * @param maxEventBytes the size of the largest event that is handled
+     * @param clock         the clock the deadlines of the events are measured with
+     * @throws IOException if the server cannot listen on the address
+     */
+    public TriggerServer(PostAuthenticationStreamHandler handler,
+                         InetSocketAddress address,
+                         ExecutorService executor,
+                         Duration drainTimeout,
+                         int maxEventBytes,
+                         Clock clock) throws IOException {
+        this.handler = handler;
+        this.executor = executor;
+        this.drainTimeout = drainTimeout;
+        this.maxEventBytes = maxEventBytes;
+        this.clock = clock;
+        this.server = HttpServer.create(address, 0);
+        server.createContext(TRIGGER_PATH, this::handleTrigger);
+        server.createContext(HEALTH_PATH, this::handleHealth);
+        server.setExecutor(this::dispatch);
+        server.start();
+    }
+
+    /**
+     * Starts a server on the port of {@code SERVER_PORT} with a fixed pool of {@code SERVER_THREADS} workers, which is
+     * the number of events that are handled at a time, the drain timeout of {@code SERVER_DRAIN_SECONDS} and the event
+     * size limit of {@code SERVER_MAX_EVENT_BYTES}.
+     *
+     * @param handler     the handler of the trigger events
+     * @param environment the environment
+     * @return the running server
+     * @throws IOException if the server cannot listen on the port
+     */
+    public static TriggerServer fromEnvironment(PostAuthenticationStreamHandler handler, Environment environment)
+        throws IOException {
+        int port = environment.readEnvOpt(SERVER_PORT).map(Integer::parseInt).orElse(DEFAULT_PORT);
+        int threads = environment.readEnvOpt(SERVER_THREADS).map(Integer::parseInt).orElse(DEFAULT_THREADS);
+        Duration drainTimeout = environment.readEnvOpt(SERVER_DRAIN_SECONDS)
+                                    .map(Long::parseLong)
+                                    .map(Duration::ofSeconds)
+                                    .orElse(DEFAULT_DRAIN_TIMEOUT);
+        int maxEventBytes = environment.readEnvOpt(SERVER_MAX_EVENT_BYTES)
+                                .map(Integer::parseInt)
+                                .orElse(DEFAULT_MAX_EVENT_BYTES);
+        TriggerServer server = new TriggerServer(handler, new InetSocketAddress(port),
+                                                 Executors.newFixedThreadPool(threads), drainTimeout, maxEventBytes,
+                                                 Clock.systemUTC());
+        logger.info(SERVING_MESSAGE, server.getPort(), threads);
+        return server;
+    }
+
+    /**
+     * Runs the server until the process is terminated, and drains it on termination.
+     *
+     * @param args not used
+     * @throws IOException if the server cannot listen on the port
+     */
+    @JacocoGenerated
+    @SuppressWarnings("PMD.CloseResource")
+    public static void main(String... args) throws IOException {
+        TriggerServer server = fromEnvironment(new PostAuthenticationStreamHandler(), new Environment());
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean isDraining() {
+        return draining.get();
+    }
+
+    @Override
+    public void close() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        logger.info(DRAINING_MESSAGE, drainTimeout);
+        Instant drainDeadline = clock.instant().plus(drainTimeout);
+        server.stop(wholeSeconds(remainingUntil(drainDeadline)));
+        executor.shutdown();
+        if (!awaitWorkers(remainingUntil(drainDeadline))) {
+            logger.warn(DRAIN_INCOMPLETE_MESSAGE);
+            executor.shutdownNow();
+        }
+        handler.awaitDeferredWrites(remainingUntil(drainDeadline));
+    }
+
+    /**
+     * Hands an exchange to a worker, remembering when it was accepted, so that the time it waits for the worker is
+     * counted against its deadline.
+     */
+    private void dispatch(Runnable exchange) {
+        Instant acceptedAt = clock.instant();
+        executor.execute(() -> runAccepted(exchange, acceptedAt));
+    }
+
+    private static void runAccepted(Runnable exchange, Instant acceptedAt) {
+        ACCEPTED_AT.set(acceptedAt);
+        try {
+            exchange.run();
+        } finally {
+            ACCEPTED_AT.remove();
+        }
+    }
+
+    private void handleTrigger(HttpExchange exchange) throws IOException {
+        try {
+            if (POST.equals(exchange.getRequestMethod())) {
+                handleEvent(exchange);
+            } else {
+                respond(exchange, HttpURLConnection.HTTP_BAD_METHOD, null);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleEvent(HttpExchange exchange) throws IOException {
+        byte[] event = exchange.getRequestBody().readNBytes(maxEventBytes + 1);
+        if (event.length > maxEventBytes) {
+            logger.warn(EVENT_TOO_LARGE, maxEventBytes);
+            respond(exchange, HttpURLConnection.HTTP_ENTITY_TOO_LARGE, null);
+            return;
+        }
+        ByteArrayOutputStream response = new ByteArrayOutputStream(event.length + CLAIMS_CAPACITY);
+        try {
+            handler.handleRequest(new ByteArrayInputStream(event), response, new ServerContext(acceptedAt(), clock));
+        } catch (IOException exception) {
+            logger.warn(EVENT_REJECTED, exception);
+            respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST, null);
+            return;
+        } catch (RuntimeException exception) {
+            logger.error(TRIGGER_FAILED, exception);
+            respond(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, null);
+            return;
+        }
+        respond(exchange, HttpURLConnection.HTTP_OK, response.toByteArray());
+    }
+
+    private Instant acceptedAt() {
+        Instant acceptedAt = ACCEPTED_AT.get();
+        return acceptedAt == null ? clock.instant() : acceptedAt;
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            int statusCode = isDraining() ? HttpURLConnection.HTTP_UNAVAILABLE : HttpURLConnection.HTTP_OK;
+            respond(exchange, statusCode, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends a response. While the server drains, the client is asked to close the connection.
+     */
+    private void respond(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        if (isDraining()) {
+            exchange.getResponseHeaders().add(CONNECTION, CONNECTION_CLOSE);
+        }
+        if (body == null) {
+            exchange.sendResponseHeaders(statusCode, NO_BODY);
+            return;
+        }
+        exchange.getResponseHeaders().add(CONTENT_TYPE, APPLICATION_JSON);
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private Duration remainingUntil(Instant drainDeadline) {
+        Duration remaining = Duration.between(clock.instant(), drainDeadline);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    /**
+     * Rounds a timeout up to the whole seconds the listener is stopped with, so that a sub-second timeout still waits
+     * for the exchanges in progress instead of closing their connections at once.
+     */
+    private static int wholeSeconds(Duration timeout) {
+        return (int) timeout.plusSeconds(1).minusNanos(1).toSeconds();
+    }
+
+    private boolean awaitWorkers(Duration timeout) {
+        try {
+            return executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
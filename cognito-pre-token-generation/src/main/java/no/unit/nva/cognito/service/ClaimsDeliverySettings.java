@@ -0,0 +1,103 @@
+package no.unit.nva.cognito.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import no.unit.nva.cognito.model.ClaimsDeliveryMode;
+import nva.commons.core.Environment;
+
+/**
+ * Selects the {@link ClaimsDeliveryMode} for each trigger source. Claims can only be returned in the response of a
+ * pre token generation trigger, so every other trigger source is served with {@link ClaimsDeliveryMode#ATTRIBUTES}.
+ */
+public class ClaimsDeliverySettings {
+
+    public static final String CLAIMS_DELIVERY_MODE = "CLAIMS_DELIVERY_MODE";
+    public static final String CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE = "CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE";
+    public static final String TOKEN_GENERATION_PREFIX = "TokenGeneration_";
+    public static final String ENTRY_SEPARATOR = ",";
+    public static final String KEY_VALUE_SEPARATOR = "=";
+    public static final int KEY = 0;
+    public static final int VALUE = 1;
+    public static final int PAIR_LENGTH = 2;
+    public static final String INVALID_ENTRY_MESSAGE =
+        "Invalid entry '%s' in " + CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE + ", expected triggerSource=MODE";
+    public static final String DUPLICATE_ENTRY_MESSAGE =
+        "Trigger source '%s' is listed more than once in " + CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE;
+
+    private final ClaimsDeliveryMode defaultMode;
+    private final Map<String, ClaimsDeliveryMode> modeByTriggerSource;
+
+    public ClaimsDeliverySettings(ClaimsDeliveryMode defaultMode,
+                                  Map<String, ClaimsDeliveryMode> modeByTriggerSource) {
+        this.defaultMode = defaultMode;
+        this.modeByTriggerSource = Map.copyOf(modeByTriggerSource);
+    }
+
+    /**
+     * Settings that write user attributes for every trigger source, which is how the handler has always worked.
+     *
+     * @return the settings
+     */
+    public static ClaimsDeliverySettings attributesOnly() {
+        return new ClaimsDeliverySettings(ClaimsDeliveryMode.ATTRIBUTES, Collections.emptyMap());
+    }
+
+    /**
+     * Reads the settings from the environment. {@code CLAIMS_DELIVERY_MODE} holds the mode for token generation trigger
+     * sources without an explicit mode, and {@code CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE} holds a comma separated list
+     * of {@code triggerSource=MODE} pairs, for instance {@code TokenGeneration_RefreshTokens=CLAIMS}.
+     *
+     * @param environment the environment
+     * @return the settings
+     */
+    public static ClaimsDeliverySettings fromEnvironment(Environment environment) {
+        ClaimsDeliveryMode defaultMode = environment.readEnvOpt(CLAIMS_DELIVERY_MODE)
+                                             .map(ClaimsDeliverySettings::parseMode)
+                                             .orElse(ClaimsDeliveryMode.ATTRIBUTES);
+        Map<String, ClaimsDeliveryMode> modeByTriggerSource =
+            environment.readEnvOpt(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE)
+                .map(ClaimsDeliverySettings::parseModeByTriggerSource)
+                .orElse(Collections.emptyMap());
+        return new ClaimsDeliverySettings(defaultMode, modeByTriggerSource);
+    }
+
+    /**
+     * Returns the mode to use for the trigger source.
+     *
+     * @param triggerSource the trigger source of the event
+     * @return the claims delivery mode
+     */
+    public ClaimsDeliveryMode modeFor(String triggerSource) {
+        if (triggerSource == null || !triggerSource.startsWith(TOKEN_GENERATION_PREFIX)) {
+            return ClaimsDeliveryMode.ATTRIBUTES;
+        }
+        return modeByTriggerSource.getOrDefault(triggerSource, defaultMode);
+    }
+
+    private static Map<String, ClaimsDeliveryMode> parseModeByTriggerSource(String value) {
+        Map<String, ClaimsDeliveryMode> modeByTriggerSource = new ConcurrentHashMap<>();
+        Arrays.stream(value.split(ENTRY_SEPARATOR))
+            .map(String::strip)
+            .filter(entry -> !entry.isEmpty())
+            .forEach(entry -> addEntry(modeByTriggerSource, entry));
+        return modeByTriggerSource;
+    }
+
+    private static void addEntry(Map<String, ClaimsDeliveryMode> modeByTriggerSource, String entry) {
+        String[] pair = entry.split(KEY_VALUE_SEPARATOR, -1);
+        if (pair.length != PAIR_LENGTH || pair[KEY].isBlank() || pair[VALUE].isBlank()) {
+            throw new IllegalArgumentException(String.format(INVALID_ENTRY_MESSAGE, entry));
+        }
+        String triggerSource = pair[KEY].strip();
+        if (modeByTriggerSource.putIfAbsent(triggerSource, parseMode(pair[VALUE])) != null) {
+            throw new IllegalArgumentException(String.format(DUPLICATE_ENTRY_MESSAGE, triggerSource));
+        }
+    }
+
+    private static ClaimsDeliveryMode parseMode(String value) {
+        return ClaimsDeliveryMode.valueOf(value.strip().toUpperCase(Locale.ROOT));
+    }
+}
@@ -1,9 +1,24 @@
 package no.unit.nva.cognito.service;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.util.Futures;
 
 public interface CustomerApi {
 
     Optional<CustomerResponse> getCustomer(String orgNumber);
+
+    default CompletableFuture<Optional<CustomerResponse>> getCustomerAsync(String orgNumber) {
+        return Futures.completed(() -> getCustomer(orgNumber));
+    }
+
+    /**
+     * Prepares the client for the first real request, for instance by opening the connection to the customer service.
+     *
+     * @return a future that completes when the client is warm
+     */
+    default CompletableFuture<Void> warmUp() {
+        return CompletableFuture.completedFuture(null);
+    }
 }
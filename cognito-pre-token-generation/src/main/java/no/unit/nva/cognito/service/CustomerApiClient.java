@@ -1,109 +1,209 @@
 package no.unit.nva.cognito.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import no.unit.nva.cognito.metrics.LatencyHistograms;
+import no.unit.nva.cognito.metrics.LatencySpan;
 import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.RequestHedger;
+import no.unit.nva.cognito.util.ServiceUri;
+import no.unit.nva.cognito.util.SingleFlight;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
 
 import nva.commons.core.Environment;
 import nva.commons.core.attempt.ConsumerWithException;
 import nva.commons.core.attempt.Failure;
 import nva.commons.core.attempt.Try;
 import org.apache.http.HttpStatus;
-import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static java.lang.System.currentTimeMillis;
+import static no.unit.nva.cognito.util.OrgNumberCleaner.removeCountryPrefix;
 
 public class CustomerApiClient implements CustomerApi {
 
     public static final String PATH = "/customer/orgNumber/";
     public static final String CUSTOMER_API_SCHEME = "CUSTOMER_API_SCHEME";
     public static final String CUSTOMER_API_HOST = "CUSTOMER_API_HOST";
+    public static final String REQUESTING_CUSTOMER_MESSAGE = "Requesting customer information for orgNumber: ";
+    public static final String CUSTOMER_SERVICE_WARMED_UP = "Opened connection to the customer service";
+    public static final String GET_CUSTOMER = "getCustomer";
     private static final Logger logger = LoggerFactory.getLogger(CustomerApiClient.class);
-    private final ObjectMapper objectMapper;
+    private final JsonCodec codec;
     private final HttpClient httpClient;
-    private final String customerApiScheme;
-    private final String customerApiHost;
+    private final ServiceUri customers;
+    private final CustomerCache customerCache;
+    private final LatencyHistograms latencyHistograms;
+    private final RequestHedger requestHedger;
+    private final SingleFlight<String, Optional<CustomerResponse>> customerLookups = new SingleFlight<>();
 
     public CustomerApiClient(HttpClient httpClient,
                              ObjectMapper objectMapper,
                              Environment environment) {
+        this(httpClient, objectMapper, environment, CustomerCache.fromEnvironment(environment));
+    }
+
+    /**
+     * Creates a client that caches customer lookups in the supplied cache.
+     *
+     * @param httpClient    http client
+     * @param objectMapper  object mapper
+     * @param environment   environment holding the customer service location
+     * @param customerCache container-local customer cache
+     */
+    public CustomerApiClient(HttpClient httpClient,
+                             ObjectMapper objectMapper,
+                             Environment environment,
+                             CustomerCache customerCache) {
         this.httpClient = httpClient;
-        this.objectMapper = objectMapper;
-        this.customerApiScheme = environment.readEnv(CUSTOMER_API_SCHEME);
-        this.customerApiHost = environment.readEnv(CUSTOMER_API_HOST);
+        this.codec = new JsonCodec(objectMapper);
+        this.customers = new ServiceUri(environment.readEnv(CUSTOMER_API_SCHEME),
+                                        environment.readEnv(CUSTOMER_API_HOST),
+                                        PATH);
+        this.customerCache = customerCache;
+        this.latencyHistograms = LatencyHistograms.fromEnvironment(environment);
+        this.requestHedger = RequestHedger.fromEnvironment(environment, GET_CUSTOMER, latencyHistograms);
     }
 
     @Override
     public Optional<CustomerResponse> getCustomer(String orgNumber) {
-        long start = currentTimeMillis();
-        logger.info("Requesting customer information for orgNumber: " + orgNumber);
+        return customerCache.getOrLoad(removeCountryPrefix(orgNumber), this::fetchCoalescedCustomer);
+    }
+
+    @Override
+    public CompletableFuture<Optional<CustomerResponse>> getCustomerAsync(String orgNumber) {
+        return customerCache.getOrLoadAsync(removeCountryPrefix(orgNumber), this::fetchCoalescedCustomerAsync);
+    }
+
+    /**
+     * Writes and parses a sample customer with the client's codec and looks up the sample organization, which has no
+     * customer. The lookup bypasses the cache, and is neither recorded in the latency histograms nor hedged, so that
+     * neither the cache nor the hedge delay is affected by the warm-up.
+     *
+     * @return a future that completes when the lookup has completed
+     */
+    @Override
+    public CompletableFuture<Void> warmUp() {
+        return Try.of(WarmUpSamples.sampleCustomer())
+                   .map(codec::writeCustomer)
+                   .map(codec::readCustomer)
+                   .map(customer -> fetchCustomerAsync(WarmUpSamples.WARM_UP_ORG_NUMBER,
+                                                       LatencyHistograms.discarding(),
+                                                       RequestHedger.disabled(GET_CUSTOMER)))
+                   .orElse(failure -> CompletableFuture.failedFuture(failure.getException()))
+                   .thenRun(() -> logger.info(CUSTOMER_SERVICE_WARMED_UP));
+    }
+
+    public CustomerCache getCustomerCache() {
+        return customerCache;
+    }
+
+    public LatencyHistograms getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    public SingleFlight<String, Optional<CustomerResponse>> getCustomerLookups() {
+        return customerLookups;
+    }
+
+    /**
+     * Fetches a customer that is not cached, sharing the request with the concurrent lookups of the same organization.
+     */
+    private Optional<CustomerResponse> fetchCoalescedCustomer(String orgNumber) {
+        return Futures.join(customerLookups.run(orgNumber, () -> Futures.completed(() -> fetchCustomer(orgNumber))));
+    }
+
+    private CompletableFuture<Optional<CustomerResponse>> fetchCoalescedCustomerAsync(String orgNumber) {
+        return customerLookups.run(orgNumber, () -> fetchCustomerAsync(orgNumber, latencyHistograms, requestHedger));
+    }
+
+    private Optional<CustomerResponse> fetchCustomer(String orgNumber) {
+        logger.info(REQUESTING_CUSTOMER_MESSAGE + orgNumber);
+        Deadline deadline = Deadline.current();
+        var response = latencyHistograms.start(GET_CUSTOMER)
+            .time(() -> fetchCustomerInformation(orgNumber, deadline).orElseThrow(getHttpClientInitializationError()));
+        return customerFromResponse(response);
+    }
+
+    private CompletableFuture<Optional<CustomerResponse>> fetchCustomerAsync(String orgNumber,
+                                                                             LatencyHistograms histograms,
+                                                                             RequestHedger hedger) {
+        logger.info(REQUESTING_CUSTOMER_MESSAGE + orgNumber);
+        Deadline deadline = Deadline.current();
+        LatencySpan span = histograms.start(GET_CUSTOMER);
+        return Try.attempt(() -> customers.resolve(orgNumber))
+            .map(uri -> hedger.send(() -> sendHttpRequestAsync(buildHttpRequest(uri, deadline))))
+            .orElse(failure -> CompletableFuture.failedFuture(failure.getException()))
+            .whenComplete(span::end)
+            .handle(this::responseOrInitializationError)
+            .thenApply(this::customerFromResponse);
+    }
+
+    private Optional<CustomerResponse> customerFromResponse(HttpResponse<byte[]> response) {
         try {
-            var response = fetchCustomerInformation(orgNumber)
-                .orElseThrow(getHttpClientInitializationError());
             if (response.statusCode() == HttpStatus.SC_NOT_FOUND) {
-                logger.info("getCustomer success took {} ms", currentTimeMillis() - start);
                 return Optional.empty();
             }
             if (response.statusCode() != HttpStatus.SC_OK) {
-                logger.info("getCustomer failure took {} ms", currentTimeMillis() - start);
                 logger.error("Error fetching customer information, API response was {}", response.statusCode());
                 throw new IllegalStateException("Error fetching customer information");
             }
-            logger.info("getCustomer success took {} ms", currentTimeMillis() - start);
             return Optional.ofNullable(this.parseCustomer(response));
-        } catch (JsonProcessingException e) {
+        } catch (IOException e) {
             logger.error("Error parsing customer information", e);
-            logger.info("getCustomer failure took {} ms", currentTimeMillis() - start);
             throw new IllegalStateException("Error parsing customer information");
         }
     }
 
+    private HttpResponse<byte[]> responseOrInitializationError(HttpResponse<byte[]> response, Throwable exception) {
+        if (exception != null) {
+            logger.error("Error fetching customer information", Futures.unwrap(exception));
+            throw getHttpClientInitializationError().get();
+        }
+        return response;
+    }
+
     private Supplier<IllegalStateException> getHttpClientInitializationError() {
         return () ->
             new IllegalStateException("Error fetching customer information, http client failed to initialize.");
     }
 
-    private Optional<HttpResponse<String>> fetchCustomerInformation(String orgNumber) {
-        return Try.of(formUri(orgNumber))
-            .map(URIBuilder::build)
-            .map(this::buildHttpRequest)
+    private Optional<HttpResponse<byte[]>> fetchCustomerInformation(String orgNumber, Deadline deadline) {
+        return Try.attempt(() -> customers.resolve(orgNumber))
+            .map(uri -> buildHttpRequest(uri, deadline))
             .map(this::sendHttpRequest)
             .toOptional(logResponseError());
     }
 
-    private ConsumerWithException<Failure<HttpResponse<String>>, RuntimeException> logResponseError() {
+    private ConsumerWithException<Failure<HttpResponse<byte[]>>, RuntimeException> logResponseError() {
         return failure -> logger.error("Error fetching customer information");
     }
 
-    private CustomerResponse parseCustomer(HttpResponse<String> response)
-        throws JsonProcessingException {
-        return objectMapper.readValue(response.body(), CustomerResponse.class);
+    private CustomerResponse parseCustomer(HttpResponse<byte[]> response) throws IOException {
+        return codec.readCustomer(response.body());
     }
 
-    private HttpResponse<String> sendHttpRequest(HttpRequest httpRequest) throws IOException, InterruptedException {
-        return httpClient.send(httpRequest, BodyHandlers.ofString());
+    private HttpResponse<byte[]> sendHttpRequest(HttpRequest httpRequest) throws IOException, InterruptedException {
+        return httpClient.send(httpRequest, JsonCodec.bodyHandler());
     }
 
-    private URIBuilder formUri(String orgNumber) {
-        return new URIBuilder()
-            .setScheme(customerApiScheme)
-            .setHost(customerApiHost)
-            .setPath(PATH + orgNumber);
+    private CompletableFuture<HttpResponse<byte[]>> sendHttpRequestAsync(HttpRequest httpRequest) {
+        return httpClient.sendAsync(httpRequest, JsonCodec.bodyHandler());
     }
 
-    private HttpRequest buildHttpRequest(URI uri) {
+    private HttpRequest buildHttpRequest(URI uri, Deadline deadline) {
         return HttpRequest.newBuilder()
             .uri(uri)
+            .timeout(deadline.timeoutFor(GET_CUSTOMER))
             .GET()
             .build();
     }
@@ -0,0 +1,172 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_CACHE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HIT;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.MISS;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.util.Futures;
+import nva.commons.core.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Container-local cache of customer lookups keyed by the cleaned organization number. The cache is bounded and evicts
+ * the least recently used entry. Found customers and missing customers (404) expire after separate TTLs. Failed
+ * lookups are never cached.
+ */
+public class CustomerCache {
+
+    public static final String CUSTOMER_CACHE_MAX_SIZE = "CUSTOMER_CACHE_MAX_SIZE";
+    public static final String CUSTOMER_CACHE_TTL_SECONDS = "CUSTOMER_CACHE_TTL_SECONDS";
+    public static final String CUSTOMER_CACHE_NOT_FOUND_TTL_SECONDS = "CUSTOMER_CACHE_NOT_FOUND_TTL_SECONDS";
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(15);
+    public static final Duration DEFAULT_NOT_FOUND_TTL = Duration.ofMinutes(1);
+    public static final float LOAD_FACTOR = 0.75f;
+    public static final boolean ACCESS_ORDER = true;
+    private static final Logger logger = LoggerFactory.getLogger(CustomerCache.class);
+
+    private final Duration ttl;
+    private final Duration notFoundTtl;
+    private final Clock clock;
+    private final Map<String, Entry> entries;
+    private final Object lock = new Object();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CustomerCache(int maxSize, Duration ttl, Duration notFoundTtl, Clock clock) {
+        this.ttl = ttl;
+        this.notFoundTtl = notFoundTtl;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(maxSize, LOAD_FACTOR, ACCESS_ORDER) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Creates a cache configured from the environment, using the defaults for variables that are not set.
+     *
+     * @param environment the environment
+     * @return a new cache
+     */
+    public static CustomerCache fromEnvironment(Environment environment) {
+        int maxSize = environment.readEnvOpt(CUSTOMER_CACHE_MAX_SIZE)
+                          .map(Integer::parseInt)
+                          .orElse(DEFAULT_MAX_SIZE);
+        Duration ttl = readDuration(environment, CUSTOMER_CACHE_TTL_SECONDS, DEFAULT_TTL);
+        Duration notFoundTtl = readDuration(environment, CUSTOMER_CACHE_NOT_FOUND_TTL_SECONDS, DEFAULT_NOT_FOUND_TTL);
+        return new CustomerCache(maxSize, ttl, notFoundTtl, Clock.systemUTC());
+    }
+
+    /**
+     * Returns the cached lookup result for the organization number or loads it with the supplied loader.
+     *
+     * @param orgNumber the cleaned organization number
+     * @param loader    synchronous lookup used on a cache miss
+     * @return the customer, or empty if the customer does not exist
+     */
+    public Optional<CustomerResponse> getOrLoad(String orgNumber,
+                                                Function<String, Optional<CustomerResponse>> loader) {
+        return Futures.join(getOrLoadAsync(orgNumber, key -> Futures.completed(() -> loader.apply(key))));
+    }
+
+    /**
+     * Returns the cached lookup result for the organization number or loads it with the supplied loader.
+     *
+     * @param orgNumber the cleaned organization number
+     * @param loader    asynchronous lookup used on a cache miss
+     * @return the customer, or empty if the customer does not exist
+     */
+    public CompletableFuture<Optional<CustomerResponse>> getOrLoadAsync(
+        String orgNumber,
+        Function<String, CompletableFuture<Optional<CustomerResponse>>> loader) {
+        Optional<Optional<CustomerResponse>> cached = lookup(orgNumber);
+        if (cached.isPresent()) {
+            hits.incrementAndGet();
+            InvocationMetrics.current().dimension(CUSTOMER_CACHE, HIT);
+            logger.info("Customer information for orgNumber {} found in cache", orgNumber);
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        misses.incrementAndGet();
+        InvocationMetrics.current().dimension(CUSTOMER_CACHE, MISS);
+        return loader.apply(orgNumber).thenApply(customer -> store(orgNumber, customer));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of entries currently held, including entries that have expired but have not been looked up since.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    private static Duration readDuration(Environment environment, String variable, Duration defaultValue) {
+        return environment.readEnvOpt(variable)
+                   .map(Long::parseLong)
+                   .map(Duration::ofSeconds)
+                   .orElse(defaultValue);
+    }
+
+    private Optional<Optional<CustomerResponse>> lookup(String orgNumber) {
+        Instant now = clock.instant();
+        synchronized (lock) {
+            Entry entry = entries.get(orgNumber);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (entry.isExpired(now)) {
+                entries.remove(orgNumber);
+                return Optional.empty();
+            }
+            return Optional.of(entry.customer);
+        }
+    }
+
+    private Optional<CustomerResponse> store(String orgNumber, Optional<CustomerResponse> customer) {
+        Duration timeToLive = customer.isPresent() ? ttl : notFoundTtl;
+        Entry entry = new Entry(customer, clock.instant().plus(timeToLive));
+        synchronized (lock) {
+            entries.put(orgNumber, entry);
+        }
+        return customer;
+    }
+
+    private static class Entry {
+
+        private final Optional<CustomerResponse> customer;
+        private final Instant expiresAt;
+
+        public Entry(Optional<CustomerResponse> customer, Instant expiresAt) {
+            this.customer = customer;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+    }
+}
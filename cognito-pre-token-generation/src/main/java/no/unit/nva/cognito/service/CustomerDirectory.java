@@ -0,0 +1,258 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_CACHE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.DIRECTORY;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.model.CustomerResponse;
+import nva.commons.core.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Looks up customers in a snapshot of the customer directory that is packaged with the function, and asks the customer
+ * service only for organizations that are not in the snapshot. The snapshot is written by
+ * {@link CustomerDirectoryWriter} and memory-mapped, so it costs no heap and is shared by every thread.
+ *
+ * <p>The file starts with a header of the magic number, the format version and the number of customers, followed by
+ * one record per customer, sorted by organization number. A record holds the offsets of the organization number, the
+ * customer id and the Cristin id, and each of them is stored as its length in bytes followed by its UTF-8 bytes, or
+ * as the length {@value #NULL_LENGTH} if it is missing. All numbers are big-endian ints. Every offset and length is
+ * checked against the end of the snapshot when it is opened, so that a truncated or corrupt snapshot is rejected at
+ * cold start instead of failing a login.
+ *
+ * <p>A lookup is a binary search that compares the organization number in the query with the mapped bytes directly,
+ * skipping the characters that {@link no.unit.nva.cognito.util.OrgNumberCleaner} removes, so that finding a customer
+ * allocates nothing. A customer is decoded the first time it is found and reused after that.
+ */
+public class CustomerDirectory implements CustomerApi {
+
+    public static final String CUSTOMER_DIRECTORY = "CUSTOMER_DIRECTORY";
+    public static final String LAMBDA_TASK_ROOT = "LAMBDA_TASK_ROOT";
+    public static final String DEFAULT_FILE_NAME = "customer-directory.bin";
+    public static final int MAGIC = 0x4E564344;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 3 * Integer.BYTES;
+    public static final int RECORD_BYTES = 3 * Integer.BYTES;
+    public static final int MAGIC_OFFSET = 0;
+    public static final int VERSION_OFFSET = Integer.BYTES;
+    public static final int COUNT_OFFSET = 2 * Integer.BYTES;
+    public static final int ORG_NUMBER_FIELD = 0;
+    public static final int CUSTOMER_ID_FIELD = Integer.BYTES;
+    public static final int CRISTIN_ID_FIELD = 2 * Integer.BYTES;
+    public static final int NULL_LENGTH = -1;
+    public static final int UNSIGNED_BYTE = 0xFF;
+    public static final int NOT_FOUND = -1;
+    public static final String INVALID_DIRECTORY_MESSAGE = "Not a customer directory of version " + VERSION;
+    public static final String LOADED_MESSAGE = "Loaded {} customers from {}";
+    public static final String NOT_LOADED_MESSAGE = "Could not load the customer directory {}, using the service only";
+    private static final Logger logger = LoggerFactory.getLogger(CustomerDirectory.class);
+
+    private final ByteBuffer directory;
+    private final int count;
+    private final CustomerApi fallback;
+    private final AtomicReferenceArray<Optional<CustomerResponse>> customers;
+
+    /**
+     * Creates a directory of the snapshot in a buffer.
+     *
+     * @param directory the snapshot, which is read with absolute reads only and must not change
+     * @param fallback  the customer service, asked for the organizations that are not in the snapshot
+     */
+    public CustomerDirectory(ByteBuffer directory, CustomerApi fallback) {
+        this.directory = directory;
+        this.count = validatedCount(directory);
+        this.fallback = fallback;
+        this.customers = new AtomicReferenceArray<>(count);
+    }
+
+    /**
+     * Memory-maps a snapshot file.
+     *
+     * @param file     the snapshot
+     * @param fallback the customer service, asked for the organizations that are not in the snapshot
+     * @return the directory
+     * @throws IOException if the file cannot be mapped
+     */
+    public static CustomerDirectory open(Path file, CustomerApi fallback) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new CustomerDirectory(channel.map(MapMode.READ_ONLY, 0, channel.size()), fallback);
+        }
+    }
+
+    /**
+     * Opens the snapshot at {@code CUSTOMER_DIRECTORY}, or the packaged {@value #DEFAULT_FILE_NAME} in the
+     * {@code LAMBDA_TASK_ROOT} if the variable is not set. Without a readable snapshot every lookup goes to the
+     * customer service, like before.
+     *
+     * @param environment the environment
+     * @param fallback    the customer service
+     * @return the directory, or the customer service if there is no snapshot
+     */
+    public static CustomerApi fromEnvironment(Environment environment, CustomerApi fallback) {
+        Optional<Path> file = environment.readEnvOpt(CUSTOMER_DIRECTORY)
+                                  .map(Path::of)
+                                  .or(() -> environment.readEnvOpt(LAMBDA_TASK_ROOT)
+                                                .map(root -> Path.of(root, DEFAULT_FILE_NAME)));
+        if (file.isEmpty() || !Files.isRegularFile(file.get())) {
+            return fallback;
+        }
+        try {
+            CustomerDirectory directory = open(file.get(), fallback);
+            logger.info(LOADED_MESSAGE, directory.size(), file.get());
+            return directory;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn(NOT_LOADED_MESSAGE, file.get(), e);
+            return fallback;
+        }
+    }
+
+    @Override
+    public Optional<CustomerResponse> getCustomer(String orgNumber) {
+        int index = indexOf(orgNumber);
+        return index == NOT_FOUND ? fallback.getCustomer(orgNumber) : found(index);
+    }
+
+    @Override
+    public CompletableFuture<Optional<CustomerResponse>> getCustomerAsync(String orgNumber) {
+        int index = indexOf(orgNumber);
+        return index == NOT_FOUND
+                   ? fallback.getCustomerAsync(orgNumber)
+                   : CompletableFuture.completedFuture(found(index));
+    }
+
+    /**
+     * Warms up the customer service, which is still asked for the organizations that are not in the snapshot.
+     *
+     * @return a future that completes when the customer service is warm
+     */
+    @Override
+    public CompletableFuture<Void> warmUp() {
+        return fallback.warmUp();
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Finds an organization in the snapshot.
+     *
+     * @param orgNumber the organization number, with or without the characters that are not part of it
+     * @return the index of the customer, or {@value #NOT_FOUND} if the organization is not in the snapshot
+     */
+    public int indexOf(String orgNumber) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = low + high >>> 1;
+            int comparison = compare(orgNumber, field(middle, ORG_NUMBER_FIELD));
+            if (comparison > 0) {
+                low = middle + 1;
+            } else if (comparison < 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private Optional<CustomerResponse> found(int index) {
+        InvocationMetrics.current().dimension(CUSTOMER_CACHE, DIRECTORY);
+        Optional<CustomerResponse> customer = customers.get(index);
+        if (customer == null) {
+            customer = Optional.of(new CustomerResponse(string(field(index, CUSTOMER_ID_FIELD)),
+                                                        string(field(index, CRISTIN_ID_FIELD))));
+            customers.compareAndSet(index, null, customer);
+        }
+        return customer;
+    }
+
+    private int field(int index, int field) {
+        return directory.getInt(HEADER_BYTES + index * RECORD_BYTES + field);
+    }
+
+    private int compare(String orgNumber, int offset) {
+        int length = directory.getInt(offset);
+        int position = 0;
+        for (int index = 0; index < orgNumber.length(); index++) {
+            char character = orgNumber.charAt(index);
+            if (isKept(character)) {
+                if (position == length) {
+                    return 1;
+                }
+                int difference = character - (directory.get(offset + Integer.BYTES + position) & UNSIGNED_BYTE);
+                if (difference != 0) {
+                    return difference;
+                }
+                position++;
+            }
+        }
+        return position == length ? 0 : -1;
+    }
+
+    private String string(int offset) {
+        int length = directory.getInt(offset);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int index = 0; index < length; index++) {
+            bytes[index] = directory.get(offset + Integer.BYTES + index);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Whether a character is kept by {@link no.unit.nva.cognito.util.OrgNumberCleaner}, which removes everything but
+     * digits and dots.
+     */
+    private static boolean isKept(char character) {
+        return character >= '0' && character <= '9' || character == '.';
+    }
+
+    private static int validatedCount(ByteBuffer directory) {
+        if (directory.limit() < HEADER_BYTES
+            || directory.getInt(MAGIC_OFFSET) != MAGIC
+            || directory.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IllegalArgumentException(INVALID_DIRECTORY_MESSAGE);
+        }
+        int count = directory.getInt(COUNT_OFFSET);
+        if (count < 0 || (long) count * RECORD_BYTES > directory.limit() - HEADER_BYTES) {
+            throw new IllegalArgumentException(INVALID_DIRECTORY_MESSAGE);
+        }
+        for (int index = 0; index < count; index++) {
+            int record = HEADER_BYTES + index * RECORD_BYTES;
+            validateString(directory, directory.getInt(record + ORG_NUMBER_FIELD), false);
+            validateString(directory, directory.getInt(record + CUSTOMER_ID_FIELD), true);
+            validateString(directory, directory.getInt(record + CRISTIN_ID_FIELD), true);
+        }
+        return count;
+    }
+
+    /**
+     * Checks that a string of a record lies within the snapshot. Only the ids of a customer may be missing.
+     */
+    private static void validateString(ByteBuffer directory, int offset, boolean mayBeMissing) {
+        if (offset < HEADER_BYTES || (long) offset + Integer.BYTES > directory.limit()) {
+            throw new IllegalArgumentException(INVALID_DIRECTORY_MESSAGE);
+        }
+        int length = directory.getInt(offset);
+        if (mayBeMissing && length == NULL_LENGTH) {
+            return;
+        }
+        if (length < 0 || (long) offset + Integer.BYTES + length > directory.limit()) {
+            throw new IllegalArgumentException(INVALID_DIRECTORY_MESSAGE);
+        }
+    }
+}
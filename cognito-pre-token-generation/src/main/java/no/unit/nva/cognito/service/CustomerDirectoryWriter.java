@@ -0,0 +1,149 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.CustomerDirectory.HEADER_BYTES;
+import static no.unit.nva.cognito.service.CustomerDirectory.MAGIC;
+import static no.unit.nva.cognito.service.CustomerDirectory.NULL_LENGTH;
+import static no.unit.nva.cognito.service.CustomerDirectory.RECORD_BYTES;
+import static no.unit.nva.cognito.service.CustomerDirectory.VERSION;
+import static no.unit.nva.cognito.util.OrgNumberCleaner.removeCountryPrefix;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import no.unit.nva.cognito.model.CustomerResponse;
+import nva.commons.core.JacocoGenerated;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the snapshot that {@link CustomerDirectory} reads. The snapshot is exported at build time from a JSON array
+ * of the customers, each an object with the {@code orgNumber}, {@code customerId} and {@code cristinId} of a customer,
+ * as the customer service stores them. The organization numbers are cleaned like in a lookup, so a snapshot holds every
+ * organization once.
+ */
+public final class CustomerDirectoryWriter {
+
+    public static final String ORG_NUMBER = "orgNumber";
+    public static final String CUSTOMER_ID = "customerId";
+    public static final String CRISTIN_ID = "cristinId";
+    public static final int INPUT = 0;
+    public static final int OUTPUT = 1;
+    public static final int ARGUMENTS = 2;
+    public static final String USAGE = "Usage: CustomerDirectoryWriter <customers.json> <customer-directory.bin>";
+    public static final String NOT_AN_ARRAY_MESSAGE = "The customer export must be a JSON array";
+    public static final String MISSING_ORG_NUMBER_MESSAGE = "A customer in the export has no orgNumber: ";
+    public static final String DUPLICATE_ORG_NUMBER_MESSAGE = "The organization is in the export more than once: ";
+    public static final String WROTE_MESSAGE = "Wrote {} customers to {}";
+    private static final Logger logger = LoggerFactory.getLogger(CustomerDirectoryWriter.class);
+
+    private CustomerDirectoryWriter() {
+    }
+
+    /**
+     * Exports a customer export file to a snapshot file.
+     *
+     * @param args the customer export and the snapshot to write
+     * @throws IOException if a file cannot be read or written
+     */
+    @JacocoGenerated
+    public static void main(String... args) throws IOException {
+        if (args.length != ARGUMENTS) {
+            throw new IllegalArgumentException(USAGE);
+        }
+        Map<String, CustomerResponse> customers = readExport(Files.readAllBytes(Path.of(args[INPUT])));
+        Path output = Path.of(args[OUTPUT]);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.write(output, write(customers));
+        logger.info(WROTE_MESSAGE, customers.size(), output);
+    }
+
+    /**
+     * Reads a customer export.
+     *
+     * @param export the JSON array of customers
+     * @return the customers by cleaned organization number
+     * @throws IOException if the export is not valid JSON
+     */
+    public static Map<String, CustomerResponse> readExport(byte[] export) throws IOException {
+        JsonNode customers = new ObjectMapper().readTree(export);
+        if (customers == null || !customers.isArray()) {
+            throw new IllegalArgumentException(NOT_AN_ARRAY_MESSAGE);
+        }
+        SortedMap<String, CustomerResponse> customersByOrgNumber = new TreeMap<>();
+        for (JsonNode customer : customers) {
+            if (!customer.hasNonNull(ORG_NUMBER)) {
+                throw new IllegalArgumentException(MISSING_ORG_NUMBER_MESSAGE + customer);
+            }
+            putOnce(customersByOrgNumber, customer.get(ORG_NUMBER).asText(), customerOf(customer));
+        }
+        return customersByOrgNumber;
+    }
+
+    /**
+     * Writes a snapshot.
+     *
+     * @param customers the customers by organization number
+     * @return the snapshot
+     */
+    public static byte[] write(Map<String, CustomerResponse> customers) {
+        SortedMap<String, CustomerResponse> sorted = new TreeMap<>();
+        customers.forEach((orgNumber, customer) -> putOnce(sorted, orgNumber, customer));
+
+        int stringsStart = HEADER_BYTES + sorted.size() * RECORD_BYTES;
+        ByteBuffer records = ByteBuffer.allocate(stringsStart)
+                                 .putInt(MAGIC)
+                                 .putInt(VERSION)
+                                 .putInt(sorted.size());
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream stringWriter = new DataOutputStream(strings);
+        sorted.forEach((orgNumber, customer) -> {
+            records.putInt(stringsStart + stringWriter.size());
+            writeString(stringWriter, orgNumber);
+            records.putInt(stringsStart + stringWriter.size());
+            writeString(stringWriter, customer.getCustomerId());
+            records.putInt(stringsStart + stringWriter.size());
+            writeString(stringWriter, customer.getCristinId());
+        });
+
+        byte[] snapshot = new byte[stringsStart + strings.size()];
+        records.flip().get(snapshot, 0, stringsStart);
+        System.arraycopy(strings.toByteArray(), 0, snapshot, stringsStart, strings.size());
+        return snapshot;
+    }
+
+    private static CustomerResponse customerOf(JsonNode customer) {
+        return new CustomerResponse(textOf(customer, CUSTOMER_ID), textOf(customer, CRISTIN_ID));
+    }
+
+    private static String textOf(JsonNode customer, String field) {
+        return customer.hasNonNull(field) ? customer.get(field).asText() : null;
+    }
+
+    private static void putOnce(Map<String, CustomerResponse> customers, String orgNumber, CustomerResponse customer) {
+        if (customers.putIfAbsent(removeCountryPrefix(orgNumber), customer) != null) {
+            throw new IllegalArgumentException(DUPLICATE_ORG_NUMBER_MESSAGE + orgNumber);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) {
+        try {
+            if (value == null) {
+                output.writeInt(NULL_LENGTH);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
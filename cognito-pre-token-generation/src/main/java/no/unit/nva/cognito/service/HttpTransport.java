@@ -0,0 +1,139 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.CustomerApiClient.CUSTOMER_API_HOST;
+import static no.unit.nva.cognito.service.CustomerApiClient.CUSTOMER_API_SCHEME;
+import static no.unit.nva.cognito.service.UserApiClient.USER_API_HOST;
+import static no.unit.nva.cognito.service.UserApiClient.USER_API_SCHEME;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import no.unit.nva.cognito.util.BlockingCalls;
+import no.unit.nva.cognito.util.Futures;
+import nva.commons.core.Environment;
+import nva.commons.core.JacocoGenerated;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP transport shared by the clients of the downstream services. The user and customer services are served from
+ * the same API host, so one client lets their requests share one connection pool, and preferring HTTP/2 lets concurrent
+ * requests to a host multiplex over a single connection. The connection to each distinct host is opened while the
+ * Lambda container initializes, so that the first login does not pay for the TLS handshake, and the client keeps it
+ * open between invocations.
+ */
+public class HttpTransport {
+
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(1);
+    public static final Duration PREWARM_TIMEOUT = Duration.ofSeconds(2);
+    public static final String HEAD = "HEAD";
+    public static final String ORIGIN_TEMPLATE = "%s://%s/";
+    public static final String CONNECTION_OPENED_MESSAGE = "Opened connection to {} over {}";
+    public static final String OPENING_CONNECTION_FAILED = "Opening connection to {} failed";
+    private static final Logger logger = LoggerFactory.getLogger(HttpTransport.class);
+    private static final Object LOCK = new Object();
+    private static HttpTransport sharedTransport;
+
+    private final HttpClient httpClient;
+
+    public HttpTransport(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Returns the transport of the container, creating it on first use.
+     *
+     * @return the shared transport
+     */
+    @JacocoGenerated
+    public static HttpTransport shared() {
+        synchronized (LOCK) {
+            if (sharedTransport == null) {
+                sharedTransport = new HttpTransport(newHttpClient(ForkJoinPool.commonPool()));
+            }
+            return sharedTransport;
+        }
+    }
+
+    /**
+     * Creates a client that prefers HTTP/2 and runs its asynchronous work on the supplied executor. Without an explicit
+     * executor the client starts a cached thread pool of its own, which adds threads when responses complete
+     * concurrently, while the common pool is already running and sized to the CPUs of the container. The common pool
+     * only suits the client because the calls that block a thread run on {@link BlockingCalls#executor()} instead.
+     * Connecting is bounded separately from the request timeouts, which come from the deadline of each invocation.
+     *
+     * @param executor the executor of the client
+     * @return the client
+     */
+    public static HttpClient newHttpClient(Executor executor) {
+        return HttpClient.newBuilder()
+                   .version(Version.HTTP_2)
+                   .connectTimeout(CONNECT_TIMEOUT)
+                   .executor(executor)
+                   .build();
+    }
+
+    /**
+     * Returns the origin of a host, which is what a connection is opened to.
+     *
+     * @param scheme the scheme
+     * @param host   the host
+     * @return the origin
+     */
+    public static URI origin(String scheme, String host) {
+        return URI.create(String.format(ORIGIN_TEMPLATE, scheme, host));
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Opens the connections to the user and customer services configured in the environment.
+     *
+     * @param environment the environment
+     * @return a future that completes when every connection has been opened or has failed to open
+     */
+    public CompletableFuture<Void> prewarm(Environment environment) {
+        return prewarm(List.of(origin(environment.readEnv(USER_API_SCHEME), environment.readEnv(USER_API_HOST)),
+                               origin(environment.readEnv(CUSTOMER_API_SCHEME),
+                                      environment.readEnv(CUSTOMER_API_HOST))));
+    }
+
+    /**
+     * Opens one connection to each distinct origin with a {@code HEAD} request. Any response means the connection is
+     * open, and a connection that cannot be opened is logged and left to the first request.
+     *
+     * @param origins the origins
+     * @return a future that completes when every connection has been opened or has failed to open
+     */
+    public CompletableFuture<Void> prewarm(Collection<URI> origins) {
+        return CompletableFuture.allOf(origins.stream()
+                                           .distinct()
+                                           .map(this::openConnection)
+                                           .toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<Void> openConnection(URI origin) {
+        HttpRequest request = HttpRequest.newBuilder(origin)
+                                  .method(HEAD, BodyPublishers.noBody())
+                                  .timeout(PREWARM_TIMEOUT)
+                                  .build();
+        return httpClient.sendAsync(request, BodyHandlers.discarding())
+                   .thenAccept(response -> logger.info(CONNECTION_OPENED_MESSAGE, origin, response.version()))
+                   .exceptionally(exception -> logOpeningConnectionFailure(origin, exception));
+    }
+
+    private static Void logOpeningConnectionFailure(URI origin, Throwable exception) {
+        logger.warn(OPENING_CONNECTION_FAILED, origin, Futures.unwrap(exception));
+        return null;
+    }
+}
@@ -0,0 +1,260 @@
+package no.unit.nva.cognito.service;
+
+import static nva.commons.core.attempt.Try.attempt;
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import com.amazonaws.services.cognitoidp.model.UserType;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.model.AwsCredentials;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.SigV4Signer;
+import nva.commons.core.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * User pool client that calls the Cognito API directly with the JDK HTTP client. It signs its requests with SigV4 and
+ * writes the JSON body by hand, so that the AWS SDK client and its dependencies are not loaded during cold start.
+ */
+public class HttpUserPoolClient implements UserPoolClient {
+
+    public static final String AWS_REGION = "AWS_REGION";
+    public static final String COGNITO_ENDPOINT = "COGNITO_ENDPOINT";
+    public static final String COGNITO_SERVICE = "cognito-idp";
+    public static final String ENDPOINT_TEMPLATE = "https://cognito-idp.%s.amazonaws.com/";
+    public static final String POST = "POST";
+    public static final String CONTENT_TYPE = "Content-Type";
+    public static final String AMZ_JSON = "application/x-amz-json-1.1";
+    public static final String X_AMZ_TARGET = "X-Amz-Target";
+    public static final String ADMIN_UPDATE_USER_ATTRIBUTES = "adminUpdateUserAttributes";
+    public static final String ADMIN_UPDATE_USER_ATTRIBUTES_TARGET =
+        "AWSCognitoIdentityProviderService.AdminUpdateUserAttributes";
+    public static final String LIST_USERS = "listUsers";
+    public static final String LIST_USERS_TARGET = "AWSCognitoIdentityProviderService.ListUsers";
+    public static final String USER_POOL_ID_FIELD = "UserPoolId";
+    public static final String USERNAME_FIELD = "Username";
+    public static final String USER_ATTRIBUTES_FIELD = "UserAttributes";
+    public static final String NAME_FIELD = "Name";
+    public static final String VALUE_FIELD = "Value";
+    public static final String LIMIT_FIELD = "Limit";
+    public static final String PAGINATION_TOKEN_FIELD = "PaginationToken";
+    public static final String USERS_FIELD = "Users";
+    public static final String ATTRIBUTES_FIELD = "Attributes";
+    public static final int PAGE_SIZE = 60;
+    public static final String UPDATE_USER_ATTRIBUTES_FAILURE = "Could not update user attributes";
+    public static final String LIST_USERS_FAILURE = "Could not list users";
+    public static final String ERROR_MESSAGE_TEMPLATE = "%s\nStatus Code:%d\n:Response message:%s";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectReader JSON_READER = new ObjectMapper(JSON_FACTORY).reader();
+    private static final Logger logger = LoggerFactory.getLogger(HttpUserPoolClient.class);
+
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final SigV4Signer signer;
+    private final Supplier<AwsCredentials> credentials;
+    private final Clock clock;
+
+    /**
+     * Creates a client for the supplied Cognito endpoint.
+     *
+     * @param httpClient  http client
+     * @param endpoint    Cognito endpoint
+     * @param signer      signer for the region of the endpoint
+     * @param credentials supplier of the credentials to sign with
+     * @param clock       clock used for signing
+     */
+    public HttpUserPoolClient(HttpClient httpClient,
+                              URI endpoint,
+                              SigV4Signer signer,
+                              Supplier<AwsCredentials> credentials,
+                              Clock clock) {
+        this.httpClient = httpClient;
+        this.endpoint = endpoint;
+        this.signer = signer;
+        this.credentials = credentials;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a client for the Cognito endpoint of the Lambda's region, signing with the credentials of the execution
+     * role. The endpoint can be overridden with {@code COGNITO_ENDPOINT}.
+     *
+     * @param httpClient  http client
+     * @param environment the environment
+     * @return a new client
+     */
+    public static HttpUserPoolClient fromEnvironment(HttpClient httpClient, Environment environment) {
+        String region = environment.readEnv(AWS_REGION);
+        URI endpoint = environment.readEnvOpt(COGNITO_ENDPOINT)
+                           .map(URI::create)
+                           .orElse(URI.create(String.format(ENDPOINT_TEMPLATE, region)));
+        Supplier<AwsCredentials> credentials = () -> AwsCredentials.fromEnvironment(environment);
+        return new HttpUserPoolClient(httpClient, endpoint, new SigV4Signer(region, COGNITO_SERVICE), credentials,
+                                      Clock.systemUTC());
+    }
+
+    @Override
+    public CompletableFuture<Void> updateUserAttributesAsync(String userPoolId,
+                                                             String userName,
+                                                             List<AttributeType> attributes) {
+        logger.info("Updating User Attributes for {} in {}: {}", userName, userPoolId, attributes);
+        Deadline deadline = Deadline.current();
+        return attempt(() -> adminUpdateUserAttributesBody(userPoolId, userName, attributes))
+                   .map(body -> buildSignedRequest(ADMIN_UPDATE_USER_ATTRIBUTES_TARGET, ADMIN_UPDATE_USER_ATTRIBUTES,
+                                                   body, deadline))
+                   .map(request -> httpClient.sendAsync(request, BodyHandlers.ofString()))
+                   .orElse(failure -> CompletableFuture.failedFuture(failure.getException()))
+                   .handle((response, exception) -> responseOrFailure(response, exception,
+                                                                      UPDATE_USER_ATTRIBUTES_FAILURE))
+                   .thenAccept(response -> verifySuccess(response, UPDATE_USER_ATTRIBUTES_FAILURE));
+    }
+
+    @Override
+    public CompletableFuture<ListUsersResult> listUsersAsync(String userPoolId, String paginationToken) {
+        Deadline deadline = Deadline.current();
+        return attempt(() -> listUsersBody(userPoolId, paginationToken))
+                   .map(body -> buildSignedRequest(LIST_USERS_TARGET, LIST_USERS, body, deadline))
+                   .map(request -> httpClient.sendAsync(request, BodyHandlers.ofString()))
+                   .orElse(failure -> CompletableFuture.failedFuture(failure.getException()))
+                   .handle((response, exception) -> responseOrFailure(response, exception, LIST_USERS_FAILURE))
+                   .thenApply(response -> verifySuccess(response, LIST_USERS_FAILURE))
+                   .thenApply(response -> attempt(() -> parseListUsersResult(response.body())).orElseThrow());
+    }
+
+    /**
+     * Writes the AdminUpdateUserAttributes request body.
+     *
+     * @param userPoolId userPoolId
+     * @param userName   userName
+     * @param attributes attributes
+     * @return the JSON body as UTF-8
+     * @throws IOException when the body cannot be written
+     */
+    public static byte[] adminUpdateUserAttributesBody(String userPoolId,
+                                                       String userName,
+                                                       List<AttributeType> attributes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField(USER_POOL_ID_FIELD, userPoolId);
+            generator.writeStringField(USERNAME_FIELD, userName);
+            generator.writeArrayFieldStart(USER_ATTRIBUTES_FIELD);
+            for (AttributeType attribute : attributes) {
+                generator.writeStartObject();
+                generator.writeStringField(NAME_FIELD, attribute.getName());
+                generator.writeStringField(VALUE_FIELD, attribute.getValue());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Writes the ListUsers request body.
+     *
+     * @param userPoolId      userPoolId
+     * @param paginationToken the token of the page, or {@code null} for the first page
+     * @return the JSON body as UTF-8
+     * @throws IOException when the body cannot be written
+     */
+    public static byte[] listUsersBody(String userPoolId, String paginationToken) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField(USER_POOL_ID_FIELD, userPoolId);
+            generator.writeNumberField(LIMIT_FIELD, PAGE_SIZE);
+            if (paginationToken != null) {
+                generator.writeStringField(PAGINATION_TOKEN_FIELD, paginationToken);
+            }
+            generator.writeEndObject();
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Reads the usernames, the attributes and the pagination token of a ListUsers response. The other fields of the
+     * users are not used by the handler and are skipped.
+     *
+     * @param body the JSON response body
+     * @return the page of users
+     * @throws IOException when the body is not JSON
+     */
+    public static ListUsersResult parseListUsersResult(String body) throws IOException {
+        JsonNode page = JSON_READER.readTree(body);
+        return new ListUsersResult().withUsers(elements(page.path(USERS_FIELD), HttpUserPoolClient::toUser))
+                   .withPaginationToken(page.path(PAGINATION_TOKEN_FIELD).textValue());
+    }
+
+    private static UserType toUser(JsonNode user) {
+        return new UserType().withUsername(user.path(USERNAME_FIELD).textValue())
+                   .withAttributes(elements(user.path(ATTRIBUTES_FIELD), HttpUserPoolClient::toAttribute));
+    }
+
+    private static AttributeType toAttribute(JsonNode attribute) {
+        return new AttributeType().withName(attribute.path(NAME_FIELD).textValue())
+                   .withValue(attribute.path(VALUE_FIELD).textValue());
+    }
+
+    private static <T> List<T> elements(JsonNode array, Function<JsonNode, T> mapper) {
+        return StreamSupport.stream(array.spliterator(), false).map(mapper).collect(Collectors.toList());
+    }
+
+    private HttpRequest buildSignedRequest(String target, String operation, byte[] body, Deadline deadline) {
+        Map<String, String> headers = Map.of(CONTENT_TYPE, AMZ_JSON, X_AMZ_TARGET, target);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(endpoint)
+                                          .timeout(deadline.timeoutFor(operation))
+                                          .POST(BodyPublishers.ofByteArray(body));
+        signer.sign(POST, endpoint, headers, body, credentials.get(), clock.instant())
+            .entrySet()
+            .stream()
+            .filter(header -> !SigV4Signer.HOST.equals(header.getKey()))
+            .forEach(header -> builder.header(header.getKey(), header.getValue()));
+        return builder.build();
+    }
+
+    private HttpResponse<String> responseOrFailure(HttpResponse<String> response, Throwable exception,
+                                                   String failureMessage) {
+        if (exception != null) {
+            Throwable cause = Futures.unwrap(exception);
+            logger.error(failureMessage, cause);
+            throw new BadGatewayException(failureMessage, cause);
+        }
+        return response;
+    }
+
+    private HttpResponse<String> verifySuccess(HttpResponse<String> response, String failureMessage) {
+        if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            String errorMessage = String.format(ERROR_MESSAGE_TEMPLATE, failureMessage,
+                                                response.statusCode(), response.body());
+            logger.error(errorMessage);
+            throw new BadGatewayException(errorMessage);
+        }
+        return response;
+    }
+}
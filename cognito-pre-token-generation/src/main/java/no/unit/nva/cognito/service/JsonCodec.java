@@ -0,0 +1,96 @@
+package no.unit.nva.cognito.service;
+
+import static nva.commons.core.attempt.Try.attempt;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+
+/**
+ * Reads and writes the JSON bodies of the user and customer services as bytes. Responses are received as a byte array
+ * and parsed by readers that are built once per type, so the body is neither decoded into a {@code String} nor parsed
+ * twice, and the readers do not look up their deserializers on every call. Requests are serialized straight to bytes.
+ * Error bodies are decoded only when they are logged.
+ */
+public class JsonCodec {
+
+    private final ObjectReader userReader;
+    private final ObjectReader customerReader;
+    private final ObjectWriter userWriter;
+    private final ObjectWriter writer;
+
+    /**
+     * Builds the readers and writers of the object mapper.
+     *
+     * @param objectMapper the object mapper whose configuration the readers and writers share
+     */
+    public JsonCodec(ObjectMapper objectMapper) {
+        this.userReader = objectMapper.readerFor(UserDto.class);
+        this.customerReader = objectMapper.readerFor(CustomerResponse.class);
+        this.userWriter = objectMapper.writerFor(UserDto.class);
+        this.writer = objectMapper.writer();
+    }
+
+    /**
+     * The body handler of every response, which keeps the body as the bytes that were received.
+     *
+     * @return the body handler
+     */
+    public static BodyHandler<byte[]> bodyHandler() {
+        return BodyHandlers.ofByteArray();
+    }
+
+    /**
+     * Decodes a body for an error message or a log entry.
+     *
+     * @param body the body, or {@code null} if the response has none
+     * @return the body as text
+     */
+    public static String text(byte[] body) {
+        return body == null ? null : new String(body, StandardCharsets.UTF_8);
+    }
+
+    public UserDto readUser(byte[] body) throws IOException {
+        return userReader.readValue(body);
+    }
+
+    public CustomerResponse readCustomer(byte[] body) throws IOException {
+        return customerReader.readValue(body);
+    }
+
+    public byte[] writeUser(UserDto user) throws JsonProcessingException {
+        return userWriter.writeValueAsBytes(user);
+    }
+
+    public byte[] writeCustomer(CustomerResponse customer) throws JsonProcessingException {
+        return writer.writeValueAsBytes(customer);
+    }
+
+    /**
+     * Serializes a user as a request body.
+     *
+     * @param user the user
+     * @return the body publisher
+     */
+    public BodyPublisher userBody(UserDto user) {
+        return attempt(() -> writeUser(user)).map(BodyPublishers::ofByteArray).orElseThrow();
+    }
+
+    /**
+     * Serializes any other request body.
+     *
+     * @param body the body
+     * @return the body publisher
+     */
+    public BodyPublisher body(Object body) {
+        return attempt(() -> writer.writeValueAsBytes(body)).map(BodyPublishers::ofByteArray).orElseThrow();
+    }
+}
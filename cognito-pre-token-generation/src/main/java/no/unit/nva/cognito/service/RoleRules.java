@@ -0,0 +1,221 @@
+package no.unit.nva.cognito.service;
+
+import static nva.commons.core.attempt.Try.attempt;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import no.unit.nva.cognito.model.Affiliation;
+import nva.commons.core.Environment;
+
+/**
+ * The rules that assign roles from the eduPersonAffiliation of a login. A rule gives a role to every login with one of
+ * the listed affiliations, for instance {@code Creator=staff|faculty}, and a customer can have its own rules that
+ * replace the default rules for its users. The rules are parsed once into an affiliation bitmask per role, the roles a
+ * login gets are evaluated as a role bitmask, and the resulting role set is memoized per distinct affiliation string,
+ * so that a login with a known affiliation allocates nothing here.
+ */
+public class RoleRules {
+
+    public static final String ROLE_RULES = "ROLE_RULES";
+    public static final String ROLE_RULES_BY_CUSTOMER = "ROLE_RULES_BY_CUSTOMER";
+    public static final String DEFAULT_ROLE_RULES = "Creator=staff|faculty";
+    public static final String RULE_SEPARATOR = ",";
+    public static final String ROLE_SEPARATOR = "=";
+    public static final String AFFILIATION_SEPARATOR = "|";
+    public static final String NO_AFFILIATION = "";
+    public static final int ROLE = 0;
+    public static final int AFFILIATIONS = 1;
+    public static final int MAX_ROLES = Long.SIZE;
+    public static final int MAX_MEMOIZED_AFFILIATIONS = 1000;
+    public static final String INVALID_RULE_ERROR_MESSAGE = "Role rules must look like Role=affiliation|affiliation: ";
+    public static final String UNKNOWN_AFFILIATION_ERROR_MESSAGE = "Unknown eduPersonAffiliation in role rules: ";
+    public static final String TOO_MANY_ROLES_ERROR_MESSAGE = "Role rules can assign at most " + MAX_ROLES + " roles";
+
+    private final List<String> roleNames;
+    private final RuleSet defaultRuleSet;
+    private final Map<String, RuleSet> ruleSetsByCustomer;
+    private final Map<Long, Set<String>> roleSets = new ConcurrentHashMap<>();
+
+    /**
+     * Parses the rules.
+     *
+     * @param defaultRules    the rules for users without customer rules, as comma separated
+     *                        {@code Role=affiliation|affiliation} entries
+     * @param rulesByCustomer the rules of customers that have their own, by customer id
+     */
+    public RoleRules(String defaultRules, Map<String, String> rulesByCustomer) {
+        Map<String, Integer> parsedDefaultRules = parseRules(defaultRules);
+        Map<String, Map<String, Integer>> parsedRulesByCustomer = rulesByCustomer.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, entry -> parseRules(entry.getValue())));
+        this.roleNames = allRoleNames(parsedDefaultRules, parsedRulesByCustomer.values());
+        this.defaultRuleSet = ruleSetOf(parsedDefaultRules);
+        this.ruleSetsByCustomer = parsedRulesByCustomer.entrySet().stream()
+            .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> ruleSetOf(entry.getValue())));
+    }
+
+    /**
+     * The rules the handler has always used, which give the Creator role to staff and faculty.
+     *
+     * @return the rules
+     */
+    public static RoleRules defaultRules() {
+        return new RoleRules(DEFAULT_ROLE_RULES, Collections.emptyMap());
+    }
+
+    /**
+     * Reads the rules from the environment. {@code ROLE_RULES} holds the default rules, and
+     * {@code ROLE_RULES_BY_CUSTOMER} holds a JSON object from customer id to the rules of the customer, in the same
+     * format. The rules are checked here, so that a mistake in them fails the cold start instead of a login.
+     *
+     * @param environment the environment
+     * @return the rules
+     */
+    public static RoleRules fromEnvironment(Environment environment) {
+        String defaultRules = environment.readEnvOpt(ROLE_RULES).orElse(DEFAULT_ROLE_RULES);
+        Map<String, String> rulesByCustomer = environment.readEnvOpt(ROLE_RULES_BY_CUSTOMER)
+                                                  .map(RoleRules::parseRulesByCustomer)
+                                                  .orElse(Collections.emptyMap());
+        return new RoleRules(defaultRules, rulesByCustomer);
+    }
+
+    /**
+     * Returns the roles a login gets from its affiliation.
+     *
+     * @param customerId  the customer of the user, or {@code null} if none
+     * @param affiliation the affiliation attribute of the login, or {@code null} if none
+     * @return the roles, as an unmodifiable set that is shared between logins
+     */
+    public Set<String> rolesFor(String customerId, String affiliation) {
+        RuleSet rules = ruleSetFor(customerId);
+        String key = affiliation == null ? NO_AFFILIATION : affiliation;
+        Set<String> roles = rules.memoizedRoles.get(key);
+        if (roles == null) {
+            roles = roleSets.computeIfAbsent(rules.evaluate(Affiliation.maskOf(affiliation)), this::roleSetOf);
+            if (rules.memoizedRoles.size() < MAX_MEMOIZED_AFFILIATIONS) {
+                rules.memoizedRoles.putIfAbsent(key, roles);
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Every role that the rules of the customer assign. These roles are removed from a user of the customer whose
+     * affiliation no longer gives them, while a role that only the rules of other customers assign is kept, since it
+     * was granted by hand.
+     *
+     * @param customerId the customer of the user, or {@code null} if none
+     * @return the roles
+     */
+    public Set<String> automaticallyAssignedRolesFor(String customerId) {
+        return ruleSetFor(customerId).automaticallyAssignedRoles;
+    }
+
+    private RuleSet ruleSetFor(String customerId) {
+        return customerId == null
+                   ? defaultRuleSet
+                   : ruleSetsByCustomer.getOrDefault(customerId, defaultRuleSet);
+    }
+
+    private RuleSet ruleSetOf(Map<String, Integer> affiliationsByRole) {
+        return new RuleSet(affiliationsByRole, roleNames);
+    }
+
+    private Set<String> roleSetOf(long roleMask) {
+        Set<String> roles = new LinkedHashSet<>();
+        for (int role = 0; role < roleNames.size(); role++) {
+            if ((roleMask & 1L << role) != 0) {
+                roles.add(roleNames.get(role));
+            }
+        }
+        return Set.copyOf(roles);
+    }
+
+    private static List<String> allRoleNames(Map<String, Integer> defaultRules,
+                                             Iterable<Map<String, Integer>> rulesByCustomer) {
+        Set<String> roleNames = new LinkedHashSet<>(defaultRules.keySet());
+        rulesByCustomer.forEach(rules -> roleNames.addAll(rules.keySet()));
+        if (roleNames.size() > MAX_ROLES) {
+            throw new IllegalArgumentException(TOO_MANY_ROLES_ERROR_MESSAGE);
+        }
+        return List.copyOf(roleNames);
+    }
+
+    private static Map<String, String> parseRulesByCustomer(String value) {
+        return attempt(() -> new ObjectMapper().readValue(value, new TypeReference<Map<String, String>>() {}))
+                   .orElseThrow();
+    }
+
+    private static Map<String, Integer> parseRules(String value) {
+        return Arrays.stream(value.split(RULE_SEPARATOR))
+                   .map(String::strip)
+                   .filter(rule -> !rule.isEmpty())
+                   .map(RoleRules::splitRule)
+                   .collect(Collectors.toMap(rule -> rule[ROLE].strip(),
+                                             RoleRules::affiliationMaskOf,
+                                             RoleRules::either,
+                                             LinkedHashMap::new));
+    }
+
+    private static String[] splitRule(String rule) {
+        String[] parts = rule.split(ROLE_SEPARATOR);
+        if (parts.length != 2 || parts[ROLE].isBlank()) {
+            throw new IllegalArgumentException(INVALID_RULE_ERROR_MESSAGE + rule);
+        }
+        return parts;
+    }
+
+    private static int affiliationMaskOf(String... rule) {
+        return parseAffiliations(rule[AFFILIATIONS]);
+    }
+
+    private static int either(int left, int right) {
+        return left | right;
+    }
+
+    private static int parseAffiliations(String affiliations) {
+        return Arrays.stream(affiliations.split(Pattern.quote(AFFILIATION_SEPARATOR)))
+                   .map(value -> Affiliation.fromValue(value)
+                                     .orElseThrow(() -> new IllegalArgumentException(
+                                         UNKNOWN_AFFILIATION_ERROR_MESSAGE + value)))
+                   .mapToInt(Affiliation::getMask)
+                   .reduce(Affiliation.NONE, RoleRules::either);
+    }
+
+    /**
+     * The rules of the default or of one customer, as the affiliation bitmask of every role, indexed like the role
+     * names, the roles the rules assign, and the roles of every affiliation string seen so far.
+     */
+    private static class RuleSet {
+
+        private final int[] affiliationMasks;
+        private final Set<String> automaticallyAssignedRoles;
+        private final Map<String, Set<String>> memoizedRoles = new ConcurrentHashMap<>();
+
+        public RuleSet(Map<String, Integer> affiliationsByRole, List<String> roleNames) {
+            List<Integer> masks = new ArrayList<>(roleNames.size());
+            roleNames.forEach(roleName -> masks.add(affiliationsByRole.getOrDefault(roleName, Affiliation.NONE)));
+            this.affiliationMasks = masks.stream().mapToInt(Integer::intValue).toArray();
+            this.automaticallyAssignedRoles = Set.copyOf(affiliationsByRole.keySet());
+        }
+
+        public long evaluate(int affiliationMask) {
+            long roleMask = 0L;
+            for (int role = 0; role < affiliationMasks.length; role++) {
+                if ((affiliationMasks[role] & affiliationMask) != 0) {
+                    roleMask |= 1L << role;
+                }
+            }
+            return roleMask;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package no.unit.nva.cognito.service;
+
+import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
+import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProviderClient;
+import com.amazonaws.services.cognitoidp.model.AdminUpdateUserAttributesRequest;
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.ListUsersRequest;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import no.unit.nva.cognito.util.BlockingCalls;
+import nva.commons.core.JacocoGenerated;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * User pool client backed by the AWS SDK. The SDK client is blocking, so its calls run on the supplied executor.
+ */
+public class SdkUserPoolClient implements UserPoolClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(SdkUserPoolClient.class);
+    private final AWSCognitoIdentityProvider awsCognitoIdentityProvider;
+    private final Executor executor;
+
+    public SdkUserPoolClient(AWSCognitoIdentityProvider awsCognitoIdentityProvider, Executor executor) {
+        this.awsCognitoIdentityProvider = awsCognitoIdentityProvider;
+        this.executor = executor;
+    }
+
+    @JacocoGenerated
+    public static SdkUserPoolClient defaultClient() {
+        return new SdkUserPoolClient(AWSCognitoIdentityProviderClient.builder().build(),
+                                     BlockingCalls.executor());
+    }
+
+    @Override
+    public CompletableFuture<Void> updateUserAttributesAsync(String userPoolId,
+                                                             String userName,
+                                                             List<AttributeType> attributes) {
+        return CompletableFuture.runAsync(() -> updateUserAttributes(userPoolId, userName, attributes), executor);
+    }
+
+    @Override
+    public CompletableFuture<ListUsersResult> listUsersAsync(String userPoolId, String paginationToken) {
+        ListUsersRequest request = new ListUsersRequest()
+                                       .withUserPoolId(userPoolId)
+                                       .withLimit(HttpUserPoolClient.PAGE_SIZE)
+                                       .withPaginationToken(paginationToken);
+        return CompletableFuture.supplyAsync(() -> awsCognitoIdentityProvider.listUsers(request), executor);
+    }
+
+    private void updateUserAttributes(String userPoolId, String userName, List<AttributeType> attributes) {
+        AdminUpdateUserAttributesRequest request = new AdminUpdateUserAttributesRequest()
+                                                       .withUserPoolId(userPoolId)
+                                                       .withUsername(userName)
+                                                       .withUserAttributes(attributes);
+        logger.info("Updating User Attributes: " + request.toString());
+        awsCognitoIdentityProvider.adminUpdateUserAttributes(request);
+    }
+}
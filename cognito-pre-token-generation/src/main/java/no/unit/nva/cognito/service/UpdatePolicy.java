@@ -0,0 +1,124 @@
+package no.unit.nva.cognito.service;
+
+import static nva.commons.core.attempt.Try.attempt;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import no.unit.nva.useraccessmanagement.model.UserDto.Builder;
+import nva.commons.core.attempt.Try;
+
+/**
+ * How a login updates a user that already exists in the user service. The names and the institution are replaced in
+ * every login. The automatically assigned roles are added when the affiliation gives them and removed when it no
+ * longer does, and every other role of the user is kept. The policy is sent along with an upsert, so that the user
+ * service can apply it to the stored user in the same request, and is applied here when the user service does not
+ * support upserts.
+ */
+public class UpdatePolicy {
+
+    private final String givenName;
+    private final String familyName;
+    private final String institution;
+    private final Set<String> assignedRoles;
+    private final Set<String> automaticallyAssignedRoles;
+
+    /**
+     * Creates a policy.
+     *
+     * @param givenName                  the given name of the user
+     * @param familyName                 the family name of the user
+     * @param institution                the customer the user belongs to, or {@code null} if none
+     * @param assignedRoles              the automatically assigned roles the affiliation gives the user
+     * @param automaticallyAssignedRoles every role the rules of the user's customer assign automatically
+     */
+    @JsonCreator
+    public UpdatePolicy(@JsonProperty("givenName") String givenName,
+                        @JsonProperty("familyName") String familyName,
+                        @JsonProperty("institution") String institution,
+                        @JsonProperty("assignedRoles") Set<String> assignedRoles,
+                        @JsonProperty("automaticallyAssignedRoles") Set<String> automaticallyAssignedRoles) {
+        this.givenName = givenName;
+        this.familyName = familyName;
+        this.institution = institution;
+        this.assignedRoles = Set.copyOf(assignedRoles);
+        this.automaticallyAssignedRoles = Set.copyOf(automaticallyAssignedRoles);
+    }
+
+    public String getGivenName() {
+        return givenName;
+    }
+
+    public String getFamilyName() {
+        return familyName;
+    }
+
+    public String getInstitution() {
+        return institution;
+    }
+
+    public Set<String> getAssignedRoles() {
+        return assignedRoles;
+    }
+
+    public Set<String> getAutomaticallyAssignedRoles() {
+        return automaticallyAssignedRoles;
+    }
+
+    /**
+     * Computes the user after the login, without writing it.
+     *
+     * @param existingUser the user as stored in the user service
+     * @return the updated user
+     */
+    public UserDto applyTo(UserDto existingUser) {
+        List<RoleDto> updatedRoles = updatedRoles(existingUser);
+        return Try.of(existingUser)
+                   .map(UserDto::copy)
+                   .map(builder -> builder.withGivenName(givenName)
+                                       .withFamilyName(familyName)
+                                       .withInstitution(institution)
+                                       .withRoles(updatedRoles))
+                   .map(Builder::build)
+                   .orElseThrow();
+    }
+
+    /**
+     * Adds the assigned roles the user does not have, removes the automatically assigned roles that are no longer
+     * assigned and keeps every other role. A user has a handful of roles, so they are scanned instead of indexed.
+     *
+     * @param existingUser the user as stored in the user service
+     * @return the updated roles
+     */
+    public List<RoleDto> updatedRoles(UserDto existingUser) {
+        List<RoleDto> existingRoles = existingUser.getRoles();
+        List<RoleDto> updatedRoles = new ArrayList<>(existingRoles.size() + assignedRoles.size());
+        for (RoleDto role : existingRoles) {
+            if (isRetained(role.getRoleName())) {
+                updatedRoles.add(role);
+            }
+        }
+        for (String roleName : assignedRoles) {
+            if (!hasRole(existingRoles, roleName)) {
+                updatedRoles.add(attempt(() -> RoleDto.newBuilder().withName(roleName).build()).orElseThrow());
+            }
+        }
+        return updatedRoles;
+    }
+
+    private boolean isRetained(String roleName) {
+        return assignedRoles.contains(roleName) || !automaticallyAssignedRoles.contains(roleName);
+    }
+
+    private static boolean hasRole(List<RoleDto> roles, String roleName) {
+        for (RoleDto role : roles) {
+            if (roleName.equals(role.getRoleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package no.unit.nva.cognito.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks whether the user service takes upserts. Upserts are turned off only after a number of answers in a row that
+ * say the endpoint is missing, so that one transient answer does not turn them off for the life of the container. An
+ * accepted upsert starts the count over.
+ */
+public class UpsertSupport {
+
+    private final int answersBeforeTurnedOff;
+    private final AtomicInteger upsertsUntilTurnedOff;
+
+    /**
+     * Creates the tracker of a user service.
+     *
+     * @param enabled                whether upserts are sent at all
+     * @param answersBeforeTurnedOff how many unsupported answers in a row turn upserts off
+     */
+    public UpsertSupport(boolean enabled, int answersBeforeTurnedOff) {
+        this.answersBeforeTurnedOff = answersBeforeTurnedOff;
+        this.upsertsUntilTurnedOff = new AtomicInteger(enabled ? answersBeforeTurnedOff : 0);
+    }
+
+    public boolean isEnabled() {
+        return upsertsUntilTurnedOff.get() > 0;
+    }
+
+    /**
+     * Records an upsert that was answered as unsupported.
+     *
+     * @return how many more such answers turn upserts off
+     */
+    public int notSupported() {
+        return Math.max(upsertsUntilTurnedOff.decrementAndGet(), 0);
+    }
+
+    public void supported() {
+        upsertsUntilTurnedOff.set(answersBeforeTurnedOff);
+    }
+}
@@ -1,8 +1,13 @@
 package no.unit.nva.cognito.service;
 
+import static nva.commons.core.attempt.Try.attempt;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.Futures;
 import no.unit.nva.useraccessmanagement.model.UserDto;
 
 public interface UserApi {
@@ -12,4 +17,92 @@ public interface UserApi {
     UserDto createUser(UserDto user);
 
     void updateUser(UserDto user) throws URISyntaxException, IOException,  InterruptedException;
+
+    default CompletableFuture<Optional<UserDto>> getUserAsync(String username) {
+        return Futures.completed(() -> getUser(username));
+    }
+
+    /**
+     * Updates the user without blocking the caller. Implementations without an asynchronous transport perform the
+     * synchronous update and return a completed future.
+     *
+     * @param user the updated user
+     * @return a future that completes when the user service has accepted the update
+     */
+    default CompletableFuture<Void> updateUserAsync(UserDto user) {
+        return attempt(() -> updateUserAndReturnNothing(user))
+                   .map(CompletableFuture::completedFuture)
+                   .orElse(failure -> CompletableFuture.failedFuture(failure.getException()));
+    }
+
+    /**
+     * Creates the user without blocking the caller. Implementations without an asynchronous transport perform the
+     * synchronous creation and return a completed future.
+     *
+     * @param user the new user
+     * @return a future with the user as stored
+     */
+    default CompletableFuture<UserDto> createUserAsync(UserDto user) {
+        return Futures.completed(() -> createUser(user));
+    }
+
+    /**
+     * Creates the user if it does not exist, and otherwise applies the update policy to the stored user, and returns
+     * the user as stored. This implementation looks the user up before writing it, and skips the write when the policy
+     * does not change the stored user. Implementations talking to a user service that supports conditional upserts
+     * send the user and the policy in a single request instead.
+     *
+     * @param user         the user to create if it does not exist
+     * @param updatePolicy how an existing user is updated
+     * @return a future with the user as stored after the upsert
+     */
+    default CompletableFuture<UserDto> upsertUser(UserDto user, UpdatePolicy updatePolicy) {
+        Deadline deadline = Deadline.current();
+        InvocationMetrics metrics = InvocationMetrics.current();
+        return getUserAsync(user.getUsername())
+                   .thenCompose(existingUser -> deadline.within(() -> existingUser
+                       .map(storedUser -> updateUserIfChanged(storedUser, updatePolicy.applyTo(storedUser), metrics))
+                       .orElseGet(() -> createUserAsync(user))));
+    }
+
+    /**
+     * Tells whether {@link #upsertUser(UserDto, UpdatePolicy)} sends a single request to the user service. When it
+     * does not, callers can look the user up and write it themselves, overlapping the calls with their other work.
+     *
+     * @return {@code true} if the user service upserts users in a single request
+     */
+    default boolean upsertsInOneRequest() {
+        return false;
+    }
+
+    /**
+     * Writes the updated user unless it does not differ from the stored one. The changed fields are logged before the
+     * write, and a skipped write is counted in the metrics of the invocation.
+     *
+     * @param storedUser  the user as stored in the user service
+     * @param updatedUser the user after the login
+     * @param metrics     the metrics of the invocation
+     * @return a future with the user as stored after the write
+     */
+    default CompletableFuture<UserDto> updateUserIfChanged(UserDto storedUser,
+                                                           UserDto updatedUser,
+                                                           InvocationMetrics metrics) {
+        return UserUpdates.updateIfChanged(this, storedUser, updatedUser, metrics);
+    }
+
+    /**
+     * Prepares the client for the first real request, for instance by opening the connection to the user service. The
+     * warm-up must not change any user.
+     *
+     * @return a future that completes when the client is warm
+     */
+    default CompletableFuture<Void> warmUp() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private Void updateUserAndReturnNothing(UserDto user) throws URISyntaxException, IOException,
+                                                                 InterruptedException {
+        updateUser(user);
+        return null;
+    }
 }
@@ -1,30 +1,31 @@
 package no.unit.nva.cognito.service;
 
-import static java.lang.System.currentTimeMillis;
 import static nva.commons.core.attempt.Try.attempt;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpRequest.BodyPublisher;
-import java.net.http.HttpRequest.BodyPublishers;
-import java.net.http.HttpRequest.Builder;
 import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.util.Optional;
-import java.util.concurrent.Callable;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.metrics.LatencyHistograms;
+import no.unit.nva.cognito.metrics.LatencySpan;
+import no.unit.nva.cognito.service.UserCache.CacheLookup;
+import no.unit.nva.cognito.service.UserCache.CachedUser;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.RequestHedger;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
 import no.unit.nva.useraccessmanagement.model.UserDto;
 import nva.commons.core.Environment;
 import nva.commons.core.JacocoGenerated;
 import nva.commons.core.attempt.Failure;
 import nva.commons.secrets.SecretsReader;
 import org.apache.http.HttpStatus;
-import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +38,8 @@ public class UserApiClient implements UserApi {
     public static final String USER_SERVICE_SECRET_NAME = "USER_SERVICE_SECRET_NAME";
     public static final String USER_SERVICE_SECRET_KEY = "USER_SERVICE_SECRET_KEY";
     public static final String AUTHORIZATION = "Authorization";
+    public static final String ETAG = "ETag";
+    public static final String IF_NONE_MATCH = "If-None-Match";
     public static final String DELIMITER = "/";
     public static final String USER_CANNOT_BE_PARSED_ERROR = "User cannot be parsed";
     public static final String COULD_NOT_FETCH_USER_ERROR_MESSAGE = "Could not fetch user: ";
@@ -45,142 +48,360 @@ public class UserApiClient implements UserApi {
     public static final String UPDATE_USER_FAILURE_RESPONSE_LOGGING =
         "Could not update user. User service response:{},{}";
     public static final String UPDATE_USER_FAILURE = "Could not update user";
+    public static final String REQUESTING_USER_MESSAGE = "Requesting user information for username: ";
+    public static final String USER_SERVICE_WARMED_UP = "Opened connection to the user service";
+    public static final String USER_SERVICE_REJECTED_CREDENTIALS =
+        "User service rejected the credentials with status {}. Retrying with fresh credentials";
+    public static final String GET_USER = "getUser";
+    public static final String CREATE_USER = "createUser";
+    public static final String UPDATE_USER = "updateUser";
+    public static final String UPSERT_USER = "upsertUser";
+    public static final String UPSERT = "upsert";
+    public static final String USER_FIELD = "user";
+    public static final String UPDATE_POLICY_FIELD = "updatePolicy";
+    public static final String COULD_NOT_UPSERT_USER_ERROR_MESSAGE = "Could not upsert user: ";
+    public static final String USER_SERVICE_UPSERT = "USER_SERVICE_UPSERT";
+    /**
+     * The answers of a user service without the upsert endpoint. API Gateway answers a route it does not know with
+     * {@code 403 Missing Authentication Token}, so a {@code 403} is only taken as a missing endpoint when the upsert
+     * has already been retried with a freshly fetched API key.
+     */
+    public static final Set<Integer> UPSERT_NOT_SUPPORTED_STATUS_CODES =
+        Set.of(HttpURLConnection.HTTP_FORBIDDEN, HttpURLConnection.HTTP_NOT_FOUND, HttpURLConnection.HTTP_BAD_METHOD,
+               HttpURLConnection.HTTP_NOT_IMPLEMENTED);
+    /**
+     * How many upserts in a row must be answered as unsupported before upserts are turned off for the container, so
+     * that one transient answer does not turn them off.
+     */
+    public static final int UPSERT_NOT_SUPPORTED_ANSWERS = 3;
+    public static final String UPSERT_NOT_SUPPORTED = "User service did not accept the upsert (status {}), looking the "
+                                                      + "user up before writing it ({} more before upserts are off)";
     private static final Logger logger = LoggerFactory.getLogger(UserApiClient.class);
-    private final ObjectMapper objectMapper;
+    private final JsonCodec codec;
     private final HttpClient httpClient;
-    private final SecretsReader secretsReader;
-    private final String userServiceSecretName;
-    private final String userServiceSecretKey;
-    private final String userApiScheme;
-    private final String userApiHost;
+    private final UserServiceApiKeyProvider apiKeyProvider;
+    private final UserServiceRequests requests;
+    private final LatencyHistograms latencyHistograms;
+    private final RequestHedger requestHedger;
+    private final UserCache userCache;
+    private final UpsertSupport upsertSupport;
 
     public UserApiClient(HttpClient httpClient,
                          ObjectMapper objectMapper,
                          SecretsReader secretsReader,
                          Environment environment) {
+        this(httpClient, objectMapper, UserServiceApiKeyProvider.fromEnvironment(secretsReader, environment),
+             environment);
+    }
+
+    /**
+     * Creates a client that authorizes its requests with the API key of the supplied provider.
+     *
+     * @param httpClient     http client
+     * @param objectMapper   object mapper
+     * @param apiKeyProvider provider of the user service API key
+     * @param environment    environment holding the user service location
+     */
+    public UserApiClient(HttpClient httpClient,
+                         ObjectMapper objectMapper,
+                         UserServiceApiKeyProvider apiKeyProvider,
+                         Environment environment) {
+        this(httpClient, objectMapper, apiKeyProvider, environment, UserCache.fromEnvironment(environment));
+    }
+
+    /**
+     * Creates a client that revalidates the users in the supplied cache instead of downloading them again.
+     *
+     * @param httpClient     http client
+     * @param objectMapper   object mapper
+     * @param apiKeyProvider provider of the user service API key
+     * @param environment    environment holding the user service location
+     * @param userCache      container-local cache of fetched users
+     */
+    public UserApiClient(HttpClient httpClient,
+                         ObjectMapper objectMapper,
+                         UserServiceApiKeyProvider apiKeyProvider,
+                         Environment environment,
+                         UserCache userCache) {
         this.httpClient = httpClient;
-        this.objectMapper = objectMapper;
-        this.secretsReader = secretsReader;
-        this.userApiScheme = environment.readEnv(USER_API_SCHEME);
-        this.userApiHost = environment.readEnv(USER_API_HOST);
-        this.userServiceSecretName = environment.readEnv(USER_SERVICE_SECRET_NAME);
-        this.userServiceSecretKey = environment.readEnv(USER_SERVICE_SECRET_KEY);
+        this.codec = new JsonCodec(objectMapper);
+        this.apiKeyProvider = apiKeyProvider;
+        this.requests = new UserServiceRequests(codec, apiKeyProvider, environment.readEnv(USER_API_SCHEME),
+                                                environment.readEnv(USER_API_HOST));
+        this.latencyHistograms = LatencyHistograms.fromEnvironment(environment);
+        this.requestHedger = RequestHedger.fromEnvironment(environment, GET_USER, latencyHistograms);
+        this.userCache = userCache;
+        boolean upsert = environment.readEnvOpt(USER_SERVICE_UPSERT).map(Boolean::parseBoolean).orElse(false);
+        this.upsertSupport = new UpsertSupport(upsert, UPSERT_NOT_SUPPORTED_ANSWERS);
     }
 
+    /**
+     * Looks up a user, sharing the request with the concurrent lookups of the same user, for instance when Cognito
+     * retries a trigger that is still running.
+     *
+     * @param username the username
+     * @return the user, or empty if the user does not exist
+     */
     @Override
     public Optional<UserDto> getUser(String username) {
-        long start = currentTimeMillis();
-        logger.info("Requesting user information for username: " + username);
-        HttpResponse<String> response = fetchUserInformation(username);
-        if (responseIsSuccessful(response)) {
-            logger.info("getUser success took {} ms", currentTimeMillis() - start);
-            return Optional.of(tryParsingUser(response));
-        } else if (responseIsNotFound(response)) {
-            logger.info("getUser success took {} ms", currentTimeMillis() - start);
-            return Optional.empty();
-        } else {
-            logger.info("getUser failure took {} ms", currentTimeMillis() - start);
-            throw unexpectedException(response, COULD_NOT_FETCH_USER_ERROR_MESSAGE);
-        }
+        return Futures.join(userCache.lookup(username, () -> Futures.completed(() -> fetchUser(username))));
+    }
+
+    @Override
+    public CompletableFuture<Optional<UserDto>> getUserAsync(String username) {
+        return userCache.lookup(username, () -> fetchUserAsync(username, latencyHistograms, requestHedger));
     }
 
     @Override
     @JacocoGenerated
     public UserDto createUser(UserDto user) {
-        long start = currentTimeMillis();
         logger.info("Requesting user creation for username: " + user.getUsername());
+        userCache.invalidate(user.getUsername());
 
-        HttpResponse<String> createResponse = createNewUser(user);
+        Deadline deadline = Deadline.current();
+        HttpResponse<byte[]> createResponse = latencyHistograms.start(CREATE_USER)
+                                                  .time(() -> createNewUser(user, deadline));
         if (responseIsSuccessful(createResponse)) {
-            logger.info("createUser success took {} ms", currentTimeMillis() - start);
             return tryParsingUser(createResponse);
         } else {
-            logger.info("createUser failure took {} ms", currentTimeMillis() - start);
             throw unexpectedException(createResponse, COULD_NOT_CREATE_USER_ERROR_MESSAGE);
         }
     }
 
+    @Override
+    public CompletableFuture<UserDto> createUserAsync(UserDto user) {
+        logger.info("Requesting user creation for username: " + user.getUsername());
+        userCache.invalidate(user.getUsername());
+        Deadline deadline = Deadline.current();
+        LatencySpan span = latencyHistograms.start(CREATE_USER);
+        return attempt(requests::usersUri)
+                   .map(uri -> sendAuthorizedRequestAsync(() -> requests.createUser(uri, user, deadline)))
+                   .orElse(failure -> CompletableFuture.failedFuture(failure.getException()))
+                   .whenComplete(span::end)
+                   .handle((response, exception) -> responseOrFailure(response, exception,
+                                                                      COULD_NOT_CREATE_USER_ERROR_MESSAGE))
+                   .thenApply(response -> userFromSuccessfulResponse(response, COULD_NOT_CREATE_USER_ERROR_MESSAGE));
+    }
+
+    /**
+     * Sends the user and the update policy to the upsert endpoint of the user, which creates the user or applies the
+     * policy to the stored user and answers with the user as stored, in a single round trip. Upserts are only sent when
+     * {@code USER_SERVICE_UPSERT} is {@code true}, and otherwise the user is looked up before it is written. The upsert
+     * is sent once, without the retry with a fresh API key, and when the user service answers that it does not
+     * support upserts, the client falls back to looking the user up before writing it, for this and every later
+     * upsert.
+     *
+     * @param user         the user to create if it does not exist
+     * @param updatePolicy how an existing user is updated
+     * @return a future with the user as stored after the upsert
+     */
+    @Override
+    public CompletableFuture<UserDto> upsertUser(UserDto user, UpdatePolicy updatePolicy) {
+        if (!upsertsInOneRequest()) {
+            return UserApi.super.upsertUser(user, updatePolicy);
+        }
+        logger.info("Requesting user upsert for username: " + user.getUsername());
+        userCache.invalidate(user.getUsername());
+        Deadline deadline = Deadline.current();
+        LatencySpan span = latencyHistograms.start(UPSERT_USER);
+        return attempt(() -> requests.userUri(user.getUsername(), UPSERT))
+                   .map(uri -> sendAuthorizedRequestAsync(
+                       () -> requests.upsertUser(uri, user, updatePolicy, deadline)))
+                   .orElse(failure -> CompletableFuture.failedFuture(failure.getException()))
+                   .whenComplete(span::end)
+                   .handle((response, exception) -> responseOrFailure(response, exception,
+                                                                      COULD_NOT_UPSERT_USER_ERROR_MESSAGE))
+                   .thenCompose(response -> storedUserOrFallback(response, user, updatePolicy, deadline));
+    }
+
+    @Override
+    public boolean upsertsInOneRequest() {
+        return upsertSupport.isEnabled();
+    }
+
     @Override
     public void updateUser(UserDto user) throws IOException, InterruptedException {
-        HttpRequest request = updateUserRequest(user);
-        HttpResponse<String> response = sendHttpRequest(request);
+        userCache.invalidate(user.getUsername());
+        Deadline deadline = Deadline.current();
+        LatencySpan span = latencyHistograms.start(UPDATE_USER);
+        HttpResponse<byte[]> response;
+        try {
+            response = sendAuthorizedRequest(() -> requests.updateUser(user, deadline));
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            span.end(null, e);
+            throw e;
+        }
+        span.end(response, null);
+        verifyUserWasUpdated(response);
+    }
 
+    @Override
+    public CompletableFuture<Void> updateUserAsync(UserDto user) {
+        logger.info("Requesting user update for username: " + user.getUsername());
+        userCache.invalidate(user.getUsername());
+        Deadline deadline = Deadline.current();
+        LatencySpan span = latencyHistograms.start(UPDATE_USER);
+        return sendAuthorizedRequestAsync(() -> requests.updateUser(user, deadline))
+                   .whenComplete(span::end)
+                   .handle((response, exception) -> responseOrFailure(response, exception, UPDATE_USER_FAILURE))
+                   .thenAccept(this::verifyUserWasUpdated);
+    }
+
+    /**
+     * Writes and parses a sample user with the client's codec and looks up the sample user, which does not exist. This
+     * opens the pooled connection to the user service and fetches the API key without changing any user. The lookup
+     * bypasses the cache, and is neither recorded in the latency histograms nor hedged, so that the time it takes to
+     * open the connection does not count towards the hedge delay.
+     *
+     * @return a future that completes when the lookup has completed
+     */
+    @Override
+    public CompletableFuture<Void> warmUp() {
+        return attempt(WarmUpSamples::sampleUser)
+                   .map(codec::writeUser)
+                   .map(codec::readUser)
+                   .map(user -> fetchUserAsync(user.getUsername(), LatencyHistograms.discarding(),
+                                               RequestHedger.disabled(GET_USER)))
+                   .orElse(failure -> CompletableFuture.failedFuture(failure.getException()))
+                   .thenRun(() -> logger.info(USER_SERVICE_WARMED_UP));
+    }
+
+    public UserCache getUserCache() {
+        return userCache;
+    }
+
+    public LatencyHistograms getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    private CacheLookup fetchUser(String username) {
+        logger.info(REQUESTING_USER_MESSAGE + username);
+        Deadline deadline = Deadline.current();
+        Optional<CachedUser> cachedUser = userCache.get(username);
+        HttpResponse<byte[]> response = latencyHistograms.start(GET_USER)
+                                            .time(() -> fetchUserInformation(username, cachedUser, deadline));
+        return userFromGetResponse(username, cachedUser, response);
+    }
+
+    private CompletableFuture<CacheLookup> fetchUserAsync(String username,
+                                                         LatencyHistograms histograms,
+                                                         RequestHedger hedger) {
+        logger.info(REQUESTING_USER_MESSAGE + username);
+        Deadline deadline = Deadline.current();
+        Optional<CachedUser> cachedUser = userCache.get(username);
+        LatencySpan span = histograms.start(GET_USER);
+        return attempt(() -> requests.userUri(username))
+                   .map(uri -> hedger.send(
+                       () -> sendAuthorizedRequestAsync(() -> requests.getUser(uri, cachedUser, deadline))))
+                   .orElse(failure -> CompletableFuture.failedFuture(failure.getException()))
+                   .whenComplete(span::end)
+                   .handle((response, exception) -> responseOrFailure(response, exception,
+                                                                      COULD_NOT_FETCH_USER_ERROR_MESSAGE))
+                   .thenApply(response -> userFromGetResponse(username, cachedUser, response));
+    }
+
+    private void verifyUserWasUpdated(HttpResponse<byte[]> response) {
         if (HttpURLConnection.HTTP_ACCEPTED != response.statusCode()) {
             logFailedResponseError(response);
             throw new BadGatewayException(UPDATE_USER_FAILURE);
         }
     }
 
-    private HttpRequest updateUserRequest(UserDto user) {
-        return attempt(() -> formUri(user.getUsername()))
-                   .map(HttpRequest::newBuilder)
-                   .map(builder -> builder.PUT(userAsRequestBody(user)))
-                   .map(this::authorizationHeader)
-                   .map(Builder::build)
-                   .orElseThrow();
+    private CompletableFuture<UserDto> storedUserOrFallback(HttpResponse<byte[]> response,
+                                                            UserDto user,
+                                                            UpdatePolicy updatePolicy,
+                                                            Deadline deadline) {
+        if (UPSERT_NOT_SUPPORTED_STATUS_CODES.contains(response.statusCode())) {
+            logger.warn(UPSERT_NOT_SUPPORTED, response.statusCode(), upsertSupport.notSupported());
+            return deadline.within(() -> UserApi.super.upsertUser(user, updatePolicy));
+        }
+        upsertSupport.supported();
+        return CompletableFuture.completedFuture(userFromSuccessfulResponse(response,
+                                                                            COULD_NOT_UPSERT_USER_ERROR_MESSAGE));
     }
 
-    private void logFailedResponseError(HttpResponse<String> response) {
-        logger.error(UPDATE_USER_FAILURE_RESPONSE_LOGGING, response.statusCode(), response.body());
+    private UserDto userFromSuccessfulResponse(HttpResponse<byte[]> response, String errorPrefix) {
+        if (responseIsSuccessful(response) || response.statusCode() == HttpURLConnection.HTTP_CREATED) {
+            return tryParsingUser(response);
+        }
+        throw unexpectedException(response, errorPrefix);
     }
 
-    private BadGatewayException handleFailure(Failure<HttpResponse<String>> failure, String errorMessage) {
-        logger.error(errorMessage, failure.getException());
-        return new BadGatewayException(errorMessage, failure.getException());
+    /**
+     * Reads the user from a lookup. A user that has not been modified since it was cached is reused, and a user sent
+     * in full is cached with its entity tag.
+     */
+    private CacheLookup userFromGetResponse(String username,
+                                            Optional<CachedUser> cachedUser,
+                                            HttpResponse<byte[]> response) {
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED && cachedUser.isPresent()) {
+            return userCache.reuse(username, cachedUser.get());
+        } else if (responseIsSuccessful(response)) {
+            return userCache.store(username, response.headers().firstValue(ETAG), tryParsingUser(response));
+        } else if (responseIsNotFound(response)) {
+            userCache.invalidate(username);
+            return CacheLookup.NOT_FOUND;
+        } else {
+            throw unexpectedException(response, COULD_NOT_FETCH_USER_ERROR_MESSAGE);
+        }
     }
 
-    private Builder authorizationHeader(Builder builder) {
-        String userServiceCredentials = fetchUserServiceCredentials();
-        return builder.header(AUTHORIZATION, userServiceCredentials);
+    private void logFailedResponseError(HttpResponse<byte[]> response) {
+        logger.error(UPDATE_USER_FAILURE_RESPONSE_LOGGING, response.statusCode(), JsonCodec.text(response.body()));
     }
 
-    private String fetchUserServiceCredentials() {
-        logger.info("userServiceSecretName:" + userServiceSecretName);
-        logger.info("userServiceSecretKey:" + userServiceSecretKey);
-        return attempt(() -> secretsReader.fetchSecret(userServiceSecretName, userServiceSecretKey)).orElseThrow();
+    private BadGatewayException handleFailure(Failure<HttpResponse<byte[]>> failure, String errorMessage) {
+        logger.error(errorMessage, failure.getException());
+        return new BadGatewayException(errorMessage, failure.getException());
     }
 
-    private BodyPublisher userAsRequestBody(UserDto user) {
-        return attempt(() -> objectMapper.writeValueAsString(user))
-                   .map(BodyPublishers::ofString)
-                   .orElseThrow();
+    private HttpResponse<byte[]> responseOrFailure(HttpResponse<byte[]> response,
+                                                   Throwable exception,
+                                                   String errorMessage) {
+        if (exception != null) {
+            Throwable cause = Futures.unwrap(exception);
+            logger.error(errorMessage, cause);
+            throw new BadGatewayException(errorMessage, cause);
+        }
+        return response;
     }
 
-    private RuntimeException unexpectedException(HttpResponse<String> response, String errorPrefix) {
+    private RuntimeException unexpectedException(HttpResponse<byte[]> response, String errorPrefix) {
         String errorMessage = formatErrorMessageForFailedResponse(response, errorPrefix);
         logger.error(errorMessage);
         return new BadGatewayException(errorMessage);
     }
 
-    private String formatErrorMessageForFailedResponse(HttpResponse<String> response, String errorPrefix) {
-        return String.format(ERROR_MESSAGE_TEMPLATE, errorPrefix, response.statusCode(), response.body());
+    private String formatErrorMessageForFailedResponse(HttpResponse<byte[]> response, String errorPrefix) {
+        return String.format(ERROR_MESSAGE_TEMPLATE, errorPrefix, response.statusCode(),
+                             JsonCodec.text(response.body()));
     }
 
-    private boolean responseIsNotFound(HttpResponse<String> response) {
+    private boolean responseIsNotFound(HttpResponse<byte[]> response) {
         return response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND;
     }
 
-    private HttpResponse<String> createNewUser(UserDto user) {
+    private HttpResponse<byte[]> createNewUser(UserDto user, Deadline deadline) {
         return
-            attempt((Callable<URI>) this::formUri)
-                .map(uri -> buildCreateUserRequest(uri, user))
-                .map(this::sendHttpRequest)
+            attempt(requests::usersUri)
+                .map(uri -> sendAuthorizedRequest(() -> requests.createUser(uri, user, deadline)))
                 .orElseThrow(fail -> handleFailure(fail, COULD_NOT_CREATE_USER_ERROR_MESSAGE));
     }
 
-    private HttpResponse<String> fetchUserInformation(String username) {
-        return attempt(() -> formUri(username))
-                   .map(this::buildGetUserRequest)
-                   .map(this::sendHttpRequest)
+    private HttpResponse<byte[]> fetchUserInformation(String username,
+                                                      Optional<CachedUser> cachedUser,
+                                                      Deadline deadline) {
+        return attempt(() -> requests.userUri(username))
+                   .map(uri -> sendAuthorizedRequest(() -> requests.getUser(uri, cachedUser, deadline)))
                    .orElseThrow(fail -> handleFailure(fail, COULD_NOT_FETCH_USER_ERROR_MESSAGE));
     }
 
-    private UserDto tryParsingUser(HttpResponse<String> response) {
+    private UserDto tryParsingUser(HttpResponse<byte[]> response) {
         return attempt(() -> parseUser(response))
                    .orElseThrow(this::logErrorParsingUserInformation);
     }
 
-    private boolean responseIsSuccessful(HttpResponse<String> response) {
+    private boolean responseIsSuccessful(HttpResponse<byte[]> response) {
         return response.statusCode() == HttpStatus.SC_OK;
     }
 
@@ -189,49 +410,63 @@ public class UserApiClient implements UserApi {
         return new IllegalStateException(USER_CANNOT_BE_PARSED_ERROR);
     }
 
-    private UserDto parseUser(HttpResponse<String> response)
-        throws JsonProcessingException {
-        return objectMapper.readValue(response.body(), UserDto.class);
+    private UserDto parseUser(HttpResponse<byte[]> response) throws IOException {
+        return codec.readUser(response.body());
     }
 
-    private HttpResponse<String> sendHttpRequest(HttpRequest httpRequest) throws IOException, InterruptedException {
-        return httpClient.send(httpRequest, BodyHandlers.ofString());
+    /**
+     * Sends a request built with the cached API key. If the user service rejects the key, the key is dropped and the
+     * request is rebuilt with a freshly fetched key and sent once more.
+     *
+     * @param request builds the request, including the authorization header
+     * @return the response
+     */
+    private HttpResponse<byte[]> sendAuthorizedRequest(Supplier<HttpRequest> request)
+        throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = sendHttpRequest(request.get());
+        if (responseIsAuthorizationFailure(response)) {
+            apiKeyProvider.invalidate();
+            return sendHttpRequest(request.get());
+        }
+        return response;
     }
 
-    private URI formUri(String username) throws URISyntaxException {
-        URI uri = new URIBuilder()
-                      .setScheme(userApiScheme)
-                      .setHost(userApiHost)
-                      .setPath(String.join(DELIMITER, PATH, username))
-                      .build();
-        logger.info("GET UserUri:" + uri.toString());
-        return uri;
+    /**
+     * Sends a request once the API key is at hand. A key that has to be fetched, such as the fresh key of a retry, is
+     * fetched on the executor for blocking calls rather than on the thread that completed the previous response.
+     *
+     * @param request builds the request, including the authorization header
+     * @return the response
+     */
+    private CompletableFuture<HttpResponse<byte[]>> sendAuthorizedRequestAsync(Supplier<HttpRequest> request) {
+        return apiKeyProvider.getApiKeyAsync()
+                   .thenCompose(apiKey -> sendHttpRequestAsync(request.get()))
+                   .thenCompose(response -> retryWithFreshApiKeyIfRejected(response, request));
     }
 
-    private URI formUri() throws URISyntaxException {
-        URI uri = new URIBuilder()
-                      .setScheme(userApiScheme)
-                      .setHost(userApiHost)
-                      .setPath(PATH)
-                      .build();
-        logger.info("POST UserUri:" + uri.toString());
-        return uri;
+    private CompletableFuture<HttpResponse<byte[]>> retryWithFreshApiKeyIfRejected(HttpResponse<byte[]> response,
+                                                                                    Supplier<HttpRequest> request) {
+        if (responseIsAuthorizationFailure(response)) {
+            apiKeyProvider.invalidate();
+            return apiKeyProvider.getApiKeyAsync().thenCompose(apiKey -> sendHttpRequestAsync(request.get()));
+        }
+        return CompletableFuture.completedFuture(response);
+    }
+
+    private boolean responseIsAuthorizationFailure(HttpResponse<byte[]> response) {
+        int statusCode = response.statusCode();
+        if (statusCode == HttpURLConnection.HTTP_UNAUTHORIZED || statusCode == HttpURLConnection.HTTP_FORBIDDEN) {
+            logger.warn(USER_SERVICE_REJECTED_CREDENTIALS, statusCode);
+            return true;
+        }
+        return false;
     }
 
-    private HttpRequest buildGetUserRequest(URI uri) {
-        return Optional.of(HttpRequest.newBuilder())
-                   .map(builder -> builder.uri(uri))
-                   .map(this::authorizationHeader)
-                   .map(Builder::GET)
-                   .map(Builder::build)
-                   .orElseThrow();
+    private HttpResponse<byte[]> sendHttpRequest(HttpRequest httpRequest) throws IOException, InterruptedException {
+        return httpClient.send(httpRequest, JsonCodec.bodyHandler());
     }
 
-    private HttpRequest buildCreateUserRequest(URI uri, UserDto user) {
-        return Optional.of(HttpRequest.newBuilder(uri))
-                   .map(this::authorizationHeader)
-                   .map(builder -> builder.POST(userAsRequestBody(user)))
-                   .map(Builder::build)
-                   .orElseThrow();
+    private CompletableFuture<HttpResponse<byte[]>> sendHttpRequestAsync(HttpRequest httpRequest) {
+        return httpClient.sendAsync(httpRequest, JsonCodec.bodyHandler());
     }
 }
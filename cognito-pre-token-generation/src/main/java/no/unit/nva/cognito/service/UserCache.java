@@ -0,0 +1,230 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_CACHE_HITS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_CACHE_MISSES;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.exception.DeadlineExceededException;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.SingleFlight;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import nva.commons.core.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Container-local cache of the users fetched from the user service, keyed by username. Each entry holds the parsed
+ * user and the entity tag the user service returned with it. A lookup sends the entity tag in {@code If-None-Match},
+ * and when the user service answers {@code 304 Not Modified} the cached user is reused instead of downloading and
+ * parsing the user again. Entries do not expire, because the user service validates them on every lookup, but an
+ * entry is dropped when this container writes the user. The cache is bounded and evicts the least recently used entry.
+ * Concurrent lookups of the same user share one request, and a lookup that is in flight when the user is written is
+ * not shared with later lookups. Each invocation that shares a lookup waits for it only until its own deadline, and
+ * has the cache hit or miss recorded in its own metrics.
+ */
+public class UserCache {
+
+    public static final String USER_CACHE_MAX_SIZE = "USER_CACHE_MAX_SIZE";
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final float LOAD_FACTOR = 0.75f;
+    public static final boolean ACCESS_ORDER = true;
+    public static final String LOOKUP_TIMED_OUT = "Could not fetch user within the deadline";
+    public static final String LOOKUP_DEADLINE_EXCEEDED = "The lookup of user %s did not complete within %d ms";
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    private final Map<String, CachedUser> entries;
+    private final Object lock = new Object();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final SingleFlight<String, CacheLookup> lookups = new SingleFlight<>();
+
+    public UserCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(maxSize, LOAD_FACTOR, ACCESS_ORDER) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Creates a cache configured from the environment, using the default size when the variable is not set.
+     *
+     * @param environment the environment
+     * @return a new cache
+     */
+    public static UserCache fromEnvironment(Environment environment) {
+        int maxSize = environment.readEnvOpt(USER_CACHE_MAX_SIZE)
+                          .map(Integer::parseInt)
+                          .orElse(DEFAULT_MAX_SIZE);
+        return new UserCache(maxSize);
+    }
+
+    /**
+     * Returns the cached user, whose entity tag is sent with the next lookup of the user.
+     *
+     * @param username the username
+     * @return the cached user, or empty if the user is not cached
+     */
+    public Optional<CachedUser> get(String username) {
+        synchronized (lock) {
+            return Optional.ofNullable(entries.get(username));
+        }
+    }
+
+    /**
+     * Looks up a user, or waits for the lookup of the user that is already in flight. The calling invocation waits
+     * until its own deadline, which fails its copy of the lookup as the client fails a request that exceeds the
+     * deadline, and not the shared lookup. The cache hit or miss is recorded in the metrics of the calling invocation.
+     *
+     * @param username the username
+     * @param lookup   sends the lookup
+     * @return a future with the user, or empty if the user does not exist
+     */
+    public CompletableFuture<Optional<UserDto>> lookup(String username,
+                                                       Supplier<CompletableFuture<CacheLookup>> lookup) {
+        long remainingMillis = Deadline.current().remaining().toMillis();
+        InvocationMetrics metrics = InvocationMetrics.current();
+        CompletableFuture<CacheLookup> copy = lookups.run(username, lookup);
+        if (!copy.isDone()) {
+            CompletableFuture.delayedExecutor(remainingMillis, TimeUnit.MILLISECONDS)
+                .execute(() -> copy.completeExceptionally(deadlineExceeded(username, remainingMillis)));
+        }
+        return copy.thenApply(result -> result.recordIn(metrics));
+    }
+
+    /**
+     * Reuses a cached user that the user service has reported as not modified.
+     *
+     * @param username   the username
+     * @param cachedUser the cached user whose entity tag was sent
+     * @return a cache hit with the cached user
+     */
+    public CacheLookup reuse(String username, CachedUser cachedUser) {
+        hits.incrementAndGet();
+        logger.info("User {} is not modified, reusing the cached user", username);
+        return new CacheLookup(cachedUser.getUser(), true);
+    }
+
+    /**
+     * Caches a user that the user service has sent in full. A user sent without an entity tag cannot be validated, so
+     * it replaces nothing and any cached entry is dropped.
+     *
+     * @param username  the username
+     * @param entityTag the entity tag of the response
+     * @param user      the parsed user
+     * @return a cache miss with the user
+     */
+    public CacheLookup store(String username, Optional<String> entityTag, UserDto user) {
+        misses.incrementAndGet();
+        synchronized (lock) {
+            if (entityTag.isPresent()) {
+                entries.put(username, new CachedUser(entityTag.get(), user));
+            } else {
+                entries.remove(username);
+            }
+        }
+        return new CacheLookup(user, false);
+    }
+
+    /**
+     * Drops the cached user and the lookup of the user in flight, after this container has written the user or the
+     * user service no longer has it.
+     *
+     * @param username the username
+     */
+    public void invalidate(String username) {
+        synchronized (lock) {
+            entries.remove(username);
+        }
+        lookups.forget(username);
+    }
+
+    private static BadGatewayException deadlineExceeded(String username, long remainingMillis) {
+        String message = String.format(LOOKUP_DEADLINE_EXCEEDED, username, remainingMillis);
+        return new BadGatewayException(LOOKUP_TIMED_OUT, new DeadlineExceededException(message));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public SingleFlight<String, CacheLookup> getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Number of cached users.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * A parsed user and the entity tag it was sent with.
+     */
+    public static class CachedUser {
+
+        private final String entityTag;
+        private final UserDto user;
+
+        public CachedUser(String entityTag, UserDto user) {
+            this.entityTag = entityTag;
+            this.user = user;
+        }
+
+        public String getEntityTag() {
+            return entityTag;
+        }
+
+        public UserDto getUser() {
+            return user;
+        }
+    }
+
+    /**
+     * The user a lookup found and whether it was a cache hit or miss. The outcome is recorded in the metrics of each
+     * invocation that shares the lookup, and a user that does not exist is neither.
+     */
+    public static final class CacheLookup {
+
+        public static final CacheLookup NOT_FOUND = new CacheLookup(null, false);
+
+        private final UserDto user;
+        private final boolean hit;
+
+        public CacheLookup(UserDto user, boolean hit) {
+            this.user = user;
+            this.hit = hit;
+        }
+
+        /**
+         * Records the cache hit or miss in the metrics of an invocation.
+         *
+         * @param metrics the metrics of the invocation
+         * @return the user, or empty if the user does not exist
+         */
+        public Optional<UserDto> recordIn(InvocationMetrics metrics) {
+            if (user != null) {
+                metrics.count(USER_CACHE_HITS, hit ? 1 : 0);
+                metrics.count(USER_CACHE_MISSES, hit ? 0 : 1);
+            }
+            return Optional.ofNullable(user);
+        }
+    }
+}
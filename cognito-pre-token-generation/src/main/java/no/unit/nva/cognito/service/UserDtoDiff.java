@@ -0,0 +1,65 @@
+package no.unit.nva.cognito.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+
+/**
+ * Semantic comparison of two versions of a user, limited to the fields that are sent to the user service on update.
+ * Roles are compared by name and their order is ignored. Access rights are not compared, since the user service
+ * derives them from the roles.
+ */
+public final class UserDtoDiff {
+
+    public static final String USERNAME = "username";
+    public static final String GIVEN_NAME = "givenName";
+    public static final String FAMILY_NAME = "familyName";
+    public static final String INSTITUTION = "institution";
+    public static final String ROLES = "roles";
+
+    private UserDtoDiff() {
+
+    }
+
+    /**
+     * Lists the fields that differ between the two users.
+     *
+     * @param existing the user as stored in the user service
+     * @param updated  the user as it would be written
+     * @return the names of the changed fields, empty if the users are equivalent
+     */
+    public static List<String> changedFields(UserDto existing, UserDto updated) {
+        List<String> changedFields = new ArrayList<>();
+        addIfChanged(changedFields, USERNAME, existing.getUsername(), updated.getUsername());
+        addIfChanged(changedFields, GIVEN_NAME, existing.getGivenName(), updated.getGivenName());
+        addIfChanged(changedFields, FAMILY_NAME, existing.getFamilyName(), updated.getFamilyName());
+        addIfChanged(changedFields, INSTITUTION, existing.getInstitution(), updated.getInstitution());
+        addIfChanged(changedFields, ROLES, roleNames(existing.getRoles()), roleNames(updated.getRoles()));
+        return Collections.unmodifiableList(changedFields);
+    }
+
+    public static boolean isUnchanged(UserDto existing, UserDto updated) {
+        return changedFields(existing, updated).isEmpty();
+    }
+
+    private static void addIfChanged(List<String> changedFields, String field, Object existing, Object updated) {
+        if (!Objects.equals(existing, updated)) {
+            changedFields.add(field);
+        }
+    }
+
+    private static Set<String> roleNames(Collection<RoleDto> roles) {
+        if (roles == null) {
+            return Collections.emptySet();
+        }
+        return roles.stream()
+                   .map(RoleDto::getRoleName)
+                   .collect(Collectors.toSet());
+    }
+}
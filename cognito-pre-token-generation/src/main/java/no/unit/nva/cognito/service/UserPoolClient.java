@@ -0,0 +1,33 @@
+package no.unit.nva.cognito.service;
+
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The Cognito user pool operations used by the handler.
+ */
+public interface UserPoolClient {
+
+    /**
+     * Adds or replaces attributes of a user in the user pool.
+     *
+     * @param userPoolId userPoolId
+     * @param userName   userName
+     * @param attributes attributes
+     * @return a future that completes when the attributes have been updated
+     */
+    CompletableFuture<Void> updateUserAttributesAsync(String userPoolId,
+                                                      String userName,
+                                                      List<AttributeType> attributes);
+
+    /**
+     * Lists a page of the users in the user pool, with their attributes.
+     *
+     * @param userPoolId      userPoolId
+     * @param paginationToken the token of the page, or {@code null} for the first page
+     * @return a future with the page, whose pagination token is {@code null} when it is the last page
+     */
+    CompletableFuture<ListUsersResult> listUsersAsync(String userPoolId, String paginationToken);
+}
@@ -2,124 +2,168 @@ package no.unit.nva.cognito.service;
 
 import static nva.commons.core.attempt.Try.attempt;
 import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
-import com.amazonaws.services.cognitoidp.model.AdminUpdateUserAttributesRequest;
 import com.amazonaws.services.cognitoidp.model.AttributeType;
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.util.Collection;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.util.BlockingCalls;
 import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
 import no.unit.nva.useraccessmanagement.model.RoleDto;
 import no.unit.nva.useraccessmanagement.model.UserDto;
-import no.unit.nva.useraccessmanagement.model.UserDto.Builder;
-import nva.commons.core.attempt.Try;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class UserService {
 
     public static final String USER = "User";
-    public static final String CREATOR = "Creator";
-    public static final String FACULTY = "faculty";
-    public static final String STAFF = "staff";
-    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
     private final UserApi userApi;
-    private final AWSCognitoIdentityProvider awsCognitoIdentityProvider;
+    private final UserPoolClient userPoolClient;
+    private final RoleRules roleRules;
 
     public UserService(UserApi userApi,
                        AWSCognitoIdentityProvider awsCognitoIdentityProvider) {
+        this(userApi, awsCognitoIdentityProvider, BlockingCalls.executor());
+    }
+
+    /**
+     * Creates a user service that updates the user pool with the AWS SDK, running the blocking calls on the supplied
+     * executor.
+     *
+     * @param userApi                    the user service client
+     * @param awsCognitoIdentityProvider the AWS SDK Cognito client
+     * @param executor                   executor for asynchronous user pool calls
+     */
+    public UserService(UserApi userApi,
+                       AWSCognitoIdentityProvider awsCognitoIdentityProvider,
+                       Executor executor) {
+        this(userApi, new SdkUserPoolClient(awsCognitoIdentityProvider, executor));
+    }
+
+    public UserService(UserApi userApi, UserPoolClient userPoolClient) {
+        this(userApi, userPoolClient, RoleRules.defaultRules());
+    }
+
+    /**
+     * Creates a user service that assigns roles with the supplied rules.
+     *
+     * @param userApi        the user service client
+     * @param userPoolClient the user pool client
+     * @param roleRules      the rules that assign roles from the affiliation of a login
+     */
+    public UserService(UserApi userApi, UserPoolClient userPoolClient, RoleRules roleRules) {
         this.userApi = userApi;
-        this.awsCognitoIdentityProvider = awsCognitoIdentityProvider;
+        this.userPoolClient = userPoolClient;
+        this.roleRules = roleRules;
+    }
+
+    public CompletableFuture<Void> warmUp() {
+        return userApi.warmUp();
     }
 
-    public Optional<UserDto> getUser(String feideId) {
-        return userApi.getUser(feideId);
+    public RoleRules getRoleRules() {
+        return roleRules;
     }
 
     /**
-     * Add attributes to user.
+     * Add attributes to user without blocking the caller.
      *
      * @param userPoolId userPoolId
      * @param userName   userName
      * @param attributes attributes
+     * @return a future that completes when the attributes have been updated
      */
-    public void updateUserAttributes(String userPoolId, String userName, List<AttributeType> attributes) {
-        AdminUpdateUserAttributesRequest request = new AdminUpdateUserAttributesRequest()
-                                                       .withUserPoolId(userPoolId)
-                                                       .withUsername(userName)
-                                                       .withUserAttributes(attributes);
-        logger.info("Updating User Attributes: " + request.toString());
-        awsCognitoIdentityProvider.adminUpdateUserAttributes(request);
+    public CompletableFuture<Void> updateUserAttributesAsync(String userPoolId,
+                                                             String userName,
+                                                             List<AttributeType> attributes) {
+        return userPoolClient.updateUserAttributesAsync(userPoolId, userName, attributes);
     }
 
-    public UserDto createUser(UserDetails userDetails) {
-        UserDto userInstance = createUserInstance(userDetails);
-        return userApi.createUser(userInstance);
+    /**
+     * Lists a page of the users in the user pool without blocking the caller.
+     *
+     * @param userPoolId      userPoolId
+     * @param paginationToken the token of the page, or {@code null} for the first page
+     * @return a future with the page
+     */
+    public CompletableFuture<ListUsersResult> listUsersAsync(String userPoolId, String paginationToken) {
+        return userPoolClient.listUsersAsync(userPoolId, paginationToken);
     }
 
-    public UserDto updateUser(UserDto existingUser, UserDetails detailsUpdate)
-        throws InterruptedException, IOException, URISyntaxException {
-        List<RoleDto> updatedRoles = updateRoles(existingUser, detailsUpdate);
-
-        UserDto updatedUser = Try.of(existingUser)
-                                  .map(UserDto::copy)
-                                  .map(copy -> detailsUpdatedInEveryLogin(copy, detailsUpdate))
-                                  .map(builder -> builder.withRoles(updatedRoles))
-                                  .map(Builder::build)
-                                  .orElseThrow();
-
-        userApi.updateUser(updatedUser);
-        return updatedUser;
+    /**
+     * Returns the user as a login with the details would store it, without writing it. A user that is not stored is
+     * created by its next login, so there is nothing to return for it.
+     *
+     * @param userDetails the details of the login
+     * @return a future with the stored user after the login, or empty if the user is not stored
+     */
+    public CompletableFuture<Optional<UserDto>> projectedUserAsync(UserDetails userDetails) {
+        UpdatePolicy updatePolicy = updatePolicy(userDetails);
+        return userApi.getUserAsync(userDetails.getFeideId())
+                   .thenApply(storedUser -> storedUser.map(updatePolicy::applyTo));
     }
 
-    private List<RoleDto> updateRoles(UserDto existingUser, UserDetails detailsUpdate) {
-        Set<String> automaticallyAssignedRolesForUser = createRolesFromAffiliation(detailsUpdate.getAffiliation());
-        Set<String> rolesToBeRemoved = rolesToBeRemovedFromUser(automaticallyAssignedRolesForUser);
-        Set<RoleDto> rolesToBeAdded = rolesToBeAddedToUser(existingUser, automaticallyAssignedRolesForUser);
-
-        List<RoleDto> rolesToBeRetained = rolesToBeRetained(existingUser.getRoles(), rolesToBeRemoved);
-
-        return Stream.concat(rolesToBeRetained.stream(), rolesToBeAdded.stream()).collect(Collectors.toList());
+    public CompletableFuture<Optional<UserDto>> getUserAsync(String feideId) {
+        return userApi.getUserAsync(feideId);
     }
 
-    private List<RoleDto> rolesToBeRetained(Collection<RoleDto> existingRoles, Set<String> rolesToBeRemoved) {
-        return existingRoles
-                   .stream()
-                   .filter(role -> !rolesToBeRemoved.contains(role.getRoleName()))
-                   .collect(Collectors.toList());
+    public CompletableFuture<UserDto> createUserAsync(UserDetails userDetails) {
+        return userApi.createUserAsync(createUserInstance(userDetails));
     }
 
-    private Set<String> rolesToBeRemovedFromUser(Set<String> automaticallyAssignedRolesToUser) {
-        Set<String> rolesToBeRemoved = new HashSet<>(allAutomaticallyAssignedRoles());
-        rolesToBeRemoved.removeAll(automaticallyAssignedRolesToUser);
-        return Collections.unmodifiableSet(rolesToBeRemoved);
+    /**
+     * Computes the user after the current login, without writing it.
+     *
+     * @param existingUser  the user as stored in the user service
+     * @param detailsUpdate the details from the current login
+     * @return the updated user
+     */
+    public UserDto prepareUpdate(UserDto existingUser, UserDetails detailsUpdate) {
+        return updatePolicy(detailsUpdate).applyTo(existingUser);
     }
 
-    private Set<RoleDto> rolesToBeAddedToUser(UserDto existingUser, Set<String> rolesAutomaticallyAssignedToUser) {
-        Set<String> rolesUserAlreadyHas = existingUser.getRoles()
-                                              .stream()
-                                              .map(RoleDto::getRoleName)
-                                              .collect(Collectors.toSet());
-
-        Set<String> rolesToBeAdded = new HashSet<>(rolesAutomaticallyAssignedToUser);
+    /**
+     * Writes an updated user to the user service. The write is skipped when the updated user does not differ from the
+     * stored one.
+     *
+     * @param existingUser the user as stored in the user service
+     * @param updatedUser  the user as computed by {@link #prepareUpdate(UserDto, UserDetails)}
+     * @return a future with the user as stored after the write
+     */
+    public CompletableFuture<UserDto> writeUpdateAsync(UserDto existingUser, UserDto updatedUser) {
+        return userApi.updateUserIfChanged(existingUser, updatedUser, InvocationMetrics.current());
+    }
 
-        rolesToBeAdded.removeAll(rolesUserAlreadyHas);
+    public boolean upsertsInOneRequest() {
+        return userApi.upsertsInOneRequest();
+    }
 
-        return rolesToBeAdded.stream()
-                   .map(attempt(name -> RoleDto.newBuilder().withName(name).build()))
-                   .map(Try::orElseThrow)
-                   .collect(Collectors.toSet());
+    /**
+     * Creates the user of the login, or applies the login to the stored user, and returns the user as stored.
+     *
+     * @param userDetails the details from the current login
+     * @return a future with the user as stored after the login
+     */
+    public CompletableFuture<UserDto> upsertUserAsync(UserDetails userDetails) {
+        return userApi.upsertUser(createUserInstance(userDetails), updatePolicy(userDetails));
     }
 
-    private Set<String> allAutomaticallyAssignedRoles() {
-        return Stream.of(CREATOR).collect(Collectors.toUnmodifiableSet());
+    /**
+     * Returns how the current login updates a user that already exists.
+     *
+     * @param detailsUpdate the details from the current login
+     * @return the update policy
+     */
+    public UpdatePolicy updatePolicy(UserDetails detailsUpdate) {
+        String customerId = detailsUpdate.getCustomerId().orElse(null);
+        return new UpdatePolicy(detailsUpdate.getGivenName(),
+                                detailsUpdate.getFamilyName(),
+                                customerId,
+                                rolesFromAffiliation(detailsUpdate),
+                                roleRules.automaticallyAssignedRolesFor(customerId));
     }
 
     private UserDto createUserInstance(UserDetails userDetails) {
@@ -139,11 +183,11 @@ public class UserService {
     }
 
     private UserDto createUserForInstitution(UserDetails userDetails) throws InvalidEntryInternalException {
-        List<RoleDto> roles = createRolesFromAffiliation(userDetails.getAffiliation()).stream()
-                                  .map(attempt(roleName -> RoleDto.newBuilder().withName(roleName).build()))
-                                  .map(Try::orElseThrow)
-                                  .collect(Collectors.toList());
-
+        Set<String> roleNames = rolesFromAffiliation(userDetails);
+        List<RoleDto> roles = new ArrayList<>(roleNames.size() + 1);
+        for (String roleName : roleNames) {
+            roles.add(RoleDto.newBuilder().withName(roleName).build());
+        }
         roles.add(RoleDto.newBuilder().withName(USER).build());
 
         UserDto.Builder userBuilder = detailsUpdatedInEveryLogin(UserDto.newBuilder(), userDetails)
@@ -160,21 +204,7 @@ public class UserService {
                    .withInstitution(userDetails.getCustomerId().orElse(null));
     }
 
-    /**
-     * Create user roles from users give affiliation at organization.
-     *
-     * @param affiliation affiliation
-     * @return list of roles
-     * @see <a href="https://www.feide.no/attribute/edupersonaffiliation">Feide eduPersonAffiliation</a>
-     */
-    private Set<String> createRolesFromAffiliation(final String affiliation) {
-        String lowerCaseAffiliation = affiliation.toLowerCase(Locale.getDefault());
-        Set<String> roles = new HashSet<>();
-
-        if (lowerCaseAffiliation.contains(STAFF) || lowerCaseAffiliation.contains(FACULTY)) {
-            roles.add(CREATOR);
-        }
-
-        return Collections.unmodifiableSet(roles);
+    private Set<String> rolesFromAffiliation(UserDetails userDetails) {
+        return roleRules.rolesFor(userDetails.getCustomerId().orElse(null), userDetails.getAffiliation());
     }
 }
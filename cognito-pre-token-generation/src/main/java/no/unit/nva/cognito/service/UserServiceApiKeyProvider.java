@@ -0,0 +1,167 @@
+package no.unit.nva.cognito.service;
+
+import static nva.commons.core.attempt.Try.attempt;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import no.unit.nva.cognito.util.BlockingCalls;
+import nva.commons.core.Environment;
+import nva.commons.secrets.SecretsReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the user service API key for the lifetime of the container. The key is fetched once and refreshed in the
+ * background when it approaches its TTL, so that requests never wait for Secrets Manager unless the key has expired or
+ * has been invalidated after the user service rejected it.
+ */
+public class UserServiceApiKeyProvider {
+
+    public static final String USER_SERVICE_SECRET_TTL_SECONDS = "USER_SERVICE_SECRET_TTL_SECONDS";
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(15);
+    public static final int REFRESH_AHEAD_PERCENTAGE = 80;
+    public static final int HUNDRED_PERCENT = 100;
+    public static final String BACKGROUND_REFRESH_FAILED = "Background refresh of user service credentials failed";
+    private static final Logger logger = LoggerFactory.getLogger(UserServiceApiKeyProvider.class);
+
+    private final Supplier<String> secretFetcher;
+    private final Duration ttl;
+    private final Duration refreshAfter;
+    private final Clock clock;
+    private final Executor executor;
+    private final AtomicReference<CachedApiKey> cachedApiKey = new AtomicReference<>();
+    private final AtomicBoolean refreshInProgress = new AtomicBoolean(false);
+    private final Object fetchLock = new Object();
+
+    public UserServiceApiKeyProvider(Supplier<String> secretFetcher, Duration ttl, Clock clock, Executor executor) {
+        this.secretFetcher = secretFetcher;
+        this.ttl = ttl;
+        this.refreshAfter = ttl.multipliedBy(REFRESH_AHEAD_PERCENTAGE).dividedBy(HUNDRED_PERCENT);
+        this.clock = clock;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a provider that reads the secret name, key and TTL from the environment.
+     *
+     * @param secretsReader the secrets reader
+     * @param environment   the environment
+     * @return a new provider
+     */
+    public static UserServiceApiKeyProvider fromEnvironment(SecretsReader secretsReader, Environment environment) {
+        String secretName = environment.readEnv(UserApiClient.USER_SERVICE_SECRET_NAME);
+        String secretKey = environment.readEnv(UserApiClient.USER_SERVICE_SECRET_KEY);
+        Duration ttl = environment.readEnvOpt(USER_SERVICE_SECRET_TTL_SECONDS)
+                           .map(Long::parseLong)
+                           .map(Duration::ofSeconds)
+                           .orElse(DEFAULT_TTL);
+        Supplier<String> secretFetcher = () -> {
+            logger.info("Fetching user service credentials from secret: " + secretName);
+            return attempt(() -> secretsReader.fetchSecret(secretName, secretKey)).orElseThrow();
+        };
+        return new UserServiceApiKeyProvider(secretFetcher, ttl, Clock.systemUTC(), BlockingCalls.executor());
+    }
+
+    /**
+     * Returns the API key. A missing or expired key is fetched synchronously, and a key that is about to expire is
+     * returned as is while a fresh one is fetched in the background.
+     *
+     * @return the API key
+     */
+    public String getApiKey() {
+        Instant now = clock.instant();
+        return validApiKey(now).orElseGet(() -> fetchIfStillMissing(now));
+    }
+
+    /**
+     * Returns the API key without blocking the calling thread. A missing or expired key is fetched on the executor,
+     * so that a request that is built on a thread of the common pool, such as a retry after the key was rejected or a
+     * hedged request, does not hold it while Secrets Manager answers.
+     *
+     * @return the API key, completed at once unless the key has to be fetched
+     */
+    public CompletableFuture<String> getApiKeyAsync() {
+        Instant now = clock.instant();
+        return validApiKey(now).map(CompletableFuture::completedFuture)
+                   .orElseGet(() -> CompletableFuture.supplyAsync(() -> fetchIfStillMissing(now), executor));
+    }
+
+    /**
+     * Drops the cached API key, so that the next request fetches it again. Used when the user service rejects the
+     * key, for instance after the secret has been rotated.
+     */
+    public void invalidate() {
+        logger.info("Invalidating cached user service credentials");
+        cachedApiKey.set(null);
+    }
+
+    private Optional<String> validApiKey(Instant now) {
+        CachedApiKey current = cachedApiKey.get();
+        if (current == null || current.isExpired(now)) {
+            return Optional.empty();
+        }
+        if (current.shouldBeRefreshed(now)) {
+            refreshInBackground();
+        }
+        return Optional.of(current.apiKey);
+    }
+
+    private String fetchIfStillMissing(Instant now) {
+        synchronized (fetchLock) {
+            CachedApiKey current = cachedApiKey.get();
+            if (current != null && !current.isExpired(now)) {
+                return current.apiKey;
+            }
+            return fetchAndStore().apiKey;
+        }
+    }
+
+    private CachedApiKey fetchAndStore() {
+        String apiKey = secretFetcher.get();
+        Instant fetchedAt = clock.instant();
+        CachedApiKey fresh = new CachedApiKey(apiKey, fetchedAt.plus(refreshAfter), fetchedAt.plus(ttl));
+        cachedApiKey.set(fresh);
+        return fresh;
+    }
+
+    private void refreshInBackground() {
+        if (refreshInProgress.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(this::fetchAndStore, executor)
+                .whenComplete((ignored, exception) -> finishRefresh(exception));
+        }
+    }
+
+    private void finishRefresh(Throwable exception) {
+        if (exception != null) {
+            logger.warn(BACKGROUND_REFRESH_FAILED, exception);
+        }
+        refreshInProgress.set(false);
+    }
+
+    private static class CachedApiKey {
+
+        private final String apiKey;
+        private final Instant refreshAt;
+        private final Instant expiresAt;
+
+        public CachedApiKey(String apiKey, Instant refreshAt, Instant expiresAt) {
+            this.apiKey = apiKey;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+
+        public boolean shouldBeRefreshed(Instant now) {
+            return !now.isBefore(refreshAt);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package no.unit.nva.cognito.service;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.DEGRADED;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.OUTCOME;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.model.ClaimsDeliveryMode;
+import no.unit.nva.cognito.model.UserAttributes;
+import no.unit.nva.cognito.model.UserClaims;
+import no.unit.nva.cognito.util.Futures;
+import nva.commons.core.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets logins of existing users succeed while the user service is slow or down. When the fallback is enabled, every
+ * user service call gets at most the fallback timeout. A user whose lookup, creation or upsert fails is issued the
+ * claims of their last login, and a user whose update fails is issued the updated claims. The last-known claims are
+ * kept in a bounded container-local cache that evicts the least recently used entry, and users who have not logged in
+ * since the container started get the claims the user pool holds from their last login. A login served this way is
+ * reported with the outcome {@link InvocationMetrics#DEGRADED}. The fallback is disabled unless
+ * {@code USER_SERVICE_FALLBACK} is {@code true}.
+ */
+public class UserServiceFallback {
+
+    public static final String USER_SERVICE_FALLBACK = "USER_SERVICE_FALLBACK";
+    public static final String USER_SERVICE_FALLBACK_TIMEOUT_MILLIS = "USER_SERVICE_FALLBACK_TIMEOUT_MILLIS";
+    public static final String LAST_KNOWN_CLAIMS_MAX_SIZE = "LAST_KNOWN_CLAIMS_MAX_SIZE";
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMillis(1500);
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+    public static final float LOAD_FACTOR = 0.75f;
+    public static final boolean ACCESS_ORDER = true;
+    public static final String USER_LOOKUP_FAILED = "The user service failed, issuing the last-known claims";
+    public static final String USER_UPDATE_FAILED = "Updating the user failed, issuing the updated claims";
+    private static final Logger logger = LoggerFactory.getLogger(UserServiceFallback.class);
+
+    private final boolean enabled;
+    private final Duration timeout;
+    private final Map<String, Map<String, String>> claimsByFeideId;
+    private final Object lock = new Object();
+
+    public UserServiceFallback(boolean enabled, Duration timeout, int maxSize) {
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.claimsByFeideId = new LinkedHashMap<>(maxSize, LOAD_FACTOR, ACCESS_ORDER) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * A fallback that is never used, so that every failure of the user service fails the login.
+     *
+     * @return the fallback
+     */
+    public static UserServiceFallback disabled() {
+        return new UserServiceFallback(false, DEFAULT_TIMEOUT, 0);
+    }
+
+    /**
+     * Creates a fallback configured from the environment, using the defaults for variables that are not set.
+     *
+     * @param environment the environment
+     * @return the fallback
+     */
+    public static UserServiceFallback fromEnvironment(Environment environment) {
+        boolean enabled = environment.readEnvOpt(USER_SERVICE_FALLBACK)
+                              .map(Boolean::parseBoolean)
+                              .orElse(false);
+        Duration timeout = environment.readEnvOpt(USER_SERVICE_FALLBACK_TIMEOUT_MILLIS)
+                               .map(Long::parseLong)
+                               .map(Duration::ofMillis)
+                               .orElse(DEFAULT_TIMEOUT);
+        int maxSize = environment.readEnvOpt(LAST_KNOWN_CLAIMS_MAX_SIZE)
+                          .map(Integer::parseInt)
+                          .orElse(DEFAULT_MAX_SIZE);
+        return new UserServiceFallback(enabled, timeout, maxSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Fails a call to the user service with a {@link java.util.concurrent.TimeoutException} when it has not completed
+     * within the fallback timeout. The call is returned unchanged when the fallback is disabled.
+     *
+     * @param call the call
+     * @param <T>  the result type of the call
+     * @return the call, bounded by the fallback timeout
+     */
+    public <T> CompletableFuture<T> bound(CompletableFuture<T> call) {
+        return enabled ? call.orTimeout(timeout.toMillis(), MILLISECONDS) : call;
+    }
+
+    /**
+     * Lets a login succeed although the user service write fails, when the fallback is enabled. The write is bounded
+     * by the fallback timeout, and a failure is logged and reported as {@link InvocationMetrics#DEGRADED} instead of
+     * failing the login. The write is returned unchanged when the fallback is disabled.
+     *
+     * @param write   the write
+     * @param metrics the metrics of the invocation
+     * @param <T>     the result type of the write
+     * @return the write, completing normally with {@code null} if it failed
+     */
+    public <T> CompletableFuture<T> tolerateFailure(CompletableFuture<T> write, InvocationMetrics metrics) {
+        return enabled
+                   ? bound(write).exceptionally(exception -> {
+                       degrade(metrics, USER_UPDATE_FAILED, exception);
+                       return null;
+                   })
+                   : write;
+    }
+
+    /**
+     * Logs why a login is degraded and reports its outcome as {@link InvocationMetrics#DEGRADED}.
+     *
+     * @param metrics   the metrics of the invocation
+     * @param message   the reason
+     * @param exception the failure of the user service
+     */
+    public void degrade(InvocationMetrics metrics, String message, Throwable exception) {
+        logger.warn(message, Futures.unwrap(exception));
+        metrics.dimension(OUTCOME, DEGRADED);
+    }
+
+    /**
+     * Issues the claims of a login once its call to the user service has completed. When the call failed, an existing
+     * user is served without the user service, with their last-known claims, and nothing is written. The last-known
+     * claims are returned only when the delivery mode returns claims, otherwise the token is issued with the
+     * attributes already in the user pool.
+     *
+     * @param userServiceCall    the call to the user service
+     * @param issueClaims        issues the claims of the login from the result of the call
+     * @param userAttributes     the user attributes of the event
+     * @param claimsDeliveryMode the claims delivery mode of the trigger source
+     * @param <T>                the result type of the call
+     * @return the claims to add or override in the issued tokens, or empty if the claims are not returned in the
+     *     response
+     */
+    public <T> Optional<Map<String, String>> claimsOrLastKnownClaims(
+        CompletableFuture<T> userServiceCall,
+        Function<T, Optional<Map<String, String>>> issueClaims,
+        UserAttributes userAttributes,
+        ClaimsDeliveryMode claimsDeliveryMode) {
+        Optional<RuntimeException> failure = Futures.failureOf(userServiceCall);
+        if (failure.isEmpty()) {
+            return issueClaims.apply(Futures.join(userServiceCall));
+        }
+        Map<String, String> claims = lastKnownClaims(userAttributes).orElseThrow(failure::get);
+        degrade(InvocationMetrics.current(), USER_LOOKUP_FAILED, failure.get());
+        return claimsDeliveryMode.returnsClaims() ? Optional.of(claims) : Optional.empty();
+    }
+
+    /**
+     * Keeps the claims issued to a user, to be used if the user service fails during a later login of the same user.
+     *
+     * @param feideId the Feide ID of the user
+     * @param claims  the claims
+     */
+    public void remember(String feideId, Map<String, String> claims) {
+        if (enabled) {
+            Map<String, String> copy = Map.copyOf(claims);
+            synchronized (lock) {
+                claimsByFeideId.put(feideId, copy);
+            }
+        }
+    }
+
+    /**
+     * Returns the claims issued to the user at their last login in this container or, failing that, the claims stored
+     * as custom attributes in the user pool.
+     *
+     * @param userAttributes the user attributes of the event
+     * @return the claims, or empty if the fallback is disabled or the user has never been issued any claims
+     */
+    public Optional<Map<String, String>> lastKnownClaims(UserAttributes userAttributes) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        synchronized (lock) {
+            Map<String, String> claims = claimsByFeideId.get(userAttributes.getFeideId());
+            if (claims != null) {
+                return Optional.of(claims);
+            }
+        }
+        return claimsInUserPool(userAttributes);
+    }
+
+    private static Optional<Map<String, String>> claimsInUserPool(UserAttributes userAttributes) {
+        if (userAttributes.getApplicationRoles() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(UserClaims.create(userAttributes.getCustomerId(), userAttributes.getCristinId(),
+                                             userAttributes.getFeideId(), userAttributes.getApplicationRoles(),
+                                             userAttributes.getAccessRights()));
+    }
+}
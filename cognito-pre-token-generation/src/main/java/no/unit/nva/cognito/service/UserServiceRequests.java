@@ -0,0 +1,157 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.UserApiClient.CREATE_USER;
+import static no.unit.nva.cognito.service.UserApiClient.GET_USER;
+import static no.unit.nva.cognito.service.UserApiClient.IF_NONE_MATCH;
+import static no.unit.nva.cognito.service.UserApiClient.PATH;
+import static no.unit.nva.cognito.service.UserApiClient.UPDATE_POLICY_FIELD;
+import static no.unit.nva.cognito.service.UserApiClient.UPDATE_USER;
+import static no.unit.nva.cognito.service.UserApiClient.UPSERT_USER;
+import static no.unit.nva.cognito.service.UserApiClient.USER_FIELD;
+import static nva.commons.core.attempt.Try.attempt;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.Builder;
+import java.util.Map;
+import java.util.Optional;
+import no.unit.nva.cognito.service.UserCache.CachedUser;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.ServiceUri;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the requests of the {@link UserApiClient}. Every request is authorized with the current API key and times
+ * out with the remaining budget of the invocation, so a request is rebuilt, not resent, when it is retried. The URIs
+ * are resolved against a base that is built once, and the bodies are serialized straight to bytes.
+ */
+public class UserServiceRequests {
+
+    public static final String REQUEST_MESSAGE = "{} {}";
+    private static final Logger logger = LoggerFactory.getLogger(UserServiceRequests.class);
+    private final JsonCodec codec;
+    private final UserServiceApiKeyProvider apiKeyProvider;
+    private final ServiceUri users;
+
+    /**
+     * Creates the request builder of a user service.
+     *
+     * @param codec          codec of the request bodies
+     * @param apiKeyProvider provider of the user service API key
+     * @param userApiScheme  the scheme of the user service
+     * @param userApiHost    the host of the user service
+     */
+    public UserServiceRequests(JsonCodec codec,
+                               UserServiceApiKeyProvider apiKeyProvider,
+                               String userApiScheme,
+                               String userApiHost) {
+        this.codec = codec;
+        this.apiKeyProvider = apiKeyProvider;
+        this.users = new ServiceUri(userApiScheme, userApiHost, PATH);
+    }
+
+    /**
+     * Returns the URI of a user.
+     *
+     * @param username the username, which is encoded as a path segment
+     * @return the URI
+     */
+    public URI userUri(String username) {
+        return users.resolve(username);
+    }
+
+    /**
+     * Returns the URI of an operation on a user.
+     *
+     * @param username  the username, which is encoded as a path segment
+     * @param operation the last path segment, naming the operation
+     * @return the URI
+     */
+    public URI userUri(String username, String operation) {
+        return users.resolve(username, operation);
+    }
+
+    /**
+     * Returns the URI of the users collection, which users are created in.
+     *
+     * @return the URI
+     */
+    public URI usersUri() {
+        return users.base();
+    }
+
+    /**
+     * Builds a lookup, which is conditional when the user is cached, so that the user service only sends the user if
+     * it has changed.
+     *
+     * @param uri        the URI of the user
+     * @param cachedUser the cached user, if any
+     * @param deadline   the deadline of the invocation
+     * @return the request
+     */
+    public HttpRequest getUser(URI uri, Optional<CachedUser> cachedUser, Deadline deadline) {
+        return Optional.of(HttpRequest.newBuilder())
+                   .map(builder -> builder.uri(uri))
+                   .map(builder -> builder.timeout(deadline.timeoutFor(GET_USER)))
+                   .map(this::authorizationHeader)
+                   .map(builder -> cachedUser.map(CachedUser::getEntityTag)
+                                       .map(entityTag -> builder.header(IF_NONE_MATCH, entityTag))
+                                       .orElse(builder))
+                   .map(Builder::GET)
+                   .map(Builder::build)
+                   .map(UserServiceRequests::logged)
+                   .orElseThrow();
+    }
+
+    public HttpRequest createUser(URI uri, UserDto user, Deadline deadline) {
+        return Optional.of(HttpRequest.newBuilder(uri))
+                   .map(builder -> builder.timeout(deadline.timeoutFor(CREATE_USER)))
+                   .map(this::authorizationHeader)
+                   .map(builder -> builder.POST(codec.userBody(user)))
+                   .map(Builder::build)
+                   .map(UserServiceRequests::logged)
+                   .orElseThrow();
+    }
+
+    public HttpRequest updateUser(UserDto user, Deadline deadline) {
+        return attempt(() -> userUri(user.getUsername()))
+                   .map(HttpRequest::newBuilder)
+                   .map(builder -> builder.timeout(deadline.timeoutFor(UPDATE_USER)))
+                   .map(builder -> builder.PUT(codec.userBody(user)))
+                   .map(this::authorizationHeader)
+                   .map(Builder::build)
+                   .map(UserServiceRequests::logged)
+                   .orElseThrow();
+    }
+
+    /**
+     * Builds an upsert, whose body holds the user to create if it does not exist and the policy that updates it if it
+     * does.
+     *
+     * @param uri          the upsert URI of the user
+     * @param user         the user to create if it does not exist
+     * @param updatePolicy how an existing user is updated
+     * @param deadline     the deadline of the invocation
+     * @return the request
+     */
+    public HttpRequest upsertUser(URI uri, UserDto user, UpdatePolicy updatePolicy, Deadline deadline) {
+        return Optional.of(HttpRequest.newBuilder(uri))
+                   .map(builder -> builder.timeout(deadline.timeoutFor(UPSERT_USER)))
+                   .map(this::authorizationHeader)
+                   .map(builder -> builder.POST(codec.body(Map.of(USER_FIELD, user,
+                                                                  UPDATE_POLICY_FIELD, updatePolicy))))
+                   .map(Builder::build)
+                   .map(UserServiceRequests::logged)
+                   .orElseThrow();
+    }
+
+    private static HttpRequest logged(HttpRequest request) {
+        logger.info(REQUEST_MESSAGE, request.method(), request.uri());
+        return request;
+    }
+
+    private Builder authorizationHeader(Builder builder) {
+        return builder.header(UserApiClient.AUTHORIZATION, apiKeyProvider.getApiKey());
+    }
+}
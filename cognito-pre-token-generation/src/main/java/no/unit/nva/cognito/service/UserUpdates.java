@@ -0,0 +1,46 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.SKIPPED_USER_WRITES;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes updated users to the user service unless the update does not change the stored user. Every skipped write is
+ * counted in the metrics of the invocation as {@link InvocationMetrics#SKIPPED_USER_WRITES}.
+ */
+public final class UserUpdates {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserUpdates.class);
+
+    private UserUpdates() {
+
+    }
+
+    /**
+     * Writes the updated user unless it does not differ from the stored one.
+     *
+     * @param userApi     the user service client
+     * @param storedUser  the user as stored in the user service
+     * @param updatedUser the user after the login
+     * @param metrics     the metrics of the invocation
+     * @return a future with the user as stored after the write
+     */
+    public static CompletableFuture<UserDto> updateIfChanged(UserApi userApi,
+                                                             UserDto storedUser,
+                                                             UserDto updatedUser,
+                                                             InvocationMetrics metrics) {
+        List<String> changedFields = UserDtoDiff.changedFields(storedUser, updatedUser);
+        if (changedFields.isEmpty()) {
+            metrics.count(SKIPPED_USER_WRITES, 1);
+            logger.info("User {} is unchanged, skipping update", updatedUser.getUsername());
+            return CompletableFuture.completedFuture(storedUser);
+        }
+        metrics.count(SKIPPED_USER_WRITES, 0);
+        logger.info("Updating user {}, changed fields: {}", updatedUser.getUsername(), changedFields);
+        return userApi.updateUserAsync(updatedUser).thenApply(ignored -> updatedUser);
+    }
+}
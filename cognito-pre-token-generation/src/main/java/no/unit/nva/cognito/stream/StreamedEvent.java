@@ -0,0 +1,75 @@
+package no.unit.nva.cognito.stream;
+
+import static no.unit.nva.cognito.PostAuthenticationHandler.CLAIMS_OVERRIDE_DETAILS;
+import static no.unit.nva.cognito.PostAuthenticationHandler.CLAIMS_TO_ADD_OR_OVERRIDE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import no.unit.nva.cognito.model.Event;
+
+/**
+ * A Cognito event as read by {@link StreamedEventReader}, together with the position of its {@code response} value in
+ * the input bytes. The event is answered either with the unchanged input bytes, or with the input bytes where the
+ * response value is replaced with the claims to add or override.
+ */
+public class StreamedEvent {
+
+    private static final JsonFactory jsonFactory = new JsonFactory()
+                                                       .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final Event event;
+    private final int responseStart;
+    private final int responseEnd;
+    private final String responseField;
+
+    /**
+     * Creates a streamed event.
+     *
+     * @param event         the fields of the event that the handler uses
+     * @param responseStart the offset of the response value, or of the end of the event if it has no response
+     * @param responseEnd   the offset after the response value, or of the end of the event if it has no response
+     * @param responseField the field to write before a new response value, empty if the event has a response
+     */
+    public StreamedEvent(Event event, int responseStart, int responseEnd, String responseField) {
+        this.event = event;
+        this.responseStart = responseStart;
+        this.responseEnd = responseEnd;
+        this.responseField = responseField;
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Writes the event with the claims as the claims to add or override in the issued tokens. The bytes before and
+     * after the response value are copied unchanged.
+     *
+     * @param json   the event as read by {@link StreamedEventReader#read(byte[])}
+     * @param claims the claims
+     * @param output the response stream
+     * @throws IOException if the response cannot be written
+     */
+    public void writeWithClaims(byte[] json, Map<String, String> claims, OutputStream output) throws IOException {
+        output.write(json, 0, responseStart);
+        output.write(responseField.getBytes(UTF_8));
+        writeResponse(claims, output);
+        output.write(json, responseEnd, json.length - responseEnd);
+    }
+
+    private static void writeResponse(Map<String, String> claims, OutputStream output) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart(CLAIMS_OVERRIDE_DETAILS);
+            generator.writeObjectFieldStart(CLAIMS_TO_ADD_OR_OVERRIDE);
+            for (Map.Entry<String, String> claim : claims.entrySet()) {
+                generator.writeStringField(claim.getKey(), claim.getValue());
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package no.unit.nva.cognito.stream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import no.unit.nva.cognito.model.Event;
+import no.unit.nva.cognito.model.Request;
+import no.unit.nva.cognito.model.UserAttributes;
+
+/**
+ * Reads the fields that the handler uses from a raw Cognito event with Jackson's streaming parser. Every other value,
+ * such as the {@code identities} and {@code custom:schoolList} attributes, is skipped without being materialized.
+ * The position of the top level {@code response} value is recorded, so that a response can be written by splicing
+ * into the input bytes.
+ */
+public final class StreamedEventReader {
+
+    public static final String RESPONSE = "response";
+    public static final String EVENT_IS_NOT_AN_OBJECT = "Event is not a JSON object";
+    public static final String RESPONSE_FIELD = "\"" + RESPONSE + "\":";
+    public static final String NEXT_RESPONSE_FIELD = "," + RESPONSE_FIELD;
+    public static final String NO_FIELD = "";
+    public static final int NOT_FOUND = -1;
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private StreamedEventReader() {
+
+    }
+
+    /**
+     * Reads an event.
+     *
+     * @param json the event as received by the Lambda runtime
+     * @return the event and the position of its response
+     * @throws IOException if the event is not a JSON object
+     */
+    public static StreamedEvent read(byte[] json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, EVENT_IS_NOT_AN_OBJECT);
+            }
+            Event event = new Event();
+            int responseStart = NOT_FOUND;
+            int responseEnd = NOT_FOUND;
+            boolean hasFields = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                hasFields = true;
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (RESPONSE.equals(field)) {
+                    responseStart = offset(parser.getTokenLocation());
+                    parser.skipChildren();
+                    parser.finishToken();
+                    responseEnd = offset(parser.getCurrentLocation());
+                } else {
+                    readEventField(parser, field, event);
+                }
+            }
+            if (responseStart == NOT_FOUND) {
+                int objectEnd = offset(parser.getTokenLocation());
+                String responseField = hasFields ? NEXT_RESPONSE_FIELD : RESPONSE_FIELD;
+                return new StreamedEvent(event, objectEnd, objectEnd, responseField);
+            }
+            return new StreamedEvent(event, responseStart, responseEnd, NO_FIELD);
+        }
+    }
+
+    private static void readEventField(JsonParser parser, String field, Event event) throws IOException {
+        switch (field) {
+            case Event.USER_POOL_ID:
+                event.setUserPoolId(readText(parser));
+                break;
+            case Event.USER_NAME:
+                event.setUserName(readText(parser));
+                break;
+            case Event.TRIGGER_SOURCE:
+                event.setTriggerSource(readText(parser));
+                break;
+            case Event.REQUEST:
+                event.setRequest(readRequest(parser));
+                break;
+            default:
+                parser.skipChildren();
+                break;
+        }
+    }
+
+    private static Request readRequest(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        Request request = new Request();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (Request.USER_ATTRIBUTES.equals(field)) {
+                request.setUserAttributes(readUserAttributes(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return request;
+    }
+
+    private static UserAttributes readUserAttributes(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        UserAttributes userAttributes = new UserAttributes();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            readUserAttribute(parser, field, userAttributes);
+        }
+        return userAttributes;
+    }
+
+    private static void readUserAttribute(JsonParser parser, String field, UserAttributes userAttributes)
+        throws IOException {
+        switch (field) {
+            case UserAttributes.FEIDE_ID:
+                userAttributes.setFeideId(readText(parser));
+                break;
+            case UserAttributes.ORG_NUMBER:
+                userAttributes.setOrgNumber(readText(parser));
+                break;
+            case UserAttributes.AFFILIATION:
+                userAttributes.setAffiliation(readText(parser));
+                break;
+            case UserAttributes.GIVEN_NAME:
+                userAttributes.setGivenName(readText(parser));
+                break;
+            case UserAttributes.FAMILY_NAME:
+                userAttributes.setFamilyName(readText(parser));
+                break;
+            case UserAttributes.HOSTED_ORG_NUMBER:
+                userAttributes.setHostedOrgNumber(readText(parser));
+                break;
+            case UserAttributes.HOSTED_AFFILIATION:
+                userAttributes.setHostedAffiliation(readText(parser));
+                break;
+            case UserAttributes.CUSTOMER_ID:
+                userAttributes.setCustomerId(readText(parser));
+                break;
+            case UserAttributes.CRISTIN_ID:
+                userAttributes.setCristinId(readText(parser));
+                break;
+            case UserAttributes.APPLICATION_ROLES:
+                userAttributes.setApplicationRoles(readText(parser));
+                break;
+            case UserAttributes.ACCESS_RIGHTS:
+                userAttributes.setAccessRights(readText(parser));
+                break;
+            default:
+                parser.skipChildren();
+                break;
+        }
+    }
+
+    private static String readText(JsonParser parser) throws IOException {
+        if (parser.currentToken().isScalarValue()) {
+            return parser.getValueAsString();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static int offset(JsonLocation location) {
+        return Math.toIntExact(location.getByteOffset());
+    }
+}
@@ -0,0 +1,49 @@
+package no.unit.nva.cognito.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import nva.commons.core.JacocoGenerated;
+
+/**
+ * The executor of the container for calls that block a thread, such as the AWS SDK calls to the user pool and the
+ * reads of the user service secret. The common pool runs the completions of the HTTP client, and is sized to the CPUs
+ * of the container, so a blocking call there would hold up the responses of every concurrent login. The threads are
+ * created when they are needed, reused while they are idle and are daemon threads, so that they never keep the
+ * process alive.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class BlockingCalls {
+
+    public static final String THREAD_NAME_PREFIX = "blocking-call-";
+    private static final Object LOCK = new Object();
+    private static ExecutorService sharedExecutor;
+
+    private BlockingCalls() {
+    }
+
+    /**
+     * Returns the executor for blocking calls, creating it on first use.
+     *
+     * @return the executor
+     */
+    @JacocoGenerated
+    public static ExecutorService executor() {
+        synchronized (LOCK) {
+            if (sharedExecutor == null) {
+                sharedExecutor = Executors.newCachedThreadPool(daemonThreads());
+            }
+            return sharedExecutor;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger created = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
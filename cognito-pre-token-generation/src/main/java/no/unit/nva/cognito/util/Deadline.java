@@ -0,0 +1,158 @@
+package no.unit.nva.cognito.util;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.Supplier;
+import no.unit.nva.cognito.exception.DeadlineExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The time an invocation has left before Cognito gives up on the trigger. Every downstream call gets the remaining
+ * budget as its timeout, capped at a share of the whole budget, so that one slow call leaves time for the calls after
+ * it and for the fallback of a failed call. A call is not started at all when too little of the budget remains, so
+ * that the login fails with a clear error instead of timing out in Cognito. The deadline of the
+ * invocation that is being handled on the current thread is available through {@link #current()}.
+ */
+public class Deadline {
+
+    public static final Duration COGNITO_TRIGGER_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration RESPONSE_RESERVE = Duration.ofMillis(200);
+    public static final Duration DEFAULT_BUDGET = COGNITO_TRIGGER_TIMEOUT.minus(RESPONSE_RESERVE);
+    public static final Duration MINIMUM_CALL_TIMEOUT = Duration.ofMillis(100);
+    public static final double CALL_TIMEOUT_SHARE = 0.5;
+    public static final String DEADLINE_EXCEEDED_MESSAGE =
+        "Not starting %s: %d ms of the %d ms budget remain, %d ms are needed";
+    public static final String BUDGET_USE_MESSAGE = "{} used {} ms, {} % of the {} ms budget";
+    public static final double PERCENT = 100.0;
+    private static final Logger logger = LoggerFactory.getLogger(Deadline.class);
+    private static final ThreadLocal<Deadline> ATTACHED = new ThreadLocal<>();
+
+    private final Duration budget;
+    private final Duration callTimeout;
+    private final Instant expiresAt;
+    private final Clock clock;
+
+    public Deadline(Duration budget, Clock clock) {
+        this(budget, Duration.ofNanos(Math.round(budget.toNanos() * CALL_TIMEOUT_SHARE)), clock);
+    }
+
+    /**
+     * Creates a deadline with an explicit cap on the timeout of each downstream call.
+     *
+     * @param budget      the time the invocation has
+     * @param callTimeout the longest timeout a single downstream call is given
+     * @param clock       the clock
+     */
+    public Deadline(Duration budget, Duration callTimeout, Clock clock) {
+        this.budget = budget;
+        this.callTimeout = callTimeout;
+        this.clock = clock;
+        this.expiresAt = clock.instant().plus(budget);
+    }
+
+    /**
+     * Creates the deadline of an invocation. The budget is the shorter of the time Lambda has left and the time Cognito
+     * waits for the trigger, less a reserve for writing the response. When the context does not report a remaining
+     * time, the Cognito timeout is used.
+     *
+     * @param context the Lambda context
+     * @return the deadline
+     */
+    public static Deadline fromContext(Context context) {
+        long remainingMillis = context.getRemainingTimeInMillis();
+        Duration available = remainingMillis > 0
+                                 ? min(Duration.ofMillis(remainingMillis), COGNITO_TRIGGER_TIMEOUT)
+                                 : COGNITO_TRIGGER_TIMEOUT;
+        return new Deadline(available.minus(RESPONSE_RESERVE), Clock.systemUTC());
+    }
+
+    /**
+     * Returns the deadline attached to the current thread. Outside of an invocation, for instance during warm-up, a
+     * deadline with the default budget starting now is returned.
+     *
+     * @return the deadline
+     */
+    public static Deadline current() {
+        Deadline deadline = ATTACHED.get();
+        return deadline == null ? new Deadline(DEFAULT_BUDGET, Clock.systemUTC()) : deadline;
+    }
+
+    /**
+     * Makes this the deadline of the calling thread until {@link #detach()} is called.
+     */
+    public void attach() {
+        ATTACHED.set(this);
+    }
+
+    /**
+     * Removes the deadline of the calling thread.
+     */
+    public void detach() {
+        ATTACHED.remove();
+    }
+
+    /**
+     * Runs a step of the invocation with this deadline attached to the calling thread, and restores the deadline the
+     * thread had before. Continuations of asynchronous calls run on the threads that complete the calls, so a
+     * continuation that starts another downstream call uses this to keep the deadline of the invocation.
+     *
+     * @param step the step
+     * @param <T>  the result type of the step
+     * @return the result of the step
+     */
+    public <T> T within(Supplier<T> step) {
+        Deadline previous = ATTACHED.get();
+        attach();
+        try {
+            return step.get();
+        } finally {
+            ATTACHED.set(previous);
+        }
+    }
+
+    public Duration getBudget() {
+        return budget;
+    }
+
+    public Duration remaining() {
+        return Duration.between(clock.instant(), expiresAt);
+    }
+
+    /**
+     * Returns the timeout of a downstream call, which is the remaining budget, but no more than the call timeout.
+     *
+     * @param call the name of the call, used in the error message
+     * @return the timeout
+     * @throws DeadlineExceededException when less than {@link #MINIMUM_CALL_TIMEOUT} of the budget remains
+     */
+    public Duration timeoutFor(String call) {
+        Duration remaining = remaining();
+        if (remaining.compareTo(MINIMUM_CALL_TIMEOUT) < 0) {
+            throw new DeadlineExceededException(String.format(DEADLINE_EXCEEDED_MESSAGE, call, remaining.toMillis(),
+                                                              budget.toMillis(), MINIMUM_CALL_TIMEOUT.toMillis()));
+        }
+        return min(remaining, callTimeout);
+    }
+
+    /**
+     * Logs how much of the budget each phase used.
+     *
+     * @param phaseNanos the duration of each phase in nanoseconds
+     */
+    public void reportBudgetUse(Map<String, Long> phaseNanos) {
+        long budgetNanos = budget.toNanos();
+        phaseNanos.forEach((phase, nanos) -> logger.info(BUDGET_USE_MESSAGE,
+                                                         phase,
+                                                         Duration.ofNanos(nanos).toMillis(),
+                                                         Math.round(nanos * PERCENT / budgetNanos),
+                                                         budget.toMillis()));
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+}
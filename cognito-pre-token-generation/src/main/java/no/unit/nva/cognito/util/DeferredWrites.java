@@ -0,0 +1,75 @@
+package no.unit.nva.cognito.util;
+
+import static nva.commons.core.attempt.Try.attempt;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes that are started during an invocation but not waited for, so that the response does not depend on them. A
+ * failed write is logged and never fails the invocation. The writes that have not completed are kept, so that a
+ * long-running process can wait for them before it stops. In Lambda, a write still pending when the response is
+ * returned is frozen with the container and completes when the container is thawed by the next invocation, or is lost
+ * if the container is not used again.
+ */
+public class DeferredWrites {
+
+    public static final String WRITE_SUCCEEDED_MESSAGE = "Deferred {} took {} ms";
+    public static final String WRITE_FAILED_MESSAGE = "Deferred {} failed after {} ms";
+    public static final String WRITES_PENDING_MESSAGE = "{} deferred writes were still pending after {}";
+    private static final Logger logger = LoggerFactory.getLogger(DeferredWrites.class);
+
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts a write without waiting for it, and logs how long it took, or that it failed, when it completes.
+     *
+     * @param name  name of the write, used in the log
+     * @param write starts the write
+     */
+    public void start(String name, Supplier<CompletableFuture<?>> write) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<?> startedWrite = attempt(write::get)
+                                                .orElse(failure -> CompletableFuture.failedFuture(
+                                                    failure.getException()));
+        CompletableFuture<Void> loggedWrite = startedWrite.handle(
+            (result, exception) -> logCompletion(name, start, exception));
+        pending.add(loggedWrite);
+        loggedWrite.whenComplete((result, exception) -> pending.remove(loggedWrite));
+    }
+
+    /**
+     * Waits for the pending writes, at most for the timeout. Writes that have not completed by then are left running
+     * and are only reported.
+     *
+     * @param timeout how long to wait
+     * @return {@code true} if every write had completed
+     */
+    public boolean awaitPending(Duration timeout) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new));
+        boolean completed = attempt(() -> all.get(timeout.toMillis(), TimeUnit.MILLISECONDS)).isSuccess();
+        if (!completed) {
+            logger.warn(WRITES_PENDING_MESSAGE, pending.size(), timeout);
+        }
+        return completed;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private static Void logCompletion(String name, long start, Throwable exception) {
+        long duration = System.currentTimeMillis() - start;
+        if (exception == null) {
+            logger.info(WRITE_SUCCEEDED_MESSAGE, name, duration);
+        } else {
+            logger.warn(WRITE_FAILED_MESSAGE, name, duration, Futures.unwrap(exception));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+package no.unit.nva.cognito.util;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+public final class Futures {
+
+    private Futures() {
+
+    }
+
+    /**
+     * Runs a synchronous call and wraps its outcome in an already completed future. Used by implementations that
+     * have no asynchronous transport of their own.
+     *
+     * @param supplier the synchronous call
+     * @param <T>      the result type
+     * @return a completed future, or a failed future if the call threw
+     */
+    public static <T> CompletableFuture<T> completed(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.completedFuture(supplier.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Waits for a future and rethrows the original runtime exception instead of the {@link CompletionException}
+     * wrapper, so that callers see the same exceptions as with the synchronous calls.
+     *
+     * @param future the future to wait for
+     * @param <T>    the result type
+     * @return the result of the future
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw asRuntimeException(unwrap(e));
+        }
+    }
+
+    /**
+     * Waits for a future and returns the runtime exception {@link #join(CompletableFuture)} would throw.
+     *
+     * @param future the future to wait for
+     * @return the failure of the future, or empty if it completed normally
+     */
+    public static Optional<RuntimeException> failureOf(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return Optional.empty();
+        } catch (CompletionException e) {
+            return Optional.of(asRuntimeException(unwrap(e)));
+        }
+    }
+
+    /**
+     * Removes the {@link CompletionException} and {@link ExecutionException} wrappers that the future API adds around
+     * the actual failure.
+     *
+     * @param throwable a failure reported by a future
+     * @return the underlying failure
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        Throwable current = throwable;
+        while (isWrapper(current) && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static boolean isWrapper(Throwable throwable) {
+        return throwable instanceof CompletionException || throwable instanceof ExecutionException;
+    }
+
+    private static RuntimeException asRuntimeException(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        return new IllegalStateException(throwable);
+    }
+}
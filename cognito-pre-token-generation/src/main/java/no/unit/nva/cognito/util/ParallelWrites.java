@@ -0,0 +1,58 @@
+package no.unit.nva.cognito.util;
+
+import static nva.commons.core.attempt.Try.attempt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Execution stage for writes that do not depend on each other. Every write is started as soon as it is added, and
+ * {@link #awaitAll()} waits for all of them, failing if any of them failed.
+ */
+public class ParallelWrites {
+
+    public static final String WRITE_SUCCEEDED_MESSAGE = "{} took {} ms";
+    public static final String WRITE_FAILED_MESSAGE = "{} failed after {} ms";
+    private static final Logger logger = LoggerFactory.getLogger(ParallelWrites.class);
+
+    private final List<CompletableFuture<?>> writes = new ArrayList<>();
+
+    /**
+     * Starts a write and logs how long it took when it completes.
+     *
+     * @param name  name of the write, used in the timing log
+     * @param write starts the write
+     * @param <T>   the result type of the write
+     * @return the write
+     */
+    public <T> CompletableFuture<T> add(String name, Supplier<CompletableFuture<T>> write) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<T> startedWrite = attempt(write::get)
+                                                .orElse(failure -> CompletableFuture.failedFuture(
+                                                    failure.getException()));
+        CompletableFuture<T> timedWrite = startedWrite
+                                              .whenComplete((result, exception) -> logTiming(name, start, exception));
+        writes.add(timedWrite);
+        return timedWrite;
+    }
+
+    /**
+     * Waits for every write that has been added. If any write failed, its exception is rethrown after all writes have
+     * completed.
+     */
+    public void awaitAll() {
+        Futures.join(CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)));
+    }
+
+    private static void logTiming(String name, long start, Throwable exception) {
+        long duration = System.currentTimeMillis() - start;
+        if (exception == null) {
+            logger.info(WRITE_SUCCEEDED_MESSAGE, name, duration);
+        } else {
+            logger.warn(WRITE_FAILED_MESSAGE, name, duration);
+        }
+    }
+}
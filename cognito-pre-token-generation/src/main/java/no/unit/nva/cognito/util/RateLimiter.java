@@ -0,0 +1,65 @@
+package no.unit.nva.cognito.util;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Spaces calls to a rate-limited API evenly. Every call reserves the next free slot, which is one interval after the
+ * slot before it, and is started when its slot comes, so that a burst of calls is spread out instead of being
+ * throttled by the API. A slot that was not used is not saved for later, so the limiter never allows a burst above
+ * the rate.
+ */
+public class RateLimiter {
+
+    public static final long NANOS_PER_SECOND = Duration.ofSeconds(1).toNanos();
+    public static final String INVALID_RATE_MESSAGE = "The rate must be a positive number of calls per second: ";
+
+    private final Duration interval;
+    private final Clock clock;
+    private final Object lock = new Object();
+    private Instant nextSlot = Instant.MIN;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param callsPerSecond the highest rate of calls
+     * @param clock          the clock the slots are measured with
+     */
+    public RateLimiter(double callsPerSecond, Clock clock) {
+        if (callsPerSecond <= 0) {
+            throw new IllegalArgumentException(INVALID_RATE_MESSAGE + callsPerSecond);
+        }
+        this.interval = Duration.ofNanos(Math.round(NANOS_PER_SECOND / callsPerSecond));
+        this.clock = clock;
+    }
+
+    /**
+     * Reserves the next free slot.
+     *
+     * @return how long the caller has to wait for its slot
+     */
+    public Duration reserve() {
+        synchronized (lock) {
+            Instant now = clock.instant();
+            Instant slot = nextSlot.isAfter(now) ? nextSlot : now;
+            nextSlot = slot.plus(interval);
+            return Duration.between(now, slot);
+        }
+    }
+
+    /**
+     * Reserves the next free slot without blocking the caller.
+     *
+     * @return a future that completes when the slot comes
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        Duration wait = reserve();
+        return wait.isZero()
+                   ? CompletableFuture.completedFuture(null)
+                   : CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(wait.toNanos(),
+                                                                                           NANOSECONDS));
+    }
+}
@@ -0,0 +1,245 @@
+package no.unit.nva.cognito.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HEDGEABLE_REQUESTS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HEDGED_REQUESTS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HEDGE_WINS;
+import static nva.commons.core.attempt.Try.attempt;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.metrics.LatencyHistograms;
+import nva.commons.core.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hedges idempotent requests to a downstream dependency. When a request has not completed within the hedge delay, an
+ * identical request is sent and the first successful response is used. The delay is a percentile of the latencies of
+ * the requests in the current summary interval that completed without being hedged, or a fixed delay until enough
+ * such requests have been observed. The latency of a hedged call is cut short by the hedge, so counting it would
+ * lower the delay and make hedging feed on itself. Every request earns a share of a hedge given by the hedge budget,
+ * and a hedge is only sent when a whole hedge has been earned, so that at most that share of the requests is sent
+ * twice. Each invocation reports how many of its requests could be hedged, how many were hedged and how many hedges
+ * won. Hedging is disabled unless {@code HEDGE_REQUESTS} is {@code true}.
+ *
+ * <p>The request that loses the race is cancelled, but cancelling a future derived from
+ * {@code HttpClient.sendAsync} does not abort the exchange on Java 11: the losing request keeps its connection until
+ * the response has been read or the request timeout, bounded by the deadline, has passed, and its response is
+ * discarded. A hedged request therefore costs a connection for that long, which the hedge budget bounds.
+ */
+public class RequestHedger {
+
+    public static final String HEDGE_REQUESTS = "HEDGE_REQUESTS";
+    public static final String HEDGE_DELAY_MILLIS = "HEDGE_DELAY_MILLIS";
+    public static final String HEDGE_DELAY_PERCENTILE = "HEDGE_DELAY_PERCENTILE";
+    public static final String HEDGE_BUDGET_PERCENT = "HEDGE_BUDGET_PERCENT";
+    public static final Duration DEFAULT_DELAY = Duration.ofMillis(300);
+    public static final double DEFAULT_PERCENTILE = 95.0;
+    public static final int DEFAULT_BUDGET_PERCENT = 5;
+    public static final long MINIMUM_OBSERVED_CALLS = 20;
+    public static final int MAXIMUM_SAVED_HEDGES = 10;
+    public static final int PERCENT = 100;
+    public static final String SUCCESSFUL = LatencyHistograms.statusClass(200);
+    public static final String UNHEDGED_SUFFIX = "Unhedged";
+    public static final String SENDING_HEDGE_MESSAGE = "{} has not completed after {} ms, sending a hedged request";
+    private static final Logger logger = LoggerFactory.getLogger(RequestHedger.class);
+
+    private final String dependency;
+    private final String unhedgedDependency;
+    private final LatencyHistograms latencyHistograms;
+    private final boolean enabled;
+    private final Duration delay;
+    private final double percentile;
+    private final int budgetPercent;
+    private final AtomicLong earnedPercent = new AtomicLong();
+
+    /**
+     * Creates a hedger for the requests of one dependency.
+     *
+     * @param dependency        the name of the called operation, as recorded in the histograms
+     * @param latencyHistograms the histograms the calls to the dependency are recorded in
+     * @param enabled           whether requests are hedged
+     * @param delay             the delay used until enough calls have been observed
+     * @param percentile        the percentile of the observed latencies used as delay
+     * @param budgetPercent     the share of requests that may be hedged, in percent
+     */
+    public RequestHedger(String dependency,
+                         LatencyHistograms latencyHistograms,
+                         boolean enabled,
+                         Duration delay,
+                         double percentile,
+                         int budgetPercent) {
+        this.dependency = dependency;
+        this.unhedgedDependency = dependency + UNHEDGED_SUFFIX;
+        this.latencyHistograms = latencyHistograms;
+        this.enabled = enabled;
+        this.delay = delay;
+        this.percentile = percentile;
+        this.budgetPercent = budgetPercent;
+    }
+
+    /**
+     * Creates a hedger configured from the environment, using the defaults for variables that are not set.
+     *
+     * @param environment       the environment
+     * @param dependency        the name of the called operation, as recorded in the histograms
+     * @param latencyHistograms the histograms the calls to the dependency are recorded in
+     * @return the hedger
+     */
+    public static RequestHedger fromEnvironment(Environment environment,
+                                                String dependency,
+                                                LatencyHistograms latencyHistograms) {
+        boolean enabled = environment.readEnvOpt(HEDGE_REQUESTS)
+                              .map(Boolean::parseBoolean)
+                              .orElse(false);
+        Duration delay = environment.readEnvOpt(HEDGE_DELAY_MILLIS)
+                             .map(Long::parseLong)
+                             .map(Duration::ofMillis)
+                             .orElse(DEFAULT_DELAY);
+        double percentile = environment.readEnvOpt(HEDGE_DELAY_PERCENTILE)
+                                .map(Double::parseDouble)
+                                .orElse(DEFAULT_PERCENTILE);
+        int budgetPercent = environment.readEnvOpt(HEDGE_BUDGET_PERCENT)
+                                .map(Integer::parseInt)
+                                .orElse(DEFAULT_BUDGET_PERCENT);
+        return new RequestHedger(dependency, latencyHistograms, enabled, delay, percentile, budgetPercent);
+    }
+
+    /**
+     * Creates a hedger that never hedges and records nothing, for requests that should not affect the hedge delay or
+     * budget of the container, such as the lookups that open the connections during warm-up.
+     *
+     * @param dependency the name of the called operation
+     * @return the hedger
+     */
+    public static RequestHedger disabled(String dependency) {
+        return new RequestHedger(dependency, LatencyHistograms.discarding(), false, DEFAULT_DELAY, DEFAULT_PERCENTILE,
+                                 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns how long a request may take before it is hedged: the configured percentile of the requests in the
+     * current interval that succeeded without being hedged, or the fixed delay when fewer than
+     * {@link #MINIMUM_OBSERVED_CALLS} have been observed. These requests are recorded in the histograms under the
+     * dependency name followed by {@value #UNHEDGED_SUFFIX}.
+     *
+     * @return the hedge delay
+     */
+    public Duration hedgeDelay() {
+        return latencyHistograms.histogram(unhedgedDependency, SUCCESSFUL)
+                   .filter(histogram -> histogram.getCount() >= MINIMUM_OBSERVED_CALLS)
+                   .map(histogram -> Duration.of(histogram.valueAtPercentile(percentile), ChronoUnit.MICROS))
+                   .orElse(delay);
+    }
+
+    /**
+     * Sends a request and, if it has not completed within the hedge delay and the budget allows, sends it once more.
+     * The request must be idempotent. A request that fails before it is hedged fails the returned future; once it is
+     * hedged, the returned future only fails when both requests have failed.
+     *
+     * @param request sends the request
+     * @param <T>     the response type
+     * @return the first successful response
+     */
+    public <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request) {
+        if (!enabled) {
+            return request.get();
+        }
+        InvocationMetrics metrics = InvocationMetrics.current();
+        metrics.count(HEDGEABLE_REQUESTS, 1);
+        metrics.count(HEDGED_REQUESTS, 0);
+        metrics.count(HEDGE_WINS, 0);
+        earnedPercent.getAndUpdate(earned -> Math.min(earned + budgetPercent, MAXIMUM_SAVED_HEDGES * PERCENT));
+        Duration hedgeDelay = hedgeDelay();
+        Race<T> race = new Race<>();
+        long start = System.nanoTime();
+        CompletableFuture<T> primary = request.get();
+        primary.whenComplete((result, exception) -> recordIfUnhedged(race, start, exception));
+        race.enter(primary, () -> { });
+        CompletableFuture.delayedExecutor(hedgeDelay.toMillis(), MILLISECONDS)
+            .execute(() -> hedgeIfPending(race, request, metrics, hedgeDelay));
+        return race.getResponse();
+    }
+
+    private <T> void hedgeIfPending(Race<T> race,
+                                    Supplier<CompletableFuture<T>> request,
+                                    InvocationMetrics metrics,
+                                    Duration hedgeDelay) {
+        if (!race.isDecided() && spendHedge()) {
+            logger.info(SENDING_HEDGE_MESSAGE, dependency, hedgeDelay.toMillis());
+            metrics.count(HEDGED_REQUESTS, 1);
+            CompletableFuture<T> hedge = attempt(request::get)
+                                             .orElse(failure -> CompletableFuture.failedFuture(failure.getException()));
+            race.enter(hedge, () -> metrics.count(HEDGE_WINS, 1));
+        }
+    }
+
+    private <T> void recordIfUnhedged(Race<T> race, long start, Throwable exception) {
+        if (exception == null && !race.isHedged()) {
+            latencyHistograms.record(unhedgedDependency, SUCCESSFUL, System.nanoTime() - start);
+        }
+    }
+
+    private boolean spendHedge() {
+        return earnedPercent.getAndUpdate(earned -> earned >= PERCENT ? earned - PERCENT : earned) >= PERCENT;
+    }
+
+    /**
+     * Requests racing for the same response. The first success decides the race: the other requests are cancelled,
+     * which only completes their futures, and the response is completed. When every request has failed, the response
+     * fails with the last failure.
+     *
+     * @param <T> the response type
+     */
+    private static class Race<T> {
+
+        private final CompletableFuture<T> response = new CompletableFuture<>();
+        private final List<CompletableFuture<T>> requests = new CopyOnWriteArrayList<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean decided = new AtomicBoolean();
+
+        public CompletableFuture<T> getResponse() {
+            return response;
+        }
+
+        public boolean isDecided() {
+            return decided.get();
+        }
+
+        public boolean isHedged() {
+            return requests.size() > 1;
+        }
+
+        public void enter(CompletableFuture<T> request, Runnable onWin) {
+            pending.incrementAndGet();
+            requests.add(request);
+            request.whenComplete((result, exception) -> finish(request, result, exception, onWin));
+            if (isDecided()) {
+                request.cancel(true);
+            }
+        }
+
+        private void finish(CompletableFuture<T> winner, T result, Throwable exception, Runnable onWin) {
+            boolean last = pending.decrementAndGet() == 0;
+            if (exception == null && decided.compareAndSet(false, true)) {
+                onWin.run();
+                requests.stream().filter(request -> request != winner).forEach(request -> request.cancel(true));
+                response.complete(result);
+            } else if (exception != null && last && decided.compareAndSet(false, true)) {
+                response.completeExceptionally(exception);
+            }
+        }
+    }
+}
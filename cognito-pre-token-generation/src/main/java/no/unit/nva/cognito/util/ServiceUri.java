@@ -0,0 +1,100 @@
+package no.unit.nva.cognito.util;
+
+import static nva.commons.core.attempt.Try.attempt;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import nva.commons.core.attempt.Try;
+import org.apache.http.client.utils.URIBuilder;
+
+/**
+ * The location of a resource collection of a service, built once from the configured scheme, host and path. The URI
+ * of a resource is the base followed by its path segments, each percent-encoded, so that a username or organization
+ * number can never change the path of the request. An invalid location fails every {@link #resolve(String...)}
+ * instead of the construction, like building the URI for every request did.
+ */
+public class ServiceUri {
+
+    public static final char DELIMITER = '/';
+    public static final String SEGMENT_CHARACTERS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-._~!$&'()*+,;=:@";
+    public static final char PERCENT = '%';
+    public static final String HEX_DIGITS = "0123456789ABCDEF";
+    public static final int LOW_NIBBLE = 0x0F;
+    public static final int HIGH_NIBBLE_SHIFT = 4;
+
+    private final Try<URI> baseUri;
+    private final Try<String> prefix;
+
+    /**
+     * Builds the base URI of a service path.
+     *
+     * @param scheme the scheme of the service
+     * @param host   the host of the service
+     * @param path   the path of the resource collection
+     */
+    public ServiceUri(String scheme, String host, String path) {
+        this.baseUri = attempt(() -> new URIBuilder().setScheme(scheme).setHost(host).setPath(path).build());
+        this.prefix = baseUri.map(URI::toString).map(ServiceUri::withTrailingDelimiter);
+    }
+
+    /**
+     * Returns the base URI.
+     *
+     * @return the URI of the resource collection
+     */
+    public URI base() {
+        return baseUri.orElseThrow();
+    }
+
+    /**
+     * Returns the URI of a resource below the base.
+     *
+     * @param segments the path segments, which are encoded here
+     * @return the URI
+     */
+    public URI resolve(String... segments) {
+        StringBuilder uri = new StringBuilder(prefix.orElseThrow());
+        for (int index = 0; index < segments.length; index++) {
+            if (index > 0) {
+                uri.append(DELIMITER);
+            }
+            appendEncoded(uri, segments[index]);
+        }
+        return URI.create(uri.toString());
+    }
+
+    /**
+     * Percent-encodes a path segment. Characters that RFC 3986 allows in a segment are kept, and every other
+     * character, including {@code /}, {@code ?} and {@code %}, is encoded as UTF-8.
+     *
+     * @param segment the segment
+     * @return the encoded segment
+     */
+    public static String encodeSegment(String segment) {
+        StringBuilder encoded = new StringBuilder(segment.length());
+        appendEncoded(encoded, segment);
+        return encoded.toString();
+    }
+
+    private static void appendEncoded(StringBuilder target, String segment) {
+        int index = 0;
+        while (index < segment.length()) {
+            int codePoint = segment.codePointAt(index);
+            int next = index + Character.charCount(codePoint);
+            if (SEGMENT_CHARACTERS.indexOf(codePoint) >= 0) {
+                target.appendCodePoint(codePoint);
+            } else {
+                for (byte octet : segment.substring(index, next).getBytes(StandardCharsets.UTF_8)) {
+                    target.append(PERCENT)
+                        .append(HEX_DIGITS.charAt(octet >> HIGH_NIBBLE_SHIFT & LOW_NIBBLE))
+                        .append(HEX_DIGITS.charAt(octet & LOW_NIBBLE));
+                }
+            }
+            index = next;
+        }
+    }
+
+    private static String withTrailingDelimiter(String uri) {
+        return uri.charAt(uri.length() - 1) == DELIMITER ? uri : uri + DELIMITER;
+    }
+}
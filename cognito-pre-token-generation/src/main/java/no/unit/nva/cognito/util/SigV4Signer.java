@@ -0,0 +1,183 @@
+package no.unit.nva.cognito.util;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import no.unit.nva.cognito.model.AwsCredentials;
+
+/**
+ * Signs requests with AWS Signature Version 4.
+ *
+ * @see <a href="https://docs.aws.amazon.com/general/latest/gr/sigv4_signing.html">Signature Version 4</a>
+ */
+public class SigV4Signer {
+
+    public static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    public static final String HMAC_SHA256 = "HmacSHA256";
+    public static final String SHA_256 = "SHA-256";
+    public static final String TERMINATOR = "aws4_request";
+    public static final String KEY_PREFIX = "AWS4";
+    public static final String HOST = "host";
+    public static final String X_AMZ_DATE = "x-amz-date";
+    public static final String X_AMZ_SECURITY_TOKEN = "x-amz-security-token";
+    public static final String AUTHORIZATION = "Authorization";
+    public static final String NEWLINE = "\n";
+    public static final String SCOPE_SEPARATOR = "/";
+    public static final String HEADER_SEPARATOR = ";";
+    public static final String QUERY_SEPARATOR = "&";
+    public static final String EMPTY_STRING = "";
+    public static final String ROOT_PATH = "/";
+    public static final int HTTP_DEFAULT_PORT = 80;
+    public static final int HTTPS_DEFAULT_PORT = 443;
+    public static final int UNDEFINED_PORT = -1;
+    public static final int BYTE_MASK = 0xff;
+    public static final int HEX_RADIX = 16;
+    public static final int HEX_DIGITS_PER_BYTE = 2;
+    public static final String ZERO_PADDING = "00";
+    private static final DateTimeFormatter AMZ_DATE_FORMAT =
+        DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DATE_STAMP_FORMAT =
+        DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private final String region;
+    private final String service;
+
+    public SigV4Signer(String region, String service) {
+        this.region = region;
+        this.service = service;
+    }
+
+    /**
+     * Signs a request. The returned headers include the supplied headers, the host header, the date header, the
+     * security token header when the credentials have a session token, and the authorization header.
+     *
+     * @param method      HTTP method
+     * @param uri         request URI
+     * @param headers     headers to sign, in addition to host and date
+     * @param payload     request body
+     * @param credentials credentials to sign with
+     * @param now         signing time
+     * @return the signed headers, keyed by lower case header name except for the authorization header
+     */
+    public SortedMap<String, String> sign(String method,
+                                          URI uri,
+                                          Map<String, String> headers,
+                                          byte[] payload,
+                                          AwsCredentials credentials,
+                                          Instant now) {
+        final String amzDate = AMZ_DATE_FORMAT.format(now);
+        final String scope = String.join(SCOPE_SEPARATOR, DATE_STAMP_FORMAT.format(now), region, service, TERMINATOR);
+
+        SortedMap<String, String> signedHeaders = new TreeMap<>();
+        headers.forEach((name, value) -> signedHeaders.put(name.toLowerCase(Locale.ROOT), value.strip()));
+        signedHeaders.put(HOST, hostHeader(uri));
+        signedHeaders.put(X_AMZ_DATE, amzDate);
+        credentials.getSessionToken().ifPresent(token -> signedHeaders.put(X_AMZ_SECURITY_TOKEN, token));
+
+        String signedHeaderNames = String.join(HEADER_SEPARATOR, signedHeaders.keySet());
+        String canonicalRequest = String.join(NEWLINE,
+                                              method,
+                                              canonicalPath(uri),
+                                              canonicalQuery(uri),
+                                              canonicalHeaders(signedHeaders),
+                                              signedHeaderNames,
+                                              hex(sha256(payload)));
+        String stringToSign = String.join(NEWLINE,
+                                          ALGORITHM,
+                                          amzDate,
+                                          scope,
+                                          hex(sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8))));
+        String signature = hex(hmac(signingKey(credentials, now), stringToSign));
+
+        signedHeaders.put(AUTHORIZATION, ALGORITHM
+                                         + " Credential=" + credentials.getAccessKeyId() + SCOPE_SEPARATOR + scope
+                                         + ", SignedHeaders=" + signedHeaderNames
+                                         + ", Signature=" + signature);
+        return signedHeaders;
+    }
+
+    /**
+     * The value of the host header as sent by the JDK HTTP client, which leaves out the port when it is the default
+     * port of the scheme.
+     *
+     * @param uri request URI
+     * @return the host header value
+     */
+    public static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == UNDEFINED_PORT
+                              || port == HTTP_DEFAULT_PORT && "http".equals(uri.getScheme())
+                              || port == HTTPS_DEFAULT_PORT && "https".equals(uri.getScheme());
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    private byte[] signingKey(AwsCredentials credentials, Instant now) {
+        byte[] dateKey = hmac((KEY_PREFIX + credentials.getSecretAccessKey()).getBytes(StandardCharsets.UTF_8),
+                              DATE_STAMP_FORMAT.format(now));
+        byte[] regionKey = hmac(dateKey, region);
+        byte[] serviceKey = hmac(regionKey, service);
+        return hmac(serviceKey, TERMINATOR);
+    }
+
+    private static String canonicalPath(URI uri) {
+        String path = uri.getRawPath();
+        return path == null || path.isEmpty() ? ROOT_PATH : path;
+    }
+
+    private static String canonicalQuery(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return EMPTY_STRING;
+        }
+        return Arrays.stream(query.split(QUERY_SEPARATOR))
+                   .sorted()
+                   .collect(Collectors.joining(QUERY_SEPARATOR));
+    }
+
+    private static String canonicalHeaders(SortedMap<String, String> headers) {
+        return headers.entrySet()
+                   .stream()
+                   .map(header -> header.getKey() + ":" + header.getValue() + NEWLINE)
+                   .collect(Collectors.joining());
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance(SHA_256).digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            mac.init(new SecretKeySpec(key, HMAC_SHA256));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * HEX_DIGITS_PER_BYTE);
+        for (byte value : bytes) {
+            String digits = Integer.toString(value & BYTE_MASK, HEX_RADIX);
+            hex.append(ZERO_PADDING, digits.length(), HEX_DIGITS_PER_BYTE).append(digits);
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package no.unit.nva.cognito.util;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.COALESCED_REQUESTS;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+
+/**
+ * Coalesces identical lookups that are in flight at the same time. The first caller asking for a key sends the
+ * lookup, and every caller that asks for the same key before it has completed waits for the same result instead of
+ * sending a lookup of its own, so that a burst of logins from one institution sends one request downstream. A key is
+ * forgotten as soon as its lookup completes, so results are never reused after that; caching them is up to the caller.
+ * Each invocation reports how many of its lookups were coalesced.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Returns the result of the lookup of a key, and sends the lookup unless one is already in flight for the key.
+     * Every caller gets a future of its own, so that a caller cancelling its future does not cancel the lookup of the
+     * others.
+     *
+     * @param key    the key
+     * @param lookup sends the lookup
+     * @return a future with the result of the lookup
+     */
+    public CompletableFuture<V> run(K key, Supplier<CompletableFuture<V>> lookup) {
+        InvocationMetrics metrics = InvocationMetrics.current();
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existingFlight = inFlight.putIfAbsent(key, flight);
+        if (existingFlight != null) {
+            coalesced.increment();
+            metrics.count(COALESCED_REQUESTS, 1);
+            return existingFlight.copy();
+        }
+        metrics.count(COALESCED_REQUESTS, 0);
+        send(lookup).whenComplete((result, exception) -> land(key, flight, result, exception));
+        return flight.copy();
+    }
+
+    /**
+     * Forgets the lookup in flight for a key, so that the next caller sends a new lookup, for instance because the
+     * looked up value has just been changed. The callers waiting for the forgotten lookup still get its result.
+     *
+     * @param key the key
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * The number of lookups that were coalesced with a lookup in flight since the container started.
+     *
+     * @return the number of coalesced lookups
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> CompletableFuture<V> send(Supplier<CompletableFuture<V>> lookup) {
+        try {
+            return lookup.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void land(K key, CompletableFuture<V> flight, V result, Throwable exception) {
+        inFlight.remove(key, flight);
+        if (exception == null) {
+            flight.complete(result);
+        } else {
+            flight.completeExceptionally(exception);
+        }
+    }
+}
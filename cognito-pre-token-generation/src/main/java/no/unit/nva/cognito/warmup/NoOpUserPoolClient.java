@@ -0,0 +1,25 @@
+package no.unit.nva.cognito.warmup;
+
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import no.unit.nva.cognito.service.UserPoolClient;
+
+/**
+ * User pool client that writes nothing and holds no users, used when the handler pipeline runs during warm-up.
+ */
+public class NoOpUserPoolClient implements UserPoolClient {
+
+    @Override
+    public CompletableFuture<Void> updateUserAttributesAsync(String userPoolId,
+                                                            String userName,
+                                                            List<AttributeType> attributes) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<ListUsersResult> listUsersAsync(String userPoolId, String paginationToken) {
+        return CompletableFuture.completedFuture(new ListUsersResult().withUsers(List.of()));
+    }
+}
@@ -0,0 +1,17 @@
+package no.unit.nva.cognito.warmup;
+
+import java.util.Optional;
+import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.service.CustomerApi;
+
+/**
+ * Stand-in for the customer service that finds the sample customer for every organization, used when the handler
+ * pipeline runs during warm-up.
+ */
+public class WarmUpCustomerApi implements CustomerApi {
+
+    @Override
+    public Optional<CustomerResponse> getCustomer(String orgNumber) {
+        return Optional.of(WarmUpSamples.sampleCustomer());
+    }
+}
@@ -0,0 +1,68 @@
+package no.unit.nva.cognito.warmup;
+
+import static nva.commons.core.attempt.Try.attempt;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import nva.commons.core.JsonUtils;
+import nva.commons.core.ioutils.IoUtils;
+
+/**
+ * Sample payloads used to warm up a new instance. The samples do not refer to real users or customers, so looking
+ * them up in the user and customer services finds nothing.
+ */
+public final class WarmUpSamples {
+
+    public static final String WARM_UP_EVENT_JSON = "warm_up_event.json";
+    public static final String WARM_UP_USERNAME = "warm-up@nva.invalid";
+    public static final String WARM_UP_ORG_NUMBER = "000000000";
+    public static final String WARM_UP_CUSTOMER_ID = "https://nva.invalid/customer/warm-up";
+    public static final String WARM_UP_CRISTIN_ID = "https://nva.invalid/cristin/warm-up";
+    public static final String WARM_UP_GIVEN_NAME = "Warm";
+    public static final String WARM_UP_FAMILY_NAME = "Up";
+    public static final String WARM_UP_ROLE = "User";
+
+    private WarmUpSamples() {
+
+    }
+
+    /**
+     * Reads the sample pre token generation event. The event is parsed on every call, which is part of the warm-up.
+     *
+     * @return the event json as map
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> sampleEvent() {
+        String eventJson = sampleEventJson();
+        return attempt(() -> JsonUtils.objectMapper.readValue(eventJson, Map.class))
+                   .orElseThrow();
+    }
+
+    public static String sampleEventJson() {
+        return IoUtils.stringFromResources(Path.of(WARM_UP_EVENT_JSON));
+    }
+
+    /**
+     * Creates a sample user with a single role.
+     *
+     * @return the user
+     * @throws InvalidEntryInternalException if the user cannot be built
+     */
+    public static UserDto sampleUser() throws InvalidEntryInternalException {
+        return UserDto.newBuilder()
+                   .withUsername(WARM_UP_USERNAME)
+                   .withGivenName(WARM_UP_GIVEN_NAME)
+                   .withFamilyName(WARM_UP_FAMILY_NAME)
+                   .withInstitution(WARM_UP_CUSTOMER_ID)
+                   .withRoles(List.of(RoleDto.newBuilder().withName(WARM_UP_ROLE).build()))
+                   .build();
+    }
+
+    public static CustomerResponse sampleCustomer() {
+        return new CustomerResponse(WARM_UP_CUSTOMER_ID, WARM_UP_CRISTIN_ID);
+    }
+}
@@ -0,0 +1,30 @@
+package no.unit.nva.cognito.warmup;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import no.unit.nva.cognito.service.UserApi;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+
+/**
+ * In-memory stand-in for the user service, used when the handler pipeline runs during warm-up.
+ */
+public class WarmUpUserApi implements UserApi {
+
+    private final AtomicReference<UserDto> storedUser = new AtomicReference<>();
+
+    @Override
+    public Optional<UserDto> getUser(String username) {
+        return Optional.ofNullable(storedUser.get());
+    }
+
+    @Override
+    public UserDto createUser(UserDto user) {
+        storedUser.set(user);
+        return user;
+    }
+
+    @Override
+    public void updateUser(UserDto user) {
+        storedUser.set(user);
+    }
+}
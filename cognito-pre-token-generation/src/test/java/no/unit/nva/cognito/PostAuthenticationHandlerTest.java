@@ -1,52 +1,112 @@
 package no.unit.nva.cognito;
 
+import static no.unit.nva.cognito.PostAuthenticationHandler.CLAIMS_OVERRIDE_DETAILS;
+import static no.unit.nva.cognito.PostAuthenticationHandler.CLAIMS_TO_ADD_OR_OVERRIDE;
+import static no.unit.nva.cognito.PostAuthenticationHandler.USER_POOL_WRITE;
+import static no.unit.nva.cognito.PostAuthenticationHandler.RESPONSE;
+import static no.unit.nva.cognito.PostAuthenticationHandler.WARM_UP_CONNECTION_FAILED;
+import static no.unit.nva.cognito.PostAuthenticationHandler.WARM_UP_TRIGGER_SOURCE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_LOOKUP;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.DEGRADED;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.EVENT_PARSE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.FAILURE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.OUTCOME;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.SUCCESS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.REMAINING_BUDGET;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.SKIPPED_USER_WRITES;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.TOTAL;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.TRIGGER_SOURCE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_CREATE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_GET;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_POOL_UPDATE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_UPDATE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_UPSERT;
+import static no.unit.nva.cognito.service.UserApiClient.COULD_NOT_FETCH_USER_ERROR_MESSAGE;
+import static no.unit.nva.cognito.service.UserApiClient.UPDATE_USER_FAILURE;
 import static no.unit.nva.cognito.service.UserApiMock.FIRST_ACCESS_RIGHT;
 import static no.unit.nva.cognito.service.UserApiMock.SAMPLE_ACCESS_RIGHTS;
 import static no.unit.nva.cognito.service.UserApiMock.SECOND_ACCESS_RIGHT;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION_ACCESS_RIGHTS;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION_ROLES;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_CUSTOMER_ID;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.hamcrest.core.IsNot.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
 import com.amazonaws.services.cognitoidp.model.AdminUpdateUserAttributesRequest;
+import com.amazonaws.services.cognitoidp.model.AWSCognitoIdentityProviderException;
 import com.amazonaws.services.cognitoidp.model.AdminUpdateUserAttributesResult;
 import com.amazonaws.services.cognitoidp.model.AttributeType;
 import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.metrics.MetricsPublisher;
+import no.unit.nva.cognito.model.ClaimsDeliveryMode;
 import no.unit.nva.cognito.model.CustomerResponse;
 import no.unit.nva.cognito.model.Event;
 import no.unit.nva.cognito.model.Request;
 import no.unit.nva.cognito.model.UserAttributes;
+import no.unit.nva.cognito.service.ClaimsDeliverySettings;
 import no.unit.nva.cognito.service.CustomerApi;
+import no.unit.nva.cognito.service.RoleRules;
+import no.unit.nva.cognito.service.SdkUserPoolClient;
 import no.unit.nva.cognito.service.UserApiMock;
 import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.service.UserServiceFallback;
+import no.unit.nva.cognito.util.DeferredWrites;
+import no.unit.nva.cognito.warmup.NoOpUserPoolClient;
 import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
 import no.unit.nva.useraccessmanagement.model.RoleDto;
 import no.unit.nva.useraccessmanagement.model.UserDto;
 import nva.commons.core.JsonUtils;
 import nva.commons.core.SingletonCollector;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
 import org.javers.common.collections.Lists;
 import org.javers.core.Javers;
 import org.javers.core.JaversBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
 import org.mockito.invocation.InvocationOnMock;
 
 @SuppressWarnings("unchecked")
@@ -65,17 +125,29 @@ public class PostAuthenticationHandlerTest {
     public static final String SAMPLE_CUSTOMER_ID = "http://example.org/customer/123";
 
     public static final String SAMPLE_USER_POOL_ID = "userPoolId";
+    public static final String USER_POOL_ID_FIELD = "userPoolId";
+    public static final String TRIGGER_SOURCE_FIELD = "triggerSource";
+    public static final String TOKEN_GENERATION_TRIGGER_SOURCE = "TokenGeneration_HostedAuth";
+    public static final String POST_AUTHENTICATION_TRIGGER_SOURCE = "PostAuthentication_Authentication";
+    public static final String COGNITO_FAILURE = "Cognito failure";
     public static final String SAMPLE_USER_NAME = "userName";
     public static final String SAMPLE_GIVEN_NAME = "givenName";
     public static final String SAMPLE_FAMILY_NAME = "familyName";
 
     public static final String CREATOR = "Creator";
+    public static final String CURATOR = "Curator";
+    public static final String OTHER_CUSTOMER_ID = "http://example.org/customer/456";
     public static final String USER = "User";
     public static final String SAMPLE_CRISTIN_ID = "http://cristin.id";
     public static final AdminUpdateUserAttributesResult UNUSED_RESULT = null;
     public static final int ONLY_CREATOR_ROLE = 1;
+    public static final Duration DEFERRED_WRITES_TIMEOUT = Duration.ofSeconds(5);
     public static final Javers JAVERS = JaversBuilder.javers().build();
+    public static final String METRICS_NAMESPACE = "Test/Namespace";
+    public static final String LAST_KNOWN_ROLES = "Creator,User";
+    public static final String LAST_KNOWN_ACCESS_RIGHTS = "APPROVE_DOI_REQUEST";
     private final AtomicReference<List<AttributeType>> attributeTypesBuffer = new AtomicReference<>();
+    private final List<String> metricsRecords = new ArrayList<>();
     private CustomerApi customerApi;
     private UserApiMock userApi;
     private UserService userService;
@@ -92,10 +164,11 @@ public class PostAuthenticationHandlerTest {
      */
     @BeforeEach
     public void init() {
-        customerApi = mock(CustomerApi.class);
+        customerApi = mock(CustomerApi.class, CALLS_REAL_METHODS);
         userApi = new UserApiMock();
         awsCognitoIdentityProvider = mockAwsIdentityProvider();
         attributeTypesBuffer.set(null);
+        metricsRecords.clear();
         userService = new UserService(userApi, awsCognitoIdentityProvider);
         handler = new PostAuthenticationHandler(userService, customerApi);
     }
@@ -116,6 +189,359 @@ public class PostAuthenticationHandlerTest {
         assertEquals(requestEvent, responseEvent);
     }
 
+    @Test
+    public void handleRequestSkipsUserUpdateWhenExistingUserIsUnchanged() throws Exception {
+        handler = handlerWithMetrics();
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndCreatorRole());
+
+        handler.handleRequest(createRequestEventWithInstitutionAndEduPersonAffiliation(), mockContext);
+
+        assertThat(userApi.getUpdateCalls(), is(equalTo(0)));
+        verifyNumberOfAttributeUpdatesInCognito(1);
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.get(SKIPPED_USER_WRITES).longValue(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void handleRequestUpdatesUserWhenExistingUserHasChanged() throws Exception {
+        handler = handlerWithMetrics();
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndOnlyUserRole());
+
+        handler.handleRequest(createRequestEventWithInstitutionAndEduPersonAffiliation(), mockContext);
+
+        assertThat(userApi.getUpdateCalls(), is(equalTo(1)));
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.get(SKIPPED_USER_WRITES).longValue(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void handleRequestReturnsClaimsWithoutUpdatingUserPoolWhenModeIsClaims()
+        throws InvalidEntryInternalException {
+        handler = handlerWithClaimsDeliveryMode(ClaimsDeliveryMode.CLAIMS);
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndCreatorRole());
+
+        Map<String, Object> responseEvent = handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        verifyNumberOfAttributeUpdatesInCognito(0);
+        Map<String, Object> claims = claimsToAddOrOverride(responseEvent);
+        assertThat(claims.get(CUSTOM_CUSTOMER_ID), is(equalTo(SAMPLE_CUSTOMER_ID)));
+        assertThat(toSet((String) claims.get(CUSTOM_APPLICATION_ROLES)), is(equalTo(Set.of(CREATOR, USER))));
+        assertThat(responseEvent.get(USER_POOL_ID_FIELD), is(equalTo(SAMPLE_USER_POOL_ID)));
+    }
+
+    @Test
+    public void handleRequestReturnsClaimsAndUpdatesUserPoolWhenModeIsClaimsAndAttributes()
+        throws InvalidEntryInternalException {
+        handler = handlerWithClaimsDeliveryMode(ClaimsDeliveryMode.CLAIMS_AND_ATTRIBUTES);
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndCreatorRole());
+
+        Map<String, Object> responseEvent = handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        assertThat(handler.awaitDeferredWrites(DEFERRED_WRITES_TIMEOUT), is(true));
+        verifyNumberOfAttributeUpdatesInCognito(1);
+        assertThat(claimsToAddOrOverride(responseEvent).get(CUSTOM_CUSTOMER_ID), is(equalTo(SAMPLE_CUSTOMER_ID)));
+    }
+
+    @Test
+    public void handleRequestReturnsClaimsBeforeUserPoolUpdateHasCompletedWhenModeIsClaimsAndAttributes()
+        throws InvalidEntryInternalException, InterruptedException {
+        handler = handlerWithClaimsDeliveryMode(ClaimsDeliveryMode.CLAIMS_AND_ATTRIBUTES);
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndCreatorRole());
+        CountDownLatch userPoolUpdate = new CountDownLatch(1);
+        when(awsCognitoIdentityProvider.adminUpdateUserAttributes(any(AdminUpdateUserAttributesRequest.class)))
+            .thenAnswer(invocation -> {
+                userPoolUpdate.await();
+                return UNUSED_RESULT;
+            });
+
+        Map<String, Object> responseEvent = handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        assertThat(claimsToAddOrOverride(responseEvent).get(CUSTOM_CUSTOMER_ID), is(equalTo(SAMPLE_CUSTOMER_ID)));
+        assertThat(handler.awaitDeferredWrites(Duration.ZERO), is(false));
+        userPoolUpdate.countDown();
+        assertThat(handler.awaitDeferredWrites(DEFERRED_WRITES_TIMEOUT), is(true));
+    }
+
+    @Test
+    public void handleRequestReturnsClaimsWhenDeferredUserPoolUpdateFails() throws InvalidEntryInternalException {
+        final TestAppender appender = LogUtils.getTestingAppender(DeferredWrites.class);
+        handler = handlerWithClaimsDeliveryMode(ClaimsDeliveryMode.CLAIMS_AND_ATTRIBUTES);
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndCreatorRole());
+        when(awsCognitoIdentityProvider.adminUpdateUserAttributes(any(AdminUpdateUserAttributesRequest.class)))
+            .thenThrow(new AWSCognitoIdentityProviderException(COGNITO_FAILURE));
+
+        Map<String, Object> responseEvent = handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        assertThat(claimsToAddOrOverride(responseEvent).get(CUSTOM_CUSTOMER_ID), is(equalTo(SAMPLE_CUSTOMER_ID)));
+        assertThat(handler.awaitDeferredWrites(DEFERRED_WRITES_TIMEOUT), is(true));
+        assertThat(appender.getMessages(), containsString("Deferred " + USER_POOL_WRITE + " failed"));
+    }
+
+    @Test
+    public void handleRequestUpdatesUserPoolAndReturnsInputWhenTriggerSourceIsNotTokenGeneration()
+        throws InvalidEntryInternalException {
+        handler = handlerWithClaimsDeliveryMode(ClaimsDeliveryMode.CLAIMS);
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndCreatorRole());
+        Map<String, Object> requestEvent = createRequestEventWithInstitutionAndEduPersonAffiliation();
+        requestEvent.put(TRIGGER_SOURCE_FIELD, POST_AUTHENTICATION_TRIGGER_SOURCE);
+
+        Map<String, Object> responseEvent = handler.handleRequest(requestEvent, mockContext);
+
+        verifyNumberOfAttributeUpdatesInCognito(1);
+        assertEquals(requestEvent, responseEvent);
+    }
+
+    @Test
+    public void handleRequestReturnsWarmUpEventUnchangedWithoutReadingOrWritingUsers() {
+        UserApiMock warmedUpUserApi = spy(userApi);
+        handler = new PostAuthenticationHandler(new UserService(warmedUpUserApi, awsCognitoIdentityProvider),
+                                                customerApi);
+        Map<String, Object> warmUpEvent = Map.of(TRIGGER_SOURCE_FIELD, WARM_UP_TRIGGER_SOURCE);
+
+        Map<String, Object> responseEvent = handler.handleRequest(warmUpEvent, mockContext);
+
+        assertThat(responseEvent, is(equalTo(warmUpEvent)));
+        verify(warmedUpUserApi, times(1)).warmUp();
+        verify(customerApi, times(1)).warmUp();
+        verify(warmedUpUserApi, never()).getUser(anyString());
+        verify(warmedUpUserApi, never()).createUser(any());
+        verify(customerApi, never()).getCustomer(anyString());
+        verifyNumberOfAttributeUpdatesInCognito(0);
+    }
+
+    @Test
+    public void handleRequestWarmsUpWithTheConfiguredRoleRules() {
+        RoleRules roleRules = spy(RoleRules.defaultRules());
+        handler = new PostAuthenticationHandler(new UserService(userApi, new NoOpUserPoolClient(), roleRules),
+                                                customerApi);
+
+        handler.handleRequest(Map.of(TRIGGER_SOURCE_FIELD, WARM_UP_TRIGGER_SOURCE), mockContext);
+
+        verify(roleRules, atLeastOnce()).rolesFor(any(), any());
+    }
+
+    @Test
+    public void handleRequestCompletesWarmUpWhenConnectionsCannotBeOpened() {
+        final TestAppender appender = LogUtils.getTestingAppender(PostAuthenticationHandler.class);
+        when(customerApi.warmUp()).thenReturn(CompletableFuture.failedFuture(new IllegalStateException()));
+        Map<String, Object> warmUpEvent = Map.of(TRIGGER_SOURCE_FIELD, WARM_UP_TRIGGER_SOURCE);
+
+        Map<String, Object> responseEvent = handler.handleRequest(warmUpEvent, mockContext);
+
+        assertThat(responseEvent, is(equalTo(warmUpEvent)));
+        assertThat(appender.getMessages(), containsString(WARM_UP_CONNECTION_FAILED));
+    }
+
+    @Test
+    public void handleRequestPublishesOneMetricsRecordWithEveryPhaseWhenUserIsCreated() throws IOException {
+        handler = handlerWithMetrics();
+        mockCustomerApiWithExistingCustomer();
+
+        handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        assertThat(metricsRecords, hasSize(1));
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        for (String phase : List.of(EVENT_PARSE, CUSTOMER_LOOKUP, USER_GET, USER_CREATE, USER_POOL_UPDATE, TOTAL)) {
+            assertThat(phase, record.has(phase), is(true));
+        }
+        assertThat(record.get(TRIGGER_SOURCE).textValue(), is(equalTo(TOKEN_GENERATION_TRIGGER_SOURCE)));
+        assertThat(record.get(OUTCOME).textValue(), is(equalTo(SUCCESS)));
+    }
+
+    @Test
+    public void handleRequestPublishesBudgetRemainingAfterDownstreamCalls() throws IOException {
+        handler = handlerWithMetrics();
+        mockCustomerApiWithExistingCustomer();
+        when(mockContext.getRemainingTimeInMillis()).thenReturn(2000);
+
+        handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.get(REMAINING_BUDGET).doubleValue(), is(both(greaterThan(0.0)).and(lessThan(1800.0))));
+    }
+
+    @Test
+    public void handleRequestPublishesUserUpdateTimingWhenUserExists() throws Exception {
+        handler = handlerWithMetrics();
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndOnlyUserRole());
+
+        handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.has(USER_UPDATE), is(true));
+        assertThat(record.has(USER_CREATE), is(false));
+    }
+
+    @Test
+    public void handleRequestUpsertsUserAfterCustomerLookupWhenUserServiceUpsertsInOneRequest() throws Exception {
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndOnlyUserRole());
+        UserApiMock upsertingUserApi = spy(userApi);
+        doReturn(true).when(upsertingUserApi).upsertsInOneRequest();
+        handler = new PostAuthenticationHandler(new UserService(upsertingUserApi, awsCognitoIdentityProvider),
+                                                customerApi,
+                                                ClaimsDeliverySettings.attributesOnly(),
+                                                new MetricsPublisher(METRICS_NAMESPACE, metricsRecords::add,
+                                                                     Clock.systemUTC()));
+
+        handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        verify(upsertingUserApi).upsertUser(any(), any());
+        verifyNumberOfAttributeUpdatesInCognito(1);
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.has(USER_UPSERT), is(true));
+        assertThat(record.has(USER_GET), is(false));
+    }
+
+    @Test
+    public void handleRequestStartsUserLookupBeforeCustomerLookup() throws Exception {
+        List<String> lookups = Collections.synchronizedList(new ArrayList<>());
+        when(customerApi.getCustomer(anyString())).thenAnswer(invocation -> {
+            lookups.add(CUSTOMER_LOOKUP);
+            return Optional.of(new CustomerResponse(SAMPLE_CUSTOMER_ID, SAMPLE_CRISTIN_ID));
+        });
+        UserApiMock lookingUpUserApi = spy(userApi);
+        doAnswer(invocation -> {
+            lookups.add(USER_GET);
+            return invocation.callRealMethod();
+        }).when(lookingUpUserApi).getUserAsync(any());
+        handler = new PostAuthenticationHandler(new UserService(lookingUpUserApi, awsCognitoIdentityProvider),
+                                                customerApi);
+
+        handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        assertThat(lookups, is(equalTo(List.of(USER_GET, CUSTOMER_LOOKUP))));
+    }
+
+    @Test
+    public void handleRequestPublishesFailureOutcomeWhenUserPoolUpdateFails() throws IOException {
+        handler = handlerWithMetrics();
+        mockCustomerApiWithExistingCustomer();
+        when(awsCognitoIdentityProvider.adminUpdateUserAttributes(any(AdminUpdateUserAttributesRequest.class)))
+            .thenThrow(new AWSCognitoIdentityProviderException(COGNITO_FAILURE));
+
+        Executable action = () -> handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        assertThrows(AWSCognitoIdentityProviderException.class, action);
+        assertThat(metricsRecords, hasSize(1));
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.get(OUTCOME).textValue(), is(equalTo(FAILURE)));
+    }
+
+    @Test
+    public void handleRequestPublishesNoMetricsRecordForWarmUpEvent() {
+        handler = handlerWithMetrics();
+
+        handler.handleRequest(Map.of(TRIGGER_SOURCE_FIELD, WARM_UP_TRIGGER_SOURCE), mockContext);
+
+        assertThat(metricsRecords, is(empty()));
+    }
+
+    @Test
+    public void handleRequestIssuesClaimsInUserPoolWhenUserServiceFailsAndFallbackIsEnabled() throws IOException {
+        mockCustomerApiWithExistingCustomer();
+        UserApiMock failingUserApi = spy(userApi);
+        doThrow(new BadGatewayException(COULD_NOT_FETCH_USER_ERROR_MESSAGE)).when(failingUserApi).getUser(any());
+        handler = handlerWithFallback(failingUserApi);
+
+        Map<String, Object> responseEvent = handler.handleRequest(tokenGenerationEventWithLastKnownClaims(),
+                                                                  mockContext);
+
+        Map<String, Object> claims = claimsToAddOrOverride(responseEvent);
+        assertThat(claims.get(CUSTOM_CUSTOMER_ID), is(equalTo(SAMPLE_CUSTOMER_ID)));
+        assertThat(claims.get(CUSTOM_APPLICATION_ROLES), is(equalTo(LAST_KNOWN_ROLES)));
+        assertThat(claims.get(CUSTOM_APPLICATION_ACCESS_RIGHTS), is(equalTo(LAST_KNOWN_ACCESS_RIGHTS)));
+        verify(failingUserApi, never()).createUser(any());
+        verifyNumberOfAttributeUpdatesInCognito(0);
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.get(OUTCOME).textValue(), is(equalTo(DEGRADED)));
+    }
+
+    @Test
+    public void handleRequestIssuesClaimsOfLastLoginWhenUserServiceFailsAndFallbackIsEnabled()
+        throws InvalidEntryInternalException {
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndCreatorRole());
+        UserApiMock failingUserApi = spy(userApi);
+        handler = handlerWithFallback(failingUserApi);
+        handler.handleRequest(tokenGenerationEvent(), mockContext);
+        doThrow(new BadGatewayException(COULD_NOT_FETCH_USER_ERROR_MESSAGE)).when(failingUserApi).getUser(any());
+
+        Map<String, Object> responseEvent = handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        Map<String, Object> claims = claimsToAddOrOverride(responseEvent);
+        assertThat(claims.get(CUSTOM_CUSTOMER_ID), is(equalTo(SAMPLE_CUSTOMER_ID)));
+        assertThat(toSet((String) claims.get(CUSTOM_APPLICATION_ROLES)), is(equalTo(Set.of(CREATOR, USER))));
+    }
+
+    @Test
+    public void handleRequestFailsWhenUserServiceFailsAndNoClaimsOfUserAreKnown() {
+        mockCustomerApiWithExistingCustomer();
+        UserApiMock failingUserApi = spy(userApi);
+        doThrow(new BadGatewayException(COULD_NOT_FETCH_USER_ERROR_MESSAGE)).when(failingUserApi).getUser(any());
+        handler = handlerWithFallback(failingUserApi);
+
+        Executable action = () -> handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        assertThrows(BadGatewayException.class, action);
+        verifyNumberOfAttributeUpdatesInCognito(0);
+    }
+
+    @Test
+    public void handleRequestSucceedsAsDegradedWhenUserServiceUpdateFailsAndFallbackIsEnabled() throws Exception {
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndOnlyUserRole());
+        UserApiMock failingUserApi = spy(userApi);
+        doThrow(new BadGatewayException(UPDATE_USER_FAILURE)).when(failingUserApi).updateUser(any());
+        handler = handlerWithFallback(failingUserApi);
+
+        Map<String, Object> responseEvent = handler.handleRequest(tokenGenerationEvent(), mockContext);
+
+        assertThat(toSet((String) claimsToAddOrOverride(responseEvent).get(CUSTOM_APPLICATION_ROLES)),
+                   is(equalTo(Set.of(CREATOR, USER))));
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.get(OUTCOME).textValue(), is(equalTo(DEGRADED)));
+    }
+
+    @Test
+    public void handleRequestFailsWhenUserServiceUpdateFailsAndUserPoolUpdateSucceeds()
+        throws Exception {
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndOnlyUserRole());
+        UserApiMock failingUserApi = spy(userApi);
+        doThrow(new BadGatewayException(UPDATE_USER_FAILURE)).when(failingUserApi).updateUser(any());
+        handler = new PostAuthenticationHandler(new UserService(failingUserApi, awsCognitoIdentityProvider),
+                                                customerApi);
+
+        Map<String, Object> requestEvent = createRequestEventWithInstitutionAndEduPersonAffiliation();
+
+        assertThrows(BadGatewayException.class, () -> handler.handleRequest(requestEvent, mockContext));
+        verifyNumberOfAttributeUpdatesInCognito(1);
+    }
+
+    @Test
+    public void handleRequestFailsWhenUserPoolUpdateFailsAndUserServiceUpdateSucceeds()
+        throws InvalidEntryInternalException {
+        mockCustomerApiWithExistingCustomer();
+        prepareMocksWithExistingUser(createUserWithInstitutionAndOnlyUserRole());
+        when(awsCognitoIdentityProvider.adminUpdateUserAttributes(any(AdminUpdateUserAttributesRequest.class)))
+            .thenThrow(new AWSCognitoIdentityProviderException(COGNITO_FAILURE));
+
+        Map<String, Object> requestEvent = createRequestEventWithInstitutionAndEduPersonAffiliation();
+
+        Executable action = () -> handler.handleRequest(requestEvent, mockContext);
+        assertThrows(AWSCognitoIdentityProviderException.class, action);
+        assertThat(userApi.getUpdateCalls(), is(equalTo(1)));
+    }
+
     @Test
     public void handleRequestCreatesUserWithUserRoleWhenNoCustomerIsFound() throws InvalidEntryInternalException {
         mockCustomerApiWithNoCustomer();
@@ -228,6 +654,21 @@ public class PostAuthenticationHandlerTest {
         assertThat(oldAndNewRolesDiff, rolesAfterLogin, not(hasItem(CREATOR)));
     }
 
+    @Test
+    public void handlerKeepsHandGrantedRoleThatOnlyTheRulesOfAnotherCustomerAssign()
+        throws InvalidEntryInternalException {
+        mockCustomerApiWithExistingCustomer();
+        RoleRules rules = new RoleRules(RoleRules.DEFAULT_ROLE_RULES, Map.of(OTHER_CUSTOMER_ID, CURATOR + "=staff"));
+        handler = new PostAuthenticationHandler(
+            new UserService(userApi, new SdkUserPoolClient(awsCognitoIdentityProvider, Runnable::run), rules),
+            customerApi);
+        prepareMocksWithExistingUser(createUserWithCustomRole(CURATOR));
+
+        handler.handleRequest(createRequestEventWithInstitutionAndEduPersonAffiliation(), mockContext);
+
+        assertThat(extractRoleNames(getUserFromMock()), containsInAnyOrder(CREATOR, CURATOR, USER));
+    }
+
     @Test
     public void handlerAddsCreatorRoleFromUserThatDidNotHaveCreatorRoleButNowHasAffiliationThatGivesThemTheRole()
         throws InvalidEntryInternalException {
@@ -277,6 +718,21 @@ public class PostAuthenticationHandlerTest {
         assertEquals(requestEvent, responseEvent);
     }
 
+    @Test
+    public void handleRequestCreatesUserWithoutInstitutionWhenEventHasNoOrgNumber()
+        throws InvalidEntryInternalException {
+        Map<String, Object> requestEvent = createRequestEventWithoutOrgNumber();
+        final Map<String, Object> responseEvent = handler.handleRequest(requestEvent, mock(Context.class));
+
+        verifyNumberOfAttributeUpdatesInCognito(1);
+        verify(customerApi, times(0)).getCustomer(anyString());
+
+        UserDto expected = createUserWithOnlyUserRole();
+        UserDto createdUser = getUserFromMock();
+        assertEquals(expected, createdUser);
+        assertEquals(requestEvent, responseEvent);
+    }
+
     private String randomRoleName() {
         return UUID.randomUUID().toString();
     }
@@ -308,7 +764,7 @@ public class PostAuthenticationHandlerTest {
     private String extractAccessRightsFromUserAttributes() {
         return attributeTypesBuffer.get()
                    .stream()
-                   .filter(attr -> attr.getName().equals(PostAuthenticationHandler.CUSTOM_APPLICATION_ACCESS_RIGHTS))
+                   .filter(attr -> attr.getName().equals(CUSTOM_APPLICATION_ACCESS_RIGHTS))
                    .map(AttributeType::getValue)
                    .collect(SingletonCollector.collect());
     }
@@ -331,6 +787,50 @@ public class PostAuthenticationHandlerTest {
         verify(awsCognitoIdentityProvider, times(numberOfUpdates)).adminUpdateUserAttributes(any());
     }
 
+    private PostAuthenticationHandler handlerWithClaimsDeliveryMode(ClaimsDeliveryMode mode) {
+        return new PostAuthenticationHandler(userService, customerApi,
+                                             new ClaimsDeliverySettings(mode, Collections.emptyMap()));
+    }
+
+    private PostAuthenticationHandler handlerWithMetrics() {
+        return new PostAuthenticationHandler(userService, customerApi, ClaimsDeliverySettings.attributesOnly(),
+                                             new MetricsPublisher(METRICS_NAMESPACE, metricsRecords::add,
+                                                                  Clock.systemUTC()));
+    }
+
+    private PostAuthenticationHandler handlerWithFallback(UserApiMock userApi) {
+        return new PostAuthenticationHandler(new UserService(userApi, awsCognitoIdentityProvider),
+                                             customerApi,
+                                             new ClaimsDeliverySettings(ClaimsDeliveryMode.CLAIMS,
+                                                                        Collections.emptyMap()),
+                                             new MetricsPublisher(METRICS_NAMESPACE, metricsRecords::add,
+                                                                  Clock.systemUTC()),
+                                             new UserServiceFallback(true, Duration.ofSeconds(1),
+                                                                     UserServiceFallback.DEFAULT_MAX_SIZE));
+    }
+
+    private Map<String, Object> tokenGenerationEventWithLastKnownClaims() {
+        Map<String, Object> requestEvent = tokenGenerationEvent();
+        Map<String, Object> request = (Map<String, Object>) requestEvent.get(Event.REQUEST);
+        Map<String, Object> userAttributes = (Map<String, Object>) request.get(Request.USER_ATTRIBUTES);
+        userAttributes.put(UserAttributes.CUSTOMER_ID, SAMPLE_CUSTOMER_ID);
+        userAttributes.put(UserAttributes.APPLICATION_ROLES, LAST_KNOWN_ROLES);
+        userAttributes.put(UserAttributes.ACCESS_RIGHTS, LAST_KNOWN_ACCESS_RIGHTS);
+        return requestEvent;
+    }
+
+    private Map<String, Object> tokenGenerationEvent() {
+        Map<String, Object> requestEvent = createRequestEventWithInstitutionAndEduPersonAffiliation();
+        requestEvent.put(TRIGGER_SOURCE_FIELD, TOKEN_GENERATION_TRIGGER_SOURCE);
+        return requestEvent;
+    }
+
+    private Map<String, Object> claimsToAddOrOverride(Map<String, Object> responseEvent) {
+        Map<String, Object> response = (Map<String, Object>) responseEvent.get(RESPONSE);
+        Map<String, Object> claimsOverrideDetails = (Map<String, Object>) response.get(CLAIMS_OVERRIDE_DETAILS);
+        return (Map<String, Object>) claimsOverrideDetails.get(CLAIMS_TO_ADD_OR_OVERRIDE);
+    }
+
     private UserDto getUserFromMock() {
         return userApi.getUser(SAMPLE_FEIDE_ID).get();
     }
@@ -407,6 +907,24 @@ public class PostAuthenticationHandlerTest {
         return JsonUtils.objectMapper.convertValue(event, Map.class);
     }
 
+    private Map<String, Object> createRequestEventWithoutOrgNumber() {
+        UserAttributes userAttributes = new UserAttributes();
+        userAttributes.setFeideId(SAMPLE_FEIDE_ID);
+        userAttributes.setAffiliation(SAMPLE_AFFILIATION);
+        userAttributes.setGivenName(SAMPLE_GIVEN_NAME);
+        userAttributes.setFamilyName(SAMPLE_FAMILY_NAME);
+
+        Request request = new Request();
+        request.setUserAttributes(userAttributes);
+
+        Event event = new Event();
+        event.setUserPoolId(SAMPLE_USER_POOL_ID);
+        event.setUserName(SAMPLE_USER_NAME);
+        event.setRequest(request);
+
+        return JsonUtils.objectMapper.convertValue(event, Map.class);
+    }
+
     private Map<String, Object> createRequestEventWithEmptyAffiliation() {
         UserAttributes userAttributes = new UserAttributes();
         userAttributes.setFeideId(SAMPLE_FEIDE_ID);
@@ -0,0 +1,125 @@
+package no.unit.nva.cognito;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.EVENT_PARSE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.TOTAL;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import no.unit.nva.cognito.metrics.MetricsPublisher;
+import no.unit.nva.cognito.model.ClaimsDeliveryMode;
+import no.unit.nva.cognito.service.ClaimsDeliverySettings;
+import no.unit.nva.cognito.service.CustomerApi;
+import no.unit.nva.cognito.service.UserApi;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.warmup.NoOpUserPoolClient;
+import no.unit.nva.cognito.warmup.WarmUpCustomerApi;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.cognito.warmup.WarmUpUserApi;
+import nva.commons.core.JsonUtils;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("unchecked")
+public class PostAuthenticationStreamHandlerTest {
+
+    public static final String WARM_UP_EVENT = "{\"triggerSource\":\"WarmUp\",\"other\":[1,2]}";
+
+    public static final String METRICS_NAMESPACE = "Test/Namespace";
+
+    private final Context context = mock(Context.class);
+    private final List<String> metricsRecords = new ArrayList<>();
+
+    @Test
+    public void handleRequestWritesInputUnchangedWhenClaimsAreNotReturned() throws IOException {
+        byte[] event = WarmUpSamples.sampleEventJson().getBytes(UTF_8);
+
+        byte[] response = handleRequest(streamHandler(ClaimsDeliveryMode.ATTRIBUTES), event);
+
+        assertThat(response, is(equalTo(event)));
+    }
+
+    @Test
+    public void handleRequestWritesSameResponseAsMapHandlerWhenClaimsAreReturned() throws IOException {
+        Map<String, Object> event = WarmUpSamples.sampleEvent();
+        Map<String, Object> expected = handler(ClaimsDeliveryMode.CLAIMS).handleRequest(event, context);
+
+        byte[] response = handleRequest(streamHandler(ClaimsDeliveryMode.CLAIMS),
+                                        WarmUpSamples.sampleEventJson().getBytes(UTF_8));
+
+        assertThat(JsonUtils.objectMapper.readValue(response, Map.class), is(equalTo(expected)));
+    }
+
+    @Test
+    public void handleRequestWarmsUpAndWritesInputUnchangedWhenEventIsWarmUpEvent() throws IOException {
+        UserApi userApi = mock(UserApi.class, CALLS_REAL_METHODS);
+        CustomerApi customerApi = mock(CustomerApi.class, CALLS_REAL_METHODS);
+        PostAuthenticationHandler handler =
+            new PostAuthenticationHandler(new UserService(userApi, new NoOpUserPoolClient()), customerApi);
+        byte[] event = WARM_UP_EVENT.getBytes(UTF_8);
+
+        byte[] response = handleRequest(new PostAuthenticationStreamHandler(handler), event);
+
+        assertThat(response, is(equalTo(event)));
+        verify(userApi, times(1)).warmUp();
+        verify(customerApi, times(1)).warmUp();
+    }
+
+    @Test
+    public void handleRequestPublishesOneMetricsRecordIncludingEventParse() throws IOException {
+        byte[] event = WarmUpSamples.sampleEventJson().getBytes(UTF_8);
+
+        handleRequest(new PostAuthenticationStreamHandler(handlerWithMetrics()), event);
+
+        assertThat(metricsRecords, hasSize(1));
+        JsonNode record = JsonUtils.objectMapper.readTree(metricsRecords.get(0));
+        assertThat(record.has(EVENT_PARSE), is(true));
+        assertThat(record.has(TOTAL), is(true));
+    }
+
+    @Test
+    public void handleRequestPublishesNoMetricsRecordForWarmUpEvent() throws IOException {
+        handleRequest(new PostAuthenticationStreamHandler(handlerWithMetrics()), WARM_UP_EVENT.getBytes(UTF_8));
+
+        assertThat(metricsRecords, is(empty()));
+    }
+
+    private byte[] handleRequest(PostAuthenticationStreamHandler streamHandler, byte[] event) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streamHandler.handleRequest(new ByteArrayInputStream(event), output, context);
+        return output.toByteArray();
+    }
+
+    private PostAuthenticationStreamHandler streamHandler(ClaimsDeliveryMode claimsDeliveryMode) {
+        return new PostAuthenticationStreamHandler(handler(claimsDeliveryMode));
+    }
+
+    private PostAuthenticationHandler handlerWithMetrics() {
+        return new PostAuthenticationHandler(new UserService(new WarmUpUserApi(), new NoOpUserPoolClient()),
+                                             new WarmUpCustomerApi(),
+                                             ClaimsDeliverySettings.attributesOnly(),
+                                             new MetricsPublisher(METRICS_NAMESPACE, metricsRecords::add,
+                                                                  Clock.systemUTC()));
+    }
+
+    private PostAuthenticationHandler handler(ClaimsDeliveryMode claimsDeliveryMode) {
+        return new PostAuthenticationHandler(new UserService(new WarmUpUserApi(), new NoOpUserPoolClient()),
+                                             new WarmUpCustomerApi(),
+                                             new ClaimsDeliverySettings(claimsDeliveryMode, Collections.emptyMap()));
+    }
+}
@@ -0,0 +1,240 @@
+package no.unit.nva.cognito;
+
+import static no.unit.nva.cognito.ReconciliationHandler.USER_POOL_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import com.amazonaws.services.lambda.runtime.Context;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import no.unit.nva.cognito.model.UserAttributes;
+import no.unit.nva.cognito.reconciliation.AttributeReconciler;
+import no.unit.nva.cognito.reconciliation.ReconciliationCheckpoint;
+import no.unit.nva.cognito.reconciliation.ReconciliationOutcome;
+import no.unit.nva.cognito.reconciliation.UserPoolStandIn;
+import no.unit.nva.cognito.service.CustomerApi;
+import no.unit.nva.cognito.service.UserApiMock;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.util.RateLimiter;
+import no.unit.nva.cognito.warmup.NoOpUserPoolClient;
+import nva.commons.core.Environment;
+import nva.commons.core.JsonUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+public class ReconciliationHandlerTest {
+
+    public static final String SAMPLE_USER_POOL_ID = "userPoolId";
+    public static final String OTHER_USER_POOL_ID = "otherUserPoolId";
+    public static final int PAGE_SIZE = 2;
+    public static final int USERS = 3;
+    public static final double UNLIMITED_CALLS_PER_SECOND = 1000;
+    public static final Duration TIME_RESERVE = Duration.ofSeconds(60);
+    public static final int NO_REMAINING_TIME_REPORTED = 0;
+    public static final int LESS_THAN_RESERVE_MILLIS = 30_000;
+    public static final int MORE_THAN_RESERVE_MILLIS = 120_000;
+    public static final int MAX_FAILURES = 2;
+    public static final String SAMPLE_ERROR = "sampleError";
+
+    private UserPoolStandIn userPool;
+    private PostAuthenticationHandler postAuthenticationHandler;
+    private ReconciliationHandler handler;
+
+    /**
+     * Set up a user pool whose users are not in the user service.
+     */
+    @BeforeEach
+    public void init() {
+        userPool = new UserPoolStandIn(PAGE_SIZE);
+        for (int user = 0; user < USERS; user++) {
+            userPool.addUser("user" + user, Map.of(UserAttributes.FEIDE_ID, "feideId" + user));
+        }
+        CustomerApi customerApi = mock(CustomerApi.class, CALLS_REAL_METHODS);
+        when(customerApi.getCustomer(anyString())).thenReturn(Optional.empty());
+        UserService userService = new UserService(new UserApiMock(), userPool);
+        postAuthenticationHandler = new PostAuthenticationHandler(userService, customerApi);
+        handler = new ReconciliationHandler(userService,
+                                            new AttributeReconciler(postAuthenticationHandler, PAGE_SIZE,
+                                                                    unlimitedRate()),
+                                            unlimitedRate(),
+                                            SAMPLE_USER_POOL_ID,
+                                            TIME_RESERVE,
+                                            MAX_FAILURES);
+    }
+
+    @Test
+    public void handleRequestReconcilesEveryPageOfDefaultUserPoolWhenInputIsEmpty() {
+        ReconciliationCheckpoint checkpoint = handle(Map.of(), NO_REMAINING_TIME_REPORTED);
+
+        assertThat(checkpoint.isDone(), is(true));
+        assertThat(checkpoint.getUserPoolId(), is(equalTo(SAMPLE_USER_POOL_ID)));
+        assertThat(checkpoint.getPages(), is(equalTo(2L)));
+        assertThat(checkpoint.getPaginationToken(), is(equalTo(null)));
+        assertThat(checkpoint.getOutcomes(), is(equalTo(Map.of(ReconciliationOutcome.SKIPPED, 3L))));
+    }
+
+    @Test
+    public void handleRequestResumesFromCheckpointInInput() {
+        Map<String, Object> input = Map.of(ReconciliationCheckpoint.USER_POOL_ID, OTHER_USER_POOL_ID,
+                                           ReconciliationCheckpoint.PAGINATION_TOKEN, String.valueOf(PAGE_SIZE),
+                                           ReconciliationCheckpoint.PAGES, 1,
+                                           ReconciliationCheckpoint.OUTCOMES, Map.of("SKIPPED", PAGE_SIZE));
+
+        ReconciliationCheckpoint checkpoint = handle(input, NO_REMAINING_TIME_REPORTED);
+
+        assertThat(userPool.getListUsersCalls(), is(equalTo(1)));
+        assertThat(checkpoint.getUserPoolId(), is(equalTo(OTHER_USER_POOL_ID)));
+        assertThat(checkpoint.getPages(), is(equalTo(2L)));
+        assertThat(checkpoint.getOutcomes(), is(equalTo(Map.of(ReconciliationOutcome.SKIPPED, 3L))));
+        assertThat(checkpoint.isDone(), is(true));
+    }
+
+    @Test
+    public void handleRequestReturnsCheckpointWithoutNewPageWhenLessThanTimeReserveIsLeft() {
+        ReconciliationCheckpoint checkpoint = handle(Map.of(), LESS_THAN_RESERVE_MILLIS);
+
+        assertThat(userPool.getListUsersCalls(), is(equalTo(0)));
+        assertThat(checkpoint.isDone(), is(false));
+        assertThat(checkpoint.getPages(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void handleRequestReconcilesPagesWhileMoreThanTimeReserveIsLeft() {
+        ReconciliationCheckpoint checkpoint = handle(Map.of(), MORE_THAN_RESERVE_MILLIS);
+
+        assertThat(checkpoint.isDone(), is(true));
+    }
+
+    @Test
+    public void handleRequestReturnsCheckpointOfFinishedPagesWhenListingAPageFails() {
+        userPool.failListingOfPage(String.valueOf(PAGE_SIZE));
+
+        ReconciliationCheckpoint checkpoint = handle(Map.of(), NO_REMAINING_TIME_REPORTED);
+
+        assertThat(checkpoint.isDone(), is(false));
+        assertThat(checkpoint.getPages(), is(equalTo(1L)));
+        assertThat(checkpoint.getPaginationToken(), is(equalTo(String.valueOf(PAGE_SIZE))));
+        assertThat(checkpoint.getOutcomes(), is(equalTo(Map.of(ReconciliationOutcome.SKIPPED, 2L))));
+        assertThat(checkpoint.getFailures(), is(equalTo(1)));
+        assertThat(checkpoint.getLastError(), is(notNullValue()));
+    }
+
+    @Test
+    public void handleRequestFailsWhenSamePageHasFailedMaxFailuresTimesInARow() {
+        userPool.failListingOfPage(String.valueOf(PAGE_SIZE));
+        ReconciliationCheckpoint failedOnce = handle(Map.of(), NO_REMAINING_TIME_REPORTED);
+        Map<String, Object> input = JsonUtils.objectMapper.convertValue(failedOnce, Map.class);
+
+        Executable secondRun = () -> handler.handleRequest(input, contextWithRemainingMillis(0));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, secondRun);
+        assertThat(exception.getMessage(), containsString("failed 2 times"));
+    }
+
+    @Test
+    public void handleRequestClearsFailuresWhenFailedPageSucceeds() {
+        ReconciliationCheckpoint failedOnce = new ReconciliationCheckpoint(SAMPLE_USER_POOL_ID, null, 0, null, false)
+                                                  .failed(SAMPLE_ERROR);
+
+        ReconciliationCheckpoint checkpoint = handle(JsonUtils.objectMapper.convertValue(failedOnce, Map.class),
+                                                     NO_REMAINING_TIME_REPORTED);
+
+        assertThat(checkpoint.isDone(), is(true));
+        assertThat(checkpoint.getFailures(), is(equalTo(0)));
+        assertThat(checkpoint.getLastError(), is(nullValue()));
+    }
+
+    @Test
+    public void handleRequestFailsWithoutListingUsersWhenNoUserPoolIsGiven() {
+        handler = new ReconciliationHandler(postAuthenticationHandler.getUserService(),
+                                            new AttributeReconciler(postAuthenticationHandler, PAGE_SIZE,
+                                                                    unlimitedRate()),
+                                            unlimitedRate(),
+                                            null,
+                                            TIME_RESERVE,
+                                            MAX_FAILURES);
+
+        assertThrows(IllegalArgumentException.class, () -> handle(Map.of(), NO_REMAINING_TIME_REPORTED));
+        assertThat(userPool.getListUsersCalls(), is(equalTo(0)));
+    }
+
+    @Test
+    public void handlerFromEnvironmentFailsWhenUserPoolInEnvironmentIsEmpty() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(USER_POOL_ID)).thenReturn(Optional.of(""));
+        ReconciliationHandler emptyUserPoolIdHandler = new ReconciliationHandler(postAuthenticationHandler,
+                                                                                 environment);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> emptyUserPoolIdHandler.handleRequest(Map.of(), contextWithRemainingMillis(0)));
+    }
+
+    @Test
+    public void handleRequestReturnsInputCheckpointWhenFirstPageFails() {
+        Map<String, Object> input = Map.of(ReconciliationCheckpoint.USER_POOL_ID, SAMPLE_USER_POOL_ID,
+                                           ReconciliationCheckpoint.PAGINATION_TOKEN, String.valueOf(PAGE_SIZE),
+                                           ReconciliationCheckpoint.PAGES, 1);
+        userPool.failListingOfPage(String.valueOf(PAGE_SIZE));
+
+        ReconciliationCheckpoint checkpoint = handle(input, NO_REMAINING_TIME_REPORTED);
+
+        assertThat(userPool.getListUsersCalls(), is(equalTo(1)));
+        assertThat(checkpoint.getPages(), is(equalTo(1L)));
+        assertThat(checkpoint.getPaginationToken(), is(equalTo(String.valueOf(PAGE_SIZE))));
+    }
+
+    @Test
+    public void reconcileNextPageReturnsTokenOfPageAfterIt() {
+        ReconciliationCheckpoint checkpoint = handler.reconcileNextPage(
+            new ReconciliationCheckpoint(SAMPLE_USER_POOL_ID, null, 0, null, false));
+
+        assertThat(checkpoint.getPaginationToken(), is(equalTo(String.valueOf(PAGE_SIZE))));
+        assertThat(checkpoint.isDone(), is(false));
+        assertThat(checkpoint.toString(), is(equalTo("userPoolId page 1 {SKIPPED=2} next 2")));
+    }
+
+    @Test
+    public void handlerFromEnvironmentReconcilesUserPoolInEnvironment() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(USER_POOL_ID)).thenReturn(Optional.of(OTHER_USER_POOL_ID));
+        PostAuthenticationHandler emptyUserPoolHandler = new PostAuthenticationHandler(
+            new UserService(new UserApiMock(), new NoOpUserPoolClient()), mock(CustomerApi.class));
+
+        Map<String, Object> output = new ReconciliationHandler(emptyUserPoolHandler, environment)
+                                         .handleRequest(Map.of(), contextWithRemainingMillis(0));
+
+        ReconciliationCheckpoint checkpoint = toCheckpoint(output);
+        assertThat(checkpoint.getUserPoolId(), is(equalTo(OTHER_USER_POOL_ID)));
+        assertThat(checkpoint.isDone(), is(true));
+        assertThat(checkpoint.getOutcomes().isEmpty(), is(true));
+    }
+
+    private ReconciliationCheckpoint handle(Map<String, Object> input, int remainingMillis) {
+        return toCheckpoint(handler.handleRequest(input, contextWithRemainingMillis(remainingMillis)));
+    }
+
+    private static ReconciliationCheckpoint toCheckpoint(Map<String, Object> output) {
+        return JsonUtils.objectMapper.convertValue(output, ReconciliationCheckpoint.class);
+    }
+
+    private static Context contextWithRemainingMillis(int remainingMillis) {
+        Context context = mock(Context.class);
+        when(context.getRemainingTimeInMillis()).thenReturn(remainingMillis);
+        return context;
+    }
+
+    private static RateLimiter unlimitedRate() {
+        return new RateLimiter(UNLIMITED_CALLS_PER_SECOND, Clock.systemUTC());
+    }
+}
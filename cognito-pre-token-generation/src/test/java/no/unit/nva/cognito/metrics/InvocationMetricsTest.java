@@ -0,0 +1,92 @@
+package no.unit.nva.cognito.metrics;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_CACHE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.EVENT_PARSE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HIT;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.NONE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.TOTAL;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_UPSERT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class InvocationMetricsTest {
+
+    public static final String RESULT = "result";
+    public static final long DURATION = 5L;
+
+    private final InvocationMetrics metrics = new InvocationMetrics();
+
+    @AfterEach
+    public void detach() {
+        metrics.detach();
+    }
+
+    @Test
+    public void timeReturnsResultAndRecordsPhase() {
+        String result = metrics.time(EVENT_PARSE, () -> RESULT);
+
+        assertThat(result, is(equalTo(RESULT)));
+        assertThat(metrics.getTimings(), hasKey(EVENT_PARSE));
+    }
+
+    @Test
+    public void timeRecordsPhaseWhenPhaseFails() {
+        assertThrows(IllegalStateException.class, () -> metrics.time(EVENT_PARSE, () -> {
+            throw new IllegalStateException();
+        }));
+
+        assertThat(metrics.getTimings(), hasKey(EVENT_PARSE));
+    }
+
+    @Test
+    public void timeAsyncRecordsPhaseWhenFutureCompletes() {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> timed = metrics.timeAsync(USER_UPSERT, () -> pending);
+
+        assertThat(metrics.getTimings(), not(hasKey(USER_UPSERT)));
+        pending.complete(RESULT);
+
+        assertThat(timed.join(), is(equalTo(RESULT)));
+        assertThat(metrics.getTimings(), hasKey(USER_UPSERT));
+    }
+
+    @Test
+    public void recordAccumulatesDurationsOfRepeatedPhase() {
+        metrics.record(USER_UPSERT, DURATION);
+        metrics.record(USER_UPSERT, DURATION);
+
+        assertThat(metrics.getTimings().get(USER_UPSERT), is(equalTo(DURATION + DURATION)));
+    }
+
+    @Test
+    public void stopRecordsTotal() {
+        metrics.stop();
+
+        assertThat(metrics.getTimings(), hasKey(TOTAL));
+    }
+
+    @Test
+    public void currentReturnsAttachedMetrics() {
+        metrics.attach();
+        InvocationMetrics.current().dimension(CUSTOMER_CACHE, HIT);
+
+        assertThat(InvocationMetrics.current(), is(sameInstance(metrics)));
+        assertThat(metrics.getDimensions().get(CUSTOMER_CACHE), is(equalTo(HIT)));
+    }
+
+    @Test
+    public void currentReturnsDetachedMetricsWhenNoMetricsAreAttached() {
+        InvocationMetrics.current().dimension(CUSTOMER_CACHE, HIT);
+
+        assertThat(InvocationMetrics.current(), is(not(sameInstance(metrics))));
+        assertThat(metrics.getDimensions().get(CUSTOMER_CACHE), is(equalTo(NONE)));
+    }
+}
@@ -0,0 +1,77 @@
+package no.unit.nva.cognito.metrics;
+
+import static no.unit.nva.cognito.metrics.LatencyHistogram.HIGHEST_TRACKABLE_MICROS;
+import static no.unit.nva.cognito.metrics.LatencyHistogram.NANOS_PER_MICRO;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    public static final double RELATIVE_ERROR = 1.0 / LatencyHistogram.SUB_BUCKET_COUNT;
+    public static final int THREADS = 8;
+    public static final int RECORDS_PER_THREAD = 10_000;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void valueAtPercentileReturnsZeroWhenNothingIsRecorded() {
+        assertThat(histogram.valueAtPercentile(LatencySummary.P99), is(0L));
+        assertThat(histogram.getCount(), is(0L));
+    }
+
+    @Test
+    public void valueAtPercentileReturnsExactValuesBelowSubBucketCount() {
+        LongStream.rangeClosed(1, 10).forEach(micros -> histogram.record(micros * NANOS_PER_MICRO));
+
+        assertThat(histogram.valueAtPercentile(LatencySummary.P50), is(5L));
+        assertThat(histogram.valueAtPercentile(LatencySummary.P90), is(9L));
+        assertThat(histogram.valueAtPercentile(LatencyHistogram.MAX_PERCENTILE), is(10L));
+    }
+
+    @Test
+    public void valueAtPercentileIsWithinRelativeErrorOfRecordedValue() {
+        LongStream.rangeClosed(1, 1000).forEach(millis -> histogram.record(millis * 1_000_000L));
+
+        assertWithinRelativeError(histogram.valueAtPercentile(LatencySummary.P50), 500_000L);
+        assertWithinRelativeError(histogram.valueAtPercentile(LatencySummary.P90), 900_000L);
+        assertWithinRelativeError(histogram.valueAtPercentile(LatencySummary.P99), 990_000L);
+        assertThat(histogram.getMaxMicros(), is(1_000_000L));
+    }
+
+    @Test
+    public void valueAtPercentileNeverExceedsMaximum() {
+        histogram.record(1_000_001L * NANOS_PER_MICRO);
+
+        assertThat(histogram.valueAtPercentile(LatencySummary.P99), is(1_000_001L));
+    }
+
+    @Test
+    public void recordKeepsExactMaximumAboveHighestTrackableValue() {
+        long micros = HIGHEST_TRACKABLE_MICROS * 2;
+        histogram.record(micros * NANOS_PER_MICRO);
+
+        assertThat(histogram.getMaxMicros(), is(micros));
+        assertThat(histogram.valueAtPercentile(LatencySummary.P99), is(HIGHEST_TRACKABLE_MICROS));
+    }
+
+    @Test
+    public void recordCountsEveryValueRecordedConcurrently() {
+        IntStream.range(0, THREADS)
+            .parallel()
+            .forEach(thread -> IntStream.range(0, RECORDS_PER_THREAD).forEach(i -> histogram.record(i)));
+
+        assertThat(histogram.getCount(), is(equalTo((long) THREADS * RECORDS_PER_THREAD)));
+    }
+
+    private void assertWithinRelativeError(long actual, long expected) {
+        assertThat(actual, is(allOf(greaterThanOrEqualTo(expected),
+                                    lessThanOrEqualTo((long) (expected * (1 + RELATIVE_ERROR))))));
+    }
+}
@@ -0,0 +1,154 @@
+package no.unit.nva.cognito.metrics;
+
+import static no.unit.nva.cognito.metrics.LatencyHistograms.ERROR;
+import static no.unit.nva.cognito.metrics.LatencyHistograms.LATENCY_SUMMARY_INTERVAL_SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import nva.commons.core.Environment;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramsTest {
+
+    public static final String DEPENDENCY = "getUser";
+    public static final String SUCCESS = "2xx";
+    public static final String NOT_FOUND = "4xx";
+    public static final Duration INTERVAL = Duration.ofSeconds(60);
+    public static final Instant NOW = Instant.parse("2021-05-01T10:00:00Z");
+    public static final long TEN_MILLISECONDS = 10_000_000L;
+
+    private Clock clock;
+    private LatencyHistograms histograms;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(NOW.toEpochMilli());
+        histograms = new LatencyHistograms(INTERVAL, clock);
+    }
+
+    @Test
+    public void statusClassGroupsStatusCodesByHundreds() {
+        assertThat(LatencyHistograms.statusClass(200), is(equalTo(SUCCESS)));
+        assertThat(LatencyHistograms.statusClass(404), is(equalTo(NOT_FOUND)));
+        assertThat(LatencyHistograms.statusClass(503), is(equalTo("5xx")));
+    }
+
+    @Test
+    public void recordKeepsOneHistogramPerDependencyAndStatusClass() {
+        histograms.record(DEPENDENCY, SUCCESS, TEN_MILLISECONDS);
+        histograms.record(DEPENDENCY, SUCCESS, TEN_MILLISECONDS);
+        histograms.record(DEPENDENCY, NOT_FOUND, TEN_MILLISECONDS);
+
+        assertThat(histograms.histogram(DEPENDENCY, SUCCESS).get().getCount(), is(2L));
+        assertThat(histograms.histogram(DEPENDENCY, NOT_FOUND).get().getCount(), is(1L));
+        assertThat(histograms.histogram(DEPENDENCY, ERROR), is(Optional.empty()));
+    }
+
+    @Test
+    public void discardingHistogramsRecordNothing() {
+        LatencyHistograms discarding = LatencyHistograms.discarding();
+
+        discarding.record(DEPENDENCY, SUCCESS, TEN_MILLISECONDS);
+
+        assertThat(discarding.histogram(DEPENDENCY, SUCCESS), is(Optional.empty()));
+        assertThat(discarding.summarize().isEmpty(), is(true));
+    }
+
+    @Test
+    public void summarizeReturnsSummariesOfIntervalAndStartsNewInterval() {
+        histograms.record(DEPENDENCY, SUCCESS, TEN_MILLISECONDS);
+
+        List<LatencySummary> summaries = histograms.summarize();
+
+        assertThat(summaries, hasSize(1));
+        LatencySummary summary = summaries.get(0);
+        assertThat(summary.getDependency(), is(equalTo(DEPENDENCY)));
+        assertThat(summary.getStatusClass(), is(equalTo(SUCCESS)));
+        assertThat(summary.getCount(), is(1L));
+        assertThat(summary.getP50Micros(), is(10_000L));
+        assertThat(summary.getP90Micros(), is(10_000L));
+        assertThat(summary.getP99Micros(), is(10_000L));
+        assertThat(summary.getMaxMicros(), is(10_000L));
+        assertThat(histograms.summarize(), is(empty()));
+    }
+
+    @Test
+    public void recordLogsSummariesWhenIntervalHasPassed() {
+        final TestAppender appender = LogUtils.getTestingAppender(LatencyHistograms.class);
+        histograms.record(DEPENDENCY, SUCCESS, TEN_MILLISECONDS);
+        assertThat(histograms.histogram(DEPENDENCY, SUCCESS).get().getCount(), is(1L));
+
+        when(clock.millis()).thenReturn(NOW.plus(INTERVAL).toEpochMilli());
+        histograms.record(DEPENDENCY, SUCCESS, TEN_MILLISECONDS);
+
+        assertThat(appender.getMessages(), containsString("Latency of getUser 2xx over 2 calls"));
+        assertThat(histograms.histogram(DEPENDENCY, SUCCESS).get().getCount(), is(0L));
+    }
+
+    @Test
+    public void spanRecordsStatusClassOfResponse() {
+        HttpResponse<String> response = response(404);
+
+        HttpResponse<String> result = histograms.start(DEPENDENCY).time(() -> response);
+
+        assertThat(result, is(response));
+        assertThat(histograms.histogram(DEPENDENCY, NOT_FOUND).get().getCount(), is(1L));
+    }
+
+    @Test
+    public void spanRecordsErrorWhenCallFails() {
+        LatencySpan span = histograms.start(DEPENDENCY);
+
+        assertThrows(IOException.class, () -> span.time(() -> {
+            throw new IOException();
+        }));
+
+        assertThat(histograms.histogram(DEPENDENCY, ERROR).get().getCount(), is(1L));
+    }
+
+    @Test
+    public void spanRecordsErrorWhenAsynchronousCallCompletesWithoutResponse() {
+        histograms.start(DEPENDENCY).end(null, null);
+
+        assertThat(histograms.histogram(DEPENDENCY, ERROR).get().getCount(), is(1L));
+    }
+
+    @Test
+    public void fromEnvironmentReadsSummaryInterval() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(LATENCY_SUMMARY_INTERVAL_SECONDS)).thenReturn(Optional.of("0"));
+        final TestAppender appender = LogUtils.getTestingAppender(LatencyHistograms.class);
+
+        LatencyHistograms environmentHistograms = LatencyHistograms.fromEnvironment(environment);
+        environmentHistograms.record(DEPENDENCY, SUCCESS, TEN_MILLISECONDS);
+
+        assertThat(appender.getMessages(), containsString("Latency of getUser 2xx over 1 calls"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private HttpResponse<String> response(int statusCode) {
+        HttpResponse<String> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(statusCode);
+        return response;
+    }
+}
@@ -0,0 +1,167 @@
+package no.unit.nva.cognito.metrics;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_CACHE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.EVENT_PARSE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.FAILURE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.MISS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.OUTCOME;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.SUCCESS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.TOTAL;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.TRIGGER_SOURCE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.UNKNOWN;
+import static no.unit.nva.cognito.metrics.MetricsPublisher.DEFAULT_NAMESPACE;
+import static no.unit.nva.cognito.metrics.MetricsPublisher.METRICS_NAMESPACE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import nva.commons.core.Environment;
+import nva.commons.core.JsonUtils;
+import org.junit.jupiter.api.Test;
+
+public class MetricsPublisherTest {
+
+    public static final String NAMESPACE = "Test/Namespace";
+    public static final Instant NOW = Instant.parse("2021-05-01T10:00:00Z");
+    public static final String RESULT = "result";
+    public static final String TRIGGER = "TokenGeneration_HostedAuth";
+    public static final long TWO_AND_A_HALF_MILLISECONDS = 2_500_000L;
+
+    private final List<String> records = new ArrayList<>();
+    private final MetricsPublisher publisher =
+        new MetricsPublisher(NAMESPACE, records::add, Clock.fixed(NOW, Clock.systemUTC().getZone()));
+
+    @Test
+    public void recordPublishesOneRecordWithSuccessOutcomeWhenInvocationSucceeds() throws IOException {
+        String result = publisher.record(() -> {
+            InvocationMetrics.current().dimension(TRIGGER_SOURCE, TRIGGER);
+            return RESULT;
+        });
+
+        assertThat(result, is(equalTo(RESULT)));
+        assertThat(records, hasSize(1));
+        JsonNode record = JsonUtils.objectMapper.readTree(records.get(0));
+        assertThat(record.get(OUTCOME).textValue(), is(equalTo(SUCCESS)));
+        assertThat(record.get(TRIGGER_SOURCE).textValue(), is(equalTo(TRIGGER)));
+        assertThat(record.has(TOTAL), is(true));
+    }
+
+    @Test
+    public void recordPublishesOneRecordWithFailureOutcomeWhenInvocationFails() throws IOException {
+        assertThrows(IOException.class, () -> publisher.record(() -> {
+            throw new IOException();
+        }));
+
+        assertThat(records, hasSize(1));
+        JsonNode record = JsonUtils.objectMapper.readTree(records.get(0));
+        assertThat(record.get(OUTCOME).textValue(), is(equalTo(FAILURE)));
+    }
+
+    @Test
+    public void recordKeepsOutcomeSetByInvocationWhenInvocationSucceeds() throws IOException {
+        publisher.record(() -> {
+            InvocationMetrics.current().dimension(OUTCOME, InvocationMetrics.DEGRADED);
+            return RESULT;
+        });
+
+        JsonNode record = JsonUtils.objectMapper.readTree(records.get(0));
+        assertThat(record.get(OUTCOME).textValue(), is(equalTo(InvocationMetrics.DEGRADED)));
+    }
+
+    @Test
+    public void recordDetachesMetricsAfterInvocation() {
+        InvocationMetrics metrics = new InvocationMetrics();
+
+        publisher.record(metrics, () -> RESULT);
+        InvocationMetrics.current().dimension(CUSTOMER_CACHE, MISS);
+
+        assertThat(metrics.getDimensions().get(CUSTOMER_CACHE), is(equalTo(InvocationMetrics.NONE)));
+    }
+
+    @Test
+    public void toEmfWritesMetricDefinitionsDimensionsAndValuesInMilliseconds() throws IOException {
+        InvocationMetrics metrics = new InvocationMetrics();
+        metrics.record(EVENT_PARSE, TWO_AND_A_HALF_MILLISECONDS);
+        metrics.dimension(CUSTOMER_CACHE, MISS);
+
+        JsonNode record = JsonUtils.objectMapper.readTree(publisher.toEmf(metrics));
+
+        JsonNode definition = record.get(MetricsPublisher.AWS).get(MetricsPublisher.CLOUD_WATCH_METRICS).get(0);
+        assertThat(record.get(MetricsPublisher.AWS).get(MetricsPublisher.TIMESTAMP).longValue(),
+                   is(equalTo(NOW.toEpochMilli())));
+        assertThat(definition.get(MetricsPublisher.NAMESPACE).textValue(), is(equalTo(NAMESPACE)));
+        assertThat(names(definition.get(MetricsPublisher.METRICS)), contains(EVENT_PARSE));
+        assertThat(definition.get(MetricsPublisher.DIMENSIONS).get(1).size(), is(3));
+        assertThat(record.get(EVENT_PARSE).doubleValue(), is(equalTo(2.5)));
+        assertThat(record.get(CUSTOMER_CACHE).textValue(), is(equalTo(MISS)));
+        assertThat(record.get(TRIGGER_SOURCE).textValue(), is(equalTo(UNKNOWN)));
+    }
+
+    @Test
+    public void toEmfDefinesEveryRecordedPhase() throws IOException {
+        InvocationMetrics metrics = new InvocationMetrics();
+        metrics.record(EVENT_PARSE, TWO_AND_A_HALF_MILLISECONDS);
+        metrics.stop();
+
+        JsonNode record = JsonUtils.objectMapper.readTree(publisher.toEmf(metrics));
+
+        JsonNode definition = record.get(MetricsPublisher.AWS).get(MetricsPublisher.CLOUD_WATCH_METRICS).get(0);
+        assertThat(names(definition.get(MetricsPublisher.METRICS)), containsInAnyOrder(EVENT_PARSE, TOTAL));
+    }
+
+    @Test
+    public void toEmfWritesCountsWithCountUnit() throws IOException {
+        InvocationMetrics metrics = new InvocationMetrics();
+        metrics.count(InvocationMetrics.HEDGED_REQUESTS, 1);
+        metrics.count(InvocationMetrics.HEDGED_REQUESTS, 1);
+        metrics.count(InvocationMetrics.HEDGE_WINS, 0);
+
+        JsonNode record = JsonUtils.objectMapper.readTree(publisher.toEmf(metrics));
+
+        JsonNode definition = record.get(MetricsPublisher.AWS).get(MetricsPublisher.CLOUD_WATCH_METRICS).get(0);
+        JsonNode metricDefinitions = definition.get(MetricsPublisher.METRICS);
+        assertThat(names(metricDefinitions),
+                   contains(InvocationMetrics.HEDGE_WINS, InvocationMetrics.HEDGED_REQUESTS));
+        assertThat(metricDefinitions.get(0).get(MetricsPublisher.UNIT).textValue(),
+                   is(equalTo(MetricsPublisher.COUNT)));
+        assertThat(record.get(InvocationMetrics.HEDGED_REQUESTS).longValue(), is(2L));
+        assertThat(record.get(InvocationMetrics.HEDGE_WINS).longValue(), is(0L));
+    }
+
+    @Test
+    public void fromEnvironmentUsesDefaultNamespaceWhenNamespaceIsNotSet() throws IOException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(METRICS_NAMESPACE)).thenReturn(Optional.empty());
+
+        String record = MetricsPublisher.fromEnvironment(environment).toEmf(new InvocationMetrics());
+
+        JsonNode definition = JsonUtils.objectMapper.readTree(record)
+                                  .get(MetricsPublisher.AWS).get(MetricsPublisher.CLOUD_WATCH_METRICS).get(0);
+        assertThat(definition.get(MetricsPublisher.NAMESPACE).textValue(), is(equalTo(DEFAULT_NAMESPACE)));
+    }
+
+    @Test
+    public void discardingPublisherRunsInvocation() {
+        assertThat(MetricsPublisher.discarding().record(() -> RESULT), is(equalTo(RESULT)));
+    }
+
+    private List<String> names(JsonNode metricDefinitions) {
+        return StreamSupport.stream(metricDefinitions.spliterator(), false)
+                   .map(definition -> definition.get(MetricsPublisher.NAME).textValue())
+                   .collect(Collectors.toList());
+    }
+}
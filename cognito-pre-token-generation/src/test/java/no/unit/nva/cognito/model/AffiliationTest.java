@@ -0,0 +1,31 @@
+package no.unit.nva.cognito.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class AffiliationTest {
+
+    @Test
+    public void maskOfParsesListedAndScopedAffiliations() {
+        int mask = Affiliation.maskOf("[Member, employee, staff@unit.no, library-walk-in]");
+
+        assertThat(mask, is(equalTo(Affiliation.MEMBER.getMask() | Affiliation.EMPLOYEE.getMask()
+                                    | Affiliation.STAFF.getMask() | Affiliation.LIBRARY_WALK_IN.getMask())));
+    }
+
+    @Test
+    public void maskOfIgnoresUnknownValuesAndMissingAffiliation() {
+        assertThat(Affiliation.maskOf("[visitor]"), is(equalTo(Affiliation.NONE)));
+        assertThat(Affiliation.maskOf(null), is(equalTo(Affiliation.NONE)));
+    }
+
+    @Test
+    public void fromValueIgnoresCaseAndSurroundingWhitespace() {
+        assertThat(Affiliation.fromValue(" Faculty "), is(equalTo(Optional.of(Affiliation.FACULTY))));
+        assertThat(Affiliation.fromValue("visitor"), is(equalTo(Optional.empty())));
+        assertThat(Affiliation.FACULTY.getValue(), is(equalTo("faculty")));
+    }
+}
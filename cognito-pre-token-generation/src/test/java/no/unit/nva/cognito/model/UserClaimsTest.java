@@ -0,0 +1,45 @@
+package no.unit.nva.cognito.model;
+
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION_ACCESS_RIGHTS;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION_ROLES;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_CRISTIN_ID;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_CUSTOMER_ID;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_IDENTIFIERS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class UserClaimsTest {
+
+    public static final String CUSTOMER_ID = "https://example.org/customer/123";
+    public static final String CRISTIN_ID = "https://example.org/cristin/456";
+    public static final String FEIDE_ID = "user@unit.no";
+    public static final String ROLES = "Creator,User";
+    public static final String ACCESS_RIGHTS = "APPROVE_DOI_REQUEST";
+
+    @Test
+    public void ofReturnsEveryClaimInTheOrderTheyAreWritten() {
+        Map<String, String> claims = UserClaims.create(CUSTOMER_ID, CRISTIN_ID, FEIDE_ID, ROLES, ACCESS_RIGHTS);
+
+        assertThat(List.copyOf(claims.keySet()), is(equalTo(List.of(CUSTOM_CUSTOMER_ID, CUSTOM_CRISTIN_ID,
+                                                                    CUSTOM_APPLICATION, CUSTOM_IDENTIFIERS,
+                                                                    CUSTOM_APPLICATION_ROLES,
+                                                                    CUSTOM_APPLICATION_ACCESS_RIGHTS))));
+        assertThat(claims.get(CUSTOM_APPLICATION), is(equalTo("NVA")));
+        assertThat(claims.get(CUSTOM_IDENTIFIERS), is(equalTo("feide:" + FEIDE_ID)));
+        assertThat(claims.get(CUSTOM_APPLICATION_ACCESS_RIGHTS), is(equalTo(ACCESS_RIGHTS)));
+    }
+
+    @Test
+    public void ofLeavesOutMissingIdsAndGivesEmptyAccessRightsWhenThereAreNone() {
+        Map<String, String> claims = UserClaims.create(null, null, FEIDE_ID, ROLES, null);
+
+        assertThat(claims.containsKey(CUSTOM_CUSTOMER_ID), is(false));
+        assertThat(claims.containsKey(CUSTOM_CRISTIN_ID), is(false));
+        assertThat(claims.get(CUSTOM_APPLICATION_ACCESS_RIGHTS), is(equalTo("")));
+    }
+}
@@ -0,0 +1,229 @@
+package no.unit.nva.cognito.reconciliation;
+
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION_ROLES;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_CUSTOMER_ID;
+import static no.unit.nva.cognito.model.UserClaims.NVA;
+import static no.unit.nva.cognito.reconciliation.AttributeReconciler.RECONCILIATION_PARALLELISM;
+import static no.unit.nva.cognito.reconciliation.AttributeReconciler.RECONCILIATION_WRITES_PER_SECOND;
+import static no.unit.nva.cognito.service.UserApiClient.USER_API_HOST;
+import static no.unit.nva.cognito.service.UserApiClient.USER_API_SCHEME;
+import static no.unit.nva.cognito.service.UserApiClient.USER_SERVICE_SECRET_KEY;
+import static no.unit.nva.cognito.service.UserApiClient.USER_SERVICE_SECRET_NAME;
+import static no.unit.nva.cognito.service.UserServiceStandIn.GET;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.UserType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import no.unit.nva.cognito.PostAuthenticationHandler;
+import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.model.UserAttributes;
+import no.unit.nva.cognito.service.CustomerApi;
+import no.unit.nva.cognito.service.UserApiClient;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.service.UserServiceStandIn;
+import no.unit.nva.cognito.util.RateLimiter;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import nva.commons.core.Environment;
+import nva.commons.secrets.ErrorReadingSecretException;
+import nva.commons.secrets.SecretsReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AttributeReconcilerTest {
+
+    public static final String USER_POOL_ID = "userPoolId";
+    public static final String FEIDE_ID = "feideId";
+    public static final String OTHER_FEIDE_ID = "otherFeideId";
+    public static final String ORG_NUMBER = "1234567890";
+    public static final String STAFF_AFFILIATION = "[member, employee, staff]";
+    public static final String GIVEN_NAME = "givenName";
+    public static final String FAMILY_NAME = "familyName";
+    public static final String CUSTOMER_ID = "http://example.org/customer/123";
+    public static final String CRISTIN_ID = "http://cristin.id";
+    public static final String USER_ROLE = "User";
+    public static final String CREATOR_ROLE = "Creator";
+    public static final String SAMPLE_API_SCHEME = "http";
+    public static final String SOME_SECRET = "someSecret";
+    public static final int PARALLELISM = 2;
+    public static final double UNLIMITED_WRITES_PER_SECOND = 1000;
+
+    private UserServiceStandIn userServiceStandIn;
+    private UserPoolStandIn userPool;
+    private PostAuthenticationHandler handler;
+    private AttributeReconciler reconciler;
+
+    /**
+     * Starts the stand-ins for the user service and the user pool.
+     */
+    @BeforeEach
+    public void init() throws IOException, ErrorReadingSecretException {
+        userServiceStandIn = UserServiceStandIn.start(true);
+        userPool = new UserPoolStandIn(PARALLELISM);
+        CustomerApi customerApi = mock(CustomerApi.class, CALLS_REAL_METHODS);
+        when(customerApi.getCustomer(anyString())).thenReturn(Optional.of(new CustomerResponse(CUSTOMER_ID,
+                                                                                                CRISTIN_ID)));
+        handler = new PostAuthenticationHandler(new UserService(standInClient(), userPool), customerApi);
+        reconciler = new AttributeReconciler(handler, PARALLELISM,
+                                             new RateLimiter(UNLIMITED_WRITES_PER_SECOND, Clock.systemUTC()));
+    }
+
+    @AfterEach
+    public void stopStandIn() {
+        userServiceStandIn.close();
+    }
+
+    @Test
+    public void reconcileWritesOnlyAttributesThatDifferFromUserPool() throws InvalidEntryInternalException {
+        addStoredUser(FEIDE_ID);
+        userPool.addUser(FEIDE_ID, poolAttributes(FEIDE_ID));
+
+        Map<ReconciliationOutcome, Long> outcomes = reconciler.reconcile(USER_POOL_ID, firstPage());
+
+        assertThat(outcomes, is(equalTo(Map.of(ReconciliationOutcome.UPDATED, 1L))));
+        List<String> writtenNames = userPool.getUpdates().get(FEIDE_ID).stream()
+                                        .map(AttributeType::getName)
+                                        .collect(Collectors.toList());
+        assertThat(writtenNames, hasItem(CUSTOM_CUSTOMER_ID));
+        assertThat(writtenNames, not(hasItem(CUSTOM_APPLICATION)));
+        assertThat(userPool.getAttributes(FEIDE_ID).get(CUSTOM_APPLICATION_ROLES), containsString(CREATOR_ROLE));
+    }
+
+    @Test
+    public void reconcileLeavesUserServiceUnchanged() throws InvalidEntryInternalException {
+        final UserDto storedUser = addStoredUser(FEIDE_ID);
+        userPool.addUser(FEIDE_ID, poolAttributes(FEIDE_ID));
+
+        reconciler.reconcile(USER_POOL_ID, firstPage());
+
+        assertThat(userServiceStandIn.getOperations(), everyItem(is(equalTo(GET))));
+        assertThat(userServiceStandIn.getUser(FEIDE_ID), is(equalTo(Optional.of(storedUser))));
+    }
+
+    @Test
+    public void reconcileReturnsUnchangedWhenUserPoolIsUpToDate() throws InvalidEntryInternalException {
+        addStoredUser(FEIDE_ID);
+        userPool.addUser(FEIDE_ID, poolAttributes(FEIDE_ID));
+        reconciler.reconcile(USER_POOL_ID, firstPage());
+        Map<String, String> reconciledAttributes = userPool.getAttributes(FEIDE_ID);
+
+        Map<ReconciliationOutcome, Long> outcomes = reconciler.reconcile(USER_POOL_ID, firstPage());
+
+        assertThat(outcomes, is(equalTo(Map.of(ReconciliationOutcome.UNCHANGED, 1L))));
+        assertThat(userPool.getAttributes(FEIDE_ID), is(equalTo(reconciledAttributes)));
+    }
+
+    @Test
+    public void reconcileSkipsUsersWithoutFeideIdOrStoredUser() {
+        userPool.addUser(FEIDE_ID, poolAttributes(FEIDE_ID));
+        userPool.addUser(OTHER_FEIDE_ID, Map.of(UserAttributes.GIVEN_NAME, GIVEN_NAME));
+
+        Map<ReconciliationOutcome, Long> outcomes = reconciler.reconcile(USER_POOL_ID, firstPage());
+
+        assertThat(outcomes, is(equalTo(Map.of(ReconciliationOutcome.SKIPPED, 2L))));
+        assertThat(userPool.getUpdates().isEmpty(), is(true));
+    }
+
+    @Test
+    public void reconcileCountsFailedUserAndReconcilesOthers() throws InvalidEntryInternalException {
+        addStoredUser(FEIDE_ID);
+        addStoredUser(OTHER_FEIDE_ID);
+        userPool.addUser(FEIDE_ID, poolAttributes(FEIDE_ID));
+        userPool.addUser(OTHER_FEIDE_ID, poolAttributes(OTHER_FEIDE_ID));
+        userPool.failUpdatesOf(FEIDE_ID);
+
+        Map<ReconciliationOutcome, Long> outcomes = reconciler.reconcile(USER_POOL_ID, firstPage());
+
+        assertThat(outcomes, is(equalTo(Map.of(ReconciliationOutcome.FAILED, 1L,
+                                                ReconciliationOutcome.UPDATED, 1L))));
+        assertThat(userPool.getUpdates().keySet(), is(equalTo(Set.of(OTHER_FEIDE_ID))));
+    }
+
+    @Test
+    public void fromEnvironmentReadsParallelismAndWriteRate() throws InvalidEntryInternalException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(RECONCILIATION_PARALLELISM)).thenReturn(Optional.of("1"));
+        when(environment.readEnvOpt(RECONCILIATION_WRITES_PER_SECOND)).thenReturn(Optional.of("1000"));
+        addStoredUser(FEIDE_ID);
+        userPool.addUser(FEIDE_ID, poolAttributes(FEIDE_ID));
+
+        Map<ReconciliationOutcome, Long> outcomes = AttributeReconciler.fromEnvironment(handler, environment)
+                                                        .reconcile(USER_POOL_ID, firstPage());
+
+        assertThat(outcomes, is(equalTo(Map.of(ReconciliationOutcome.UPDATED, 1L))));
+    }
+
+    @Test
+    public void changedAttributesReturnsAttributesThatAreMissingOrDifferent() {
+        AttributeType unchanged = attribute(CUSTOM_APPLICATION, NVA);
+        AttributeType changed = attribute(CUSTOM_APPLICATION_ROLES, CREATOR_ROLE);
+        AttributeType missing = attribute(CUSTOM_CUSTOMER_ID, CUSTOMER_ID);
+        Map<String, String> current = Map.of(CUSTOM_APPLICATION, NVA, CUSTOM_APPLICATION_ROLES, USER_ROLE);
+
+        List<AttributeType> changes = AttributeReconciler.changedAttributes(List.of(unchanged, changed, missing),
+                                                                            current);
+
+        assertThat(changes, is(equalTo(List.of(changed, missing))));
+    }
+
+    private List<UserType> firstPage() {
+        return userPool.listUsersAsync(USER_POOL_ID, null).join().getUsers();
+    }
+
+    private UserDto addStoredUser(String feideId) throws InvalidEntryInternalException {
+        UserDto user = UserDto.newBuilder()
+                           .withUsername(feideId)
+                           .withGivenName(GIVEN_NAME)
+                           .withFamilyName(FAMILY_NAME)
+                           .withInstitution(CUSTOMER_ID)
+                           .withRoles(List.of(RoleDto.newBuilder().withName(USER_ROLE).build()))
+                           .build();
+        userServiceStandIn.addUser(user);
+        return user;
+    }
+
+    private static Map<String, String> poolAttributes(String feideId) {
+        return Map.of(UserAttributes.FEIDE_ID, feideId,
+                      UserAttributes.ORG_NUMBER, ORG_NUMBER,
+                      UserAttributes.AFFILIATION, STAFF_AFFILIATION,
+                      UserAttributes.GIVEN_NAME, GIVEN_NAME,
+                      UserAttributes.FAMILY_NAME, FAMILY_NAME,
+                      CUSTOM_APPLICATION, NVA);
+    }
+
+    private static AttributeType attribute(String name, String value) {
+        return new AttributeType().withName(name).withValue(value);
+    }
+
+    private UserApiClient standInClient() throws ErrorReadingSecretException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_API_SCHEME)).thenReturn(SAMPLE_API_SCHEME);
+        when(environment.readEnv(USER_API_HOST)).thenReturn(userServiceStandIn.getHost());
+        when(environment.readEnv(USER_SERVICE_SECRET_NAME)).thenReturn(USER_SERVICE_SECRET_NAME);
+        when(environment.readEnv(USER_SERVICE_SECRET_KEY)).thenReturn(USER_SERVICE_SECRET_KEY);
+        SecretsReader secretsReader = mock(SecretsReader.class);
+        when(secretsReader.fetchSecret(anyString(), anyString())).thenReturn(SOME_SECRET);
+        return new UserApiClient(HttpClient.newHttpClient(), new ObjectMapper(), secretsReader, environment);
+    }
+}
@@ -0,0 +1,100 @@
+package no.unit.nva.cognito.reconciliation;
+
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import com.amazonaws.services.cognitoidp.model.UserType;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.service.UserPoolClient;
+
+/**
+ * An in-memory stand-in for a user pool. The users are listed in the order they were added, a few per page, with the
+ * index of the next user as the pagination token. Every attribute update is recorded and applied, and the updates of
+ * the users that are set to fail are answered with a {@link BadGatewayException}, as are the listings of the pages
+ * that are set to fail.
+ */
+public class UserPoolStandIn implements UserPoolClient {
+
+    public static final String UPDATE_FAILED = "Update failed";
+    public static final String LIST_USERS_FAILED = "ListUsers failed";
+
+    private final int pageSize;
+    private final List<String> usernames = new CopyOnWriteArrayList<>();
+    private final Map<String, Map<String, String>> attributes = new ConcurrentHashMap<>();
+    private final Map<String, List<AttributeType>> updates = new ConcurrentHashMap<>();
+    private final Set<String> failingUsers = ConcurrentHashMap.newKeySet();
+    private final Set<String> failingPages = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger listUsersCalls = new AtomicInteger();
+
+    public UserPoolStandIn(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public void addUser(String username, Map<String, String> userAttributes) {
+        usernames.add(username);
+        attributes.put(username, new ConcurrentHashMap<>(userAttributes));
+    }
+
+    public void failUpdatesOf(String username) {
+        failingUsers.add(username);
+    }
+
+    public void failListingOfPage(String paginationToken) {
+        failingPages.add(paginationToken);
+    }
+
+    public Map<String, String> getAttributes(String username) {
+        return Map.copyOf(attributes.get(username));
+    }
+
+    public Map<String, List<AttributeType>> getUpdates() {
+        return Map.copyOf(updates);
+    }
+
+    public int getListUsersCalls() {
+        return listUsersCalls.get();
+    }
+
+    @Override
+    public CompletableFuture<Void> updateUserAttributesAsync(String userPoolId,
+                                                             String userName,
+                                                             List<AttributeType> userAttributes) {
+        if (failingUsers.contains(userName)) {
+            return CompletableFuture.failedFuture(new BadGatewayException(UPDATE_FAILED));
+        }
+        updates.put(userName, userAttributes);
+        userAttributes.forEach(attribute -> attributes.get(userName).put(attribute.getName(), attribute.getValue()));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<ListUsersResult> listUsersAsync(String userPoolId, String paginationToken) {
+        listUsersCalls.incrementAndGet();
+        if (paginationToken != null && failingPages.contains(paginationToken)) {
+            return CompletableFuture.failedFuture(new BadGatewayException(LIST_USERS_FAILED));
+        }
+        int first = paginationToken == null ? 0 : Integer.parseInt(paginationToken);
+        int next = Math.min(first + pageSize, usernames.size());
+        List<UserType> users = usernames.subList(first, next).stream()
+                                   .map(this::toUser)
+                                   .collect(Collectors.toList());
+        return CompletableFuture.completedFuture(
+            new ListUsersResult().withUsers(users)
+                .withPaginationToken(next < usernames.size() ? String.valueOf(next) : null));
+    }
+
+    private UserType toUser(String username) {
+        List<AttributeType> userAttributes = attributes.get(username).entrySet().stream()
+                                                 .map(entry -> new AttributeType().withName(entry.getKey())
+                                                                   .withValue(entry.getValue()))
+                                                 .collect(Collectors.toList());
+        return new UserType().withUsername(username).withAttributes(userAttributes);
+    }
+}
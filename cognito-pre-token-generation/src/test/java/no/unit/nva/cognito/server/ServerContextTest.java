@@ -0,0 +1,77 @@
+package no.unit.nva.cognito.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.Clock;
+import java.time.Instant;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ServerContextTest {
+
+    public static final Instant ACCEPTED_AT = Instant.parse("2021-05-01T10:00:00Z");
+    public static final String MESSAGE = "message";
+    public static final String BYTES_MESSAGE = "bytes message";
+
+    private Clock clock;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        clock = mock(Clock.class);
+    }
+
+    @Test
+    public void getRemainingTimeInMillisCountsDownCognitoTimeoutFromAcceptance() {
+        when(clock.instant()).thenReturn(ACCEPTED_AT.plusMillis(1500));
+
+        assertThat(new ServerContext(ACCEPTED_AT, clock).getRemainingTimeInMillis(), is(equalTo(3500)));
+    }
+
+    @Test
+    public void getRemainingTimeInMillisReturnsLeastRemainingTimeWhenCognitoTimeoutHasPassed() {
+        when(clock.instant()).thenReturn(ACCEPTED_AT.plusSeconds(10));
+
+        assertThat(new ServerContext(ACCEPTED_AT, clock).getRemainingTimeInMillis(),
+                   is(equalTo(ServerContext.LEAST_REMAINING_MILLIS)));
+    }
+
+    @Test
+    public void contextDescribesServerAndLeavesLambdaOnlyFieldsEmpty() {
+        ServerContext context = new ServerContext(ACCEPTED_AT, clock);
+
+        assertThat(context.getAwsRequestId(), is(not(equalTo(new ServerContext(ACCEPTED_AT, clock)
+                                                                  .getAwsRequestId()))));
+        assertThat(context.getFunctionName(), is(equalTo(ServerContext.FUNCTION_NAME)));
+        assertThat(context.getMemoryLimitInMB(), is(greaterThan(0)));
+        assertThat(context.getLogGroupName(), is(nullValue()));
+        assertThat(context.getLogStreamName(), is(nullValue()));
+        assertThat(context.getFunctionVersion(), is(nullValue()));
+        assertThat(context.getInvokedFunctionArn(), is(nullValue()));
+        assertThat(context.getIdentity(), is(nullValue()));
+        assertThat(context.getClientContext(), is(nullValue()));
+    }
+
+    @Test
+    public void loggerWritesMessagesToServerLog() {
+        TestAppender appender = LogUtils.getTestingAppender(TriggerServer.class);
+        ServerContext context = new ServerContext(ACCEPTED_AT, clock);
+
+        context.getLogger().log(MESSAGE);
+        context.getLogger().log(BYTES_MESSAGE.getBytes(UTF_8));
+
+        assertThat(appender.getMessages().contains(MESSAGE), is(true));
+        assertThat(appender.getMessages().contains(BYTES_MESSAGE), is(true));
+    }
+}
@@ -0,0 +1,326 @@
+package no.unit.nva.cognito.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static no.unit.nva.cognito.server.TriggerServer.CONNECTION;
+import static no.unit.nva.cognito.server.TriggerServer.CONNECTION_CLOSE;
+import static no.unit.nva.cognito.server.TriggerServer.DEFAULT_MAX_EVENT_BYTES;
+import static no.unit.nva.cognito.server.TriggerServer.HEALTH_PATH;
+import static no.unit.nva.cognito.server.TriggerServer.SERVER_DRAIN_SECONDS;
+import static no.unit.nva.cognito.server.TriggerServer.SERVER_PORT;
+import static no.unit.nva.cognito.server.TriggerServer.SERVER_THREADS;
+import static no.unit.nva.cognito.server.TriggerServer.TRIGGER_PATH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import com.amazonaws.services.lambda.runtime.Context;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import no.unit.nva.cognito.PostAuthenticationHandler;
+import no.unit.nva.cognito.PostAuthenticationStreamHandler;
+import no.unit.nva.cognito.model.ClaimsDeliveryMode;
+import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.service.ClaimsDeliverySettings;
+import no.unit.nva.cognito.service.CustomerApi;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.warmup.NoOpUserPoolClient;
+import no.unit.nva.cognito.warmup.WarmUpCustomerApi;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.cognito.warmup.WarmUpUserApi;
+import nva.commons.core.Environment;
+import nva.commons.core.JsonUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class TriggerServerTest {
+
+    public static final String LOCALHOST = "localhost";
+    public static final String HANDLER_FAILURE = "Handler failure";
+    public static final int WORKERS = 4;
+    public static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration SHORT_DRAIN_TIMEOUT = Duration.ofMillis(500);
+    public static final Duration ONE_SECOND = Duration.ofSeconds(1);
+    public static final long WAIT_SECONDS = 5;
+    public static final String INVALID_JSON = "{\"triggerSource\":";
+    public static final String JSON_ARRAY = "[]";
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private TriggerServer server;
+
+    @AfterEach
+    public void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void postToTriggerReturnsSameResponseAsLambdaHandler() throws Exception {
+        server = startServer(streamHandler(new WarmUpCustomerApi()));
+        byte[] event = WarmUpSamples.sampleEventJson().getBytes(UTF_8);
+
+        HttpResponse<byte[]> response = post(event);
+
+        assertThat(response.statusCode(), is(equalTo(HttpURLConnection.HTTP_OK)));
+        assertThat(JsonUtils.objectMapper.readValue(response.body(), Map.class),
+                   is(equalTo(JsonUtils.objectMapper.readValue(lambdaResponse(event), Map.class))));
+    }
+
+    @Test
+    public void eventsAreHandledConcurrentlyByWorkers() throws Exception {
+        CountDownLatch allEventsStarted = new CountDownLatch(WORKERS);
+        server = startServer(streamHandler(orgNumber -> awaitOthers(allEventsStarted)));
+        byte[] event = WarmUpSamples.sampleEventJson().getBytes(UTF_8);
+
+        List<Integer> statusCodes = IntStream.range(0, WORKERS)
+                                        .mapToObj(index -> postAsync(event))
+                                        .collect(Collectors.toList())
+                                        .stream()
+                                        .map(CompletableFuture::join)
+                                        .map(HttpResponse::statusCode)
+                                        .collect(Collectors.toList());
+
+        assertThat(statusCodes, everyItem(is(equalTo(HttpURLConnection.HTTP_OK))));
+        assertThat(allEventsStarted.getCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void postToTriggerReturnsInternalServerErrorWhenHandlerFails() throws Exception {
+        PostAuthenticationStreamHandler failingHandler = mock(PostAuthenticationStreamHandler.class);
+        doThrow(new IllegalStateException(HANDLER_FAILURE))
+            .when(failingHandler).handleRequest(any(InputStream.class), any(OutputStream.class), any(Context.class));
+        server = startServer(failingHandler);
+
+        HttpResponse<byte[]> response = post(WarmUpSamples.sampleEventJson().getBytes(UTF_8));
+
+        assertThat(response.statusCode(), is(equalTo(HttpURLConnection.HTTP_INTERNAL_ERROR)));
+    }
+
+    @Test
+    public void postToTriggerReturnsBadRequestWhenEventIsNotJson() throws Exception {
+        server = startServer(streamHandler(new WarmUpCustomerApi()));
+
+        HttpResponse<byte[]> response = post(INVALID_JSON.getBytes(UTF_8));
+
+        assertThat(response.statusCode(), is(equalTo(HttpURLConnection.HTTP_BAD_REQUEST)));
+    }
+
+    @Test
+    public void postToTriggerReturnsBadRequestWhenEventIsNotJsonObject() throws Exception {
+        server = startServer(streamHandler(new WarmUpCustomerApi()));
+
+        HttpResponse<byte[]> response = post(JSON_ARRAY.getBytes(UTF_8));
+
+        assertThat(response.statusCode(), is(equalTo(HttpURLConnection.HTTP_BAD_REQUEST)));
+    }
+
+    @Test
+    public void postToTriggerReturnsPayloadTooLargeWhenEventIsLargerThanLimit() throws Exception {
+        byte[] event = WarmUpSamples.sampleEventJson().getBytes(UTF_8);
+        server = startServer(streamHandler(new WarmUpCustomerApi()), event.length - 1);
+
+        HttpResponse<byte[]> response = post(event);
+
+        assertThat(response.statusCode(), is(equalTo(HttpURLConnection.HTTP_ENTITY_TOO_LARGE)));
+    }
+
+    @Test
+    public void getToTriggerReturnsMethodNotAllowed() throws Exception {
+        server = startServer(streamHandler(new WarmUpCustomerApi()));
+
+        HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(uri(TRIGGER_PATH)).GET().build(),
+                                                        BodyHandlers.ofByteArray());
+
+        assertThat(response.statusCode(), is(equalTo(HttpURLConnection.HTTP_BAD_METHOD)));
+    }
+
+    @Test
+    public void healthReturnsOkWhileServing() throws Exception {
+        server = startServer(streamHandler(new WarmUpCustomerApi()));
+
+        HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(uri(HEALTH_PATH)).GET().build(),
+                                                        BodyHandlers.ofByteArray());
+
+        assertThat(response.statusCode(), is(equalTo(HttpURLConnection.HTTP_OK)));
+        assertThat(server.isDraining(), is(false));
+    }
+
+    @Test
+    public void closeCompletesAcceptedEventsBeforeStoppingAndAsksClientToCloseConnection() throws Exception {
+        CountDownLatch eventStarted = new CountDownLatch(1);
+        CountDownLatch releaseEvent = new CountDownLatch(1);
+        server = startServer(streamHandler(orgNumber -> blockUntilReleased(eventStarted, releaseEvent)));
+        final CompletableFuture<HttpResponse<byte[]>> response =
+            postAsync(WarmUpSamples.sampleEventJson().getBytes(UTF_8));
+        eventStarted.await(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> closing = CompletableFuture.runAsync(server::close);
+        awaitDraining();
+        releaseEvent.countDown();
+        closing.get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(response.join().statusCode(), is(equalTo(HttpURLConnection.HTTP_OK)));
+        assertThat(response.join().headers().firstValue(CONNECTION), is(equalTo(Optional.of(CONNECTION_CLOSE))));
+    }
+
+    @Test
+    public void closeStopsWorkersThatDoNotFinishWithinDrainTimeout() throws Exception {
+        CountDownLatch eventStarted = new CountDownLatch(1);
+        server = new TriggerServer(streamHandler(orgNumber -> blockUntilReleased(eventStarted,
+                                                                                  new CountDownLatch(1))),
+                                   new InetSocketAddress(LOCALHOST, 0), Executors.newFixedThreadPool(WORKERS),
+                                   Duration.ZERO, DEFAULT_MAX_EVENT_BYTES, Clock.systemUTC());
+        final CompletableFuture<HttpResponse<byte[]>> response =
+            postAsync(WarmUpSamples.sampleEventJson().getBytes(UTF_8));
+        eventStarted.await(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        server.close();
+        server.close();
+
+        assertThat(server.isDraining(), is(true));
+        assertThat(response.handle((result, exception) -> exception != null || result.statusCode() != 0).join(),
+                   is(true));
+    }
+
+    @Test
+    public void closeWaitsForAcceptedEventsWhenDrainTimeoutIsShorterThanOneSecond() throws Exception {
+        CountDownLatch eventStarted = new CountDownLatch(1);
+        CountDownLatch releaseEvent = new CountDownLatch(1);
+        server = new TriggerServer(streamHandler(orgNumber -> blockUntilReleased(eventStarted, releaseEvent)),
+                                   new InetSocketAddress(LOCALHOST, 0), Executors.newFixedThreadPool(WORKERS),
+                                   SHORT_DRAIN_TIMEOUT, DEFAULT_MAX_EVENT_BYTES, Clock.systemUTC());
+        final CompletableFuture<HttpResponse<byte[]>> response =
+            postAsync(WarmUpSamples.sampleEventJson().getBytes(UTF_8));
+        eventStarted.await(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> closing = CompletableFuture.runAsync(server::close);
+        awaitDraining();
+        releaseEvent.countDown();
+        closing.get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(response.join().statusCode(), is(equalTo(HttpURLConnection.HTTP_OK)));
+    }
+
+    @Test
+    public void closeCompletesWithinOneDrainTimeoutWhenWorkersDoNotFinish() throws Exception {
+        CountDownLatch eventStarted = new CountDownLatch(1);
+        server = new TriggerServer(streamHandler(orgNumber -> blockUntilReleased(eventStarted,
+                                                                                  new CountDownLatch(1))),
+                                   new InetSocketAddress(LOCALHOST, 0), Executors.newFixedThreadPool(WORKERS),
+                                   ONE_SECOND, DEFAULT_MAX_EVENT_BYTES, Clock.systemUTC());
+        postAsync(WarmUpSamples.sampleEventJson().getBytes(UTF_8));
+        eventStarted.await(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        server.close();
+        Duration closing = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(closing, is(lessThan(ONE_SECOND.multipliedBy(2))));
+    }
+
+    @Test
+    public void fromEnvironmentListensOnPortOfEnvironment() throws Exception {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(SERVER_PORT)).thenReturn(Optional.of("0"));
+        when(environment.readEnvOpt(SERVER_THREADS)).thenReturn(Optional.of(String.valueOf(WORKERS)));
+        when(environment.readEnvOpt(SERVER_DRAIN_SECONDS)).thenReturn(Optional.of("1"));
+
+        server = TriggerServer.fromEnvironment(streamHandler(new WarmUpCustomerApi()), environment);
+
+        assertThat(server.getPort(), is(greaterThan(0)));
+    }
+
+    private TriggerServer startServer(PostAuthenticationStreamHandler handler) throws IOException {
+        return startServer(handler, DEFAULT_MAX_EVENT_BYTES);
+    }
+
+    private TriggerServer startServer(PostAuthenticationStreamHandler handler, int maxEventBytes) throws IOException {
+        return new TriggerServer(handler, new InetSocketAddress(LOCALHOST, 0), Executors.newFixedThreadPool(WORKERS),
+                                 DRAIN_TIMEOUT, maxEventBytes, Clock.systemUTC());
+    }
+
+    private static PostAuthenticationStreamHandler streamHandler(CustomerApi customerApi) {
+        return new PostAuthenticationStreamHandler(new PostAuthenticationHandler(
+            new UserService(new WarmUpUserApi(), new NoOpUserPoolClient()),
+            customerApi,
+            new ClaimsDeliverySettings(ClaimsDeliveryMode.CLAIMS, Collections.emptyMap())));
+    }
+
+    private static byte[] lambdaResponse(byte[] event) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streamHandler(new WarmUpCustomerApi()).handleRequest(new ByteArrayInputStream(event), output,
+                                                             mock(Context.class));
+        return output.toByteArray();
+    }
+
+    private static Optional<CustomerResponse> awaitOthers(CountDownLatch allEventsStarted) {
+        allEventsStarted.countDown();
+        await(allEventsStarted);
+        return Optional.of(WarmUpSamples.sampleCustomer());
+    }
+
+    private static Optional<CustomerResponse> blockUntilReleased(CountDownLatch started, CountDownLatch release) {
+        started.countDown();
+        await(release);
+        return Optional.of(WarmUpSamples.sampleCustomer());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitDraining() throws InterruptedException {
+        while (!server.isDraining()) {
+            Thread.sleep(1);
+        }
+    }
+
+    private HttpResponse<byte[]> post(byte[] event) throws IOException, InterruptedException {
+        return httpClient.send(postRequest(event), BodyHandlers.ofByteArray());
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> postAsync(byte[] event) {
+        return httpClient.sendAsync(postRequest(event), BodyHandlers.ofByteArray());
+    }
+
+    private HttpRequest postRequest(byte[] event) {
+        return HttpRequest.newBuilder(uri(TRIGGER_PATH)).POST(BodyPublishers.ofByteArray(event)).build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://" + LOCALHOST + ":" + server.getPort() + path);
+    }
+}
@@ -0,0 +1,111 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.ClaimsDeliverySettings.CLAIMS_DELIVERY_MODE;
+import static no.unit.nva.cognito.service.ClaimsDeliverySettings.CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.util.Optional;
+import no.unit.nva.cognito.model.ClaimsDeliveryMode;
+import nva.commons.core.Environment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ClaimsDeliverySettingsTest {
+
+    public static final String HOSTED_AUTH = "TokenGeneration_HostedAuth";
+    public static final String REFRESH_TOKENS = "TokenGeneration_RefreshTokens";
+    public static final String AUTHENTICATION = "TokenGeneration_Authentication";
+    public static final String POST_AUTHENTICATION = "PostAuthentication_Authentication";
+
+    private Environment environment;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        environment = mock(Environment.class);
+    }
+
+    @Test
+    public void fromEnvironmentUsesAttributesForEveryTriggerSourceWhenNothingIsConfigured() {
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE)).thenReturn(Optional.empty());
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE)).thenReturn(Optional.empty());
+
+        ClaimsDeliverySettings settings = ClaimsDeliverySettings.fromEnvironment(environment);
+
+        assertThat(settings.modeFor(HOSTED_AUTH), is(ClaimsDeliveryMode.ATTRIBUTES));
+        assertThat(settings.modeFor(null), is(ClaimsDeliveryMode.ATTRIBUTES));
+    }
+
+    @Test
+    public void fromEnvironmentReadsDefaultModeAndModesPerTriggerSource() {
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE)).thenReturn(Optional.of("claims_and_attributes"));
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE))
+            .thenReturn(Optional.of(REFRESH_TOKENS + "=CLAIMS, " + AUTHENTICATION + "=ATTRIBUTES,"));
+
+        ClaimsDeliverySettings settings = ClaimsDeliverySettings.fromEnvironment(environment);
+
+        assertThat(settings.modeFor(HOSTED_AUTH), is(ClaimsDeliveryMode.CLAIMS_AND_ATTRIBUTES));
+        assertThat(settings.modeFor(REFRESH_TOKENS), is(ClaimsDeliveryMode.CLAIMS));
+        assertThat(settings.modeFor(AUTHENTICATION), is(ClaimsDeliveryMode.ATTRIBUTES));
+    }
+
+    @Test
+    public void modeForReturnsAttributesForTriggerSourcesThatCannotReturnClaims() {
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE)).thenReturn(Optional.of("CLAIMS"));
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE))
+            .thenReturn(Optional.of(POST_AUTHENTICATION + "=CLAIMS"));
+
+        ClaimsDeliverySettings settings = ClaimsDeliverySettings.fromEnvironment(environment);
+
+        assertThat(settings.modeFor(POST_AUTHENTICATION), is(ClaimsDeliveryMode.ATTRIBUTES));
+    }
+
+    @Test
+    public void fromEnvironmentThrowsExceptionOnUnknownMode() {
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE)).thenReturn(Optional.of("unknown"));
+
+        assertThrows(IllegalArgumentException.class, () -> ClaimsDeliverySettings.fromEnvironment(environment));
+    }
+
+    @Test
+    public void fromEnvironmentThrowsExceptionNamingEntryWithoutMode() {
+        String entry = HOSTED_AUTH + "CLAIMS";
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE))
+            .thenReturn(Optional.of(REFRESH_TOKENS + "=CLAIMS," + entry));
+
+        IllegalArgumentException exception =
+            assertThrows(IllegalArgumentException.class, () -> ClaimsDeliverySettings.fromEnvironment(environment));
+
+        assertThat(exception.getMessage(), containsString(entry));
+        assertThat(exception.getMessage(), containsString(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE));
+    }
+
+    @Test
+    public void fromEnvironmentThrowsExceptionNamingEntryWithEmptyMode() {
+        String entry = HOSTED_AUTH + "=";
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE)).thenReturn(Optional.of(entry));
+
+        IllegalArgumentException exception =
+            assertThrows(IllegalArgumentException.class, () -> ClaimsDeliverySettings.fromEnvironment(environment));
+
+        assertThat(exception.getMessage(), containsString(entry));
+    }
+
+    @Test
+    public void fromEnvironmentThrowsExceptionNamingTriggerSourceThatIsListedTwice() {
+        when(environment.readEnvOpt(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE))
+            .thenReturn(Optional.of(HOSTED_AUTH + "=CLAIMS, " + HOSTED_AUTH + "=ATTRIBUTES"));
+
+        IllegalArgumentException exception =
+            assertThrows(IllegalArgumentException.class, () -> ClaimsDeliverySettings.fromEnvironment(environment));
+
+        assertThat(exception.getMessage(), containsString(HOSTED_AUTH));
+        assertThat(exception.getMessage(), containsString(CLAIMS_DELIVERY_MODE_BY_TRIGGER_SOURCE));
+    }
+}
@@ -10,16 +10,30 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import java.io.IOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import no.unit.nva.cognito.metrics.LatencyHistograms;
 import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.RequestHedger;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
 import nva.commons.core.Environment;
 import nva.commons.core.JsonUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -40,6 +54,9 @@ public class CustomerApiClientTest {
 
     public static final String RESPONSE_TEMPLATE = "{\"%s\":\"%s\"}";
     public static final Object NO_BODY = null;
+    public static final String INVALID_HOST = "example .org";
+    public static final String NUMERIC_ORG_NUMBER = "1234567890";
+    public static final String COUNTRY_PREFIX = "NO";
     private static final ObjectMapper objectMapper = JsonUtils.objectMapper;
     private CustomerApiClient customerApiClient;
     private HttpClient httpClient;
@@ -61,7 +78,7 @@ public class CustomerApiClientTest {
 
     @Test
     public void getCustomerReturnsCustomerIdentifierOnInput() throws IOException, InterruptedException {
-        when(httpResponse.body()).thenReturn(generateValidCustomerResponse(CUSTOMER_ID));
+        when(httpResponse.body()).thenReturn(bytes(generateValidCustomerResponse(CUSTOMER_ID)));
         when(httpResponse.statusCode()).thenReturn(SC_OK);
         when(httpClient.send(any(), any())).thenReturn(httpResponse);
 
@@ -72,7 +89,7 @@ public class CustomerApiClientTest {
 
     @Test
     public void getCustomerReturnsCristinIdOnInput() throws IOException, InterruptedException {
-        when(httpResponse.body()).thenReturn(generateValidCustomerResponse(CRISTIN_ID));
+        when(httpResponse.body()).thenReturn(bytes(generateValidCustomerResponse(CRISTIN_ID)));
         when(httpResponse.statusCode()).thenReturn(SC_OK);
         when(httpClient.send(any(), any())).thenReturn(httpResponse);
 
@@ -83,7 +100,7 @@ public class CustomerApiClientTest {
 
     @Test
     public void getCustomerThrowsIllegalStateExceptionOnInvalidJsonResponse() throws IOException, InterruptedException {
-        when(httpResponse.body()).thenReturn(GARBAGE_JSON);
+        when(httpResponse.body()).thenReturn(bytes(GARBAGE_JSON));
         when(httpResponse.statusCode()).thenReturn(SC_OK);
         when(httpClient.send(any(), any())).thenReturn(httpResponse);
 
@@ -118,7 +135,7 @@ public class CustomerApiClientTest {
     @Test
     public void getCustomerWithSuccessfullyParsedCustomerResponseReturnsEmptyOptional()
         throws IOException, InterruptedException {
-        when(httpResponse.body()).thenReturn(notFoundProblemResponse());
+        when(httpResponse.body()).thenReturn(bytes(notFoundProblemResponse()));
         when(httpResponse.statusCode()).thenReturn(SC_NOT_FOUND);
         when(httpClient.send(any(), any())).thenReturn(httpResponse);
 
@@ -127,6 +144,174 @@ public class CustomerApiClientTest {
         assertTrue(customer.isEmpty());
     }
 
+    @Test
+    public void getCustomerReturnsCachedCustomerForSameOrgNumberWithCountryPrefix()
+        throws IOException, InterruptedException {
+        when(httpResponse.body()).thenReturn(bytes(generateValidCustomerResponse(CUSTOMER_ID)));
+        when(httpResponse.statusCode()).thenReturn(SC_OK);
+        when(httpClient.send(any(), any())).thenReturn(httpResponse);
+
+        customerApiClient.getCustomer(NUMERIC_ORG_NUMBER);
+        Optional<CustomerResponse> customer = customerApiClient.getCustomer(COUNTRY_PREFIX + NUMERIC_ORG_NUMBER);
+
+        assertEquals(SAMPLE_ID, customer.get().getCustomerId());
+        verify(httpClient, times(1)).send(any(), any());
+        assertThat(customerApiClient.getCustomerCache().getHits(), is(1L));
+    }
+
+    @Test
+    public void getCustomerAsyncReturnsCachedMissingCustomerWithoutSendingRequest() throws JsonProcessingException {
+        when(httpResponse.body()).thenReturn(bytes(notFoundProblemResponse()));
+        when(httpResponse.statusCode()).thenReturn(SC_NOT_FOUND);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        customerApiClient.getCustomerAsync(NUMERIC_ORG_NUMBER).join();
+        Optional<CustomerResponse> customer = customerApiClient.getCustomerAsync(NUMERIC_ORG_NUMBER).join();
+
+        assertTrue(customer.isEmpty());
+        verify(httpClient, times(1)).sendAsync(any(), any());
+    }
+
+    @Test
+    public void getCustomerAsyncSendsOneRequestForConcurrentLookupsOfTheSameOrganization() {
+        when(httpResponse.body()).thenReturn(bytes(generateValidCustomerResponse(CUSTOMER_ID)));
+        when(httpResponse.statusCode()).thenReturn(SC_OK);
+        CompletableFuture<HttpResponse<byte[]>> response = new CompletableFuture<>();
+        when(httpClient.sendAsync(any(), any())).thenAnswer(invocation -> response);
+
+        CompletableFuture<Optional<CustomerResponse>> first = customerApiClient.getCustomerAsync(NUMERIC_ORG_NUMBER);
+        CompletableFuture<Optional<CustomerResponse>> second =
+            customerApiClient.getCustomerAsync(COUNTRY_PREFIX + NUMERIC_ORG_NUMBER);
+        response.complete(httpResponse);
+
+        assertEquals(SAMPLE_ID, first.join().get().getCustomerId());
+        assertEquals(SAMPLE_ID, second.join().get().getCustomerId());
+        verify(httpClient, times(1)).sendAsync(any(), any());
+        assertThat(customerApiClient.getCustomerLookups().getCoalesced(), is(1L));
+    }
+
+    @Test
+    public void getCustomerAsyncReturnsCustomerIdentifierOnInput() {
+        when(httpResponse.body()).thenReturn(bytes(generateValidCustomerResponse(CUSTOMER_ID)));
+        when(httpResponse.statusCode()).thenReturn(SC_OK);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        Optional<CustomerResponse> customer = customerApiClient.getCustomerAsync(ORG_NUMBER).join();
+
+        assertEquals(SAMPLE_ID, customer.get().getCustomerId());
+        LatencyHistograms histograms = customerApiClient.getLatencyHistograms();
+        assertThat(histograms.histogram(CustomerApiClient.GET_CUSTOMER, "2xx").get().getCount(), is(1L));
+    }
+
+    @Test
+    public void getCustomerAsyncHedgesRequestThatHasNotAnsweredWithinHedgeDelay() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(CustomerApiClient.CUSTOMER_API_SCHEME)).thenReturn(HTTP);
+        when(environment.readEnv(CustomerApiClient.CUSTOMER_API_HOST)).thenReturn(EXAMPLE_ORG);
+        when(environment.readEnvOpt(RequestHedger.HEDGE_REQUESTS)).thenReturn(Optional.of("true"));
+        when(environment.readEnvOpt(RequestHedger.HEDGE_DELAY_MILLIS)).thenReturn(Optional.of("10"));
+        when(environment.readEnvOpt(RequestHedger.HEDGE_BUDGET_PERCENT)).thenReturn(Optional.of("100"));
+        customerApiClient = new CustomerApiClient(httpClient, new ObjectMapper(), environment);
+        when(httpResponse.body()).thenReturn(bytes(generateValidCustomerResponse(CUSTOMER_ID)));
+        when(httpResponse.statusCode()).thenReturn(SC_OK);
+        when(httpClient.sendAsync(any(), any()))
+            .thenReturn(new CompletableFuture<>())
+            .thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        Optional<CustomerResponse> customer = customerApiClient.getCustomerAsync(ORG_NUMBER).join();
+
+        assertEquals(SAMPLE_ID, customer.get().getCustomerId());
+        verify(httpClient, times(2)).sendAsync(any(), any());
+    }
+
+    @Test
+    public void getCustomerRecordsLatencyByStatusClass() throws IOException, InterruptedException {
+        when(httpResponse.statusCode()).thenReturn(SC_BAD_GATEWAY);
+        when(httpResponse.body()).thenReturn(NO_BODY);
+        when(httpClient.send(any(), any())).thenReturn(httpResponse);
+
+        assertThrows(IllegalStateException.class, () -> customerApiClient.getCustomer(ORG_NUMBER));
+
+        LatencyHistograms histograms = customerApiClient.getLatencyHistograms();
+        assertThat(histograms.histogram(CustomerApiClient.GET_CUSTOMER, "5xx").get().getCount(), is(1L));
+    }
+
+    @Test
+    public void getCustomerAsyncReturnsEmptyOptionalWhenCustomerIsNotFound() throws JsonProcessingException {
+        when(httpResponse.body()).thenReturn(bytes(notFoundProblemResponse()));
+        when(httpResponse.statusCode()).thenReturn(SC_NOT_FOUND);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        Optional<CustomerResponse> customer = customerApiClient.getCustomerAsync(ORG_NUMBER).join();
+
+        assertTrue(customer.isEmpty());
+    }
+
+    @Test
+    public void getCustomerAsyncFailsWithIllegalStateExceptionWhenHttpClientFails() {
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.failedFuture(new IOException()));
+
+        CompletableFuture<Optional<CustomerResponse>> customer = customerApiClient.getCustomerAsync(ORG_NUMBER);
+
+        var exception = assertThrows(IllegalStateException.class, () -> Futures.join(customer));
+        assertThat(exception.getMessage(),
+            is(equalTo("Error fetching customer information, http client failed to initialize.")));
+    }
+
+    @Test
+    public void getCustomerAsyncFailsWithIllegalStateExceptionWhenUriCannotBeBuilt() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(CustomerApiClient.CUSTOMER_API_SCHEME)).thenReturn(HTTP);
+        when(environment.readEnv(CustomerApiClient.CUSTOMER_API_HOST)).thenReturn(INVALID_HOST);
+        customerApiClient = new CustomerApiClient(httpClient, new ObjectMapper(), environment);
+
+        CompletableFuture<Optional<CustomerResponse>> customer = customerApiClient.getCustomerAsync(ORG_NUMBER);
+
+        assertThrows(IllegalStateException.class, () -> Futures.join(customer));
+    }
+
+    @Test
+    public void warmUpLooksUpSampleOrganizationWithoutCachingTheResult() throws JsonProcessingException {
+        when(httpResponse.body()).thenReturn(bytes(notFoundProblemResponse()));
+        when(httpResponse.statusCode()).thenReturn(SC_NOT_FOUND);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        customerApiClient.warmUp().join();
+
+        verify(httpClient, times(1)).sendAsync(
+            argThat(request -> request.uri().getPath().endsWith(WarmUpSamples.WARM_UP_ORG_NUMBER)), any());
+        assertThat(customerApiClient.getCustomerCache().size(), is(equalTo(0)));
+        assertThat(customerApiClient.getLatencyHistograms().histogram(CustomerApiClient.GET_CUSTOMER, "4xx"),
+                   is(Optional.empty()));
+    }
+
+    @Test
+    public void warmUpFailsWhenCustomerServiceCannotBeReached() {
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.failedFuture(new IOException()));
+
+        CompletableFuture<Void> warmUp = customerApiClient.warmUp();
+
+        assertThrows(IllegalStateException.class, () -> Futures.join(warmUp));
+    }
+
+    @Test
+    public void warmUpFailsWithoutSendingRequestWhenSampleCustomerCannotBeSerialized()
+        throws JsonProcessingException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(CustomerApiClient.CUSTOMER_API_SCHEME)).thenReturn(HTTP);
+        when(environment.readEnv(CustomerApiClient.CUSTOMER_API_HOST)).thenReturn(EXAMPLE_ORG);
+        ObjectMapper failingObjectMapper = spy(new ObjectMapper());
+        ObjectWriter failingWriter = mock(ObjectWriter.class);
+        doThrow(JsonProcessingException.class).when(failingWriter).writeValueAsBytes(any());
+        doReturn(failingWriter).when(failingObjectMapper).writer();
+        customerApiClient = new CustomerApiClient(httpClient, failingObjectMapper, environment);
+
+        CompletableFuture<Void> warmUp = customerApiClient.warmUp();
+
+        assertThat(warmUp.isCompletedExceptionally(), is(true));
+        verify(httpClient, never()).sendAsync(any(), any());
+    }
+
     private String generateValidCustomerResponse(String identifier) {
         return String.format(RESPONSE_TEMPLATE, identifier, SAMPLE_ID);
     }
@@ -137,4 +322,8 @@ public class CustomerApiClientTest {
             .withDetail("Customer not found: " + ORG_NUMBER)
             .build());
     }
+
+    private static byte[] bytes(String body) {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,162 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_CACHE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HIT;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.MISS;
+import static no.unit.nva.cognito.service.CustomerCache.CUSTOMER_CACHE_MAX_SIZE;
+import static no.unit.nva.cognito.service.CustomerCache.CUSTOMER_CACHE_NOT_FOUND_TTL_SECONDS;
+import static no.unit.nva.cognito.service.CustomerCache.CUSTOMER_CACHE_TTL_SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.model.CustomerResponse;
+import nva.commons.core.Environment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CustomerCacheTest {
+
+    public static final String ORG_NUMBER = "1234567890";
+    public static final String OTHER_ORG_NUMBER = "0987654321";
+    public static final String THIRD_ORG_NUMBER = "1111111111";
+    public static final CustomerResponse CUSTOMER = new CustomerResponse("http://customer", "http://cristin");
+    public static final int MAX_SIZE = 2;
+    public static final Duration TTL = Duration.ofMinutes(10);
+    public static final Duration NOT_FOUND_TTL = Duration.ofMinutes(1);
+    public static final Instant NOW = Instant.parse("2021-05-01T10:00:00Z");
+
+    private Clock clock;
+    private CustomerCache cache;
+    private AtomicInteger loaderCalls;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+        cache = new CustomerCache(MAX_SIZE, TTL, NOT_FOUND_TTL, clock);
+        loaderCalls = new AtomicInteger();
+    }
+
+    @Test
+    public void getOrLoadReturnsCachedCustomerWithoutCallingLoaderAgain() {
+        cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        Optional<CustomerResponse> customer = cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+
+        assertThat(customer.get(), is(equalTo(CUSTOMER)));
+        assertThat(loaderCalls.get(), is(1));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(1L));
+    }
+
+    @Test
+    public void getOrLoadCachesMissingCustomer() {
+        cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.empty()));
+        Optional<CustomerResponse> customer = cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.empty()));
+
+        assertThat(customer.isEmpty(), is(true));
+        assertThat(loaderCalls.get(), is(1));
+    }
+
+    @Test
+    public void getOrLoadExpiresMissingCustomerBeforeFoundCustomer() {
+        cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        cache.getOrLoad(OTHER_ORG_NUMBER, countingLoader(Optional.empty()));
+
+        when(clock.instant()).thenReturn(NOW.plus(NOT_FOUND_TTL));
+        cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        cache.getOrLoad(OTHER_ORG_NUMBER, countingLoader(Optional.empty()));
+        assertThat(loaderCalls.get(), is(3));
+
+        when(clock.instant()).thenReturn(NOW.plus(TTL));
+        cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        assertThat(loaderCalls.get(), is(4));
+    }
+
+    @Test
+    public void getOrLoadEvictsLeastRecentlyUsedEntryWhenFull() {
+        cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        cache.getOrLoad(OTHER_ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        cache.getOrLoad(THIRD_ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+
+        assertThat(cache.size(), is(MAX_SIZE));
+        cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        assertThat(loaderCalls.get(), is(3));
+        cache.getOrLoad(OTHER_ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        assertThat(loaderCalls.get(), is(4));
+    }
+
+    @Test
+    public void getOrLoadDoesNotCacheFailedLookups() {
+        Function<String, Optional<CustomerResponse>> failingLoader = orgNumber -> {
+            loaderCalls.incrementAndGet();
+            throw new IllegalStateException();
+        };
+        assertThrows(IllegalStateException.class, () -> cache.getOrLoad(ORG_NUMBER, failingLoader));
+
+        Optional<CustomerResponse> customer = cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+
+        assertThat(customer.get(), is(equalTo(CUSTOMER)));
+        assertThat(loaderCalls.get(), is(2));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void getOrLoadReportsCacheMissAndHitToCurrentInvocationMetrics() {
+        InvocationMetrics firstInvocation = new InvocationMetrics();
+        InvocationMetrics secondInvocation = new InvocationMetrics();
+
+        attachedDuring(firstInvocation, () -> cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER))));
+        attachedDuring(secondInvocation, () -> cache.getOrLoad(ORG_NUMBER, countingLoader(Optional.of(CUSTOMER))));
+
+        assertThat(firstInvocation.getDimensions().get(CUSTOMER_CACHE), is(equalTo(MISS)));
+        assertThat(secondInvocation.getDimensions().get(CUSTOMER_CACHE), is(equalTo(HIT)));
+    }
+
+    @Test
+    public void fromEnvironmentReadsSizeAndTimeToLiveFromEnvironment() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(CUSTOMER_CACHE_MAX_SIZE)).thenReturn(Optional.of("1"));
+        when(environment.readEnvOpt(CUSTOMER_CACHE_TTL_SECONDS)).thenReturn(Optional.of("60"));
+        when(environment.readEnvOpt(CUSTOMER_CACHE_NOT_FOUND_TTL_SECONDS)).thenReturn(Optional.of("0"));
+        CustomerCache environmentCache = CustomerCache.fromEnvironment(environment);
+
+        environmentCache.getOrLoad(ORG_NUMBER, countingLoader(Optional.empty()));
+        environmentCache.getOrLoad(ORG_NUMBER, countingLoader(Optional.empty()));
+        assertThat(loaderCalls.get(), is(2));
+
+        environmentCache.getOrLoad(OTHER_ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        environmentCache.getOrLoad(OTHER_ORG_NUMBER, countingLoader(Optional.of(CUSTOMER)));
+        assertThat(loaderCalls.get(), is(3));
+        assertThat(environmentCache.size(), is(1));
+    }
+
+    private void attachedDuring(InvocationMetrics metrics, Runnable action) {
+        metrics.attach();
+        try {
+            action.run();
+        } finally {
+            metrics.detach();
+        }
+    }
+
+    private Function<String, Optional<CustomerResponse>> countingLoader(Optional<CustomerResponse> result) {
+        return orgNumber -> {
+            loaderCalls.incrementAndGet();
+            return result;
+        };
+    }
+}
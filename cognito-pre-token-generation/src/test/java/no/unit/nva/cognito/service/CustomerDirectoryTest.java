@@ -0,0 +1,236 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.CUSTOMER_CACHE;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.DIRECTORY;
+import static no.unit.nva.cognito.service.CustomerDirectory.CUSTOMER_DIRECTORY;
+import static no.unit.nva.cognito.service.CustomerDirectory.CUSTOMER_ID_FIELD;
+import static no.unit.nva.cognito.service.CustomerDirectory.DEFAULT_FILE_NAME;
+import static no.unit.nva.cognito.service.CustomerDirectory.LAMBDA_TASK_ROOT;
+import static no.unit.nva.cognito.service.CustomerDirectory.NOT_FOUND;
+import static no.unit.nva.cognito.service.CustomerDirectory.ORG_NUMBER_FIELD;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.model.CustomerResponse;
+import nva.commons.core.Environment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CustomerDirectoryTest {
+
+    public static final String ORG_NUMBER = "1234567890";
+    public static final String OTHER_ORG_NUMBER = "0987654321";
+    public static final String MISSING_ORG_NUMBER = "5555555555";
+    public static final CustomerResponse CUSTOMER = new CustomerResponse("http://customer/1", "http://cristin/1");
+    public static final CustomerResponse OTHER_CUSTOMER = new CustomerResponse("http://customer/2", null);
+    public static final CustomerResponse SERVICE_CUSTOMER = new CustomerResponse("http://customer/3", null);
+    public static final byte[] SNAPSHOT = CustomerDirectoryWriter.write(
+        Map.of(ORG_NUMBER, CUSTOMER, OTHER_ORG_NUMBER, OTHER_CUSTOMER));
+
+    private CustomerApi fallback;
+    private InvocationMetrics metrics;
+    private CustomerDirectory directory;
+
+    @TempDir
+    public Path tempDir;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        fallback = mock(CustomerApi.class);
+        when(fallback.getCustomer(MISSING_ORG_NUMBER)).thenReturn(Optional.of(SERVICE_CUSTOMER));
+        when(fallback.getCustomerAsync(MISSING_ORG_NUMBER))
+            .thenReturn(CompletableFuture.completedFuture(Optional.of(SERVICE_CUSTOMER)));
+        metrics = new InvocationMetrics();
+        metrics.attach();
+        directory = new CustomerDirectory(ByteBuffer.wrap(SNAPSHOT), fallback);
+    }
+
+    @AfterEach
+    public void detachMetrics() {
+        metrics.detach();
+    }
+
+    @Test
+    public void getCustomerReturnsCustomerInSnapshotWithoutAskingTheService() {
+        CustomerResponse customer = directory.getCustomer(ORG_NUMBER).orElseThrow();
+
+        assertThat(customer.getCustomerId(), is(CUSTOMER.getCustomerId()));
+        assertThat(customer.getCristinId(), is(CUSTOMER.getCristinId()));
+        assertThat(directory.getCustomer(OTHER_ORG_NUMBER).orElseThrow().getCristinId(), is(nullValue()));
+        assertThat(metrics.getDimensions().get(CUSTOMER_CACHE), is(DIRECTORY));
+        verify(fallback, never()).getCustomer(ORG_NUMBER);
+    }
+
+    @Test
+    public void getCustomerReusesTheDecodedCustomer() {
+        assertThat(directory.getCustomer(ORG_NUMBER), is(sameInstance(directory.getCustomer(ORG_NUMBER))));
+    }
+
+    @Test
+    public void getCustomerIgnoresTheCharactersTheOrgNumberCleanerRemoves() {
+        CustomerResponse customer = directory.getCustomer("NO" + ORG_NUMBER).orElseThrow();
+
+        assertThat(customer.getCustomerId(), is(CUSTOMER.getCustomerId()));
+    }
+
+    @Test
+    public void getCustomerAsksTheServiceForOrganizationsNotInSnapshot() {
+        assertThat(directory.getCustomer(MISSING_ORG_NUMBER).orElseThrow(), is(SERVICE_CUSTOMER));
+        assertThat(directory.getCustomerAsync(MISSING_ORG_NUMBER).join().orElseThrow(), is(SERVICE_CUSTOMER));
+    }
+
+    @Test
+    public void getCustomerAsyncReturnsCompletedCustomerInSnapshot() {
+        CompletableFuture<Optional<CustomerResponse>> customer = directory.getCustomerAsync(ORG_NUMBER);
+
+        assertThat(customer.isDone(), is(true));
+        assertThat(customer.join().orElseThrow().getCustomerId(), is(CUSTOMER.getCustomerId()));
+        verify(fallback, never()).getCustomerAsync(ORG_NUMBER);
+    }
+
+    @Test
+    public void indexOfDoesNotMatchPrefixesOrExtensionsOfOrgNumbers() {
+        assertThat(directory.indexOf(ORG_NUMBER.substring(1)), is(NOT_FOUND));
+        assertThat(directory.indexOf(ORG_NUMBER.substring(0, ORG_NUMBER.length() - 1)), is(NOT_FOUND));
+        assertThat(directory.indexOf(ORG_NUMBER + "0"), is(NOT_FOUND));
+        assertThat(directory.indexOf(""), is(NOT_FOUND));
+    }
+
+    @Test
+    public void indexOfFindsEveryOrganizationOfALargeSnapshot() {
+        Map<String, CustomerResponse> customers = new HashMap<>();
+        for (int number = 0; number < 1000; number += 3) {
+            customers.put(String.valueOf(number), CUSTOMER);
+        }
+        CustomerDirectory large = new CustomerDirectory(ByteBuffer.wrap(CustomerDirectoryWriter.write(customers)),
+                                                        fallback);
+
+        assertThat(large.size(), is(customers.size()));
+        for (int number = 0; number < 1000; number++) {
+            assertThat(large.indexOf(String.valueOf(number)) != NOT_FOUND, is(number % 3 == 0));
+        }
+    }
+
+    @Test
+    public void warmUpWarmsUpTheService() {
+        CompletableFuture<Void> warmUp = CompletableFuture.completedFuture(null);
+        when(fallback.warmUp()).thenReturn(warmUp);
+
+        assertThat(directory.warmUp(), is(sameInstance(warmUp)));
+    }
+
+    @Test
+    public void constructorRejectsBuffersThatAreNotSnapshots() {
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(ByteBuffer.allocate(4), fallback));
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(ByteBuffer.allocate(64), fallback));
+        ByteBuffer truncated = ByteBuffer.wrap(SNAPSHOT, 0, CustomerDirectory.HEADER_BYTES).slice();
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(truncated, fallback));
+        ByteBuffer otherVersion = ByteBuffer.wrap(SNAPSHOT.clone()).putInt(CustomerDirectory.VERSION_OFFSET, 2);
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(otherVersion, fallback));
+        ByteBuffer negativeSize = ByteBuffer.wrap(SNAPSHOT.clone()).putInt(CustomerDirectory.COUNT_OFFSET, -1);
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(negativeSize, fallback));
+    }
+
+    @Test
+    public void constructorRejectsSnapshotsWithStringsOutsideTheBuffer() {
+        ByteBuffer truncated = ByteBuffer.wrap(SNAPSHOT, 0, SNAPSHOT.length - 1).slice();
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(truncated, fallback));
+        ByteBuffer offsetPastEnd = ByteBuffer.wrap(SNAPSHOT.clone())
+                                       .putInt(CustomerDirectory.HEADER_BYTES + CUSTOMER_ID_FIELD, SNAPSHOT.length);
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(offsetPastEnd, fallback));
+        ByteBuffer offsetInHeader = ByteBuffer.wrap(SNAPSHOT.clone())
+                                        .putInt(CustomerDirectory.HEADER_BYTES + ORG_NUMBER_FIELD, 0);
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(offsetInHeader, fallback));
+        ByteBuffer missingOrgNumber = withFirstStringLength(CustomerDirectory.NULL_LENGTH);
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(missingOrgNumber, fallback));
+        ByteBuffer negativeLength = withFirstStringLength(-2);
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(negativeLength, fallback));
+        ByteBuffer lengthPastEnd = withFirstStringLength(SNAPSHOT.length);
+        assertThrows(IllegalArgumentException.class, () -> new CustomerDirectory(lengthPastEnd, fallback));
+    }
+
+    @Test
+    public void fromEnvironmentReturnsTheServiceWhenTheSnapshotIsTruncated() throws IOException {
+        Path file = Files.write(tempDir.resolve("customers.bin"), Arrays.copyOf(SNAPSHOT, SNAPSHOT.length - 1));
+
+        CustomerApi customerApi = CustomerDirectory.fromEnvironment(environment(CUSTOMER_DIRECTORY, file.toString()),
+                                                                    fallback);
+
+        assertThat(customerApi, is(sameInstance(fallback)));
+    }
+
+    @Test
+    public void fromEnvironmentMapsTheConfiguredSnapshot() throws IOException {
+        Path file = Files.write(tempDir.resolve("customers.bin"), SNAPSHOT);
+        Environment environment = environment(CUSTOMER_DIRECTORY, file.toString());
+
+        CustomerApi customerApi = CustomerDirectory.fromEnvironment(environment, fallback);
+
+        assertThat(customerApi, is(instanceOf(CustomerDirectory.class)));
+        assertThat(customerApi.getCustomer(ORG_NUMBER).orElseThrow().getCustomerId(), is(CUSTOMER.getCustomerId()));
+    }
+
+    @Test
+    public void fromEnvironmentMapsTheSnapshotPackagedWithTheFunction() throws IOException {
+        Files.write(tempDir.resolve(DEFAULT_FILE_NAME), SNAPSHOT);
+        Environment environment = environment(LAMBDA_TASK_ROOT, tempDir.toString());
+
+        CustomerApi customerApi = CustomerDirectory.fromEnvironment(environment, fallback);
+
+        assertThat(((CustomerDirectory) customerApi).size(), is(2));
+    }
+
+    @Test
+    public void fromEnvironmentReturnsTheServiceWithoutSnapshot() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(CUSTOMER_DIRECTORY)).thenReturn(Optional.empty());
+        when(environment.readEnvOpt(LAMBDA_TASK_ROOT)).thenReturn(Optional.empty());
+
+        assertThat(CustomerDirectory.fromEnvironment(environment, fallback), is(sameInstance(fallback)));
+        assertThat(CustomerDirectory.fromEnvironment(environment(LAMBDA_TASK_ROOT, tempDir.toString()), fallback),
+                   is(sameInstance(fallback)));
+    }
+
+    @Test
+    public void fromEnvironmentReturnsTheServiceWhenTheSnapshotIsInvalid() throws IOException {
+        Path file = Files.write(tempDir.resolve("customers.bin"), new byte[]{1, 2, 3});
+
+        CustomerApi customerApi = CustomerDirectory.fromEnvironment(environment(CUSTOMER_DIRECTORY, file.toString()),
+                                                                    fallback);
+
+        assertThat(customerApi, is(sameInstance(fallback)));
+    }
+
+    private static ByteBuffer withFirstStringLength(int length) {
+        ByteBuffer snapshot = ByteBuffer.wrap(SNAPSHOT.clone());
+        return snapshot.putInt(snapshot.getInt(CustomerDirectory.HEADER_BYTES + ORG_NUMBER_FIELD), length);
+    }
+
+    private static Environment environment(String variable, String value) {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(variable)).thenReturn(Optional.of(value));
+        return environment;
+    }
+}
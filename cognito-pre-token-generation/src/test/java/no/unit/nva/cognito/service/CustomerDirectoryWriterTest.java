@@ -0,0 +1,69 @@
+package no.unit.nva.cognito.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import no.unit.nva.cognito.model.CustomerResponse;
+import org.junit.jupiter.api.Test;
+
+public class CustomerDirectoryWriterTest {
+
+    public static final String EXPORT = "["
+                                        + "{\"orgNumber\": \"NO1234567890\", \"customerId\": \"http://customer/1\","
+                                        + " \"cristinId\": \"http://cristin/1\"},"
+                                        + "{\"orgNumber\": \"0987654321\", \"customerId\": \"http://customer/2\"}"
+                                        + "]";
+
+    @Test
+    public void readExportReadsCustomersByCleanedOrgNumber() throws IOException {
+        Map<String, CustomerResponse> customers = CustomerDirectoryWriter.readExport(bytes(EXPORT));
+
+        assertThat(customers.keySet().toString(), is("[0987654321, 1234567890]"));
+        assertThat(customers.get("1234567890").getCristinId(), is("http://cristin/1"));
+        assertThat(customers.get("0987654321").getCristinId(), is(nullValue()));
+    }
+
+    @Test
+    public void readExportRejectsExportsThatAreNotArraysOfCustomers() {
+        assertThrows(IllegalArgumentException.class, () -> CustomerDirectoryWriter.readExport(bytes("{}")));
+        assertThrows(IllegalArgumentException.class, () -> CustomerDirectoryWriter.readExport(bytes("")));
+        byte[] withoutOrgNumber = bytes("[{\"customerId\": \"http://customer/1\"}]");
+        assertThrows(IllegalArgumentException.class, () -> CustomerDirectoryWriter.readExport(withoutOrgNumber));
+    }
+
+    @Test
+    public void readExportRejectsOrganizationsThatAreInTheExportTwice() {
+        String export = "[{\"orgNumber\": \"NO123\"}, {\"orgNumber\": \"123\"}]";
+
+        assertThrows(IllegalArgumentException.class, () -> CustomerDirectoryWriter.readExport(bytes(export)));
+    }
+
+    @Test
+    public void writeWritesASnapshotTheDirectoryReads() throws IOException {
+        byte[] snapshot = CustomerDirectoryWriter.write(CustomerDirectoryWriter.readExport(bytes(EXPORT)));
+        CustomerDirectory directory = new CustomerDirectory(ByteBuffer.wrap(snapshot), mock(CustomerApi.class));
+
+        assertThat(directory.size(), is(2));
+        assertThat(directory.indexOf("0987654321"), is(0));
+        assertThat(directory.indexOf("1234567890"), is(1));
+    }
+
+    @Test
+    public void writeWritesAnEmptySnapshot() {
+        CustomerDirectory directory = new CustomerDirectory(ByteBuffer.wrap(CustomerDirectoryWriter.write(Map.of())),
+                                                            mock(CustomerApi.class));
+
+        assertThat(directory.size(), is(0));
+        assertThat(directory.indexOf("1234567890"), is(CustomerDirectory.NOT_FOUND));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,97 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.CustomerApiClient.CUSTOMER_API_HOST;
+import static no.unit.nva.cognito.service.CustomerApiClient.CUSTOMER_API_SCHEME;
+import static no.unit.nva.cognito.service.UserApiClient.USER_API_HOST;
+import static no.unit.nva.cognito.service.UserApiClient.USER_API_SCHEME;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import nva.commons.core.Environment;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import org.junit.jupiter.api.Test;
+
+public class HttpTransportTest {
+
+    public static final String HTTPS = "https";
+    public static final String API_HOST = "api.example.org";
+    public static final String OTHER_HOST = "other.example.org";
+
+    @Test
+    public void newHttpClientPrefersHttp2AndUsesSuppliedExecutorAndConnectTimeout() {
+        Executor executor = ForkJoinPool.commonPool();
+
+        HttpClient httpClient = HttpTransport.newHttpClient(executor);
+
+        assertThat(httpClient.version(), is(equalTo(Version.HTTP_2)));
+        assertThat(httpClient.executor(), is(equalTo(Optional.of(executor))));
+        assertThat(httpClient.connectTimeout(), is(equalTo(Optional.of(HttpTransport.CONNECT_TIMEOUT))));
+    }
+
+    @Test
+    public void prewarmOpensOneConnectionWhenBothServicesShareHost() {
+        HttpClient httpClient = respondingHttpClient();
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_API_SCHEME)).thenReturn(HTTPS);
+        when(environment.readEnv(USER_API_HOST)).thenReturn(API_HOST);
+        when(environment.readEnv(CUSTOMER_API_SCHEME)).thenReturn(HTTPS);
+        when(environment.readEnv(CUSTOMER_API_HOST)).thenReturn(API_HOST);
+
+        new HttpTransport(httpClient).prewarm(environment).join();
+
+        verify(httpClient, times(1)).sendAsync(
+            argThat(request -> HttpTransport.HEAD.equals(request.method())
+                               && request.uri().equals(HttpTransport.origin(HTTPS, API_HOST))), any());
+    }
+
+    @Test
+    public void prewarmOpensConnectionToEachDistinctHost() {
+        HttpClient httpClient = respondingHttpClient();
+        HttpTransport transport = new HttpTransport(httpClient);
+
+        transport.prewarm(List.of(HttpTransport.origin(HTTPS, API_HOST), HttpTransport.origin(HTTPS, OTHER_HOST)))
+            .join();
+
+        verify(httpClient, times(2)).sendAsync(any(), any());
+        assertThat(transport.getHttpClient(), is(equalTo(httpClient)));
+    }
+
+    @Test
+    public void prewarmCompletesWhenConnectionCannotBeOpened() {
+        final TestAppender appender = LogUtils.getTestingAppender(HttpTransport.class);
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.failedFuture(new IOException()));
+        URI origin = HttpTransport.origin(HTTPS, API_HOST);
+
+        new HttpTransport(httpClient).prewarm(List.of(origin)).join();
+
+        assertThat(appender.getMessages(), containsString("Opening connection to " + origin + " failed"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpClient respondingHttpClient() {
+        HttpClient httpClient = mock(HttpClient.class);
+        HttpResponse<Object> response = mock(HttpResponse.class);
+        when(response.version()).thenReturn(Version.HTTP_2);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        return httpClient;
+    }
+}
@@ -0,0 +1,277 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.HttpUserPoolClient.ADMIN_UPDATE_USER_ATTRIBUTES_TARGET;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.AMZ_JSON;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.AWS_REGION;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.COGNITO_ENDPOINT;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.COGNITO_SERVICE;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.CONTENT_TYPE;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.LIST_USERS_FAILURE;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.LIST_USERS_TARGET;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.PAGE_SIZE;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.UPDATE_USER_ATTRIBUTES_FAILURE;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.X_AMZ_TARGET;
+import static no.unit.nva.cognito.model.AwsCredentials.AWS_ACCESS_KEY_ID;
+import static no.unit.nva.cognito.model.AwsCredentials.AWS_SECRET_ACCESS_KEY;
+import static no.unit.nva.cognito.model.AwsCredentials.AWS_SESSION_TOKEN;
+import static no.unit.nva.cognito.util.SigV4Signer.AUTHORIZATION;
+import static no.unit.nva.cognito.util.SigV4Signer.X_AMZ_DATE;
+import static no.unit.nva.cognito.util.SigV4Signer.X_AMZ_SECURITY_TOKEN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import com.amazonaws.services.cognitoidp.model.UserType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.model.AwsCredentials;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.SigV4Signer;
+import nva.commons.core.Environment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class HttpUserPoolClientTest {
+
+    public static final String REGION = "eu-west-1";
+    public static final String ACCESS_KEY_ID = "accessKeyId";
+    public static final String SECRET_ACCESS_KEY = "secretAccessKey";
+    public static final String SESSION_TOKEN = "sessionToken";
+    public static final Instant NOW = Instant.parse("2021-05-01T10:00:00Z");
+    public static final String USER_POOL_ID = "userPoolId";
+    public static final String USER_NAME = "userName";
+    public static final String ATTRIBUTE_NAME = "custom:customerId";
+    public static final String ATTRIBUTE_VALUE = "https://example.org/customer/\"quoted\"";
+    public static final String EMPTY_JSON_OBJECT = "{}";
+    public static final String USER_NOT_FOUND_RESPONSE =
+        "{\"__type\":\"UserNotFoundException\",\"message\":\"User does not exist.\"}";
+    public static final String PAGINATION_TOKEN = "paginationToken";
+    public static final String NEXT_PAGINATION_TOKEN = "nextPaginationToken";
+    public static final String LIST_USERS_RESPONSE = "{\"Users\":[{\"Username\":\"userName\",\"Enabled\":true,"
+                                                     + "\"Attributes\":[{\"Name\":\"custom:customerId\","
+                                                     + "\"Value\":\"https://example.org/customer/\\\"quoted\\\"\"}]}],"
+                                                     + "\"PaginationToken\":\"nextPaginationToken\"}";
+    public static final String ROOT_PATH = "/";
+    public static final String POST = "POST";
+    public static final int HTTP_OK = 200;
+    public static final int HTTP_BAD_REQUEST = 400;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReference<ReceivedRequest> receivedRequest = new AtomicReference<>();
+    private final AwsCredentials credentials = new AwsCredentials(ACCESS_KEY_ID, SECRET_ACCESS_KEY, SESSION_TOKEN);
+    private HttpServer cognitoStandIn;
+    private URI endpoint;
+    private int responseStatus;
+    private String responseBody;
+
+    /**
+     * Starts a local stand-in for the Cognito API.
+     */
+    @BeforeEach
+    public void init() throws IOException {
+        responseStatus = HTTP_OK;
+        responseBody = EMPTY_JSON_OBJECT;
+        cognitoStandIn = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        cognitoStandIn.createContext(ROOT_PATH, this::respond);
+        cognitoStandIn.start();
+        endpoint = URI.create("http://localhost:" + cognitoStandIn.getAddress().getPort() + ROOT_PATH);
+    }
+
+    @AfterEach
+    public void stopStandIn() {
+        cognitoStandIn.stop(0);
+    }
+
+    @Test
+    public void updateUserAttributesAsyncSendsSignedAdminUpdateUserAttributesRequest() throws IOException {
+        newClient(endpoint).updateUserAttributesAsync(USER_POOL_ID, USER_NAME, sampleAttributes()).join();
+
+        ReceivedRequest request = receivedRequest.get();
+        assertThat(request.method, is(equalTo(POST)));
+        assertThat(request.headers.get(X_AMZ_TARGET), is(equalTo(ADMIN_UPDATE_USER_ATTRIBUTES_TARGET)));
+        assertThat(request.headers.get(CONTENT_TYPE), is(equalTo(AMZ_JSON)));
+        assertThat(request.headers.get(X_AMZ_SECURITY_TOKEN), is(equalTo(SESSION_TOKEN)));
+        assertThat(request.headers.get(X_AMZ_DATE), is(equalTo("20210501T100000Z")));
+        assertThat(request.headers.get(AUTHORIZATION), is(equalTo(expectedAuthorization(request))));
+
+        JsonNode body = objectMapper.readTree(request.body);
+        assertThat(body.get("UserPoolId").textValue(), is(equalTo(USER_POOL_ID)));
+        assertThat(body.get("Username").textValue(), is(equalTo(USER_NAME)));
+        assertThat(body.get("UserAttributes").get(0).get("Name").textValue(), is(equalTo(ATTRIBUTE_NAME)));
+        assertThat(body.get("UserAttributes").get(0).get("Value").textValue(), is(equalTo(ATTRIBUTE_VALUE)));
+    }
+
+    @Test
+    public void updateUserAttributesAsyncFailsWithBadGatewayExceptionWhenCognitoReturnsError() {
+        responseStatus = HTTP_BAD_REQUEST;
+        responseBody = USER_NOT_FOUND_RESPONSE;
+
+        var update = newClient(endpoint).updateUserAttributesAsync(USER_POOL_ID, USER_NAME, sampleAttributes());
+
+        BadGatewayException exception = assertThrows(BadGatewayException.class, () -> Futures.join(update));
+        assertThat(exception.getMessage(), containsString(UPDATE_USER_ATTRIBUTES_FAILURE));
+        assertThat(exception.getMessage(), containsString("UserNotFoundException"));
+    }
+
+    @Test
+    public void updateUserAttributesAsyncFailsWithBadGatewayExceptionWhenCognitoCannotBeReached() {
+        cognitoStandIn.stop(0);
+
+        var update = newClient(endpoint).updateUserAttributesAsync(USER_POOL_ID, USER_NAME, sampleAttributes());
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(update));
+    }
+
+    @Test
+    public void updateUserAttributesAsyncFailsWithBadGatewayExceptionWhenRequestCannotBeBuilt() {
+        URI endpointWithoutScheme = URI.create("localhost");
+
+        var update = newClient(endpointWithoutScheme)
+                         .updateUserAttributesAsync(USER_POOL_ID, USER_NAME, sampleAttributes());
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(update));
+    }
+
+    @Test
+    public void listUsersAsyncSendsSignedListUsersRequestForFirstPageWithoutPaginationToken() throws IOException {
+        newClient(endpoint).listUsersAsync(USER_POOL_ID, null).join();
+
+        ReceivedRequest request = receivedRequest.get();
+        assertThat(request.headers.get(X_AMZ_TARGET), is(equalTo(LIST_USERS_TARGET)));
+        assertThat(request.headers.get(AUTHORIZATION), is(equalTo(expectedAuthorization(request))));
+
+        JsonNode body = objectMapper.readTree(request.body);
+        assertThat(body.get("UserPoolId").textValue(), is(equalTo(USER_POOL_ID)));
+        assertThat(body.get("Limit").intValue(), is(equalTo(PAGE_SIZE)));
+        assertThat(body.has("PaginationToken"), is(false));
+    }
+
+    @Test
+    public void listUsersAsyncReturnsUsersWithAttributesAndNextPaginationToken() throws IOException {
+        responseBody = LIST_USERS_RESPONSE;
+
+        ListUsersResult page = newClient(endpoint).listUsersAsync(USER_POOL_ID, PAGINATION_TOKEN).join();
+
+        JsonNode body = objectMapper.readTree(receivedRequest.get().body);
+        assertThat(body.get("PaginationToken").textValue(), is(equalTo(PAGINATION_TOKEN)));
+        UserType user = page.getUsers().get(0);
+        assertThat(user.getUsername(), is(equalTo(USER_NAME)));
+        assertThat(user.getAttributes(), is(equalTo(sampleAttributes())));
+        assertThat(page.getPaginationToken(), is(equalTo(NEXT_PAGINATION_TOKEN)));
+    }
+
+    @Test
+    public void listUsersAsyncReturnsLastPageWithoutPaginationTokenWhenResponseHasNone() {
+        ListUsersResult page = newClient(endpoint).listUsersAsync(USER_POOL_ID, PAGINATION_TOKEN).join();
+
+        assertThat(page.getUsers().isEmpty(), is(true));
+        assertThat(page.getPaginationToken(), is(equalTo(null)));
+    }
+
+    @Test
+    public void listUsersAsyncFailsWithBadGatewayExceptionWhenCognitoReturnsError() {
+        responseStatus = HTTP_BAD_REQUEST;
+        responseBody = USER_NOT_FOUND_RESPONSE;
+
+        var page = newClient(endpoint).listUsersAsync(USER_POOL_ID, null);
+
+        BadGatewayException exception = assertThrows(BadGatewayException.class, () -> Futures.join(page));
+        assertThat(exception.getMessage(), containsString(LIST_USERS_FAILURE));
+    }
+
+    @Test
+    public void listUsersAsyncFailsWithBadGatewayExceptionWhenRequestCannotBeBuilt() {
+        var page = newClient(URI.create("localhost")).listUsersAsync(USER_POOL_ID, null);
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(page));
+    }
+
+    @Test
+    public void fromEnvironmentSignsWithCredentialsAndRegionFromEnvironment() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(AWS_REGION)).thenReturn(REGION);
+        when(environment.readEnvOpt(COGNITO_ENDPOINT)).thenReturn(Optional.of(endpoint.toString()));
+        when(environment.readEnv(AWS_ACCESS_KEY_ID)).thenReturn(ACCESS_KEY_ID);
+        when(environment.readEnv(AWS_SECRET_ACCESS_KEY)).thenReturn(SECRET_ACCESS_KEY);
+        when(environment.readEnvOpt(AWS_SESSION_TOKEN)).thenReturn(Optional.empty());
+
+        HttpUserPoolClient.fromEnvironment(HttpClient.newHttpClient(), environment)
+            .updateUserAttributesAsync(USER_POOL_ID, USER_NAME, sampleAttributes())
+            .join();
+
+        String authorization = receivedRequest.get().headers.get(AUTHORIZATION);
+        assertThat(authorization, containsString(ACCESS_KEY_ID + "/"));
+        assertThat(authorization, containsString("/" + REGION + "/" + COGNITO_SERVICE + "/"));
+        assertThat(receivedRequest.get().headers.containsKey(X_AMZ_SECURITY_TOKEN), is(false));
+    }
+
+    private HttpUserPoolClient newClient(URI cognitoEndpoint) {
+        return new HttpUserPoolClient(HttpClient.newHttpClient(), cognitoEndpoint,
+                                      new SigV4Signer(REGION, COGNITO_SERVICE), () -> credentials,
+                                      Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private List<AttributeType> sampleAttributes() {
+        return List.of(new AttributeType().withName(ATTRIBUTE_NAME).withValue(ATTRIBUTE_VALUE));
+    }
+
+    /**
+     * Computes the signature the way Cognito does, from the headers and body the stand-in received.
+     */
+    private String expectedAuthorization(ReceivedRequest request) {
+        Map<String, String> signedHeaders = Map.of(CONTENT_TYPE, request.headers.get(CONTENT_TYPE),
+                                                   X_AMZ_TARGET, request.headers.get(X_AMZ_TARGET));
+        return new SigV4Signer(REGION, COGNITO_SERVICE)
+                   .sign(POST, endpoint, signedHeaders, request.body, credentials, NOW)
+                   .get(AUTHORIZATION);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        receivedRequest.set(new ReceivedRequest(exchange));
+        byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(responseStatus, response.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response);
+        }
+    }
+
+    private static class ReceivedRequest {
+
+        private final String method;
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        public ReceivedRequest(HttpExchange exchange) throws IOException {
+            this.method = exchange.getRequestMethod();
+            this.headers = new HashMap<>();
+            for (String name : List.of(CONTENT_TYPE, X_AMZ_TARGET, X_AMZ_DATE, AUTHORIZATION, X_AMZ_SECURITY_TOKEN)) {
+                Optional.ofNullable(exchange.getRequestHeaders().getFirst(name))
+                    .ifPresent(value -> headers.put(name, value));
+            }
+            this.body = exchange.getRequestBody().readAllBytes();
+        }
+    }
+}
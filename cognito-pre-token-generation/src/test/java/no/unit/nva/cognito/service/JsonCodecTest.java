@@ -0,0 +1,55 @@
+package no.unit.nva.cognito.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.junit.jupiter.api.Test;
+
+public class JsonCodecTest {
+
+    public static final String NON_ASCII_TEXT = Character.toString(0xE6) + Character.toString(0x1F600);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonCodec codec = new JsonCodec(objectMapper);
+
+    @Test
+    public void readUserParsesTheBytesWrittenByWriteUser() throws IOException, InvalidEntryInternalException {
+        UserDto user = WarmUpSamples.sampleUser();
+
+        assertThat(codec.readUser(codec.writeUser(user)), is(equalTo(user)));
+    }
+
+    @Test
+    public void readCustomerParsesTheBytesWrittenByWriteCustomer() throws IOException {
+        CustomerResponse customer = WarmUpSamples.sampleCustomer();
+
+        CustomerResponse parsed = codec.readCustomer(codec.writeCustomer(customer));
+
+        assertThat(parsed.getCustomerId(), is(equalTo(customer.getCustomerId())));
+    }
+
+    @Test
+    public void bodyPublishersSendTheSerializedBytes() throws IOException, InvalidEntryInternalException {
+        UserDto user = WarmUpSamples.sampleUser();
+        Map<String, UserDto> body = Map.of(UserApiClient.USER_FIELD, user);
+
+        assertThat(codec.userBody(user).contentLength(), is(equalTo((long) codec.writeUser(user).length)));
+        assertThat(codec.body(body).contentLength(),
+                   is(equalTo((long) objectMapper.writeValueAsBytes(body).length)));
+    }
+
+    @Test
+    public void textDecodesBodyForErrorMessages() {
+        assertThat(JsonCodec.text(NON_ASCII_TEXT.getBytes(StandardCharsets.UTF_8)), is(equalTo(NON_ASCII_TEXT)));
+        assertThat(JsonCodec.text(null), is(nullValue()));
+    }
+}
@@ -0,0 +1,138 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.RoleRules.ROLE_RULES;
+import static no.unit.nva.cognito.service.RoleRules.ROLE_RULES_BY_CUSTOMER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import nva.commons.core.Environment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+public class RoleRulesTest {
+
+    public static final String CREATOR = "Creator";
+    public static final String CURATOR = "Curator";
+    public static final String CUSTOMER_ID = "https://example.org/customer/123";
+    public static final String OTHER_CUSTOMER_ID = "https://example.org/customer/456";
+    public static final String STAFF_AFFILIATION = "[member, employee, staff]";
+    public static final String STUDENT_AFFILIATION = "[member, student]";
+
+    @Test
+    public void defaultRulesGiveCreatorToStaffAndFacultyOnly() {
+        RoleRules rules = RoleRules.defaultRules();
+
+        assertThat(rules.rolesFor(CUSTOMER_ID, STAFF_AFFILIATION), is(equalTo(Set.of(CREATOR))));
+        assertThat(rules.rolesFor(CUSTOMER_ID, "faculty@unit.no"), is(equalTo(Set.of(CREATOR))));
+        assertThat(rules.rolesFor(CUSTOMER_ID, STUDENT_AFFILIATION), is(equalTo(Set.of())));
+        assertThat(rules.rolesFor(null, null), is(equalTo(Set.of())));
+        assertThat(rules.automaticallyAssignedRolesFor(CUSTOMER_ID), is(equalTo(Set.of(CREATOR))));
+        assertThat(rules.automaticallyAssignedRolesFor(null), is(equalTo(Set.of(CREATOR))));
+    }
+
+    @Test
+    public void rolesForReturnsTheSameSetForEveryLoginWithTheSameRoles() {
+        RoleRules rules = RoleRules.defaultRules();
+
+        Set<String> first = rules.rolesFor(CUSTOMER_ID, STAFF_AFFILIATION);
+
+        assertThat(rules.rolesFor(CUSTOMER_ID, STAFF_AFFILIATION), is(sameInstance(first)));
+        assertThat(rules.rolesFor(CUSTOMER_ID, "[faculty]"), is(sameInstance(first)));
+    }
+
+    @Test
+    public void rolesForStillEvaluatesAffiliationsWhenTheMemoIsFull() {
+        RoleRules rules = RoleRules.defaultRules();
+        IntStream.rangeClosed(0, RoleRules.MAX_MEMOIZED_AFFILIATIONS)
+            .forEach(index -> rules.rolesFor(CUSTOMER_ID, "[student, " + index + "]"));
+
+        assertThat(rules.rolesFor(CUSTOMER_ID, STAFF_AFFILIATION), is(equalTo(Set.of(CREATOR))));
+    }
+
+    @Test
+    public void rulesOfTheSameRoleAreCombined() {
+        RoleRules rules = new RoleRules("Creator=staff, Creator=faculty", Map.of());
+
+        assertThat(rules.rolesFor(CUSTOMER_ID, "[faculty]"), is(equalTo(Set.of(CREATOR))));
+        assertThat(rules.rolesFor(CUSTOMER_ID, "[staff]"), is(equalTo(Set.of(CREATOR))));
+    }
+
+    @Test
+    public void customerRulesReplaceDefaultRulesForTheirUsers() {
+        RoleRules rules = new RoleRules("Creator=staff|faculty", Map.of(CUSTOMER_ID, "Creator=student,Curator=staff"));
+
+        assertThat(rules.rolesFor(CUSTOMER_ID, STUDENT_AFFILIATION), is(equalTo(Set.of(CREATOR))));
+        assertThat(rules.rolesFor(CUSTOMER_ID, STAFF_AFFILIATION), is(equalTo(Set.of(CURATOR))));
+        assertThat(rules.rolesFor(OTHER_CUSTOMER_ID, STAFF_AFFILIATION), is(equalTo(Set.of(CREATOR))));
+        assertThat(rules.automaticallyAssignedRolesFor(CUSTOMER_ID), is(equalTo(Set.of(CREATOR, CURATOR))));
+    }
+
+    @Test
+    public void automaticallyAssignedRolesAreThoseOfTheRulesOfTheCustomer() {
+        RoleRules rules = new RoleRules("Creator=staff|faculty", Map.of(CUSTOMER_ID, "Curator=staff",
+                                                                        OTHER_CUSTOMER_ID, "Creator=faculty"));
+
+        assertThat(rules.automaticallyAssignedRolesFor(CUSTOMER_ID), is(equalTo(Set.of(CURATOR))));
+        assertThat(rules.automaticallyAssignedRolesFor(OTHER_CUSTOMER_ID), is(equalTo(Set.of(CREATOR))));
+        assertThat(rules.automaticallyAssignedRolesFor("https://example.org/customer/789"),
+                   is(equalTo(Set.of(CREATOR))));
+    }
+
+    @Test
+    public void fromEnvironmentReadsDefaultAndCustomerRules() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(ROLE_RULES)).thenReturn(Optional.of("Curator=employee"));
+        when(environment.readEnvOpt(ROLE_RULES_BY_CUSTOMER))
+            .thenReturn(Optional.of("{\"" + CUSTOMER_ID + "\": \"Creator=member\"}"));
+
+        RoleRules rules = RoleRules.fromEnvironment(environment);
+
+        assertThat(rules.rolesFor(OTHER_CUSTOMER_ID, STAFF_AFFILIATION), is(equalTo(Set.of(CURATOR))));
+        assertThat(rules.rolesFor(CUSTOMER_ID, STAFF_AFFILIATION), is(equalTo(Set.of(CREATOR))));
+    }
+
+    @Test
+    public void fromEnvironmentUsesDefaultRulesWhenNothingIsConfigured() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(ROLE_RULES)).thenReturn(Optional.empty());
+        when(environment.readEnvOpt(ROLE_RULES_BY_CUSTOMER)).thenReturn(Optional.empty());
+
+        RoleRules rules = RoleRules.fromEnvironment(environment);
+
+        assertThat(rules.rolesFor(CUSTOMER_ID, STAFF_AFFILIATION), is(equalTo(Set.of(CREATOR))));
+    }
+
+    @Test
+    public void constructorRejectsInvalidRules() {
+        Map<String, String> noCustomerRules = Map.of();
+
+        Executable malformedRule = () -> new RoleRules("Creator", noCustomerRules);
+        Executable unknownAffiliation = () -> new RoleRules("Creator=visitor", noCustomerRules);
+
+        Exception malformed = assertThrows(IllegalArgumentException.class, malformedRule);
+        Exception unknown = assertThrows(IllegalArgumentException.class, unknownAffiliation);
+
+        assertThat(malformed.getMessage(), containsString(RoleRules.INVALID_RULE_ERROR_MESSAGE));
+        assertThat(unknown.getMessage(), containsString("visitor"));
+    }
+
+    @Test
+    public void constructorRejectsMoreRolesThanFitInTheRoleBitmask() {
+        String tooManyRoles = IntStream.rangeClosed(0, RoleRules.MAX_ROLES)
+                                  .mapToObj(index -> "Role" + index + "=staff")
+                                  .collect(Collectors.joining(RoleRules.RULE_SEPARATOR));
+        Map<String, String> noCustomerRules = Map.of();
+
+        assertThrows(IllegalArgumentException.class, () -> new RoleRules(tooManyRoles, noCustomerRules));
+    }
+}
@@ -0,0 +1,40 @@
+package no.unit.nva.cognito.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
+import com.amazonaws.services.cognitoidp.model.ListUsersRequest;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import com.amazonaws.services.cognitoidp.model.UserType;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class SdkUserPoolClientTest {
+
+    public static final String USER_POOL_ID = "userPoolId";
+    public static final String PAGINATION_TOKEN = "paginationToken";
+    public static final String USER_NAME = "userName";
+
+    @Test
+    public void listUsersAsyncRequestsPageOfUserPoolFromSdkClient() {
+        AWSCognitoIdentityProvider cognito = mock(AWSCognitoIdentityProvider.class);
+        ListUsersResult result = new ListUsersResult().withUsers(new UserType().withUsername(USER_NAME));
+        when(cognito.listUsers(any(ListUsersRequest.class))).thenReturn(result);
+
+        final ListUsersResult page = new SdkUserPoolClient(cognito, Runnable::run)
+                                   .listUsersAsync(USER_POOL_ID, PAGINATION_TOKEN)
+                                   .join();
+
+        ArgumentCaptor<ListUsersRequest> request = ArgumentCaptor.forClass(ListUsersRequest.class);
+        verify(cognito).listUsers(request.capture());
+        assertThat(request.getValue().getUserPoolId(), is(equalTo(USER_POOL_ID)));
+        assertThat(request.getValue().getPaginationToken(), is(equalTo(PAGINATION_TOKEN)));
+        assertThat(request.getValue().getLimit(), is(equalTo(HttpUserPoolClient.PAGE_SIZE)));
+        assertThat(page, is(equalTo(result)));
+    }
+}
@@ -0,0 +1,93 @@
+package no.unit.nva.cognito.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.junit.jupiter.api.Test;
+
+public class UpdatePolicyTest {
+
+    public static final String USERNAME = "user@name";
+    public static final String GIVEN_NAME = "givenName";
+    public static final String FAMILY_NAME = "familyName";
+    public static final String INSTITUTION = "https://example.org/customer/123";
+    public static final String CREATOR = "Creator";
+    public static final String CURATOR = "Curator";
+    public static final String USER = "User";
+
+    @Test
+    public void applyToReplacesDetailsUpdatedInEveryLogin() throws InvalidEntryInternalException {
+        UpdatePolicy policy = new UpdatePolicy(GIVEN_NAME, FAMILY_NAME, INSTITUTION, Set.of(), Set.of(CREATOR));
+
+        UserDto updatedUser = policy.applyTo(userWithRoles(USER));
+
+        assertThat(updatedUser.getGivenName(), is(equalTo(GIVEN_NAME)));
+        assertThat(updatedUser.getFamilyName(), is(equalTo(FAMILY_NAME)));
+        assertThat(updatedUser.getInstitution(), is(equalTo(INSTITUTION)));
+        assertThat(updatedUser.getUsername(), is(equalTo(USERNAME)));
+    }
+
+    @Test
+    public void updatedRolesAddsAssignedRolesAndKeepsRolesThatAreNotAssignedAutomatically()
+        throws InvalidEntryInternalException {
+        UpdatePolicy policy = new UpdatePolicy(GIVEN_NAME, FAMILY_NAME, INSTITUTION, Set.of(CREATOR), Set.of(CREATOR));
+
+        List<RoleDto> roles = policy.updatedRoles(userWithRoles(USER, CURATOR));
+
+        assertThat(roleNames(roles), is(equalTo(Set.of(USER, CURATOR, CREATOR))));
+    }
+
+    @Test
+    public void updatedRolesRemovesAutomaticallyAssignedRolesThatAreNoLongerAssigned()
+        throws InvalidEntryInternalException {
+        UpdatePolicy policy = new UpdatePolicy(GIVEN_NAME, FAMILY_NAME, INSTITUTION, Set.of(), Set.of(CREATOR));
+
+        List<RoleDto> roles = policy.updatedRoles(userWithRoles(USER, CREATOR));
+
+        assertThat(roleNames(roles), is(equalTo(Set.of(USER))));
+    }
+
+    @Test
+    public void updatePolicyIsSentAndReadAsJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        UpdatePolicy policy = new UpdatePolicy(GIVEN_NAME, FAMILY_NAME, null, Set.of(CREATOR), Set.of(CREATOR));
+
+        UpdatePolicy read = objectMapper.readValue(objectMapper.writeValueAsString(policy), UpdatePolicy.class);
+
+        UserDto existingUser = userWithRoles(USER);
+        assertThat(read.applyTo(existingUser), is(equalTo(policy.applyTo(existingUser))));
+        assertThat(read.getAssignedRoles(), is(equalTo(policy.getAssignedRoles())));
+        assertThat(read.getAutomaticallyAssignedRoles(), is(equalTo(policy.getAutomaticallyAssignedRoles())));
+    }
+
+    private static UserDto userWithRoles(String... roleNames) throws InvalidEntryInternalException {
+        List<RoleDto> roles = Set.of(roleNames).stream()
+                                  .map(UpdatePolicyTest::role)
+                                  .collect(Collectors.toList());
+        return UserDto.newBuilder()
+                   .withUsername(USERNAME)
+                   .withGivenName("oldGivenName")
+                   .withFamilyName("oldFamilyName")
+                   .withRoles(roles)
+                   .build();
+    }
+
+    private static RoleDto role(String name) {
+        try {
+            return RoleDto.newBuilder().withName(name).build();
+        } catch (InvalidEntryInternalException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Set<String> roleNames(List<RoleDto> roles) {
+        return roles.stream().map(RoleDto::getRoleName).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,37 @@
+package no.unit.nva.cognito.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import org.junit.jupiter.api.Test;
+
+public class UpsertSupportTest {
+
+    public static final int ANSWERS_BEFORE_TURNED_OFF = 2;
+
+    @Test
+    public void isEnabledReturnsFalseWhenUpsertsAreNotSent() {
+        assertThat(new UpsertSupport(false, ANSWERS_BEFORE_TURNED_OFF).isEnabled(), is(false));
+    }
+
+    @Test
+    public void notSupportedTurnsUpsertsOffOnlyAfterAnswersInARow() {
+        UpsertSupport upsertSupport = new UpsertSupport(true, ANSWERS_BEFORE_TURNED_OFF);
+
+        assertThat(upsertSupport.notSupported(), is(1));
+        assertThat(upsertSupport.isEnabled(), is(true));
+        assertThat(upsertSupport.notSupported(), is(0));
+        assertThat(upsertSupport.isEnabled(), is(false));
+        assertThat(upsertSupport.notSupported(), is(0));
+    }
+
+    @Test
+    public void supportedStartsTheCountOver() {
+        UpsertSupport upsertSupport = new UpsertSupport(true, ANSWERS_BEFORE_TURNED_OFF);
+
+        upsertSupport.notSupported();
+        upsertSupport.supported();
+
+        assertThat(upsertSupport.notSupported(), is(1));
+        assertThat(upsertSupport.isEnabled(), is(true));
+    }
+}
@@ -3,37 +3,70 @@ package no.unit.nva.cognito.service;
 import static java.util.Collections.singletonList;
 import static no.unit.nva.cognito.service.UserApiClient.COULD_NOT_CREATE_USER_ERROR_MESSAGE;
 import static no.unit.nva.cognito.service.UserApiClient.COULD_NOT_FETCH_USER_ERROR_MESSAGE;
+import static no.unit.nva.cognito.service.UserApiClient.COULD_NOT_UPSERT_USER_ERROR_MESSAGE;
 import static no.unit.nva.cognito.service.UserApiClient.ERROR_PARSING_USER_INFORMATION;
+import static no.unit.nva.cognito.service.UserApiClient.GET_USER;
+import static no.unit.nva.cognito.service.UserApiClient.UPDATE_USER;
 import static no.unit.nva.cognito.service.UserApiClient.USER_API_HOST;
 import static no.unit.nva.cognito.service.UserApiClient.USER_API_SCHEME;
 import static no.unit.nva.cognito.service.UserApiClient.USER_SERVICE_SECRET_KEY;
 import static no.unit.nva.cognito.service.UserApiClient.USER_SERVICE_SECRET_NAME;
+import static no.unit.nva.cognito.service.UserApiClient.USER_SERVICE_UPSERT;
+import static no.unit.nva.cognito.service.UserServiceStandIn.GET;
+import static no.unit.nva.cognito.service.UserServiceStandIn.POST;
+import static no.unit.nva.cognito.service.UserServiceStandIn.PUT;
+import static no.unit.nva.cognito.service.UserServiceStandIn.UPSERT_OPERATION;
 import static org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR;
 import static org.apache.http.HttpStatus.SC_OK;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublisher;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandler;
+import java.time.Clock;
+import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.exception.DeadlineExceededException;
+import no.unit.nva.cognito.metrics.LatencyHistograms;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.util.RequestHedger;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
 import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
 import no.unit.nva.useraccessmanagement.model.RoleDto;
 import no.unit.nva.useraccessmanagement.model.UserDto;
@@ -56,14 +89,19 @@ public class UserApiClientTest {
     public static final String CREATOR = "Creator";
     public static final String SAMPLE_API_SCHEME = "http";
     public static final String SAMPLE_API_HOST = "example.org";
+    public static final String INVALID_API_HOST = "example .org";
+    public static final String UNUSUAL_USERNAME = "given family/upsert?x=1#%@unit.no";
     public static final String SAMPLE_FAMILY_NAME = "familyName";
+    public static final String NEW_FAMILY_NAME = "newFamilyName";
     public static final String SAMPLE_GIVEN_NAME = "givenName";
     public static final String SOME_SECRET = "someSecret";
+    public static final String STALE_SECRET = "staleSecret";
 
     private ObjectMapper objectMapper;
     private UserApiClient userApiClient;
     private HttpClient httpClient;
-    private HttpResponse<String> httpResponse;
+    private HttpResponse<byte[]> httpResponse;
+    private SecretsReader secretsReader;
 
     /**
      * Set up test environment.
@@ -78,9 +116,9 @@ public class UserApiClientTest {
         when(environment.readEnv(USER_SERVICE_SECRET_NAME)).thenReturn(USER_SERVICE_SECRET_NAME);
         when(environment.readEnv(USER_SERVICE_SECRET_KEY)).thenReturn(USER_SERVICE_SECRET_KEY);
         httpClient = mock(HttpClient.class);
-        httpResponse = mock(HttpResponse.class);
+        httpResponse = mockHttpResponse();
 
-        SecretsReader secretsReader = mockSecretsReader();
+        secretsReader = mockSecretsReader();
         userApiClient = new UserApiClient(httpClient, new ObjectMapper(), secretsReader, environment);
     }
 
@@ -92,11 +130,178 @@ public class UserApiClientTest {
         assertTrue(user.isPresent());
     }
 
+    @Test
+    public void getUserAsyncReturnsUserOnValidUsername() throws Exception {
+        httpResponse = successfulGetResponse();
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(httpResponse));
+        Optional<UserDto> user = userApiClient.getUserAsync(SAMPLE_USERNAME).join();
+        assertTrue(user.isPresent());
+    }
+
+    @Test
+    public void requestsAreLoggedWithTheMethodTheyAreSentWith() throws Exception {
+        final TestAppender appender = LogUtils.getTestingAppender(UserServiceRequests.class);
+        HttpResponse<byte[]> found = successfulGetResponse();
+        HttpResponse<byte[]> accepted = mockResponse(HttpURLConnection.HTTP_ACCEPTED);
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(found))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(accepted));
+
+        userApiClient.getUserAsync(SAMPLE_USERNAME).join();
+        userApiClient.updateUserAsync(sampleUser()).join();
+
+        assertThat(appender.getMessages(), containsString("GET http"));
+        assertThat(appender.getMessages(), containsString("PUT http"));
+        assertThat(appender.getMessages(), not(containsString("POST")));
+    }
+
+    @Test
+    public void getUserAsyncSendsOneRequestForConcurrentLookupsOfTheSameUser() throws Exception {
+        httpResponse = successfulGetResponse();
+        CompletableFuture<HttpResponse<byte[]>> response = new CompletableFuture<>();
+        when(httpClient.sendAsync(any(), any())).thenAnswer(invocation -> response);
+
+        CompletableFuture<Optional<UserDto>> first = userApiClient.getUserAsync(SAMPLE_USERNAME);
+        CompletableFuture<Optional<UserDto>> second = userApiClient.getUserAsync(SAMPLE_USERNAME);
+        response.complete(httpResponse);
+
+        assertTrue(first.join().isPresent());
+        assertTrue(second.join().isPresent());
+        verify(httpClient, times(1)).sendAsync(any(), any());
+        assertThat(userApiClient.getUserCache().getLookups().getCoalesced(), is(1L));
+    }
+
+    @Test
+    public void getUserAsyncDoesNotShareLookupThatWasInFlightWhenTheUserWasUpdated() throws Exception {
+        CompletableFuture<HttpResponse<byte[]>> response = new CompletableFuture<>();
+        HttpResponse<byte[]> accepted = mockResponse(HttpURLConnection.HTTP_ACCEPTED);
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> isUpdate(invocation.getArgument(0))
+                                          ? CompletableFuture.completedFuture(accepted)
+                                          : response);
+
+        userApiClient.getUserAsync(SAMPLE_USERNAME);
+        userApiClient.updateUserAsync(sampleUser()).join();
+        userApiClient.getUserAsync(SAMPLE_USERNAME);
+
+        verify(httpClient, times(3)).sendAsync(any(), any());
+        assertThat(userApiClient.getUserCache().getLookups().getCoalesced(), is(0L));
+    }
+
+    @Test
+    public void getUserAsyncReturnsEmptyOptionalWhenUserIsNotFound() {
+        httpResponse = mockResponse(HttpURLConnection.HTTP_NOT_FOUND);
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(httpResponse));
+        Optional<UserDto> user = userApiClient.getUserAsync(SAMPLE_USERNAME).join();
+        assertTrue(user.isEmpty());
+    }
+
+    @Test
+    public void getUserAsyncFailsWithBadGatewayExceptionOnHttpError() {
+        final TestAppender appender = LogUtils.getTestingAppender(UserApiClient.class);
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.failedFuture(new IOException()));
+
+        CompletableFuture<Optional<UserDto>> user = userApiClient.getUserAsync(SAMPLE_USERNAME);
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(user));
+        assertThat(appender.getMessages(), containsString(COULD_NOT_FETCH_USER_ERROR_MESSAGE));
+    }
+
+    @Test
+    public void getUserAsyncRecordsLatencyByStatusClass() {
+        httpResponse = mockResponse(HttpURLConnection.HTTP_NOT_FOUND);
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(httpResponse));
+
+        userApiClient.getUserAsync(SAMPLE_USERNAME).join();
+
+        assertThat(userApiClient.getLatencyHistograms().histogram(GET_USER, "4xx").get().getCount(), is(1L));
+    }
+
+    @Test
+    public void getUserAsyncRecordsLatencyAsErrorWhenNoResponseIsReceived() {
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.failedFuture(new IOException()));
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(userApiClient.getUserAsync(SAMPLE_USERNAME)));
+
+        LatencyHistograms histograms = userApiClient.getLatencyHistograms();
+        assertThat(histograms.histogram(GET_USER, LatencyHistograms.ERROR).get().getCount(), is(1L));
+    }
+
+    @Test
+    public void getUserAsyncHedgesRequestThatHasNotAnsweredWithinHedgeDelay() throws Exception {
+        Environment environment = hedgingEnvironment();
+        userApiClient = new UserApiClient(httpClient, new ObjectMapper(), mockSecretsReader(), environment);
+        httpResponse = successfulGetResponse();
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> new CompletableFuture<>())
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(httpResponse));
+
+        Optional<UserDto> user = userApiClient.getUserAsync(SAMPLE_USERNAME).join();
+
+        assertTrue(user.isPresent());
+        verify(httpClient, times(2)).sendAsync(any(), any());
+    }
+
+    @Test
+    public void getUserAsyncSendsRequestWithRemainingBudgetAsTimeout() throws Exception {
+        httpResponse = successfulGetResponse();
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(httpResponse));
+
+        userApiClient.getUserAsync(SAMPLE_USERNAME).join();
+
+        verify(httpClient).sendAsync(argThat(request -> request.timeout().isPresent()), any());
+        verify(httpClient).sendAsync(
+            argThat(request -> request.timeout().get().compareTo(Deadline.DEFAULT_BUDGET) <= 0), any());
+    }
+
+    @Test
+    public void getUserAsyncFailsWithoutSendingRequestWhenDeadlineHasPassed() {
+        Deadline deadline = new Deadline(Duration.ZERO, Clock.systemUTC());
+        deadline.attach();
+        try {
+            CompletableFuture<Optional<UserDto>> user = userApiClient.getUserAsync(SAMPLE_USERNAME);
+
+            var exception = assertThrows(BadGatewayException.class, () -> Futures.join(user));
+            assertThat(exception.getCause(), is(instanceOf(DeadlineExceededException.class)));
+            verify(httpClient, never()).sendAsync(any(), any());
+        } finally {
+            deadline.detach();
+        }
+    }
+
+    @Test
+    public void getUserAsyncFailsWithBadGatewayExceptionWhenUriCannotBeBuilt() throws ErrorReadingSecretException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_API_SCHEME)).thenReturn(SAMPLE_API_SCHEME);
+        when(environment.readEnv(USER_API_HOST)).thenReturn(INVALID_API_HOST);
+        userApiClient = new UserApiClient(httpClient, new ObjectMapper(), mockSecretsReader(), environment);
+
+        CompletableFuture<Optional<UserDto>> user = userApiClient.getUserAsync(SAMPLE_USERNAME);
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(user));
+    }
+
+    @Test
+    public void upsertUserAndCreateUserAsyncFailWithBadGatewayExceptionWhenUriCannotBeBuilt() throws Exception {
+        userApiClient = upsertingClient(INVALID_API_HOST);
+
+        CompletableFuture<UserDto> upsertedUser = userApiClient.upsertUser(sampleUser(), removingCreatorRole());
+        CompletableFuture<UserDto> createdUser = userApiClient.createUserAsync(sampleUser());
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(upsertedUser));
+        assertThrows(BadGatewayException.class, () -> Futures.join(createdUser));
+        verify(httpClient, never()).sendAsync(any(), any());
+    }
+
     @Test
     public void getUserReturnsEmptyOptionalOnInvalidJsonResponse()
         throws IOException, InterruptedException, BadGatewayException {
         final TestAppender appender = LogUtils.getTestingAppender(UserApiClient.class);
-        when(httpResponse.body()).thenReturn(GARBAGE_JSON);
+        when(httpResponse.body()).thenReturn(bytes(GARBAGE_JSON));
         when(httpResponse.statusCode()).thenReturn(SC_OK);
         when(httpClient.send(any(), any())).thenAnswer(invocation -> httpResponse);
 
@@ -134,7 +339,7 @@ public class UserApiClientTest {
     @Test
     public void createUserReturnsCreatedUserOnSuccess()
         throws IOException, InterruptedException, InvalidEntryInternalException, BadGatewayException {
-        when(httpResponse.body()).thenReturn(getValidJsonUser());
+        when(httpResponse.body()).thenReturn(bytes(getValidJsonUser()));
         when(httpResponse.statusCode()).thenReturn(SC_OK);
         when(httpClient.send(any(), any())).thenAnswer(invocation -> httpResponse);
 
@@ -185,13 +390,337 @@ public class UserApiClientTest {
 
         Executable action = () -> userApiClient.updateUser(sampleUser());
         assertThrows(BadGatewayException.class, action);
+        assertThat(userApiClient.getLatencyHistograms().histogram(UPDATE_USER, "4xx").get().getCount(), is(1L));
+    }
+
+    @Test
+    public void updateUserRecordsLatencyAsErrorWhenRequestFails() throws IOException, InterruptedException {
+        when(httpClient.send(any(HttpRequest.class), any(BodyHandler.class))).thenThrow(new IOException());
+
+        Executable action = () -> userApiClient.updateUser(sampleUser());
+
+        assertThrows(IOException.class, action);
+        LatencyHistograms histograms = userApiClient.getLatencyHistograms();
+        assertThat(histograms.histogram(UPDATE_USER, LatencyHistograms.ERROR).get().getCount(), is(1L));
+    }
+
+    @Test
+    public void getUserFetchesUserServiceSecretOnlyOnceForSeveralRequests() throws Exception {
+        httpResponse = successfulGetResponse();
+        when(httpClient.send(any(), any())).thenAnswer(invocation -> httpResponse);
+
+        userApiClient.getUser(SAMPLE_USERNAME);
+        userApiClient.getUser(SAMPLE_USERNAME);
+
+        verify(secretsReader, times(1)).fetchSecret(anyString(), anyString());
+    }
+
+    @Test
+    public void getUserRefetchesSecretAndRetriesOnceWhenUserServiceRejectsApiKey() throws Exception {
+        HttpResponse<byte[]> rejected = mockResponse(HttpURLConnection.HTTP_UNAUTHORIZED);
+        httpResponse = successfulGetResponse();
+        when(httpClient.send(any(), any())).thenAnswer(invocation -> rejected)
+            .thenAnswer(invocation -> httpResponse);
+
+        Optional<UserDto> user = userApiClient.getUser(SAMPLE_USERNAME);
+
+        assertTrue(user.isPresent());
+        verify(secretsReader, times(2)).fetchSecret(anyString(), anyString());
+    }
+
+    @Test
+    public void getUserAsyncRefetchesSecretAndRetriesOnceWhenUserServiceRejectsApiKey() throws Exception {
+        HttpResponse<byte[]> rejected = mockResponse(HttpURLConnection.HTTP_FORBIDDEN);
+        httpResponse = successfulGetResponse();
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(rejected))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(httpResponse));
+
+        Optional<UserDto> user = userApiClient.getUserAsync(SAMPLE_USERNAME).join();
+
+        assertTrue(user.isPresent());
+        verify(secretsReader, times(2)).fetchSecret(anyString(), anyString());
+    }
+
+    @Test
+    public void updateUserAsyncCompletesWhenUserServiceAcceptsUpdate() throws InvalidEntryInternalException {
+        AtomicReference<Boolean> requestIsReceived = new AtomicReference<>(false);
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(
+                assertThatPutRequestContainsBodyAndCorrectMethod(requestIsReceived, invocation.getArgument(0))));
+
+        userApiClient.updateUserAsync(sampleUser()).join();
+
+        assertThat(requestIsReceived.get(), is(true));
+    }
+
+    @Test
+    public void updateUserAsyncFailsWithBadGatewayExceptionIfResponseIsNotSuccessful()
+        throws InvalidEntryInternalException {
+        when(httpClient.sendAsync(any(HttpRequest.class), any(BodyHandler.class)))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(mockResponse(SC_INTERNAL_SERVER_ERROR)));
+
+        CompletableFuture<Void> update = userApiClient.updateUserAsync(sampleUser());
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(update));
+    }
+
+    @Test
+    public void updateUserAsyncFailsWithBadGatewayExceptionWhenRequestCannotBeBuilt()
+        throws ErrorReadingSecretException, InvalidEntryInternalException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_API_SCHEME)).thenReturn(SAMPLE_API_SCHEME);
+        when(environment.readEnv(USER_API_HOST)).thenReturn(INVALID_API_HOST);
+        userApiClient = new UserApiClient(httpClient, new ObjectMapper(), mockSecretsReader(), environment);
+
+        CompletableFuture<Void> update = userApiClient.updateUserAsync(sampleUser());
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(update));
+    }
+
+    @Test
+    public void warmUpLooksUpSampleUserWithApiKeyWithoutWriting() throws ErrorReadingSecretException {
+        httpResponse = mockResponse(HttpURLConnection.HTTP_NOT_FOUND);
+        when(httpClient.sendAsync(any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(httpResponse));
+
+        userApiClient.warmUp().join();
+
+        verify(httpClient, times(1)).sendAsync(
+            argThat(request -> "GET".equals(request.method())
+                               && request.uri().getPath().endsWith(WarmUpSamples.WARM_UP_USERNAME)), any());
+        verify(secretsReader, times(1)).fetchSecret(anyString(), anyString());
+        assertThat(userApiClient.getLatencyHistograms().histogram(GET_USER, "4xx"), is(Optional.empty()));
+    }
+
+    @Test
+    public void warmUpFailsWithBadGatewayExceptionWhenUserServiceCannotBeReached() {
+        when(httpClient.sendAsync(any(), any())).thenReturn(CompletableFuture.failedFuture(new IOException()));
+
+        CompletableFuture<Void> warmUp = userApiClient.warmUp();
+
+        assertThrows(BadGatewayException.class, () -> Futures.join(warmUp));
+    }
+
+    @Test
+    public void warmUpFailsWithoutSendingRequestWhenSampleUserCannotBeSerialized()
+        throws ErrorReadingSecretException, JsonProcessingException {
+        ObjectMapper failingObjectMapper = spy(new ObjectMapper());
+        ObjectWriter failingWriter = mock(ObjectWriter.class);
+        doThrow(JsonProcessingException.class).when(failingWriter).writeValueAsBytes(any());
+        doReturn(failingWriter).when(failingObjectMapper).writerFor(UserDto.class);
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_API_SCHEME)).thenReturn(SAMPLE_API_SCHEME);
+        when(environment.readEnv(USER_API_HOST)).thenReturn(SAMPLE_API_HOST);
+        userApiClient = new UserApiClient(httpClient, failingObjectMapper, mockSecretsReader(), environment);
+
+        CompletableFuture<Void> warmUp = userApiClient.warmUp();
+
+        assertThat(warmUp.isCompletedExceptionally(), is(true));
+        verify(httpClient, never()).sendAsync(any(), any());
+    }
+
+    @Test
+    public void upsertUserCreatesUserInOneRequestWhenUserServiceSupportsUpsert() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            UserDto user = sampleUser();
+
+            UserDto storedUser = standInClient(userService).upsertUser(user, removingCreatorRole()).join();
+
+            assertThat(storedUser, is(equalTo(user)));
+            assertThat(userService.getUser(SAMPLE_USERNAME), is(equalTo(Optional.of(user))));
+            assertThat(userService.getOperations(), is(equalTo(List.of(UPSERT_OPERATION))));
+        }
+    }
+
+    @Test
+    public void upsertUserAppliesUpdatePolicyToStoredUserInOneRequest() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            userService.addUser(sampleUser());
+
+            UserDto storedUser = standInClient(userService).upsertUser(sampleUser(), removingCreatorRole()).join();
+
+            assertThat(storedUser.getFamilyName(), is(equalTo(NEW_FAMILY_NAME)));
+            assertThat(storedUser.getRoles().isEmpty(), is(true));
+            assertThat(userService.getUser(SAMPLE_USERNAME), is(equalTo(Optional.of(storedUser))));
+            assertThat(userService.getOperations(), is(equalTo(List.of(UPSERT_OPERATION))));
+        }
+    }
+
+    @Test
+    public void getUserAsyncEncodesUsernameAsOnePathSegment() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            UserDto user = sampleUser().copy().withUsername(UNUSUAL_USERNAME).build();
+            userService.addUser(user);
+
+            Optional<UserDto> fetchedUser = standInClient(userService).getUserAsync(UNUSUAL_USERNAME).join();
+
+            assertThat(fetchedUser, is(equalTo(Optional.of(user))));
+        }
+    }
+
+    @Test
+    public void upsertUserLooksUserUpBeforeWritingWhenUserServiceDoesNotSupportUpsert() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(false)) {
+            userService.addUser(sampleUser());
+            UserApiClient client = standInClient(userService);
+            assertThat(client.upsertsInOneRequest(), is(true));
+
+            UserDto storedUser = client.upsertUser(sampleUser(), removingCreatorRole()).join();
+
+            assertThat(storedUser.getFamilyName(), is(equalTo(NEW_FAMILY_NAME)));
+            assertThat(userService.getUser(SAMPLE_USERNAME), is(equalTo(Optional.of(storedUser))));
+            assertThat(userService.getOperations(),
+                       is(equalTo(List.of(UPSERT_OPERATION, UPSERT_OPERATION, GET, PUT))));
+            verify(secretsReader, times(2)).fetchSecret(anyString(), anyString());
+        }
+    }
+
+    @Test
+    public void upsertUserIsTurnedOffOnlyAfterRepeatedUnsupportedAnswers() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(false)) {
+            userService.addUser(sampleUser());
+            UserApiClient client = standInClient(userService);
+
+            for (int upsert = 1; upsert < UserApiClient.UPSERT_NOT_SUPPORTED_ANSWERS; upsert++) {
+                client.upsertUser(sampleUser(), removingCreatorRole()).join();
+                assertThat(client.upsertsInOneRequest(), is(true));
+            }
+            client.upsertUser(sampleUser(), removingCreatorRole()).join();
+            assertThat(client.upsertsInOneRequest(), is(false));
+            int operations = userService.getOperations().size();
+            client.upsertUser(sampleUser(), removingCreatorRole()).join();
+
+            assertThat(userService.getOperations().subList(operations, userService.getOperations().size()),
+                       is(equalTo(List.of(GET))));
+        }
+    }
+
+    @Test
+    public void upsertUserRetriesWithFreshApiKeyWhenUserServiceRejectsTheKey() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            userService.addUser(sampleUser());
+            userService.rejectApiKey(STALE_SECRET);
+            UserApiClient client = standInClient(userService);
+            when(secretsReader.fetchSecret(anyString(), anyString())).thenReturn(STALE_SECRET, SOME_SECRET);
+
+            UserDto storedUser = client.upsertUser(sampleUser(), removingCreatorRole()).join();
+
+            assertThat(storedUser.getFamilyName(), is(equalTo(NEW_FAMILY_NAME)));
+            assertThat(userService.getOperations(), is(equalTo(List.of(UPSERT_OPERATION, UPSERT_OPERATION))));
+            assertThat(client.upsertsInOneRequest(), is(true));
+            verify(secretsReader, times(2)).fetchSecret(anyString(), anyString());
+        }
+    }
+
+    @Test
+    public void upsertUserFallsBackWithoutTurningUpsertOffWhenFreshApiKeyIsAlsoRejected() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            userService.addUser(sampleUser());
+            userService.rejectApiKey(SOME_SECRET);
+            UserApiClient client = standInClient(userService);
+
+            CompletableFuture<UserDto> upsert = client.upsertUser(sampleUser(), removingCreatorRole());
+
+            assertThrows(BadGatewayException.class, () -> Futures.join(upsert));
+            assertThat(userService.getOperations().subList(0, 2),
+                       is(equalTo(List.of(UPSERT_OPERATION, UPSERT_OPERATION))));
+            assertThat(client.upsertsInOneRequest(), is(true));
+        }
+    }
+
+    @Test
+    public void upsertUserLooksUserUpBeforeWritingUnlessUpsertIsEnabled() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            userService.addUser(sampleUser());
+
+            UserApiClient client = standInClient(userService, false);
+
+            UserDto storedUser = client.upsertUser(sampleUser(), removingCreatorRole()).join();
+
+            assertThat(client.upsertsInOneRequest(), is(false));
+
+            assertThat(storedUser.getFamilyName(), is(equalTo(NEW_FAMILY_NAME)));
+            assertThat(userService.getOperations(), is(equalTo(List.of(GET, PUT))));
+        }
+    }
+
+    @Test
+    public void upsertUserCreatesUserAfterLookupWhenUserServiceDoesNotSupportUpsert() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(false)) {
+            UserDto user = sampleUser();
+
+            UserDto storedUser = standInClient(userService).upsertUser(user, removingCreatorRole()).join();
+
+            assertThat(storedUser, is(equalTo(user)));
+            assertThat(userService.getOperations(),
+                       is(equalTo(List.of(UPSERT_OPERATION, UPSERT_OPERATION, GET, POST))));
+        }
+    }
+
+    @Test
+    public void upsertUserFailsWithBadGatewayExceptionOnUnexpectedStatus() throws Exception {
+        userApiClient = upsertingClient(SAMPLE_API_HOST);
+        httpResponse = mockResponse(SC_INTERNAL_SERVER_ERROR);
+        when(httpClient.sendAsync(any(), any(BodyHandler.class)))
+            .thenReturn(CompletableFuture.completedFuture(httpResponse));
+
+        CompletableFuture<UserDto> user = userApiClient.upsertUser(sampleUser(), removingCreatorRole());
+
+        BadGatewayException exception = assertThrows(BadGatewayException.class, () -> Futures.join(user));
+        assertThat(exception.getMessage(), containsString(COULD_NOT_UPSERT_USER_ERROR_MESSAGE));
+    }
+
+    @Test
+    public void getUserReusesCachedUserWhenUserServiceAnswersNotModified() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            userService.addUser(sampleUser());
+            UserApiClient client = standInClient(userService);
+
+            UserDto fetchedUser = client.getUser(SAMPLE_USERNAME).orElseThrow();
+            UserDto revalidatedUser = client.getUserAsync(SAMPLE_USERNAME).join().orElseThrow();
+
+            assertThat(revalidatedUser, is(sameInstance(fetchedUser)));
+            assertThat(userService.getNotModifiedResponses(), is(equalTo(1)));
+            assertThat(client.getUserCache().getHits(), is(equalTo(1L)));
+            assertThat(client.getUserCache().getMisses(), is(equalTo(1L)));
+        }
+    }
+
+    @Test
+    public void getUserFetchesUserAgainAfterClientHasWrittenIt() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            userService.addUser(sampleUser());
+            UserApiClient client = standInClient(userService);
+            UserDto fetchedUser = client.getUserAsync(SAMPLE_USERNAME).join().orElseThrow();
+
+            UserDto updatedUser = fetchedUser.copy().withFamilyName(NEW_FAMILY_NAME).build();
+            client.updateUserAsync(updatedUser).join();
+            assertThat(client.getUserCache().size(), is(equalTo(0)));
+
+            assertThat(client.getUserAsync(SAMPLE_USERNAME).join(), is(equalTo(Optional.of(updatedUser))));
+            assertThat(userService.getNotModifiedResponses(), is(equalTo(0)));
+        }
+    }
+
+    @Test
+    public void getUserDropsCachedUserWhenUserNoLongerExists() throws Exception {
+        try (UserServiceStandIn userService = UserServiceStandIn.start(true)) {
+            userService.addUser(sampleUser());
+            UserApiClient client = standInClient(userService);
+            client.getUserAsync(SAMPLE_USERNAME).join();
+            userService.removeUser(SAMPLE_USERNAME);
+
+            assertThat(client.getUserAsync(SAMPLE_USERNAME).join(), is(equalTo(Optional.empty())));
+            assertThat(client.getUserCache().size(), is(equalTo(0)));
+        }
     }
 
     public String getValidJsonUser() throws JsonProcessingException, InvalidEntryInternalException {
         return objectMapper.writeValueAsString(sampleUser());
     }
 
-    private HttpResponse<String> assertThatPutRequestContainsBodyAndCorrectMethod(
+    private HttpResponse<byte[]> assertThatPutRequestContainsBodyAndCorrectMethod(
         AtomicReference<Boolean> requestIsReceived,
         HttpRequest request) {
         Long contentLength = request.bodyPublisher().map(BodyPublisher::contentLength).orElse(0L);
@@ -201,25 +730,75 @@ public class UserApiClientTest {
         return mockResponse(HttpURLConnection.HTTP_ACCEPTED);
     }
 
+    private Environment hedgingEnvironment() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_API_SCHEME)).thenReturn(SAMPLE_API_SCHEME);
+        when(environment.readEnv(USER_API_HOST)).thenReturn(SAMPLE_API_HOST);
+        when(environment.readEnv(USER_SERVICE_SECRET_NAME)).thenReturn(USER_SERVICE_SECRET_NAME);
+        when(environment.readEnv(USER_SERVICE_SECRET_KEY)).thenReturn(USER_SERVICE_SECRET_KEY);
+        when(environment.readEnvOpt(RequestHedger.HEDGE_REQUESTS)).thenReturn(Optional.of("true"));
+        when(environment.readEnvOpt(RequestHedger.HEDGE_DELAY_MILLIS)).thenReturn(Optional.of("10"));
+        when(environment.readEnvOpt(RequestHedger.HEDGE_BUDGET_PERCENT)).thenReturn(Optional.of("100"));
+        return environment;
+    }
+
+    private UserApiClient standInClient(UserServiceStandIn userService) throws ErrorReadingSecretException {
+        return standInClient(userService, true);
+    }
+
+    private UserApiClient standInClient(UserServiceStandIn userService, boolean upsert)
+        throws ErrorReadingSecretException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_API_SCHEME)).thenReturn(SAMPLE_API_SCHEME);
+        when(environment.readEnv(USER_API_HOST)).thenReturn(userService.getHost());
+        when(environment.readEnv(USER_SERVICE_SECRET_NAME)).thenReturn(USER_SERVICE_SECRET_NAME);
+        when(environment.readEnv(USER_SERVICE_SECRET_KEY)).thenReturn(USER_SERVICE_SECRET_KEY);
+        when(environment.readEnvOpt(USER_SERVICE_UPSERT)).thenReturn(Optional.of(String.valueOf(upsert)));
+        secretsReader = mockSecretsReader();
+        return new UserApiClient(HttpClient.newHttpClient(), new ObjectMapper(), secretsReader, environment);
+    }
+
+    private UserApiClient upsertingClient(String host) throws ErrorReadingSecretException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_API_SCHEME)).thenReturn(SAMPLE_API_SCHEME);
+        when(environment.readEnv(USER_API_HOST)).thenReturn(host);
+        when(environment.readEnvOpt(USER_SERVICE_UPSERT)).thenReturn(Optional.of("true"));
+        return new UserApiClient(httpClient, new ObjectMapper(), mockSecretsReader(), environment);
+    }
+
+    private static boolean isUpdate(HttpRequest request) {
+        return PUT.equals(request.method());
+    }
+
+    private static UpdatePolicy removingCreatorRole() {
+        return new UpdatePolicy(SAMPLE_GIVEN_NAME, NEW_FAMILY_NAME, SAMPLE_INSTITUTION_ID, Set.of(), Set.of(CREATOR));
+    }
+
     private SecretsReader mockSecretsReader() throws ErrorReadingSecretException {
         SecretsReader secretsReader = mock(SecretsReader.class);
         when(secretsReader.fetchSecret(anyString(), anyString())).thenReturn(SOME_SECRET);
         return secretsReader;
     }
 
-    private HttpResponse<String> successfulGetResponse() throws InvalidEntryInternalException, JsonProcessingException {
-        HttpResponse<String> response = mock(HttpResponse.class);
-        when(response.body()).thenReturn(getValidJsonUser());
+    private HttpResponse<byte[]> successfulGetResponse() throws InvalidEntryInternalException, JsonProcessingException {
+        HttpResponse<byte[]> response = mockHttpResponse();
+        when(response.body()).thenReturn(bytes(getValidJsonUser()));
         when(response.statusCode()).thenReturn(SC_OK);
         return response;
     }
 
-    private HttpResponse<String> mockResponse(int statusCode) {
-        HttpResponse<String> response = mock(HttpResponse.class);
+    private HttpResponse<byte[]> mockResponse(int statusCode) {
+        HttpResponse<byte[]> response = mockHttpResponse();
         when(response.statusCode()).thenReturn(statusCode);
         return response;
     }
 
+    private static HttpResponse<byte[]> mockHttpResponse() {
+        HttpResponse<byte[]> response = mock(HttpResponse.class);
+        when(response.headers()).thenReturn(HttpHeaders.of(Map.of(), (name, value) -> true));
+        return response;
+    }
+
     private UserDto sampleUser() throws InvalidEntryInternalException {
         return UserDto.newBuilder()
                    .withRoles(singletonList(RoleDto.newBuilder().withName(CREATOR).build()))
@@ -229,4 +808,8 @@ public class UserApiClientTest {
                    .withFamilyName(SAMPLE_FAMILY_NAME)
                    .build();
     }
+
+    private static byte[] bytes(String body) {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,143 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_CACHE_HITS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.USER_CACHE_MISSES;
+import static no.unit.nva.cognito.service.UserCache.USER_CACHE_MAX_SIZE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.exception.DeadlineExceededException;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.service.UserCache.CacheLookup;
+import no.unit.nva.cognito.service.UserCache.CachedUser;
+import no.unit.nva.cognito.util.Deadline;
+import no.unit.nva.cognito.util.Futures;
+import no.unit.nva.cognito.warmup.WarmUpSamples;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import nva.commons.core.Environment;
+import org.junit.jupiter.api.Test;
+
+public class UserCacheTest {
+
+    public static final String USERNAME = "user@name";
+    public static final String OTHER_USERNAME = "other@name";
+    public static final String THIRD_USERNAME = "third@name";
+    public static final Optional<String> ENTITY_TAG = Optional.of("\"1\"");
+
+    private final InvocationMetrics metrics = new InvocationMetrics();
+
+    @Test
+    public void fromEnvironmentReadsMaxSize() throws InvalidEntryInternalException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(USER_CACHE_MAX_SIZE)).thenReturn(Optional.of("1"));
+        UserCache cache = UserCache.fromEnvironment(environment);
+
+        cache.store(USERNAME, ENTITY_TAG, WarmUpSamples.sampleUser());
+        cache.store(OTHER_USERNAME, ENTITY_TAG, WarmUpSamples.sampleUser());
+
+        assertThat(cache.size(), is(equalTo(1)));
+        assertThat(cache.get(USERNAME), is(equalTo(Optional.empty())));
+    }
+
+    @Test
+    public void storeKeepsUserWithEntityTagAndReuseReturnsIt() throws InvalidEntryInternalException {
+        UserCache cache = new UserCache(UserCache.DEFAULT_MAX_SIZE);
+        UserDto user = WarmUpSamples.sampleUser();
+
+        cache.store(USERNAME, ENTITY_TAG, user).recordIn(metrics);
+        CachedUser cachedUser = cache.get(USERNAME).orElseThrow();
+
+        assertThat(cachedUser.getEntityTag(), is(equalTo(ENTITY_TAG.get())));
+        assertThat(cache.reuse(USERNAME, cachedUser).recordIn(metrics).orElseThrow(), is(sameInstance(user)));
+        assertThat(cache.getHits(), is(equalTo(1L)));
+        assertThat(cache.getMisses(), is(equalTo(1L)));
+        assertThat(metrics.getCounts().get(USER_CACHE_HITS), is(equalTo(1L)));
+        assertThat(metrics.getCounts().get(USER_CACHE_MISSES), is(equalTo(1L)));
+    }
+
+    @Test
+    public void storeDropsCachedUserWhenResponseHasNoEntityTag() throws InvalidEntryInternalException {
+        UserCache cache = new UserCache(UserCache.DEFAULT_MAX_SIZE);
+        cache.store(USERNAME, ENTITY_TAG, WarmUpSamples.sampleUser());
+
+        cache.store(USERNAME, Optional.empty(), WarmUpSamples.sampleUser());
+
+        assertThat(cache.get(USERNAME), is(equalTo(Optional.empty())));
+    }
+
+    @Test
+    public void cacheEvictsLeastRecentlyUsedUser() throws InvalidEntryInternalException {
+        UserCache cache = new UserCache(2);
+        cache.store(USERNAME, ENTITY_TAG, WarmUpSamples.sampleUser());
+        cache.store(OTHER_USERNAME, ENTITY_TAG, WarmUpSamples.sampleUser());
+        cache.get(USERNAME);
+
+        cache.store(THIRD_USERNAME, ENTITY_TAG, WarmUpSamples.sampleUser());
+
+        assertThat(cache.get(USERNAME).isPresent(), is(true));
+        assertThat(cache.get(OTHER_USERNAME).isPresent(), is(false));
+    }
+
+    @Test
+    public void lookupRecordsTheCacheHitInTheMetricsOfEachCallerThatSharesTheLookup()
+        throws InvalidEntryInternalException {
+        UserCache cache = new UserCache(UserCache.DEFAULT_MAX_SIZE);
+        CompletableFuture<CacheLookup> response = new CompletableFuture<>();
+        InvocationMetrics otherMetrics = new InvocationMetrics();
+
+        CompletableFuture<Optional<UserDto>> first = lookupWith(metrics, cache, response);
+        CompletableFuture<Optional<UserDto>> second = lookupWith(otherMetrics, cache, response);
+        response.complete(new CacheLookup(WarmUpSamples.sampleUser(), true));
+
+        assertThat(first.join().isPresent(), is(true));
+        assertThat(second.join().isPresent(), is(true));
+        assertThat(cache.getLookups().getCoalesced(), is(equalTo(1L)));
+        assertThat(metrics.getCounts().get(USER_CACHE_HITS), is(equalTo(1L)));
+        assertThat(otherMetrics.getCounts().get(USER_CACHE_HITS), is(equalTo(1L)));
+        assertThat(otherMetrics.getCounts().get(USER_CACHE_MISSES), is(equalTo(0L)));
+    }
+
+    @Test
+    public void lookupTimesOutOnlyTheCopyOfTheCallerWhoseDeadlineHasPassed() throws InvalidEntryInternalException {
+        UserCache cache = new UserCache(UserCache.DEFAULT_MAX_SIZE);
+        CompletableFuture<CacheLookup> response = new CompletableFuture<>();
+        CompletableFuture<Optional<UserDto>> first = cache.lookup(USERNAME, () -> response);
+
+        Deadline passed = new Deadline(Duration.ZERO, Clock.systemUTC());
+        CompletableFuture<Optional<UserDto>> second = passed.within(() -> cache.lookup(USERNAME, () -> response));
+
+        BadGatewayException exception = assertThrows(BadGatewayException.class, () -> Futures.join(second));
+        assertThat(exception.getCause(), is(instanceOf(DeadlineExceededException.class)));
+        assertThat(first.isDone(), is(false));
+        response.complete(new CacheLookup(WarmUpSamples.sampleUser(), false));
+        assertThat(first.join().isPresent(), is(true));
+    }
+
+    @Test
+    public void notFoundRecordsNeitherHitNorMiss() {
+        assertThat(CacheLookup.NOT_FOUND.recordIn(metrics), is(equalTo(Optional.empty())));
+        assertThat(metrics.getCounts().containsKey(USER_CACHE_HITS), is(false));
+    }
+
+    private static CompletableFuture<Optional<UserDto>> lookupWith(InvocationMetrics invocationMetrics,
+                                                                   UserCache cache,
+                                                                   CompletableFuture<CacheLookup> response) {
+        invocationMetrics.attach();
+        try {
+            return cache.lookup(USERNAME, () -> response);
+        } finally {
+            invocationMetrics.detach();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.UserDtoDiff.FAMILY_NAME;
+import static no.unit.nva.cognito.service.UserDtoDiff.GIVEN_NAME;
+import static no.unit.nva.cognito.service.UserDtoDiff.INSTITUTION;
+import static no.unit.nva.cognito.service.UserDtoDiff.ROLES;
+import static no.unit.nva.cognito.service.UserDtoDiff.USERNAME;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.core.Is.is;
+import java.util.List;
+import java.util.Set;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.junit.jupiter.api.Test;
+
+public class UserDtoDiffTest {
+
+    public static final String SAMPLE_USERNAME = "user@name";
+    public static final String SAMPLE_INSTITUTION = "http://example.org/customer/123";
+    public static final String SAMPLE_GIVEN_NAME = "givenName";
+    public static final String SAMPLE_FAMILY_NAME = "familyName";
+    public static final String CREATOR = "Creator";
+    public static final String USER = "User";
+    public static final String OTHER_VALUE = "other";
+
+    @Test
+    public void isUnchangedReturnsTrueWhenOnlyRoleOrderDiffers() throws InvalidEntryInternalException {
+        UserDto existing = user(List.of(role(CREATOR), role(USER)));
+        UserDto updated = user(List.of(role(USER), role(CREATOR)));
+
+        assertThat(UserDtoDiff.isUnchanged(existing, updated), is(true));
+    }
+
+    @Test
+    public void isUnchangedIgnoresAccessRightsOfRoles() throws InvalidEntryInternalException {
+        RoleDto roleWithAccessRights = RoleDto.newBuilder()
+                                           .withName(USER)
+                                           .withAccessRights(Set.of(OTHER_VALUE))
+                                           .build();
+        UserDto existing = user(List.of(roleWithAccessRights));
+        UserDto updated = user(List.of(role(USER)));
+
+        assertThat(UserDtoDiff.isUnchanged(existing, updated), is(true));
+    }
+
+    @Test
+    public void changedFieldsReturnsRolesWhenRoleIsAdded() throws InvalidEntryInternalException {
+        UserDto existing = user(List.of(role(USER)));
+        UserDto updated = user(List.of(role(USER), role(CREATOR)));
+
+        assertThat(UserDtoDiff.changedFields(existing, updated), contains(ROLES));
+        assertThat(UserDtoDiff.isUnchanged(existing, updated), is(false));
+    }
+
+    @Test
+    public void changedFieldsReturnsEveryChangedField() throws InvalidEntryInternalException {
+        UserDto existing = user(List.of(role(USER)));
+        UserDto updated = UserDto.newBuilder()
+                              .withUsername(OTHER_VALUE)
+                              .withGivenName(OTHER_VALUE)
+                              .withFamilyName(OTHER_VALUE)
+                              .withInstitution(null)
+                              .withRoles(null)
+                              .build();
+
+        assertThat(UserDtoDiff.changedFields(existing, updated),
+                   containsInAnyOrder(USERNAME, GIVEN_NAME, FAMILY_NAME, INSTITUTION, ROLES));
+    }
+
+    private UserDto user(List<RoleDto> roles) throws InvalidEntryInternalException {
+        return UserDto.newBuilder()
+                   .withUsername(SAMPLE_USERNAME)
+                   .withGivenName(SAMPLE_GIVEN_NAME)
+                   .withFamilyName(SAMPLE_FAMILY_NAME)
+                   .withInstitution(SAMPLE_INSTITUTION)
+                   .withRoles(roles)
+                   .build();
+    }
+
+    private RoleDto role(String name) throws InvalidEntryInternalException {
+        return RoleDto.newBuilder().withName(name).build();
+    }
+}
@@ -0,0 +1,197 @@
+package no.unit.nva.cognito.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
+import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProviderClientBuilder;
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import no.unit.nva.cognito.model.AwsCredentials;
+import no.unit.nva.cognito.util.SigV4Signer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the cold start of the two user pool clients. Each client is created and makes its first call in a fresh
+ * class loader, so that none of the classes it needs have been loaded by earlier tests.
+ */
+public class UserPoolClientColdStartTest {
+
+    public static final String REGION = "eu-west-1";
+    public static final String ACCESS_KEY_ID = "accessKeyId";
+    public static final String SECRET_ACCESS_KEY = "secretAccessKey";
+    public static final String USER_POOL_ID = "userPoolId";
+    public static final String USER_NAME = "userName";
+    public static final String ATTRIBUTE_NAME = "custom:application";
+    public static final String ATTRIBUTE_VALUE = "NVA";
+    public static final String EMPTY_JSON_OBJECT = "{}";
+    public static final String ROOT_PATH = "/";
+    public static final int HTTP_OK = 200;
+    private static final Logger logger = LoggerFactory.getLogger(UserPoolClientColdStartTest.class);
+
+    private HttpServer cognitoStandIn;
+    private String endpoint;
+
+    /**
+     * Starts a local stand-in for the Cognito API.
+     */
+    @BeforeEach
+    public void init() throws IOException {
+        cognitoStandIn = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        cognitoStandIn.createContext(ROOT_PATH, UserPoolClientColdStartTest::respond);
+        cognitoStandIn.start();
+        endpoint = "http://localhost:" + cognitoStandIn.getAddress().getPort() + ROOT_PATH;
+    }
+
+    @AfterEach
+    public void stopStandIn() {
+        cognitoStandIn.stop(0);
+    }
+
+    @Test
+    public void httpUserPoolClientLoadsFewerClassesAndStartsFasterThanSdkClient() throws Exception {
+        ColdStart http = coldStart(HttpClientProbe.class);
+        ColdStart sdk = coldStart(SdkClientProbe.class);
+
+        logger.info("Cold start of HttpUserPoolClient: {} classes, {} ms", http.loadedClasses, http.millis);
+        logger.info("Cold start of SdkUserPoolClient: {} classes, {} ms", sdk.loadedClasses, sdk.millis);
+
+        assertThat(http.loadedClasses, lessThan(sdk.loadedClasses));
+    }
+
+    private ColdStart coldStart(Class<? extends Callable<Void>> probe) throws Exception {
+        Thread currentThread = Thread.currentThread();
+        ClassLoader testClassLoader = currentThread.getContextClassLoader();
+        try (CountingClassLoader classLoader = new CountingClassLoader(testClassPath())) {
+            currentThread.setContextClassLoader(classLoader);
+            long start = System.nanoTime();
+            Callable<?> isolatedProbe = (Callable<?>) classLoader.loadClass(probe.getName())
+                                                          .getConstructor(String.class)
+                                                          .newInstance(endpoint);
+            isolatedProbe.call();
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            return new ColdStart(classLoader.loadedClasses.get(), millis);
+        } finally {
+            currentThread.setContextClassLoader(testClassLoader);
+        }
+    }
+
+    private static URL[] testClassPath() {
+        return Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                   .map(UserPoolClientColdStartTest::toUrl)
+                   .toArray(URL[]::new);
+    }
+
+    private static URL toUrl(String classPathEntry) {
+        try {
+            return new File(classPathEntry).toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] response = EMPTY_JSON_OBJECT.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(HTTP_OK, response.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response);
+        }
+    }
+
+    private static List<AttributeType> sampleAttributes() {
+        return List.of(new AttributeType().withName(ATTRIBUTE_NAME).withValue(ATTRIBUTE_VALUE));
+    }
+
+    public static class HttpClientProbe implements Callable<Void> {
+
+        private final String endpoint;
+
+        public HttpClientProbe(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public Void call() {
+            AwsCredentials credentials = new AwsCredentials(ACCESS_KEY_ID, SECRET_ACCESS_KEY, null);
+            Supplier<AwsCredentials> credentialsSupplier = () -> credentials;
+            SigV4Signer signer = new SigV4Signer(REGION, HttpUserPoolClient.COGNITO_SERVICE);
+            return new HttpUserPoolClient(HttpClient.newHttpClient(), URI.create(endpoint), signer,
+                                          credentialsSupplier, Clock.systemUTC())
+                       .updateUserAttributesAsync(USER_POOL_ID, USER_NAME, sampleAttributes())
+                       .join();
+        }
+    }
+
+    public static class SdkClientProbe implements Callable<Void> {
+
+        private final String endpoint;
+
+        public SdkClientProbe(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public Void call() {
+            AWSCognitoIdentityProvider cognito =
+                AWSCognitoIdentityProviderClientBuilder.standard()
+                    .withEndpointConfiguration(new EndpointConfiguration(endpoint, REGION))
+                    .withCredentials(new AWSStaticCredentialsProvider(
+                        new BasicAWSCredentials(ACCESS_KEY_ID, SECRET_ACCESS_KEY)))
+                    .build();
+            return new SdkUserPoolClient(cognito, Runnable::run)
+                       .updateUserAttributesAsync(USER_POOL_ID, USER_NAME, sampleAttributes())
+                       .join();
+        }
+    }
+
+    private static class CountingClassLoader extends URLClassLoader {
+
+        private final AtomicInteger loadedClasses = new AtomicInteger();
+
+        public CountingClassLoader(URL[] classPath) {
+            super(classPath, ClassLoader.getPlatformClassLoader());
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            Class<?> loadedClass = super.findClass(name);
+            loadedClasses.incrementAndGet();
+            return loadedClass;
+        }
+    }
+
+    private static class ColdStart {
+
+        private final int loadedClasses;
+        private final long millis;
+
+        public ColdStart(int loadedClasses, long millis) {
+            this.loadedClasses = loadedClasses;
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.UserApiClient.USER_SERVICE_SECRET_KEY;
+import static no.unit.nva.cognito.service.UserApiClient.USER_SERVICE_SECRET_NAME;
+import static no.unit.nva.cognito.service.UserServiceApiKeyProvider.BACKGROUND_REFRESH_FAILED;
+import static no.unit.nva.cognito.service.UserServiceApiKeyProvider.USER_SERVICE_SECRET_TTL_SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import nva.commons.core.Environment;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import nva.commons.secrets.ErrorReadingSecretException;
+import nva.commons.secrets.SecretsReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class UserServiceApiKeyProviderTest {
+
+    public static final Duration TTL = Duration.ofMinutes(10);
+    public static final Instant NOW = Instant.parse("2021-05-01T10:00:00Z");
+    public static final String FIRST_KEY = "firstKey";
+    public static final String SECOND_KEY = "secondKey";
+    public static final String SECRET_NAME = "secretName";
+    public static final String SECRET_KEY = "secretKey";
+
+    private Clock clock;
+    private AtomicInteger fetches;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+        fetches = new AtomicInteger();
+    }
+
+    @Test
+    public void getApiKeyFetchesSecretOnlyOnceWhileKeyIsFresh() {
+        UserServiceApiKeyProvider provider = providerWithKeys(FIRST_KEY, SECOND_KEY);
+
+        assertThat(provider.getApiKey(), is(equalTo(FIRST_KEY)));
+        assertThat(provider.getApiKey(), is(equalTo(FIRST_KEY)));
+        assertThat(fetches.get(), is(1));
+    }
+
+    @Test
+    public void getApiKeyReturnsCachedKeyAndRefreshesInBackgroundWhenKeyIsAboutToExpire() {
+        UserServiceApiKeyProvider provider = providerWithKeys(FIRST_KEY, SECOND_KEY);
+        provider.getApiKey();
+
+        when(clock.instant()).thenReturn(NOW.plus(TTL.minusMinutes(1)));
+        assertThat(provider.getApiKey(), is(equalTo(FIRST_KEY)));
+        assertThat(fetches.get(), is(2));
+        assertThat(provider.getApiKey(), is(equalTo(SECOND_KEY)));
+    }
+
+    @Test
+    public void getApiKeyFetchesKeySynchronouslyWhenKeyHasExpired() {
+        UserServiceApiKeyProvider provider = providerWithKeys(FIRST_KEY, SECOND_KEY);
+        provider.getApiKey();
+
+        when(clock.instant()).thenReturn(NOW.plus(TTL));
+        assertThat(provider.getApiKey(), is(equalTo(SECOND_KEY)));
+        assertThat(fetches.get(), is(2));
+    }
+
+    @Test
+    public void getApiKeyFetchesNewKeyAfterInvalidation() {
+        UserServiceApiKeyProvider provider = providerWithKeys(FIRST_KEY, SECOND_KEY);
+        provider.getApiKey();
+
+        provider.invalidate();
+
+        assertThat(provider.getApiKey(), is(equalTo(SECOND_KEY)));
+        assertThat(fetches.get(), is(2));
+    }
+
+    @Test
+    public void getApiKeyAsyncReturnsCachedKeyWithoutUsingExecutor() {
+        List<Runnable> tasks = new ArrayList<>();
+        UserServiceApiKeyProvider provider = providerWithKeys(tasks::add, FIRST_KEY);
+        provider.getApiKey();
+
+        CompletableFuture<String> apiKey = provider.getApiKeyAsync();
+
+        assertThat(apiKey.join(), is(equalTo(FIRST_KEY)));
+        assertThat(tasks, is(empty()));
+    }
+
+    @Test
+    public void getApiKeyAsyncFetchesKeyOnExecutorAfterInvalidation() {
+        List<Runnable> tasks = new ArrayList<>();
+        UserServiceApiKeyProvider provider = providerWithKeys(tasks::add, FIRST_KEY, SECOND_KEY);
+        provider.getApiKey();
+        provider.invalidate();
+
+        CompletableFuture<String> apiKey = provider.getApiKeyAsync();
+
+        assertThat(apiKey.isDone(), is(false));
+        assertThat(fetches.get(), is(1));
+        tasks.forEach(Runnable::run);
+        assertThat(apiKey.join(), is(equalTo(SECOND_KEY)));
+    }
+
+    @Test
+    public void getApiKeyKeepsCurrentKeyWhenBackgroundRefreshFails() {
+        final TestAppender appender = LogUtils.getTestingAppender(UserServiceApiKeyProvider.class);
+        Supplier<String> fetcher = () -> {
+            if (fetches.incrementAndGet() > 1) {
+                throw new IllegalStateException();
+            }
+            return FIRST_KEY;
+        };
+        UserServiceApiKeyProvider provider = new UserServiceApiKeyProvider(fetcher, TTL, clock, Runnable::run);
+        provider.getApiKey();
+
+        when(clock.instant()).thenReturn(NOW.plus(TTL.minusMinutes(1)));
+        assertThat(provider.getApiKey(), is(equalTo(FIRST_KEY)));
+        assertThat(provider.getApiKey(), is(equalTo(FIRST_KEY)));
+        assertThat(fetches.get(), is(3));
+        assertThat(appender.getMessages(), containsString(BACKGROUND_REFRESH_FAILED));
+    }
+
+    @Test
+    public void fromEnvironmentFetchesSecretWithNameAndKeyFromEnvironment() throws ErrorReadingSecretException {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnv(USER_SERVICE_SECRET_NAME)).thenReturn(SECRET_NAME);
+        when(environment.readEnv(USER_SERVICE_SECRET_KEY)).thenReturn(SECRET_KEY);
+        when(environment.readEnvOpt(USER_SERVICE_SECRET_TTL_SECONDS)).thenReturn(Optional.of("60"));
+        SecretsReader secretsReader = mock(SecretsReader.class);
+        when(secretsReader.fetchSecret(SECRET_NAME, SECRET_KEY)).thenReturn(FIRST_KEY);
+
+        UserServiceApiKeyProvider provider = UserServiceApiKeyProvider.fromEnvironment(secretsReader, environment);
+
+        assertThat(provider.getApiKey(), is(equalTo(FIRST_KEY)));
+        assertThat(provider.getApiKey(), is(equalTo(FIRST_KEY)));
+        verify(secretsReader, times(1)).fetchSecret(SECRET_NAME, SECRET_KEY);
+    }
+
+    private UserServiceApiKeyProvider providerWithKeys(String... keys) {
+        return providerWithKeys(Runnable::run, keys);
+    }
+
+    private UserServiceApiKeyProvider providerWithKeys(Executor executor, String... keys) {
+        Supplier<String> fetcher = () -> keys[Math.min(fetches.getAndIncrement(), keys.length - 1)];
+        return new UserServiceApiKeyProvider(fetcher, TTL, clock, executor);
+    }
+}
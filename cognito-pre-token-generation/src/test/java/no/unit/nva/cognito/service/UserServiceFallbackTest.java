@@ -0,0 +1,173 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION_ACCESS_RIGHTS;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_APPLICATION_ROLES;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_CRISTIN_ID;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_CUSTOMER_ID;
+import static no.unit.nva.cognito.model.UserClaims.CUSTOM_IDENTIFIERS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.DEGRADED;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.OUTCOME;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.UNKNOWN;
+import static no.unit.nva.cognito.service.UserServiceFallback.LAST_KNOWN_CLAIMS_MAX_SIZE;
+import static no.unit.nva.cognito.service.UserServiceFallback.USER_LOOKUP_FAILED;
+import static no.unit.nva.cognito.service.UserServiceFallback.USER_SERVICE_FALLBACK;
+import static no.unit.nva.cognito.service.UserServiceFallback.USER_SERVICE_FALLBACK_TIMEOUT_MILLIS;
+import static no.unit.nva.cognito.service.UserServiceFallback.USER_UPDATE_FAILED;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import no.unit.nva.cognito.exception.BadGatewayException;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.model.UserAttributes;
+import nva.commons.core.Environment;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import org.junit.jupiter.api.Test;
+
+public class UserServiceFallbackTest {
+
+    public static final String FEIDE_ID = "user@example.org";
+    public static final String OTHER_FEIDE_ID = "other@example.org";
+    public static final String CUSTOMER_ID = "http://example.org/customer/123";
+    public static final String CRISTIN_ID = "http://cristin.id";
+    public static final String ROLES = "Creator,User";
+    public static final Map<String, String> CACHED_CLAIMS = Map.of(CUSTOM_APPLICATION_ROLES, "User");
+    public static final Duration TIMEOUT = Duration.ofMillis(50);
+
+    private final UserServiceFallback fallback = new UserServiceFallback(true, TIMEOUT, 1);
+
+    @Test
+    public void disabledFallbackKnowsNoClaimsAndLeavesCallsUnbounded() {
+        UserServiceFallback disabled = UserServiceFallback.disabled();
+        disabled.remember(FEIDE_ID, CACHED_CLAIMS);
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        assertThat(disabled.isEnabled(), is(false));
+        assertThat(disabled.lastKnownClaims(userAttributesWithClaims()), is(equalTo(Optional.empty())));
+        assertThat(disabled.bound(call), is(sameInstance(call)));
+        assertThat(disabled.tolerateFailure(call, new InvocationMetrics()), is(sameInstance(call)));
+    }
+
+    @Test
+    public void fromEnvironmentReadsFallbackSettings() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(USER_SERVICE_FALLBACK)).thenReturn(Optional.of("true"));
+        when(environment.readEnvOpt(USER_SERVICE_FALLBACK_TIMEOUT_MILLIS)).thenReturn(Optional.of("800"));
+        when(environment.readEnvOpt(LAST_KNOWN_CLAIMS_MAX_SIZE)).thenReturn(Optional.of("10"));
+
+        UserServiceFallback configured = UserServiceFallback.fromEnvironment(environment);
+
+        assertThat(configured.isEnabled(), is(true));
+        assertThat(configured.getTimeout(), is(equalTo(Duration.ofMillis(800))));
+    }
+
+    @Test
+    public void fromEnvironmentDisablesFallbackByDefault() {
+        UserServiceFallback configured = UserServiceFallback.fromEnvironment(mock(Environment.class));
+
+        assertThat(configured.isEnabled(), is(false));
+        assertThat(configured.getTimeout(), is(equalTo(UserServiceFallback.DEFAULT_TIMEOUT)));
+    }
+
+    @Test
+    public void lastKnownClaimsPrefersClaimsOfLastLoginInContainer() {
+        fallback.remember(FEIDE_ID, CACHED_CLAIMS);
+
+        assertThat(fallback.lastKnownClaims(userAttributesWithClaims()), is(equalTo(Optional.of(CACHED_CLAIMS))));
+    }
+
+    @Test
+    public void lastKnownClaimsEvictsLeastRecentlyUsedUser() {
+        fallback.remember(FEIDE_ID, CACHED_CLAIMS);
+        fallback.remember(OTHER_FEIDE_ID, CACHED_CLAIMS);
+
+        Map<String, String> claims = fallback.lastKnownClaims(userAttributesWithClaims()).get();
+
+        assertThat(claims, is(not(equalTo(CACHED_CLAIMS))));
+    }
+
+    @Test
+    public void lastKnownClaimsReturnsClaimsStoredInUserPool() {
+        Map<String, String> claims = fallback.lastKnownClaims(userAttributesWithClaims()).get();
+
+        assertThat(claims.get(CUSTOM_CUSTOMER_ID), is(equalTo(CUSTOMER_ID)));
+        assertThat(claims.get(CUSTOM_CRISTIN_ID), is(equalTo(CRISTIN_ID)));
+        assertThat(claims.get(CUSTOM_APPLICATION), is(equalTo("NVA")));
+        assertThat(claims.get(CUSTOM_IDENTIFIERS), is(equalTo("feide:" + FEIDE_ID)));
+        assertThat(claims.get(CUSTOM_APPLICATION_ROLES), is(equalTo(ROLES)));
+        assertThat(claims.get(CUSTOM_APPLICATION_ACCESS_RIGHTS), is(equalTo("")));
+    }
+
+    @Test
+    public void lastKnownClaimsReturnsEmptyWhenUserHasNeverBeenIssuedClaims() {
+        UserAttributes userAttributes = new UserAttributes();
+        userAttributes.setFeideId(FEIDE_ID);
+
+        assertThat(fallback.lastKnownClaims(userAttributes), is(equalTo(Optional.empty())));
+    }
+
+    @Test
+    public void boundFailsCallThatOutlastsTimeout() {
+        CompletableFuture<String> call = fallback.bound(new CompletableFuture<>());
+
+        CompletionException exception = assertThrows(CompletionException.class, call::join);
+
+        assertThat(exception.getCause(), is(instanceOf(TimeoutException.class)));
+    }
+
+    @Test
+    public void degradeReportsInvocationAsDegradedAndLogsReason() {
+        final TestAppender appender = LogUtils.getTestingAppender(UserServiceFallback.class);
+        InvocationMetrics metrics = new InvocationMetrics();
+
+        fallback.degrade(metrics, USER_LOOKUP_FAILED, new BadGatewayException("failed"));
+
+        assertThat(metrics.getDimensions().get(OUTCOME), is(equalTo(DEGRADED)));
+        assertThat(appender.getMessages(), containsString(USER_LOOKUP_FAILED));
+    }
+
+    @Test
+    public void tolerateFailureCompletesFailedWriteAndReportsInvocationAsDegraded() {
+        final TestAppender appender = LogUtils.getTestingAppender(UserServiceFallback.class);
+        InvocationMetrics metrics = new InvocationMetrics();
+        CompletableFuture<String> write = CompletableFuture.failedFuture(new BadGatewayException("failed"));
+
+        assertThat(fallback.tolerateFailure(write, metrics).join(), is(nullValue()));
+
+        assertThat(metrics.getDimensions().get(OUTCOME), is(equalTo(DEGRADED)));
+        assertThat(appender.getMessages(), containsString(USER_UPDATE_FAILED));
+    }
+
+    @Test
+    public void tolerateFailureLeavesOutcomeOfSuccessfulWrite() {
+        InvocationMetrics metrics = new InvocationMetrics();
+
+        fallback.tolerateFailure(CompletableFuture.completedFuture(FEIDE_ID), metrics).join();
+
+        assertThat(metrics.getDimensions().get(OUTCOME), is(equalTo(UNKNOWN)));
+    }
+
+    private UserAttributes userAttributesWithClaims() {
+        UserAttributes userAttributes = new UserAttributes();
+        userAttributes.setFeideId(FEIDE_ID);
+        userAttributes.setCustomerId(CUSTOMER_ID);
+        userAttributes.setCristinId(CRISTIN_ID);
+        userAttributes.setApplicationRoles(ROLES);
+        return userAttributes;
+    }
+}
@@ -0,0 +1,188 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.service.UserApiClient.AUTHORIZATION;
+import static no.unit.nva.cognito.service.UserApiClient.DELIMITER;
+import static no.unit.nva.cognito.service.UserApiClient.ETAG;
+import static no.unit.nva.cognito.service.UserApiClient.IF_NONE_MATCH;
+import static no.unit.nva.cognito.service.UserApiClient.PATH;
+import static no.unit.nva.cognito.service.UserApiClient.UPDATE_POLICY_FIELD;
+import static no.unit.nva.cognito.service.UserApiClient.UPSERT;
+import static no.unit.nva.cognito.service.UserApiClient.USER_FIELD;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+
+/**
+ * A local stand-in for the user service that keeps its users in memory. It serves the lookup, creation and update of
+ * users, and the upsert of a user when it is started with upsert support. Without upsert support the upsert endpoint
+ * answers {@code 403 Missing Authentication Token}, like API Gateway in front of a user service that predates it.
+ * Users are sent with an entity tag, and a lookup whose {@code If-None-Match} matches the stored user is answered
+ * {@code 304 Not Modified}. A request with an API key that is set to be rejected is answered {@code 403}. The
+ * operation of every request is recorded.
+ */
+public class UserServiceStandIn implements AutoCloseable {
+
+    public static final String GET = "GET";
+    public static final String POST = "POST";
+    public static final String PUT = "PUT";
+    public static final String UPSERT_OPERATION = "UPSERT";
+    public static final String LOCALHOST = "localhost";
+    public static final String NO_BODY = "";
+    public static final String MISSING_ROUTE = "{\"message\":\"Missing Authentication Token\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, UserDto> users = new ConcurrentHashMap<>();
+    private final List<String> operations = new CopyOnWriteArrayList<>();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private final Set<String> rejectedApiKeys = ConcurrentHashMap.newKeySet();
+    private final boolean upsertSupported;
+    private final HttpServer server;
+
+    private UserServiceStandIn(boolean upsertSupported) throws IOException {
+        this.upsertSupported = upsertSupported;
+        this.server = HttpServer.create(new InetSocketAddress(LOCALHOST, 0), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * Starts a stand-in on a free local port.
+     *
+     * @param upsertSupported whether the stand-in serves upserts
+     * @return the running stand-in
+     * @throws IOException if the server cannot be started
+     */
+    public static UserServiceStandIn start(boolean upsertSupported) throws IOException {
+        return new UserServiceStandIn(upsertSupported);
+    }
+
+    public String getHost() {
+        return LOCALHOST + ":" + server.getAddress().getPort();
+    }
+
+    public void addUser(UserDto user) {
+        users.put(user.getUsername(), user);
+    }
+
+    public void rejectApiKey(String apiKey) {
+        rejectedApiKeys.add(apiKey);
+    }
+
+    public void removeUser(String username) {
+        users.remove(username);
+    }
+
+    public Optional<UserDto> getUser(String username) {
+        return Optional.ofNullable(users.get(username));
+    }
+
+    public List<String> getOperations() {
+        return List.copyOf(operations);
+    }
+
+    public int getNotModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        boolean isUpsert = path.endsWith(DELIMITER + UPSERT) && POST.equals(exchange.getRequestMethod());
+        if (rejectedApiKeys.contains(exchange.getRequestHeaders().getFirst(AUTHORIZATION))) {
+            operations.add(isUpsert ? UPSERT_OPERATION : exchange.getRequestMethod());
+            respond(exchange, HttpURLConnection.HTTP_FORBIDDEN, NO_BODY);
+        } else if (isUpsert) {
+            operations.add(UPSERT_OPERATION);
+            upsert(exchange, usernameOf(path.substring(0, path.length() - UPSERT.length() - 1)), body);
+        } else {
+            operations.add(exchange.getRequestMethod());
+            handleUserRequest(exchange, path, body);
+        }
+    }
+
+    private void handleUserRequest(HttpExchange exchange, String path, String body) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case GET:
+                lookUp(exchange, usernameOf(path));
+                break;
+            case POST:
+                addUser(objectMapper.readValue(body, UserDto.class));
+                respond(exchange, HttpURLConnection.HTTP_OK, body);
+                break;
+            case PUT:
+                addUser(objectMapper.readValue(body, UserDto.class));
+                respond(exchange, HttpURLConnection.HTTP_ACCEPTED, NO_BODY);
+                break;
+            default:
+                respond(exchange, HttpURLConnection.HTTP_BAD_METHOD, NO_BODY);
+        }
+    }
+
+    private void lookUp(HttpExchange exchange, String username) throws IOException {
+        Optional<UserDto> user = getUser(username);
+        if (user.isEmpty()) {
+            respond(exchange, HttpURLConnection.HTTP_NOT_FOUND, NO_BODY);
+            return;
+        }
+        String json = objectMapper.writeValueAsString(user.get());
+        String entityTag = entityTagOf(json);
+        exchange.getResponseHeaders().add(ETAG, entityTag);
+        if (entityTag.equals(exchange.getRequestHeaders().getFirst(IF_NONE_MATCH))) {
+            notModifiedResponses.incrementAndGet();
+            respond(exchange, HttpURLConnection.HTTP_NOT_MODIFIED, NO_BODY);
+        } else {
+            respond(exchange, HttpURLConnection.HTTP_OK, json);
+        }
+    }
+
+    private void upsert(HttpExchange exchange, String username, String body) throws IOException {
+        if (!upsertSupported) {
+            respond(exchange, HttpURLConnection.HTTP_FORBIDDEN, MISSING_ROUTE);
+            return;
+        }
+        JsonNode upsert = objectMapper.readTree(body);
+        Optional<UserDto> existingUser = getUser(username);
+        UserDto storedUser = existingUser.isPresent()
+                                 ? objectMapper.treeToValue(upsert.get(UPDATE_POLICY_FIELD), UpdatePolicy.class)
+                                       .applyTo(existingUser.get())
+                                 : objectMapper.treeToValue(upsert.get(USER_FIELD), UserDto.class);
+        addUser(storedUser);
+        respond(exchange, existingUser.isPresent() ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_CREATED,
+                objectMapper.writeValueAsString(storedUser));
+    }
+
+    private static String entityTagOf(String json) {
+        return "\"" + Integer.toHexString(json.hashCode()) + "\"";
+    }
+
+    private static String usernameOf(String path) {
+        return path.substring(PATH.length() + DELIMITER.length());
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package no.unit.nva.cognito.service;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.SKIPPED_USER_WRITES;
+import static no.unit.nva.cognito.service.UserDtoDiff.FAMILY_NAME;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import java.util.List;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.RoleDto;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import org.junit.jupiter.api.Test;
+
+public class UserUpdatesTest {
+
+    public static final String SAMPLE_USERNAME = "user@name";
+    public static final String SAMPLE_FAMILY_NAME = "familyName";
+    public static final String NEW_FAMILY_NAME = "newFamilyName";
+    public static final String USER = "User";
+
+    private final UserApiMock userApi = new UserApiMock();
+    private final InvocationMetrics metrics = new InvocationMetrics();
+
+    @Test
+    public void updateIfChangedSkipsWriteAndCountsItWhenUserIsUnchanged() throws InvalidEntryInternalException {
+        final TestAppender appender = LogUtils.getTestingAppender(UserUpdates.class);
+        UserDto storedUser = user(SAMPLE_FAMILY_NAME);
+
+        UserDto result = UserUpdates.updateIfChanged(userApi, storedUser, user(SAMPLE_FAMILY_NAME), metrics).join();
+
+        assertThat(result, is(sameInstance(storedUser)));
+        assertThat(userApi.getUpdateCalls(), is(equalTo(0)));
+        assertThat(metrics.getCounts().get(SKIPPED_USER_WRITES), is(equalTo(1L)));
+        assertThat(appender.getMessages(), containsString("is unchanged, skipping update"));
+    }
+
+    @Test
+    public void updateIfChangedLogsChangedFieldsBeforeWritingChangedUser() throws InvalidEntryInternalException {
+        final TestAppender appender = LogUtils.getTestingAppender(UserUpdates.class);
+        UserDto updatedUser = user(NEW_FAMILY_NAME);
+
+        UserDto result = UserUpdates.updateIfChanged(userApi, user(SAMPLE_FAMILY_NAME), updatedUser, metrics).join();
+
+        assertThat(result, is(sameInstance(updatedUser)));
+        assertThat(userApi.getUpdateCalls(), is(equalTo(1)));
+        assertThat(metrics.getCounts().get(SKIPPED_USER_WRITES), is(equalTo(0L)));
+        assertThat(appender.getMessages(), containsString("changed fields: [" + FAMILY_NAME + "]"));
+    }
+
+    private UserDto user(String familyName) throws InvalidEntryInternalException {
+        return UserDto.newBuilder()
+                   .withUsername(SAMPLE_USERNAME)
+                   .withFamilyName(familyName)
+                   .withRoles(List.of(RoleDto.newBuilder().withName(USER).build()))
+                   .build();
+    }
+}
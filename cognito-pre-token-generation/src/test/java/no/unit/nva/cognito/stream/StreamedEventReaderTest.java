@@ -0,0 +1,108 @@
+package no.unit.nva.cognito.stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.fasterxml.jackson.core.JsonParseException;
+import java.io.IOException;
+import java.nio.file.Path;
+import no.unit.nva.cognito.model.Event;
+import no.unit.nva.cognito.model.UserAttributes;
+import nva.commons.core.JsonUtils;
+import nva.commons.core.ioutils.IoUtils;
+import org.junit.jupiter.api.Test;
+
+public class StreamedEventReaderTest {
+
+    public static final String SAMPLE_EVENT_JSON = "sample_event.json";
+    public static final String EVENT_WITH_STRUCTURED_VALUES = "{"
+                                                              + "\"userPoolId\":{\"nested\":[1,2]},"
+                                                              + "\"callerContext\":{\"clientId\":\"id\"},"
+                                                              + "\"request\":{"
+                                                              + "\"groupConfiguration\":{\"groups\":[\"a\"]},"
+                                                              + "\"userAttributes\":{"
+                                                              + "\"custom:feideId\":\"user@example.org\","
+                                                              + "\"custom:orgNumber\":[\"NO123\"],"
+                                                              + "\"custom:affiliation\":null,"
+                                                              + "\"custom:schoolList\":{\"school\":[1,2,3]},"
+                                                              + "\"given_name\":42"
+                                                              + "}},"
+                                                              + "\"triggerSource\":\"TokenGeneration_HostedAuth\""
+                                                              + "}";
+    public static final String EVENT_WITH_CLAIM_ATTRIBUTES = "{\"request\":{\"userAttributes\":{"
+                                                              + "\"custom:customerId\":\"customer\","
+                                                              + "\"custom:cristinId\":\"cristin\","
+                                                              + "\"custom:applicationRoles\":\"Creator,User\","
+                                                              + "\"custom:accessRights\":\"APPROVE\""
+                                                              + "}}}";
+    public static final String EVENT_WITHOUT_USER_ATTRIBUTES = "{\"request\":{\"userAttributes\":null}}";
+    public static final String EVENT_WITHOUT_REQUEST = "{\"request\":[]}";
+    public static final String NOT_AN_OBJECT = "[]";
+
+    @Test
+    public void readReturnsSameFieldsAsObjectMapper() throws IOException {
+        String eventJson = IoUtils.stringFromResources(Path.of(SAMPLE_EVENT_JSON));
+        Event expected = JsonUtils.objectMapper.readValue(eventJson, Event.class);
+
+        Event event = StreamedEventReader.read(eventJson.getBytes(UTF_8)).getEvent();
+
+        assertThat(event.getUserPoolId(), is(equalTo(expected.getUserPoolId())));
+        assertThat(event.getUserName(), is(equalTo(expected.getUserName())));
+        assertThat(event.getTriggerSource(), is(equalTo(expected.getTriggerSource())));
+        UserAttributes userAttributes = event.getRequest().getUserAttributes();
+        UserAttributes expectedAttributes = expected.getRequest().getUserAttributes();
+        assertThat(userAttributes.getFeideId(), is(equalTo(expectedAttributes.getFeideId())));
+        assertThat(userAttributes.getOrgNumber(), is(equalTo(expectedAttributes.getOrgNumber())));
+        assertThat(userAttributes.getAffiliation(), is(equalTo(expectedAttributes.getAffiliation())));
+        assertThat(userAttributes.getGivenName(), is(equalTo(expectedAttributes.getGivenName())));
+        assertThat(userAttributes.getFamilyName(), is(equalTo(expectedAttributes.getFamilyName())));
+        assertThat(userAttributes.getHostedOrgNumber(), is(equalTo(expectedAttributes.getHostedOrgNumber())));
+        assertThat(userAttributes.getHostedAffiliation(), is(equalTo(expectedAttributes.getHostedAffiliation())));
+    }
+
+    @Test
+    public void readSkipsStructuredValuesAndReadsScalarsAsText() throws IOException {
+        Event event = StreamedEventReader.read(EVENT_WITH_STRUCTURED_VALUES.getBytes(UTF_8)).getEvent();
+
+        UserAttributes userAttributes = event.getRequest().getUserAttributes();
+        assertThat(event.getUserPoolId(), is(nullValue()));
+        assertThat(event.getTriggerSource(), is(equalTo("TokenGeneration_HostedAuth")));
+        assertThat(userAttributes.getFeideId(), is(equalTo("user@example.org")));
+        assertThat(userAttributes.getOrgNumber(), is(nullValue()));
+        assertThat(userAttributes.getAffiliation(), is(nullValue()));
+        assertThat(userAttributes.getGivenName(), is(equalTo("42")));
+    }
+
+    @Test
+    public void readReadsCustomAttributesHoldingClaimsOfLastLogin() throws IOException {
+        Event event = StreamedEventReader.read(EVENT_WITH_CLAIM_ATTRIBUTES.getBytes(UTF_8)).getEvent();
+
+        UserAttributes userAttributes = event.getRequest().getUserAttributes();
+        assertThat(userAttributes.getCustomerId(), is(equalTo("customer")));
+        assertThat(userAttributes.getCristinId(), is(equalTo("cristin")));
+        assertThat(userAttributes.getApplicationRoles(), is(equalTo("Creator,User")));
+        assertThat(userAttributes.getAccessRights(), is(equalTo("APPROVE")));
+    }
+
+    @Test
+    public void readReturnsNoUserAttributesWhenUserAttributesAreNull() throws IOException {
+        Event event = StreamedEventReader.read(EVENT_WITHOUT_USER_ATTRIBUTES.getBytes(UTF_8)).getEvent();
+
+        assertThat(event.getRequest().getUserAttributes(), is(nullValue()));
+    }
+
+    @Test
+    public void readReturnsNoRequestWhenRequestIsNotAnObject() throws IOException {
+        Event event = StreamedEventReader.read(EVENT_WITHOUT_REQUEST.getBytes(UTF_8)).getEvent();
+
+        assertThat(event.getRequest(), is(nullValue()));
+    }
+
+    @Test
+    public void readThrowsJsonParseExceptionWhenEventIsNotAnObject() {
+        assertThrows(JsonParseException.class, () -> StreamedEventReader.read(NOT_AN_OBJECT.getBytes(UTF_8)));
+    }
+}
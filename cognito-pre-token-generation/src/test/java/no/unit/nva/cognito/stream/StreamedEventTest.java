@@ -0,0 +1,84 @@
+package no.unit.nva.cognito.stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static no.unit.nva.cognito.PostAuthenticationHandler.CLAIMS_OVERRIDE_DETAILS;
+import static no.unit.nva.cognito.PostAuthenticationHandler.CLAIMS_TO_ADD_OR_OVERRIDE;
+import static no.unit.nva.cognito.PostAuthenticationHandler.RESPONSE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import nva.commons.core.JsonUtils;
+import nva.commons.core.ioutils.IoUtils;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("unchecked")
+public class StreamedEventTest {
+
+    public static final String SAMPLE_EVENT_JSON = "sample_event.json";
+    public static final Map<String, String> CLAIMS = Map.of("custom:customerId", "https://example.org/customer/1",
+                                                            "custom:application", "NVA");
+    public static final String EVENT_WITH_NULL_RESPONSE = "{\"userName\":\"user\",\"response\":null,\"version\":\"1\"}";
+    public static final String EVENT_WITH_TEXT_RESPONSE = "{\"userName\":\"user\",\"response\":\"text\"}";
+    public static final String EVENT_WITHOUT_RESPONSE = "{\"userName\":\"user\" }";
+    public static final String EMPTY_EVENT = "{ }";
+
+    @Test
+    public void writeWithClaimsReplacesResponseAndKeepsEveryOtherField() throws IOException {
+        String eventJson = IoUtils.stringFromResources(Path.of(SAMPLE_EVENT_JSON));
+
+        Map<String, Object> response = writeWithClaims(eventJson);
+
+        assertThat(response, is(equalTo(expectedResponse(eventJson))));
+    }
+
+    @Test
+    public void writeWithClaimsCopiesBytesBeforeResponseUnchanged() throws IOException {
+        String eventJson = IoUtils.stringFromResources(Path.of(SAMPLE_EVENT_JSON));
+        byte[] json = eventJson.getBytes(UTF_8);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        StreamedEventReader.read(json).writeWithClaims(json, CLAIMS, output);
+
+        String prefix = eventJson.substring(0, eventJson.indexOf("\"response\""));
+        assertThat(output.toString(UTF_8), startsWith(prefix));
+    }
+
+    @Test
+    public void writeWithClaimsReplacesNullResponse() throws IOException {
+        assertThat(writeWithClaims(EVENT_WITH_NULL_RESPONSE), is(equalTo(expectedResponse(EVENT_WITH_NULL_RESPONSE))));
+    }
+
+    @Test
+    public void writeWithClaimsReplacesTextResponse() throws IOException {
+        assertThat(writeWithClaims(EVENT_WITH_TEXT_RESPONSE), is(equalTo(expectedResponse(EVENT_WITH_TEXT_RESPONSE))));
+    }
+
+    @Test
+    public void writeWithClaimsAddsResponseWhenEventHasNoResponse() throws IOException {
+        assertThat(writeWithClaims(EVENT_WITHOUT_RESPONSE), is(equalTo(expectedResponse(EVENT_WITHOUT_RESPONSE))));
+    }
+
+    @Test
+    public void writeWithClaimsAddsResponseToEmptyEvent() throws IOException {
+        assertThat(writeWithClaims(EMPTY_EVENT), is(equalTo(expectedResponse(EMPTY_EVENT))));
+    }
+
+    private Map<String, Object> writeWithClaims(String eventJson) throws IOException {
+        byte[] json = eventJson.getBytes(UTF_8);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StreamedEventReader.read(json).writeWithClaims(json, CLAIMS, output);
+        return JsonUtils.objectMapper.readValue(output.toByteArray(), Map.class);
+    }
+
+    private Map<String, Object> expectedResponse(String eventJson) throws IOException {
+        Map<String, Object> expected = new HashMap<>(JsonUtils.objectMapper.readValue(eventJson, Map.class));
+        expected.put(RESPONSE, Map.of(CLAIMS_OVERRIDE_DETAILS, Map.of(CLAIMS_TO_ADD_OR_OVERRIDE, CLAIMS)));
+        return expected;
+    }
+}
@@ -0,0 +1,24 @@
+package no.unit.nva.cognito.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+public class BlockingCallsTest {
+
+    @Test
+    public void executorIsSharedByTheContainer() {
+        assertThat(BlockingCalls.executor(), is(sameInstance(BlockingCalls.executor())));
+    }
+
+    @Test
+    public void executorRunsCallsOnDaemonThreadsOutsideTheCommonPool() {
+        Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, BlockingCalls.executor()).join();
+
+        assertThat(thread.isDaemon(), is(true));
+        assertThat(thread.getName(), startsWith(BlockingCalls.THREAD_NAME_PREFIX));
+    }
+}
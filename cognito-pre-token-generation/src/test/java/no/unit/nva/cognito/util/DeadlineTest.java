@@ -0,0 +1,131 @@
+package no.unit.nva.cognito.util;
+
+import static no.unit.nva.cognito.util.Deadline.DEFAULT_BUDGET;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import com.amazonaws.services.lambda.runtime.Context;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import no.unit.nva.cognito.exception.DeadlineExceededException;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DeadlineTest {
+
+    public static final Instant NOW = Instant.parse("2021-05-01T10:00:00Z");
+    public static final Duration BUDGET = Duration.ofSeconds(2);
+    public static final String CALL = "getUser";
+
+    private Clock clock;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+    }
+
+    @Test
+    public void fromContextUsesCognitoTimeoutLessReserveWhenContextReportsNoRemainingTime() {
+        assertThat(budgetFromContext(0), is(equalTo(DEFAULT_BUDGET)));
+    }
+
+    @Test
+    public void fromContextUsesRemainingTimeLessReserveWhenLambdaTimesOutBeforeCognito() {
+        assertThat(budgetFromContext(2000), is(equalTo(Duration.ofMillis(1800))));
+    }
+
+    @Test
+    public void fromContextUsesCognitoTimeoutLessReserveWhenLambdaHasMoreTimeLeft() {
+        assertThat(budgetFromContext(30_000), is(equalTo(DEFAULT_BUDGET)));
+    }
+
+    @Test
+    public void timeoutForReturnsRemainingBudgetWhenLessThanCallTimeoutRemains() {
+        Deadline deadline = new Deadline(BUDGET, clock);
+        when(clock.instant()).thenReturn(NOW.plusMillis(1500));
+
+        assertThat(deadline.timeoutFor(CALL), is(equalTo(Duration.ofMillis(500))));
+    }
+
+    @Test
+    public void timeoutForIsCappedAtShareOfBudgetSoThatLaterCallsKeepTheirTime() {
+        Deadline deadline = new Deadline(BUDGET, clock);
+        when(clock.instant()).thenReturn(NOW.plusMillis(500));
+
+        assertThat(deadline.timeoutFor(CALL), is(equalTo(Duration.ofMillis(1000))));
+    }
+
+    @Test
+    public void timeoutForIsCappedAtExplicitCallTimeout() {
+        Deadline deadline = new Deadline(BUDGET, Duration.ofMillis(300), clock);
+        when(clock.instant()).thenReturn(NOW.plusMillis(500));
+
+        assertThat(deadline.timeoutFor(CALL), is(equalTo(Duration.ofMillis(300))));
+    }
+
+    @Test
+    public void timeoutForFailsFastWhenTooLittleOfBudgetRemains() {
+        Deadline deadline = new Deadline(BUDGET, clock);
+        when(clock.instant()).thenReturn(NOW.plus(BUDGET).minusMillis(50));
+
+        var exception = assertThrows(DeadlineExceededException.class, () -> deadline.timeoutFor(CALL));
+
+        assertThat(exception.getMessage(),
+                   is(equalTo("Not starting getUser: 50 ms of the 2000 ms budget remain, 100 ms are needed")));
+    }
+
+    @Test
+    public void currentReturnsAttachedDeadlineUntilItIsDetached() {
+        Deadline deadline = new Deadline(BUDGET, clock);
+
+        deadline.attach();
+        assertThat(Deadline.current(), is(sameInstance(deadline)));
+        deadline.detach();
+
+        assertThat(Deadline.current(), is(not(sameInstance(deadline))));
+        assertThat(Deadline.current().getBudget(), is(equalTo(DEFAULT_BUDGET)));
+    }
+
+    @Test
+    public void withinAttachesDeadlineForStepAndRestoresPreviousDeadline() {
+        Deadline previous = new Deadline(BUDGET, clock);
+        Deadline deadline = new Deadline(BUDGET, clock);
+        previous.attach();
+
+        Deadline duringStep = deadline.within(Deadline::current);
+
+        assertThat(duringStep, is(sameInstance(deadline)));
+        assertThat(Deadline.current(), is(sameInstance(previous)));
+        previous.detach();
+    }
+
+    @Test
+    public void reportBudgetUseLogsShareOfBudgetUsedByEachPhase() {
+        final TestAppender appender = LogUtils.getTestingAppender(Deadline.class);
+        Deadline deadline = new Deadline(BUDGET, clock);
+
+        deadline.reportBudgetUse(Map.of(CALL, Duration.ofMillis(500).toNanos()));
+
+        assertThat(appender.getMessages(), containsString("getUser used 500 ms, 25 % of the 2000 ms budget"));
+    }
+
+    private Duration budgetFromContext(long remainingMillis) {
+        Context context = mock(Context.class);
+        when(context.getRemainingTimeInMillis()).thenReturn((int) remainingMillis);
+        return Deadline.fromContext(context).getBudget();
+    }
+}
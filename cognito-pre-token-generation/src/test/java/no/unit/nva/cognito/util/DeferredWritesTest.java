@@ -0,0 +1,86 @@
+package no.unit.nva.cognito.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import org.junit.jupiter.api.Test;
+
+public class DeferredWritesTest {
+
+    public static final String SAMPLE_WRITE = "sampleWrite";
+    public static final String SAMPLE_VALUE = "value";
+    public static final String SAMPLE_ERROR = "error";
+    public static final Duration TIMEOUT = Duration.ofSeconds(1);
+
+    @Test
+    public void startReturnsBeforeWriteHasCompleted() {
+        DeferredWrites writes = new DeferredWrites();
+        CompletableFuture<String> write = new CompletableFuture<>();
+
+        writes.start(SAMPLE_WRITE, () -> write);
+
+        assertThat(writes.getPendingCount(), is(1));
+        write.complete(SAMPLE_VALUE);
+        assertThat(writes.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void startLogsTimingOfCompletedWrite() {
+        final TestAppender appender = LogUtils.getTestingAppender(DeferredWrites.class);
+        DeferredWrites writes = new DeferredWrites();
+
+        writes.start(SAMPLE_WRITE, () -> CompletableFuture.completedFuture(SAMPLE_VALUE));
+
+        assertThat(appender.getMessages(), containsString("Deferred " + SAMPLE_WRITE + " took"));
+    }
+
+    @Test
+    public void startLogsFailureOfWriteInsteadOfThrowing() {
+        final TestAppender appender = LogUtils.getTestingAppender(DeferredWrites.class);
+        DeferredWrites writes = new DeferredWrites();
+
+        writes.start(SAMPLE_WRITE, () -> CompletableFuture.failedFuture(new IllegalStateException(SAMPLE_ERROR)));
+
+        assertThat(appender.getMessages(), containsString("Deferred " + SAMPLE_WRITE + " failed"));
+        assertThat(writes.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void startLogsFailureOfWriteThatThrowsWhenStarted() {
+        final TestAppender appender = LogUtils.getTestingAppender(DeferredWrites.class);
+        DeferredWrites writes = new DeferredWrites();
+
+        writes.start(SAMPLE_WRITE, () -> {
+            throw new IllegalStateException(SAMPLE_ERROR);
+        });
+
+        assertThat(appender.getMessages(), containsString("Deferred " + SAMPLE_WRITE + " failed"));
+        assertThat(writes.awaitPending(TIMEOUT), is(true));
+    }
+
+    @Test
+    public void awaitPendingReturnsTrueWhenEveryWriteCompletesWithinTimeout() {
+        DeferredWrites writes = new DeferredWrites();
+        CompletableFuture<String> write = new CompletableFuture<>();
+        writes.start(SAMPLE_WRITE, () -> write);
+
+        CompletableFuture.runAsync(() -> write.complete(SAMPLE_VALUE));
+
+        assertThat(writes.awaitPending(TIMEOUT), is(true));
+    }
+
+    @Test
+    public void awaitPendingReturnsFalseAndReportsWritesThatAreStillPending() {
+        final TestAppender appender = LogUtils.getTestingAppender(DeferredWrites.class);
+        DeferredWrites writes = new DeferredWrites();
+        writes.start(SAMPLE_WRITE, CompletableFuture::new);
+
+        assertThat(writes.awaitPending(Duration.ZERO), is(false));
+        assertThat(appender.getMessages(), containsString("1 deferred writes were still pending"));
+        assertThat(writes.getPendingCount(), is(1));
+    }
+}
@@ -0,0 +1,71 @@
+package no.unit.nva.cognito.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+public class FuturesTest {
+
+    public static final String SAMPLE_VALUE = "value";
+    public static final String SAMPLE_ERROR = "error";
+
+    @Test
+    public void completedReturnsCompletedFutureWithSupplierValue() {
+        CompletableFuture<String> future = Futures.completed(() -> SAMPLE_VALUE);
+        assertThat(future.isDone(), is(true));
+        assertThat(future.join(), is(equalTo(SAMPLE_VALUE)));
+    }
+
+    @Test
+    public void completedReturnsFailedFutureWhenSupplierThrows() {
+        IllegalStateException expected = new IllegalStateException(SAMPLE_ERROR);
+        CompletableFuture<String> future = Futures.completed(() -> {
+            throw expected;
+        });
+        assertThat(future.isCompletedExceptionally(), is(true));
+        IllegalStateException actual = assertThrows(IllegalStateException.class, () -> Futures.join(future));
+        assertThat(actual, is(sameInstance(expected)));
+    }
+
+    @Test
+    public void joinWrapsCheckedFailuresInIllegalStateException() {
+        IOException cause = new IOException(SAMPLE_ERROR);
+        CompletableFuture<String> future = CompletableFuture.failedFuture(cause);
+        IllegalStateException actual = assertThrows(IllegalStateException.class, () -> Futures.join(future));
+        assertThat(actual.getCause(), is(sameInstance(cause)));
+    }
+
+    @Test
+    public void failureOfReturnsEmptyWhenFutureCompletesNormally() {
+        assertThat(Futures.failureOf(CompletableFuture.completedFuture(SAMPLE_VALUE)), is(equalTo(Optional.empty())));
+    }
+
+    @Test
+    public void failureOfReturnsRuntimeExceptionThatJoinWouldThrow() {
+        IllegalStateException expected = new IllegalStateException(SAMPLE_ERROR);
+        CompletableFuture<String> future = CompletableFuture.failedFuture(expected);
+        assertThat(Futures.failureOf(future).get(), is(sameInstance(expected)));
+    }
+
+    @Test
+    public void unwrapRemovesNestedFutureWrappers() {
+        IOException cause = new IOException(SAMPLE_ERROR);
+        Throwable wrapped = new CompletionException(new ExecutionException(cause));
+        assertThat(Futures.unwrap(wrapped), is(sameInstance(cause)));
+    }
+
+    @Test
+    public void unwrapReturnsWrapperWhenItHasNoCause() {
+        Throwable wrapper = new CompletionException(SAMPLE_ERROR, null);
+        assertThat(Futures.unwrap(wrapper), is(instanceOf(CompletionException.class)));
+    }
+}
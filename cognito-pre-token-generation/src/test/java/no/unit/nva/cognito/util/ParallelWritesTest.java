@@ -0,0 +1,76 @@
+package no.unit.nva.cognito.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.CompletableFuture;
+import nva.commons.logutils.LogUtils;
+import nva.commons.logutils.TestAppender;
+import org.junit.jupiter.api.Test;
+
+public class ParallelWritesTest {
+
+    public static final String FIRST_WRITE = "firstWrite";
+    public static final String SECOND_WRITE = "secondWrite";
+    public static final String SAMPLE_VALUE = "value";
+    public static final String SAMPLE_ERROR = "error";
+
+    @Test
+    public void addStartsWriteBeforeEarlierWritesHaveCompleted() {
+        ParallelWrites writes = new ParallelWrites();
+        CompletableFuture<String> firstWrite = new CompletableFuture<>();
+        CompletableFuture<String> secondWrite = new CompletableFuture<>();
+
+        writes.add(FIRST_WRITE, () -> firstWrite);
+        CompletableFuture<String> secondStarted = writes.add(SECOND_WRITE, () -> secondWrite);
+        secondWrite.complete(SAMPLE_VALUE);
+
+        assertThat(secondStarted.isDone(), is(true));
+        assertThat(firstWrite.isDone(), is(false));
+    }
+
+    @Test
+    public void awaitAllLogsTimingOfEveryWrite() {
+        final TestAppender appender = LogUtils.getTestingAppender(ParallelWrites.class);
+        ParallelWrites writes = new ParallelWrites();
+        writes.add(FIRST_WRITE, () -> CompletableFuture.completedFuture(SAMPLE_VALUE));
+        writes.add(SECOND_WRITE, () -> CompletableFuture.completedFuture(SAMPLE_VALUE));
+
+        writes.awaitAll();
+
+        assertThat(appender.getMessages(), containsString(FIRST_WRITE));
+        assertThat(appender.getMessages(), containsString(SECOND_WRITE));
+    }
+
+    @Test
+    public void awaitAllWaitsForEveryWriteAndThrowsFailureOfFailedWrite() {
+        ParallelWrites writes = new ParallelWrites();
+        IllegalStateException expected = new IllegalStateException(SAMPLE_ERROR);
+        CompletableFuture<String> slowWrite = new CompletableFuture<>();
+        writes.add(FIRST_WRITE, () -> CompletableFuture.failedFuture(expected));
+        writes.add(SECOND_WRITE, () -> slowWrite);
+
+        CompletableFuture<Void> awaiting = CompletableFuture.runAsync(writes::awaitAll);
+        assertThat(awaiting.isDone(), is(false));
+        slowWrite.complete(SAMPLE_VALUE);
+
+        IllegalStateException actual = assertThrows(IllegalStateException.class, () -> Futures.join(awaiting));
+        assertThat(actual, is(sameInstance(expected)));
+    }
+
+    @Test
+    public void awaitAllThrowsFailureOfWriteThatFailedBeforeReturningFuture() {
+        final TestAppender appender = LogUtils.getTestingAppender(ParallelWrites.class);
+        ParallelWrites writes = new ParallelWrites();
+        IllegalStateException expected = new IllegalStateException(SAMPLE_ERROR);
+        writes.add(FIRST_WRITE, () -> {
+            throw expected;
+        });
+
+        IllegalStateException actual = assertThrows(IllegalStateException.class, writes::awaitAll);
+        assertThat(actual, is(sameInstance(expected)));
+        assertThat(appender.getMessages(), containsString(FIRST_WRITE + " failed"));
+    }
+}
@@ -0,0 +1,70 @@
+package no.unit.nva.cognito.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RateLimiterTest {
+
+    public static final Instant NOW = Instant.parse("2021-05-01T10:00:00Z");
+    public static final double TEN_PER_SECOND = 10;
+    public static final Duration INTERVAL = Duration.ofMillis(100);
+
+    private Clock clock;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+    }
+
+    @Test
+    public void reserveReturnsNoWaitForFirstCall() {
+        assertThat(new RateLimiter(TEN_PER_SECOND, clock).reserve(), is(equalTo(Duration.ZERO)));
+    }
+
+    @Test
+    public void reserveSpacesBurstOfCallsByInterval() {
+        RateLimiter rateLimiter = new RateLimiter(TEN_PER_SECOND, clock);
+        rateLimiter.reserve();
+
+        assertThat(rateLimiter.reserve(), is(equalTo(INTERVAL)));
+        assertThat(rateLimiter.reserve(), is(equalTo(INTERVAL.multipliedBy(2))));
+    }
+
+    @Test
+    public void reserveDoesNotSaveUnusedSlots() {
+        RateLimiter rateLimiter = new RateLimiter(TEN_PER_SECOND, clock);
+        rateLimiter.reserve();
+        when(clock.instant()).thenReturn(NOW.plusSeconds(1));
+
+        assertThat(rateLimiter.reserve(), is(equalTo(Duration.ZERO)));
+        assertThat(rateLimiter.reserve(), is(equalTo(INTERVAL)));
+    }
+
+    @Test
+    public void acquireAsyncCompletesWhenSlotComes() {
+        RateLimiter rateLimiter = new RateLimiter(TEN_PER_SECOND, clock);
+
+        rateLimiter.acquireAsync().join();
+        rateLimiter.acquireAsync().join();
+
+        assertThat(rateLimiter.reserve(), is(equalTo(INTERVAL.multipliedBy(2))));
+    }
+
+    @Test
+    public void constructorThrowsIllegalArgumentExceptionWhenRateIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, clock));
+    }
+}
@@ -0,0 +1,269 @@
+package no.unit.nva.cognito.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HEDGEABLE_REQUESTS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HEDGED_REQUESTS;
+import static no.unit.nva.cognito.metrics.InvocationMetrics.HEDGE_WINS;
+import static no.unit.nva.cognito.util.RequestHedger.HEDGE_BUDGET_PERCENT;
+import static no.unit.nva.cognito.util.RequestHedger.HEDGE_DELAY_MILLIS;
+import static no.unit.nva.cognito.util.RequestHedger.HEDGE_DELAY_PERCENTILE;
+import static no.unit.nva.cognito.util.RequestHedger.HEDGE_REQUESTS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import no.unit.nva.cognito.metrics.LatencyHistograms;
+import nva.commons.core.Environment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RequestHedgerTest {
+
+    public static final String DEPENDENCY = "getUser";
+    public static final String UNHEDGED_DEPENDENCY = DEPENDENCY + RequestHedger.UNHEDGED_SUFFIX;
+    public static final Duration DELAY = Duration.ofMillis(10);
+    public static final int EVERY_REQUEST = 100;
+    public static final String PRIMARY = "primary";
+    public static final String HEDGE = "hedge";
+
+    private LatencyHistograms histograms;
+    private InvocationMetrics metrics;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        histograms = new LatencyHistograms(Duration.ofHours(1), Clock.systemUTC());
+        metrics = new InvocationMetrics();
+        metrics.attach();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        metrics.detach();
+    }
+
+    @Test
+    public void fromEnvironmentDisablesHedgingByDefault() {
+        RequestHedger hedger = RequestHedger.fromEnvironment(mock(Environment.class), DEPENDENCY, histograms);
+        CompletableFuture<String> request = new CompletableFuture<>();
+
+        assertThat(hedger.isEnabled(), is(false));
+        assertThat(hedger.hedgeDelay(), is(equalTo(RequestHedger.DEFAULT_DELAY)));
+        assertThat(hedger.send(() -> request), is(sameInstance(request)));
+        assertThat(metrics.getCounts().isEmpty(), is(true));
+    }
+
+    @Test
+    public void disabledHedgerSendsRequestOnceWithoutCountingIt() {
+        RequestHedger hedger = RequestHedger.disabled(DEPENDENCY);
+        CompletableFuture<String> request = new CompletableFuture<>();
+
+        assertThat(hedger.isEnabled(), is(false));
+        assertThat(hedger.send(() -> request), is(sameInstance(request)));
+        assertThat(metrics.getCounts().isEmpty(), is(true));
+    }
+
+    @Test
+    public void fromEnvironmentReadsHedgingSettings() {
+        Environment environment = mock(Environment.class);
+        when(environment.readEnvOpt(HEDGE_REQUESTS)).thenReturn(Optional.of("true"));
+        when(environment.readEnvOpt(HEDGE_DELAY_MILLIS)).thenReturn(Optional.of("150"));
+        when(environment.readEnvOpt(HEDGE_DELAY_PERCENTILE)).thenReturn(Optional.of("90"));
+        when(environment.readEnvOpt(HEDGE_BUDGET_PERCENT)).thenReturn(Optional.of("10"));
+
+        RequestHedger hedger = RequestHedger.fromEnvironment(environment, DEPENDENCY, histograms);
+
+        assertThat(hedger.isEnabled(), is(true));
+        assertThat(hedger.hedgeDelay(), is(equalTo(Duration.ofMillis(150))));
+    }
+
+    @Test
+    public void hedgeDelayIsObservedPercentileOnceEnoughCallsHaveBeenObserved() {
+        RequestHedger hedger = hedger(EVERY_REQUEST);
+        for (int call = 0; call < RequestHedger.MINIMUM_OBSERVED_CALLS; call++) {
+            assertThat(hedger.hedgeDelay(), is(equalTo(DELAY)));
+            histograms.record(UNHEDGED_DEPENDENCY, RequestHedger.SUCCESSFUL, Duration.ofMillis(40).toNanos());
+        }
+
+        assertThat(hedger.hedgeDelay(), is(equalTo(Duration.ofMillis(40))));
+    }
+
+    @Test
+    public void hedgeDelayIgnoresLatenciesOfCallsThatIncludeHedgedRaces() {
+        RequestHedger hedger = hedger(EVERY_REQUEST);
+        for (int call = 0; call < RequestHedger.MINIMUM_OBSERVED_CALLS; call++) {
+            histograms.record(DEPENDENCY, RequestHedger.SUCCESSFUL, Duration.ofMillis(1).toNanos());
+        }
+
+        assertThat(hedger.hedgeDelay(), is(equalTo(DELAY)));
+    }
+
+    @Test
+    public void sendRecordsLatencyOfRequestThatCompletesWithoutHedge() {
+        hedger(EVERY_REQUEST).send(new Requests(CompletableFuture.completedFuture(PRIMARY))).join();
+
+        assertThat(histograms.histogram(UNHEDGED_DEPENDENCY, RequestHedger.SUCCESSFUL).orElseThrow().getCount(),
+                   is(1L));
+    }
+
+    @Test
+    public void sendDoesNotRecordLatencyOfRequestThatWasHedged() {
+        Requests requests = new Requests(completedAfter(DELAY.multipliedBy(5), PRIMARY), new CompletableFuture<>());
+
+        String response = hedger(EVERY_REQUEST).send(requests).join();
+
+        assertThat(response, is(equalTo(PRIMARY)));
+
+        assertThat(histograms.histogram(UNHEDGED_DEPENDENCY, RequestHedger.SUCCESSFUL).isPresent(), is(false));
+    }
+
+    @Test
+    public void sendUsesHedgeWhenItAnswersBeforeSlowRequest() {
+        CompletableFuture<String> slowRequest = new CompletableFuture<>();
+        Requests requests = new Requests(slowRequest, CompletableFuture.completedFuture(HEDGE));
+
+        String response = hedger(EVERY_REQUEST).send(requests).join();
+
+        assertThat(response, is(equalTo(HEDGE)));
+        assertThat(slowRequest.isCancelled(), is(true));
+        assertThat(metrics.getCounts().get(HEDGEABLE_REQUESTS), is(1L));
+        assertThat(metrics.getCounts().get(HEDGED_REQUESTS), is(1L));
+        assertThat(metrics.getCounts().get(HEDGE_WINS), is(1L));
+    }
+
+    @Test
+    public void sendDoesNotHedgeRequestThatAnswersWithinDelay() {
+        Requests requests = new Requests(CompletableFuture.completedFuture(PRIMARY));
+
+        String response = hedger(EVERY_REQUEST).send(requests).join();
+
+        assertThat(response, is(equalTo(PRIMARY)));
+        assertThat(requests.sent(), is(1));
+        assertThat(metrics.getCounts().get(HEDGED_REQUESTS), is(0L));
+        assertThat(metrics.getCounts().get(HEDGE_WINS), is(0L));
+    }
+
+    @Test
+    public void sendDoesNotHedgeWhenBudgetHasNotEarnedAWholeHedge() {
+        Requests requests = new Requests(completedAfter(DELAY.multipliedBy(5), PRIMARY));
+
+        String response = hedger(EVERY_REQUEST / 2).send(requests).join();
+
+        assertThat(response, is(equalTo(PRIMARY)));
+        assertThat(requests.sent(), is(1));
+        assertThat(metrics.getCounts().get(HEDGED_REQUESTS), is(0L));
+    }
+
+    @Test
+    public void sendUsesSlowRequestWhenItAnswersBeforeHedge() {
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        Requests requests = new Requests(completedAfter(DELAY.multipliedBy(5), PRIMARY), hedge);
+
+        String response = hedger(EVERY_REQUEST).send(requests).join();
+
+        assertThat(response, is(equalTo(PRIMARY)));
+        assertThat(hedge.isCancelled(), is(true));
+        assertThat(metrics.getCounts().get(HEDGED_REQUESTS), is(1L));
+        assertThat(metrics.getCounts().get(HEDGE_WINS), is(0L));
+    }
+
+    @Test
+    public void sendUsesSlowRequestWhenHedgeCannotBeSent() {
+        Requests requests = new Requests(completedAfter(DELAY.multipliedBy(5), PRIMARY));
+
+        String response = hedger(EVERY_REQUEST).send(requests).join();
+
+        assertThat(response, is(equalTo(PRIMARY)));
+        assertThat(metrics.getCounts().get(HEDGED_REQUESTS), is(1L));
+    }
+
+    @Test
+    public void sendWaitsForHedgeWhenSlowRequestFails() {
+        CompletableFuture<String> slowRequest = failedAfter(DELAY.multipliedBy(5));
+        Requests requests = new Requests(slowRequest, completedAfter(DELAY.multipliedBy(10), HEDGE));
+
+        String response = hedger(EVERY_REQUEST).send(requests).join();
+
+        assertThat(response, is(equalTo(HEDGE)));
+    }
+
+    @Test
+    public void sendFailsWhenBothRequestsFail() {
+        Requests requests = new Requests(failedAfter(DELAY.multipliedBy(5)), failedAfter(DELAY));
+
+        CompletableFuture<String> response = hedger(EVERY_REQUEST).send(requests);
+
+        CompletionException exception = assertThrows(CompletionException.class, response::join);
+        assertThat(exception.getCause(), is(instanceOf(IOException.class)));
+    }
+
+    @Test
+    public void sendFailsWithoutHedgingWhenRequestFailsWithinDelay() {
+        Requests requests = new Requests(CompletableFuture.failedFuture(new IOException()));
+
+        CompletableFuture<String> response = hedger(EVERY_REQUEST).send(requests);
+
+        assertThrows(CompletionException.class, response::join);
+        assertThat(requests.sent(), is(1));
+    }
+
+    private RequestHedger hedger(int budgetPercent) {
+        return new RequestHedger(DEPENDENCY, histograms, true, DELAY, RequestHedger.DEFAULT_PERCENTILE,
+                                 budgetPercent);
+    }
+
+    private static CompletableFuture<String> completedAfter(Duration delay, String response) {
+        return CompletableFuture.supplyAsync(() -> response,
+                                             CompletableFuture.delayedExecutor(delay.toMillis(), MILLISECONDS));
+    }
+
+    private static CompletableFuture<String> failedAfter(Duration delay) {
+        CompletableFuture<String> request = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(delay.toMillis(), MILLISECONDS)
+            .execute(() -> request.completeExceptionally(new IOException()));
+        return request;
+    }
+
+    /**
+     * Hands out the given requests in order and counts how many have been sent.
+     */
+    private static class Requests implements Supplier<CompletableFuture<String>> {
+
+        private final Iterator<CompletableFuture<String>> remaining;
+        private final List<CompletableFuture<String>> sent = new ArrayList<>();
+
+        @SafeVarargs
+        public Requests(CompletableFuture<String>... requests) {
+            this.remaining = List.of(requests).iterator();
+        }
+
+        @Override
+        public synchronized CompletableFuture<String> get() {
+            CompletableFuture<String> request = remaining.next();
+            sent.add(request);
+            return request;
+        }
+
+        public synchronized int sent() {
+            return sent.size();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package no.unit.nva.cognito.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.net.URI;
+import org.junit.jupiter.api.Test;
+
+public class ServiceUriTest {
+
+    public static final String HTTPS = "https";
+    public static final String HOST = "api.example.org";
+    public static final String PATH = "/users-roles-internal/service/users";
+
+    @Test
+    public void resolveAppendsEncodedSegmentsToBase() {
+        ServiceUri users = new ServiceUri(HTTPS, HOST, PATH);
+
+        URI uri = users.resolve("user@unit.no", "upsert");
+
+        assertThat(uri, is(equalTo(URI.create("https://api.example.org" + PATH + "/user@unit.no/upsert"))));
+        assertThat(users.base(), is(equalTo(URI.create("https://api.example.org" + PATH))));
+    }
+
+    @Test
+    public void resolveDoesNotAddDelimiterWhenBaseEndsWithOne() {
+        ServiceUri customers = new ServiceUri(HTTPS, HOST, "/customer/orgNumber/");
+
+        assertThat(customers.resolve("123").getPath(), is(equalTo("/customer/orgNumber/123")));
+    }
+
+    @Test
+    public void encodeSegmentEncodesDelimitersAndNonAsciiCharacters() {
+        String nonAsciiSegment = Character.toString(0xF8) + Character.toString(0x1F600);
+
+        assertThat(ServiceUri.encodeSegment("../a b?c#d%e"), is(equalTo("..%2Fa%20b%3Fc%23d%25e")));
+        assertThat(ServiceUri.encodeSegment(nonAsciiSegment), is(equalTo("%C3%B8%F0%9F%98%80")));
+        assertThat(ServiceUri.encodeSegment("user@unit.no"), is(equalTo("user@unit.no")));
+    }
+
+    @Test
+    public void resolveFailsWhenLocationIsInvalid() {
+        ServiceUri users = new ServiceUri(HTTPS, "example .org", PATH);
+
+        assertThrows(RuntimeException.class, () -> users.resolve("user"));
+    }
+}
@@ -0,0 +1,82 @@
+package no.unit.nva.cognito.util;
+
+import static no.unit.nva.cognito.util.SigV4Signer.AUTHORIZATION;
+import static no.unit.nva.cognito.util.SigV4Signer.HOST;
+import static no.unit.nva.cognito.util.SigV4Signer.X_AMZ_DATE;
+import static no.unit.nva.cognito.util.SigV4Signer.X_AMZ_SECURITY_TOKEN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import no.unit.nva.cognito.model.AwsCredentials;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test vectors from the AWS Signature Version 4 test suite.
+ */
+public class SigV4SignerTest {
+
+    public static final String REGION = "us-east-1";
+    public static final String SERVICE = "service";
+    public static final String ACCESS_KEY_ID = "AKIDEXAMPLE";
+    public static final String SECRET_ACCESS_KEY = "wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY";
+    public static final String SESSION_TOKEN = "sessionToken";
+    public static final Instant SIGNING_TIME = Instant.parse("2015-08-30T12:36:00Z");
+    public static final byte[] EMPTY_PAYLOAD = new byte[0];
+    public static final String GET = "GET";
+    public static final String EXAMPLE_HOST = "example.amazonaws.com";
+    public static final String CREDENTIAL_AND_SIGNED_HEADERS = "AWS4-HMAC-SHA256 "
+                                                               + "Credential=AKIDEXAMPLE/20150830/us-east-1/service/"
+                                                               + "aws4_request, SignedHeaders=host;x-amz-date, ";
+
+    private final SigV4Signer signer = new SigV4Signer(REGION, SERVICE);
+    private final AwsCredentials credentials = new AwsCredentials(ACCESS_KEY_ID, SECRET_ACCESS_KEY, null);
+
+    @Test
+    public void signReturnsExpectedAuthorizationForGetVanilla() {
+        Map<String, String> headers = signer.sign(GET, URI.create("https://example.amazonaws.com/"),
+                                                  Collections.emptyMap(), EMPTY_PAYLOAD, credentials, SIGNING_TIME);
+
+        String expectedAuthorization = CREDENTIAL_AND_SIGNED_HEADERS
+                                       + "Signature=5fa00fa31553b73ebf1942676e86291e8372ff2a2260956d9b8aae1d763fbf31";
+        assertThat(headers.get(AUTHORIZATION), is(equalTo(expectedAuthorization)));
+        assertThat(headers.get(HOST), is(equalTo(EXAMPLE_HOST)));
+        assertThat(headers.get(X_AMZ_DATE), is(equalTo("20150830T123600Z")));
+        assertThat(headers.containsKey(X_AMZ_SECURITY_TOKEN), is(false));
+    }
+
+    @Test
+    public void signSortsQueryParametersForGetVanillaQueryOrderKeyCase() {
+        Map<String, String> headers = signer.sign(GET,
+                                                  URI.create("https://example.amazonaws.com/?Param2=value2&Param1=value1"),
+                                                  Collections.emptyMap(), EMPTY_PAYLOAD, credentials, SIGNING_TIME);
+
+        String expectedAuthorization = CREDENTIAL_AND_SIGNED_HEADERS
+                                       + "Signature=b97d918cfa904a5beff61c982a1b6f458b799221646efd99d3219ec94cdf2500";
+        assertThat(headers.get(AUTHORIZATION), is(equalTo(expectedAuthorization)));
+    }
+
+    @Test
+    public void signAddsSessionTokenToSignedHeadersWhenCredentialsHaveSessionToken() {
+        AwsCredentials temporaryCredentials = new AwsCredentials(ACCESS_KEY_ID, SECRET_ACCESS_KEY, SESSION_TOKEN);
+        Map<String, String> headers = signer.sign(GET, URI.create("https://example.amazonaws.com/"),
+                                                  Collections.emptyMap(), EMPTY_PAYLOAD, temporaryCredentials,
+                                                  SIGNING_TIME);
+
+        assertThat(headers.get(X_AMZ_SECURITY_TOKEN), is(equalTo(SESSION_TOKEN)));
+        assertThat(headers.get(AUTHORIZATION), containsString("SignedHeaders=host;x-amz-date;x-amz-security-token"));
+        assertThat(headers.get(AUTHORIZATION), not(containsString(SESSION_TOKEN)));
+    }
+
+    @Test
+    public void hostHeaderIncludesPortOnlyWhenPortIsNotDefaultPortOfScheme() {
+        assertThat(SigV4Signer.hostHeader(URI.create("https://example.org:443/")), is(equalTo("example.org")));
+        assertThat(SigV4Signer.hostHeader(URI.create("http://example.org:80/")), is(equalTo("example.org")));
+        assertThat(SigV4Signer.hostHeader(URI.create("http://localhost:8080/")), is(equalTo("localhost:8080")));
+    }
+}
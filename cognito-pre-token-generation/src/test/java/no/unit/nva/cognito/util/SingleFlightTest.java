@@ -0,0 +1,126 @@
+package no.unit.nva.cognito.util;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.COALESCED_REQUESTS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import no.unit.nva.cognito.metrics.InvocationMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+    public static final String KEY = "1234567890";
+    public static final String OTHER_KEY = "0987654321";
+    public static final String RESULT = "result";
+
+    private SingleFlight<String, String> singleFlight;
+    private InvocationMetrics metrics;
+    private AtomicInteger lookups;
+    private CompletableFuture<String> response;
+
+    /**
+     * Set up test environment.
+     */
+    @BeforeEach
+    public void init() {
+        singleFlight = new SingleFlight<>();
+        metrics = new InvocationMetrics();
+        metrics.attach();
+        lookups = new AtomicInteger();
+        response = new CompletableFuture<>();
+    }
+
+    @AfterEach
+    public void detachMetrics() {
+        metrics.detach();
+    }
+
+    @Test
+    public void runSharesTheLookupInFlightBetweenCallersOfTheSameKey() {
+        CompletableFuture<String> first = singleFlight.run(KEY, countingLookup());
+        CompletableFuture<String> second = singleFlight.run(KEY, countingLookup());
+        response.complete(RESULT);
+
+        assertThat(first.join(), is(equalTo(RESULT)));
+        assertThat(second.join(), is(equalTo(RESULT)));
+        assertThat(lookups.get(), is(1));
+        assertThat(singleFlight.getCoalesced(), is(1L));
+        assertThat(metrics.getCounts().get(COALESCED_REQUESTS), is(1L));
+    }
+
+    @Test
+    public void runSendsSeparateLookupsForDifferentKeys() {
+        singleFlight.run(KEY, countingLookup());
+        singleFlight.run(OTHER_KEY, countingLookup());
+
+        assertThat(lookups.get(), is(2));
+        assertThat(singleFlight.getInFlight(), is(2));
+        assertThat(metrics.getCounts().get(COALESCED_REQUESTS), is(0L));
+    }
+
+    @Test
+    public void runSendsNewLookupAfterTheLookupInFlightHasCompleted() {
+        singleFlight.run(KEY, countingLookup());
+        response.complete(RESULT);
+        singleFlight.run(KEY, countingLookup());
+
+        assertThat(lookups.get(), is(2));
+        assertThat(singleFlight.getCoalesced(), is(0L));
+    }
+
+    @Test
+    public void runSharesFailureAndForgetsTheFailedLookup() {
+        CompletableFuture<String> first = singleFlight.run(KEY, countingLookup());
+        CompletableFuture<String> second = singleFlight.run(KEY, countingLookup());
+        response.completeExceptionally(new IllegalStateException());
+
+        assertThrows(IllegalStateException.class, () -> Futures.join(first));
+        assertThrows(IllegalStateException.class, () -> Futures.join(second));
+        assertThat(singleFlight.getInFlight(), is(0));
+    }
+
+    @Test
+    public void runReturnsFailedFutureWhenLookupCannotBeSent() {
+        CompletableFuture<String> result = singleFlight.run(KEY, () -> {
+            throw new IllegalArgumentException();
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> Futures.join(result));
+        assertThat(singleFlight.getInFlight(), is(0));
+    }
+
+    @Test
+    public void cancellingOneCallerDoesNotCancelTheLookupOfTheOthers() {
+        CompletableFuture<String> first = singleFlight.run(KEY, countingLookup());
+        CompletableFuture<String> second = singleFlight.run(KEY, countingLookup());
+        first.cancel(true);
+        response.complete(RESULT);
+
+        assertThat(second.join(), is(equalTo(RESULT)));
+    }
+
+    @Test
+    public void forgetLetsTheNextCallerSendANewLookup() {
+        CompletableFuture<String> first = singleFlight.run(KEY, countingLookup());
+        singleFlight.forget(KEY);
+        CompletableFuture<String> second = singleFlight.run(KEY, () -> CompletableFuture.completedFuture(RESULT));
+        response.complete(OTHER_KEY);
+
+        assertThat(first.join(), is(equalTo(OTHER_KEY)));
+        assertThat(second.join(), is(equalTo(RESULT)));
+        assertThat(singleFlight.getInFlight(), is(0));
+    }
+
+    private Supplier<CompletableFuture<String>> countingLookup() {
+        return () -> {
+            lookups.incrementAndGet();
+            return response;
+        };
+    }
+}
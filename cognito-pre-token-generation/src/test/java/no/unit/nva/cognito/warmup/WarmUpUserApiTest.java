@@ -0,0 +1,32 @@
+package no.unit.nva.cognito.warmup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.util.Optional;
+import no.unit.nva.useraccessmanagement.exceptions.InvalidEntryInternalException;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+import org.junit.jupiter.api.Test;
+
+public class WarmUpUserApiTest {
+
+    public static final String OTHER_GIVEN_NAME = "Other";
+
+    @Test
+    public void getUserReturnsEmptyOptionalBeforeUserIsCreated() {
+        WarmUpUserApi userApi = new WarmUpUserApi();
+
+        assertThat(userApi.getUser(WarmUpSamples.WARM_UP_USERNAME), is(equalTo(Optional.empty())));
+    }
+
+    @Test
+    public void getUserReturnsLastCreatedOrUpdatedUser() throws InvalidEntryInternalException {
+        WarmUpUserApi userApi = new WarmUpUserApi();
+        UserDto user = userApi.createUser(WarmUpSamples.sampleUser());
+        UserDto updatedUser = user.copy().withGivenName(OTHER_GIVEN_NAME).build();
+
+        userApi.updateUser(updatedUser);
+
+        assertThat(userApi.getUser(WarmUpSamples.WARM_UP_USERNAME), is(equalTo(Optional.of(updatedUser))));
+    }
+}
@@ -0,0 +1,32 @@
+package no.unit.nva.cognito.loadtest;
+
+import static no.unit.nva.cognito.service.HttpUserPoolClient.ADMIN_UPDATE_USER_ATTRIBUTES_TARGET;
+import static no.unit.nva.cognito.service.HttpUserPoolClient.X_AMZ_TARGET;
+import com.sun.net.httpserver.Headers;
+import java.net.HttpURLConnection;
+import no.unit.nva.cognito.loadtest.StandInServer.Reply;
+import no.unit.nva.cognito.loadtest.StandInServer.Route;
+
+/**
+ * The Cognito user pool API, which accepts every AdminUpdateUserAttributes call and rejects every other action.
+ */
+public class CognitoStandIn implements Route {
+
+    public static final String ADMIN_UPDATE_USER_ATTRIBUTES = "AdminUpdateUserAttributes";
+    public static final String UNKNOWN = "unknown";
+    public static final String EMPTY_OBJECT = "{}";
+
+    @Override
+    public String operationOf(String method, String path, Headers headers) {
+        return ADMIN_UPDATE_USER_ATTRIBUTES_TARGET.equals(headers.getFirst(X_AMZ_TARGET))
+                   ? ADMIN_UPDATE_USER_ATTRIBUTES
+                   : UNKNOWN;
+    }
+
+    @Override
+    public Reply answer(String method, String path, Headers headers, byte[] body) {
+        return ADMIN_UPDATE_USER_ATTRIBUTES.equals(operationOf(method, path, headers))
+                   ? new Reply(HttpURLConnection.HTTP_OK, EMPTY_OBJECT)
+                   : Reply.withoutBody(HttpURLConnection.HTTP_BAD_REQUEST);
+    }
+}
@@ -0,0 +1,43 @@
+package no.unit.nva.cognito.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import no.unit.nva.cognito.loadtest.StandInServer.Reply;
+import no.unit.nva.cognito.loadtest.StandInServer.Route;
+import no.unit.nva.cognito.model.CustomerResponse;
+import no.unit.nva.cognito.service.CustomerApiClient;
+
+/**
+ * The customer service, in which every organization number belongs to a customer.
+ */
+public class CustomerServiceStandIn implements Route {
+
+    public static final String GET_CUSTOMER = "GET customer";
+    public static final String UNKNOWN = "unknown";
+    public static final String CUSTOMER_ID_PREFIX = "https://api.test.nva.aws.unit.no/customer/";
+    public static final String CRISTIN_ID_PREFIX = "https://api.cristin.no/v2/institutions/";
+
+    private final ObjectMapper objectMapper;
+
+    public CustomerServiceStandIn(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String operationOf(String method, String path, Headers headers) {
+        return path.startsWith(CustomerApiClient.PATH) ? GET_CUSTOMER : UNKNOWN;
+    }
+
+    @Override
+    public Reply answer(String method, String path, Headers headers, byte[] body) throws IOException {
+        if (!path.startsWith(CustomerApiClient.PATH)) {
+            return Reply.withoutBody(HttpURLConnection.HTTP_NOT_FOUND);
+        }
+        String orgNumber = path.substring(CustomerApiClient.PATH.length());
+        CustomerResponse customer = new CustomerResponse(CUSTOMER_ID_PREFIX + orgNumber,
+                                                         CRISTIN_ID_PREFIX + orgNumber);
+        return new Reply(HttpURLConnection.HTTP_OK, objectMapper.writeValueAsString(customer));
+    }
+}
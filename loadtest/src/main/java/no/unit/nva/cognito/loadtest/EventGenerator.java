@@ -0,0 +1,84 @@
+package no.unit.nva.cognito.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Generates Cognito trigger events from the sample events of the handler tests. The n-th event is a login of one of a
+ * fixed number of users, each belonging to one of a fixed number of organizations, so that a run has as many distinct
+ * Feide IDs and organization numbers as configured and the users log in again as the run goes on. The templates are
+ * used in turn, so that both post authentication and token generation events are sent.
+ */
+public class EventGenerator {
+
+    public static final List<String> TEMPLATES = List.of("/sample_event.json", "/event.json");
+    public static final String REQUEST = "request";
+    public static final String USER_ATTRIBUTES = "userAttributes";
+    public static final String USER_NAME = "userName";
+    public static final String FEIDE_ID = "custom:feideId";
+    public static final String ORG_NUMBER = "custom:orgNumber";
+    public static final String AFFILIATION = "custom:affiliation";
+    public static final String USER_NAME_TEMPLATE = "FeideIdentityProvider_loadtest%08d";
+    public static final String FEIDE_ID_TEMPLATE = "user%d@org%d.no";
+    public static final String ORG_NUMBER_TEMPLATE = "NO%09d";
+    public static final int FIRST_ORG_NUMBER = 900_000_000;
+    public static final String STAFF_AFFILIATION = "[member, employee, staff]";
+    public static final String STUDENT_AFFILIATION = "[member, student]";
+    public static final int STUDENTS_IN_EVERY = 3;
+    public static final String MISSING_TEMPLATE_MESSAGE = "Missing event template ";
+
+    private final ObjectMapper objectMapper;
+    private final List<ObjectNode> templates;
+    private final int users;
+    private final int organizations;
+
+    /**
+     * Loads the templates.
+     *
+     * @param objectMapper  the object mapper
+     * @param users         the number of distinct users
+     * @param organizations the number of distinct organizations
+     */
+    public EventGenerator(ObjectMapper objectMapper, int users, int organizations) {
+        this.objectMapper = objectMapper;
+        this.users = users;
+        this.organizations = organizations;
+        this.templates = TEMPLATES.stream().map(this::readTemplate).collect(Collectors.toList());
+    }
+
+    /**
+     * Generates the n-th event.
+     *
+     * @param index the number of the event
+     * @return the event, as the Lambda runtime passes it to the handler
+     */
+    public Map<String, Object> event(long index) {
+        int user = (int) (index % users);
+        int organization = user % organizations;
+        ObjectNode event = templates.get((int) (index % templates.size())).deepCopy();
+        event.put(USER_NAME, String.format(USER_NAME_TEMPLATE, user));
+        ObjectNode attributes = (ObjectNode) event.path(REQUEST).path(USER_ATTRIBUTES);
+        attributes.put(FEIDE_ID, String.format(FEIDE_ID_TEMPLATE, user, organization));
+        attributes.put(ORG_NUMBER, String.format(ORG_NUMBER_TEMPLATE, FIRST_ORG_NUMBER + organization));
+        attributes.put(AFFILIATION, user % STUDENTS_IN_EVERY == 0 ? STUDENT_AFFILIATION : STAFF_AFFILIATION);
+        return objectMapper.convertValue(event, new TypeReference<Map<String, Object>>() {});
+    }
+
+    private ObjectNode readTemplate(String resource) {
+        try (InputStream template = EventGenerator.class.getResourceAsStream(resource)) {
+            if (template == null) {
+                throw new IllegalStateException(MISSING_TEMPLATE_MESSAGE + resource);
+            }
+            return (ObjectNode) objectMapper.readTree(template);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
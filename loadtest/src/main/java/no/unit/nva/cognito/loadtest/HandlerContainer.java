@@ -0,0 +1,125 @@
+package no.unit.nva.cognito.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.http.HttpClient;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import no.unit.nva.cognito.PostAuthenticationHandler;
+import no.unit.nva.cognito.metrics.MetricsPublisher;
+import no.unit.nva.cognito.service.ClaimsDeliverySettings;
+import no.unit.nva.cognito.service.CustomerApi;
+import no.unit.nva.cognito.service.CustomerApiClient;
+import no.unit.nva.cognito.service.CustomerDirectory;
+import no.unit.nva.cognito.service.HttpTransport;
+import no.unit.nva.cognito.service.HttpUserPoolClient;
+import no.unit.nva.cognito.service.RoleRules;
+import no.unit.nva.cognito.service.UserApiClient;
+import no.unit.nva.cognito.service.UserService;
+import no.unit.nva.cognito.service.UserServiceApiKeyProvider;
+import no.unit.nva.cognito.service.UserServiceFallback;
+import no.unit.nva.cognito.util.BlockingCalls;
+import nva.commons.core.Environment;
+
+/**
+ * One Lambda container under load: a handler with clients, caches and an HTTP client of its own, invoked for one login
+ * at a time like Lambda invokes a container. The containers take the next login from a shared counter until the run
+ * has sent all of its logins, and every container records the latency of its own logins and the metrics its handler
+ * published.
+ */
+public class HandlerContainer implements Callable<HandlerContainer> {
+
+    public static final String API_KEY = "load-test-api-key";
+
+    private final PostAuthenticationHandler handler;
+    private final EventGenerator events;
+    private final LoadTestContext context;
+    private final List<String> publishedMetrics = new ArrayList<>();
+    private long[] latencies = new long[0];
+    private int recorded;
+    private int exceptions;
+    private AtomicLong nextLogin;
+    private long endOfRun;
+
+    /**
+     * Starts a container.
+     *
+     * @param environment  the environment of the handler
+     * @param objectMapper the object mapper of the clients
+     * @param events       the events of the run
+     * @param name         the name of the container, which the handler sees as the request id
+     */
+    public HandlerContainer(Environment environment, ObjectMapper objectMapper, EventGenerator events, String name) {
+        this.events = events;
+        this.context = new LoadTestContext(name);
+        HttpClient httpClient = HttpTransport.newHttpClient(ForkJoinPool.commonPool());
+        UserServiceApiKeyProvider apiKeyProvider = new UserServiceApiKeyProvider(
+            () -> API_KEY, UserServiceApiKeyProvider.DEFAULT_TTL, Clock.systemUTC(), BlockingCalls.executor());
+        UserService userService = new UserService(
+            new UserApiClient(httpClient, objectMapper, apiKeyProvider, environment),
+            HttpUserPoolClient.fromEnvironment(httpClient, environment),
+            RoleRules.fromEnvironment(environment));
+        CustomerApi customerApi = CustomerDirectory.fromEnvironment(
+            environment, new CustomerApiClient(httpClient, objectMapper, environment));
+        this.handler = new PostAuthenticationHandler(
+            userService,
+            customerApi,
+            ClaimsDeliverySettings.fromEnvironment(environment),
+            new MetricsPublisher(MetricsPublisher.DEFAULT_NAMESPACE, publishedMetrics::add, Clock.systemUTC()),
+            UserServiceFallback.fromEnvironment(environment));
+    }
+
+    /**
+     * Prepares the container for a run, forgetting what it recorded in the previous one.
+     *
+     * @param nextLogin the counter of the logins of the run, shared by the containers
+     * @param endOfRun  the number after the last login of the run
+     * @param logins    the number of logins in the run
+     */
+    public void prepare(AtomicLong nextLogin, long endOfRun, int logins) {
+        this.nextLogin = nextLogin;
+        this.endOfRun = endOfRun;
+        this.latencies = new long[logins];
+        this.recorded = 0;
+        this.exceptions = 0;
+        publishedMetrics.clear();
+    }
+
+    /**
+     * Sends logins to the handler until the run is over. An event is generated before the clock is started, so only
+     * the handler is measured.
+     *
+     * @return this container
+     */
+    @Override
+    public HandlerContainer call() {
+        for (long login = nextLogin.getAndIncrement(); login < endOfRun; login = nextLogin.getAndIncrement()) {
+            Map<String, Object> event = events.event(login);
+            long start = System.nanoTime();
+            try {
+                handler.handleRequest(event, context);
+            } catch (RuntimeException e) {
+                exceptions++;
+            }
+            latencies[recorded++] = System.nanoTime() - start;
+        }
+        return this;
+    }
+
+    public long[] getLatencies() {
+        return Arrays.copyOf(latencies, recorded);
+    }
+
+    public int getExceptions() {
+        return exceptions;
+    }
+
+    public List<String> getPublishedMetrics() {
+        return publishedMetrics;
+    }
+}
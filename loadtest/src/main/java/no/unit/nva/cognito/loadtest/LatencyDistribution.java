@@ -0,0 +1,67 @@
+package no.unit.nva.cognito.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A log-normal latency distribution, given by its median and its 99th percentile, which is how the latency of a
+ * service is usually reported. Service latencies have a long right tail, which a log-normal distribution models well
+ * enough for a load test.
+ */
+public class LatencyDistribution {
+
+    public static final String SEPARATOR = ":";
+    public static final double Z_99 = 2.326;
+    public static final int MEDIAN = 0;
+    public static final int P99 = 1;
+    public static final int PARTS = 2;
+    public static final String INVALID_DISTRIBUTION_MESSAGE = "A latency must look like median:p99 in ms, not: ";
+
+    private final double medianMillis;
+    private final double sigma;
+
+    /**
+     * Creates a distribution.
+     *
+     * @param medianMillis the median latency in milliseconds
+     * @param p99Millis    the 99th percentile in milliseconds, at least the median
+     */
+    public LatencyDistribution(double medianMillis, double p99Millis) {
+        if (medianMillis < 0 || p99Millis < medianMillis) {
+            throw new IllegalArgumentException(INVALID_DISTRIBUTION_MESSAGE + medianMillis + SEPARATOR + p99Millis);
+        }
+        this.medianMillis = medianMillis;
+        this.sigma = medianMillis == 0 ? 0 : Math.log(p99Millis / medianMillis) / Z_99;
+    }
+
+    /**
+     * Parses a distribution written as {@code median:p99} in milliseconds, for instance {@code 20:250}. A single
+     * value is a constant latency.
+     *
+     * @param value the distribution
+     * @return the distribution
+     */
+    public static LatencyDistribution parse(String value) {
+        String[] parts = value.strip().split(SEPARATOR);
+        if (parts.length > PARTS) {
+            throw new IllegalArgumentException(INVALID_DISTRIBUTION_MESSAGE + value);
+        }
+        double median = Double.parseDouble(parts[MEDIAN]);
+        return new LatencyDistribution(median, parts.length == PARTS ? Double.parseDouble(parts[P99]) : median);
+    }
+
+    /**
+     * Draws a latency.
+     *
+     * @return the latency
+     */
+    public Duration sample() {
+        double millis = medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        return Duration.ofNanos(Math.round(millis * 1_000_000));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("median %.0f ms, p99 %.0f ms", medianMillis, medianMillis * Math.exp(sigma * Z_99));
+    }
+}
@@ -0,0 +1,116 @@
+package no.unit.nva.cognito.loadtest;
+
+import static no.unit.nva.cognito.loadtest.LoadTestSettings.COGNITO_ERROR_RATE;
+import static no.unit.nva.cognito.loadtest.LoadTestSettings.COGNITO_LATENCY;
+import static no.unit.nva.cognito.loadtest.LoadTestSettings.CUSTOMER_SERVICE_ERROR_RATE;
+import static no.unit.nva.cognito.loadtest.LoadTestSettings.CUSTOMER_SERVICE_LATENCY;
+import static no.unit.nva.cognito.loadtest.LoadTestSettings.USER_SERVICE_ERROR_RATE;
+import static no.unit.nva.cognito.loadtest.LoadTestSettings.USER_SERVICE_LATENCY;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import no.unit.nva.cognito.model.AwsCredentials;
+import no.unit.nva.cognito.service.CustomerApiClient;
+import no.unit.nva.cognito.service.HttpUserPoolClient;
+import no.unit.nva.cognito.service.UserApiClient;
+
+/**
+ * Drives the handler with a storm of logins against in-process stand-ins for the user service, the customer service and
+ * Cognito, and prints the throughput, the latency percentiles and the calls the logins sent downstream. Every unit of
+ * concurrency is a container of its own, so the caches and connections of the handler are shared the way they are
+ * shared in Lambda. A warm-up run, which is not reported, lets the JIT compile the handler and fills the user service
+ * before the measured run.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class LoadTest {
+
+    public static final String HTTP = "http";
+    public static final String HTTP_ENDPOINT_TEMPLATE = "http://%s/";
+    public static final String REGION = "eu-west-1";
+    public static final String ACCESS_KEY_ID = "AKIDLOADTEST";
+    public static final String SECRET_ACCESS_KEY = "load-test-secret";
+    public static final String CONTAINER_NAME_PREFIX = "container-";
+
+    private LoadTest() {
+    }
+
+    /**
+     * Runs a load test.
+     *
+     * @param arguments the settings, as {@code name=value} arguments
+     * @throws IOException          if a stand-in cannot be started
+     * @throws InterruptedException if the run is interrupted
+     * @throws ExecutionException   if a container fails
+     */
+    public static void main(String... arguments) throws IOException, InterruptedException, ExecutionException {
+        LoadTestSettings settings = new LoadTestSettings(arguments);
+        ObjectMapper objectMapper = new ObjectMapper();
+        try (StandInServer userService = new StandInServer(
+                 "user service", settings.getLatency(USER_SERVICE_LATENCY),
+                 settings.getErrorRate(USER_SERVICE_ERROR_RATE),
+                 new UserServiceStandIn(objectMapper, settings.isUpsertSupported()));
+             StandInServer customerService = new StandInServer(
+                 "customer service", settings.getLatency(CUSTOMER_SERVICE_LATENCY),
+                 settings.getErrorRate(CUSTOMER_SERVICE_ERROR_RATE), new CustomerServiceStandIn(objectMapper));
+             StandInServer cognito = new StandInServer(
+                 "cognito", settings.getLatency(COGNITO_LATENCY), settings.getErrorRate(COGNITO_ERROR_RATE),
+                 new CognitoStandIn())) {
+            LoadTestEnvironment environment = environment(settings, userService, customerService, cognito);
+            EventGenerator events = new EventGenerator(objectMapper, settings.getUsers(), settings.getOrganizations());
+            List<HandlerContainer> containers = IntStream.range(0, settings.getConcurrency())
+                                                    .mapToObj(LoadTest::containerName)
+                                                    .map(name -> new HandlerContainer(environment, objectMapper,
+                                                                                      events, name))
+                                                    .collect(Collectors.toList());
+            List<StandInServer> standIns = List.of(userService, customerService, cognito);
+            ExecutorService executor = Executors.newFixedThreadPool(settings.getConcurrency());
+            try {
+                run(executor, containers, 0, settings.getWarmUpLogins());
+                standIns.forEach(StandInServer::resetCalls);
+                long start = System.nanoTime();
+                run(executor, containers, settings.getWarmUpLogins(), settings.getLogins());
+                Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                new LoadTestReport(settings, elapsed, containers, standIns, objectMapper).print(System.out);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static void run(ExecutorService executor, List<HandlerContainer> containers, long firstLogin, int logins)
+        throws InterruptedException, ExecutionException {
+        AtomicLong nextLogin = new AtomicLong(firstLogin);
+        containers.forEach(container -> container.prepare(nextLogin, firstLogin + logins, logins));
+        for (Future<HandlerContainer> container : executor.invokeAll(containers)) {
+            container.get();
+        }
+    }
+
+    private static String containerName(int container) {
+        return CONTAINER_NAME_PREFIX + container;
+    }
+
+    private static LoadTestEnvironment environment(LoadTestSettings settings, StandInServer userService,
+                                                   StandInServer customerService, StandInServer cognito) {
+        var variables = new HashMap<String, String>();
+        variables.put(UserApiClient.USER_API_SCHEME, HTTP);
+        variables.put(UserApiClient.USER_API_HOST, userService.getHost());
+        variables.put(CustomerApiClient.CUSTOMER_API_SCHEME, HTTP);
+        variables.put(CustomerApiClient.CUSTOMER_API_HOST, customerService.getHost());
+        variables.put(HttpUserPoolClient.COGNITO_ENDPOINT, String.format(HTTP_ENDPOINT_TEMPLATE, cognito.getHost()));
+        variables.put(HttpUserPoolClient.AWS_REGION, REGION);
+        variables.put(AwsCredentials.AWS_ACCESS_KEY_ID, ACCESS_KEY_ID);
+        variables.put(AwsCredentials.AWS_SECRET_ACCESS_KEY, SECRET_ACCESS_KEY);
+        variables.putAll(settings.getHandlerEnvironment());
+        return new LoadTestEnvironment(variables);
+    }
+}
@@ -0,0 +1,96 @@
+package no.unit.nva.cognito.loadtest;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Lambda context of an invocation under load. It reports no remaining time, so the handler gives every login the
+ * time Cognito waits for the trigger, and it discards what is logged through it.
+ */
+public class LoadTestContext implements Context {
+
+    public static final String FUNCTION_NAME = "cognito-pre-token-generation-loadtest";
+    public static final String FUNCTION_VERSION = "$LATEST";
+    public static final int MEMORY_LIMIT_IN_MB = 1024;
+    public static final int NO_REMAINING_TIME = 0;
+
+    private final String awsRequestId;
+
+    public LoadTestContext(String awsRequestId) {
+        this.awsRequestId = awsRequestId;
+    }
+
+    @Override
+    public String getAwsRequestId() {
+        return awsRequestId;
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getFunctionName() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return FUNCTION_VERSION;
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return FUNCTION_NAME;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+        return NO_REMAINING_TIME;
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        return MEMORY_LIMIT_IN_MB;
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return new DiscardingLogger();
+    }
+
+    /**
+     * A Lambda logger that drops every message.
+     */
+    private static class DiscardingLogger implements LambdaLogger {
+
+        @Override
+        public void log(String message) {
+            // the load test reports what it measures itself
+        }
+
+        @Override
+        public void log(byte[] message) {
+            log(new String(message, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package no.unit.nva.cognito.loadtest;
+
+import java.util.Map;
+import java.util.Optional;
+import nva.commons.core.Environment;
+
+/**
+ * The environment of the handler under load, which holds the locations of the stand-ins and the settings passed on
+ * the command line instead of the variables of the process.
+ */
+public class LoadTestEnvironment extends Environment {
+
+    private final Map<String, String> variables;
+
+    public LoadTestEnvironment(Map<String, String> variables) {
+        super();
+        this.variables = Map.copyOf(variables);
+    }
+
+    @Override
+    public Optional<String> readEnvOpt(String variableName) {
+        return Optional.ofNullable(variables.get(variableName)).filter(value -> !value.isBlank());
+    }
+
+    @Override
+    public String readEnv(String variableName) {
+        return readEnvOpt(variableName)
+                   .orElseThrow(() -> new IllegalStateException("Missing environment variable " + variableName));
+    }
+}
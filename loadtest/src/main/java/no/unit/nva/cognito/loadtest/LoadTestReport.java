@@ -0,0 +1,105 @@
+package no.unit.nva.cognito.loadtest;
+
+import static no.unit.nva.cognito.metrics.InvocationMetrics.OUTCOME;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
+
+/**
+ * The result of a run: the throughput, the latency percentiles of the logins as the handler saw them, the outcomes the
+ * handler published in its metrics and the requests every stand-in received, also per login.
+ */
+public class LoadTestReport {
+
+    public static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    public static final double HUNDRED_PERCENT = 100.0;
+    public static final double NANOS_PER_MILLISECOND = 1_000_000.0;
+    public static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    public static final String EXCEPTIONS = "Exception";
+
+    private final String settings;
+    private final Duration elapsed;
+    private final long[] sortedLatencies;
+    private final SortedMap<String, Long> outcomes = new TreeMap<>();
+    private final List<StandInServer> standIns;
+
+    /**
+     * Collects the result of a run.
+     *
+     * @param settings     the settings of the run
+     * @param elapsed      the duration of the run
+     * @param containers   the containers of the run
+     * @param standIns     the stand-ins, whose calls are reported
+     * @param objectMapper the object mapper that reads the published metrics
+     */
+    public LoadTestReport(LoadTestSettings settings, Duration elapsed, List<HandlerContainer> containers,
+                          List<StandInServer> standIns, ObjectMapper objectMapper) {
+        this.settings = settings.toString();
+        this.elapsed = elapsed;
+        this.standIns = standIns;
+        this.sortedLatencies = containers.stream()
+                                   .flatMapToLong(container -> LongStream.of(container.getLatencies()))
+                                   .sorted()
+                                   .toArray();
+        for (HandlerContainer container : containers) {
+            container.getPublishedMetrics().forEach(metrics -> countOutcome(objectMapper, metrics));
+            outcomes.merge(EXCEPTIONS, (long) container.getExceptions(), Long::sum);
+        }
+    }
+
+    /**
+     * Prints the report.
+     *
+     * @param out where the report is printed
+     */
+    public void print(PrintStream out) {
+        int logins = sortedLatencies.length;
+        out.println("Settings: " + settings);
+        out.printf("Logins: %d in %.1f s, %.1f logins/s%n", logins, elapsed.toNanos() / NANOS_PER_SECOND,
+                   logins * NANOS_PER_SECOND / Math.max(1, elapsed.toNanos()));
+        StringBuilder latencies = new StringBuilder("Latency (ms):");
+        for (double percentile : PERCENTILES) {
+            latencies.append(String.format(" p%s %.1f", formatPercentile(percentile), millis(percentile(percentile))));
+        }
+        latencies.append(String.format(" max %.1f", millis(logins == 0 ? 0 : sortedLatencies[logins - 1])));
+        out.println(latencies);
+        out.println("Outcomes: " + outcomes);
+        standIns.forEach(standIn -> printCalls(out, standIn, logins));
+    }
+
+    private static void printCalls(PrintStream out, StandInServer standIn, int logins) {
+        out.printf("%s (%s, error rate %.3f):%n", standIn.getName(), standIn.getLatency(), standIn.getErrorRate());
+        standIn.getCalls().forEach((operation, count) -> out.printf("  %-28s %8d  %6.2f per login%n", operation,
+                                                                    count, (double) count / Math.max(1, logins)));
+    }
+
+    private void countOutcome(ObjectMapper objectMapper, String metrics) {
+        try {
+            outcomes.merge(objectMapper.readTree(metrics).path(OUTCOME).asText(), 1L, Long::sum);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long percentile(double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / HUNDRED_PERCENT * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, rank)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLISECOND;
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
@@ -0,0 +1,138 @@
+package no.unit.nva.cognito.loadtest;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The settings of a load test, given on the command line as {@code name=value} arguments. Lowercase names configure
+ * the harness and the stand-ins, and UPPERCASE names are passed to the handler as environment variables, so that any
+ * setting of the handler can be compared under the same load.
+ */
+public class LoadTestSettings {
+
+    public static final String SEPARATOR = "=";
+    public static final int NAME = 0;
+    public static final int VALUE = 1;
+    public static final String LOGINS = "logins";
+    public static final String WARM_UP_LOGINS = "warmUpLogins";
+    public static final String CONCURRENCY = "concurrency";
+    public static final String USERS = "users";
+    public static final String ORGANIZATIONS = "organizations";
+    public static final String UPSERT = "upsert";
+    public static final String USER_SERVICE_LATENCY = "userServiceLatency";
+    public static final String USER_SERVICE_ERROR_RATE = "userServiceErrorRate";
+    public static final String CUSTOMER_SERVICE_LATENCY = "customerServiceLatency";
+    public static final String CUSTOMER_SERVICE_ERROR_RATE = "customerServiceErrorRate";
+    public static final String COGNITO_LATENCY = "cognitoLatency";
+    public static final String COGNITO_ERROR_RATE = "cognitoErrorRate";
+    public static final Map<String, String> DEFAULTS = Map.ofEntries(
+        Map.entry(LOGINS, "10000"),
+        Map.entry(WARM_UP_LOGINS, "2000"),
+        Map.entry(CONCURRENCY, "32"),
+        Map.entry(USERS, "5000"),
+        Map.entry(ORGANIZATIONS, "50"),
+        Map.entry(UPSERT, "true"),
+        Map.entry(USER_SERVICE_LATENCY, "25:200"),
+        Map.entry(USER_SERVICE_ERROR_RATE, "0"),
+        Map.entry(CUSTOMER_SERVICE_LATENCY, "15:120"),
+        Map.entry(CUSTOMER_SERVICE_ERROR_RATE, "0"),
+        Map.entry(COGNITO_LATENCY, "30:250"),
+        Map.entry(COGNITO_ERROR_RATE, "0"));
+    public static final String INVALID_ARGUMENT_MESSAGE = "Arguments must look like name=value, not: ";
+    public static final String UNKNOWN_SETTING_MESSAGE = "Unknown setting %s, the settings are %s";
+
+    private final Map<String, String> settings;
+    private final Map<String, String> handlerEnvironment;
+
+    /**
+     * Parses the arguments.
+     *
+     * @param arguments the command line arguments
+     */
+    public LoadTestSettings(String... arguments) {
+        SortedMap<String, String> parsed = new TreeMap<>();
+        for (String argument : arguments) {
+            String[] parts = split(argument);
+            parsed.put(parts[NAME], parts[VALUE]);
+        }
+        this.handlerEnvironment = parsed.entrySet().stream()
+                                      .filter(entry -> isEnvironmentVariable(entry.getKey()))
+                                      .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+        SortedMap<String, String> harnessSettings = new TreeMap<>(DEFAULTS);
+        parsed.forEach((name, value) -> putSetting(harnessSettings, name, value));
+        this.settings = Map.copyOf(harnessSettings);
+    }
+
+    public int getLogins() {
+        return Integer.parseInt(settings.get(LOGINS));
+    }
+
+    public int getWarmUpLogins() {
+        return Integer.parseInt(settings.get(WARM_UP_LOGINS));
+    }
+
+    public int getConcurrency() {
+        return Integer.parseInt(settings.get(CONCURRENCY));
+    }
+
+    public int getUsers() {
+        return Integer.parseInt(settings.get(USERS));
+    }
+
+    public int getOrganizations() {
+        return Integer.parseInt(settings.get(ORGANIZATIONS));
+    }
+
+    public boolean isUpsertSupported() {
+        return Boolean.parseBoolean(settings.get(UPSERT));
+    }
+
+    public LatencyDistribution getLatency(String setting) {
+        return LatencyDistribution.parse(settings.get(setting));
+    }
+
+    public double getErrorRate(String setting) {
+        return Double.parseDouble(settings.get(setting));
+    }
+
+    /**
+     * The environment variables given on the command line, which override the ones the harness sets.
+     *
+     * @return the environment variables
+     */
+    public Map<String, String> getHandlerEnvironment() {
+        return handlerEnvironment;
+    }
+
+    @Override
+    public String toString() {
+        return new TreeMap<>(settings) + " " + new TreeMap<>(handlerEnvironment);
+    }
+
+    private static String[] split(String argument) {
+        String[] parts = argument.split(SEPARATOR, 2);
+        if (parts.length != 2 || parts[NAME].isBlank()) {
+            throw new IllegalArgumentException(INVALID_ARGUMENT_MESSAGE + argument);
+        }
+        return parts;
+    }
+
+    private static boolean isEnvironmentVariable(String name) {
+        return name.equals(name.toUpperCase(Locale.ROOT));
+    }
+
+    private static void putSetting(Map<String, String> settings, String name, String value) {
+        if (isEnvironmentVariable(name)) {
+            return;
+        }
+        if (!DEFAULTS.containsKey(name)) {
+            Set<String> names = new TreeMap<>(DEFAULTS).keySet();
+            throw new IllegalArgumentException(String.format(UNKNOWN_SETTING_MESSAGE, name, names));
+        }
+        settings.put(name, value);
+    }
+}
@@ -0,0 +1,219 @@
+package no.unit.nva.cognito.loadtest;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process HTTP stand-in for a downstream service. Every request is delayed by a latency drawn from the
+ * distribution of the service and fails with {@code 503 Service Unavailable} at the error rate of the service, without
+ * reaching the {@link Route} that answers it. The requests are counted per operation, and the injected errors
+ * separately, so that the report can show how many calls a login storm sends downstream.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public class StandInServer implements AutoCloseable {
+
+    public static final String LOCALHOST = "localhost";
+    public static final String INJECTED_ERRORS = "injected errors";
+    public static final String CONTENT_TYPE = "Content-Type";
+    public static final String APPLICATION_JSON = "application/json";
+    public static final int NO_BODY = -1;
+
+    private final String name;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final Route route;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a stand-in on a free local port. Every request is served on a thread of its own, so that the injected
+     * latency delays only the request it was drawn for.
+     *
+     * @param name      the name of the service in the report
+     * @param latency   the latency of the service
+     * @param errorRate the fraction of requests that fail
+     * @param route     answers the requests that do not fail
+     * @throws IOException if the server cannot be started
+     */
+    public StandInServer(String name, LatencyDistribution latency, double errorRate, Route route) throws IOException {
+        this.name = name;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.route = route;
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(LOCALHOST, 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public String getHost() {
+        return LOCALHOST + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests per operation, and the number of injected errors.
+     *
+     * @return the counts, sorted by operation
+     */
+    public Map<String, Long> getCalls() {
+        SortedMap<String, Long> counts = new TreeMap<>();
+        calls.forEach((operation, count) -> counts.put(operation, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Forgets the requests counted so far, for instance those of the warm-up.
+     */
+    public void resetCalls() {
+        calls.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            Headers headers = exchange.getRequestHeaders();
+            count(route.operationOf(method, path, headers));
+            pause(latency.sample());
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                count(INJECTED_ERRORS);
+                respond(exchange, Reply.withoutBody(HttpURLConnection.HTTP_UNAVAILABLE));
+            } else {
+                respond(exchange, route.answer(method, path, headers, requestBody));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void count(String operation) {
+        calls.computeIfAbsent(operation, ignored -> new LongAdder()).increment();
+    }
+
+    private static void pause(Duration delay) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, Reply reply) throws IOException {
+        byte[] body = reply.getBody().getBytes(StandardCharsets.UTF_8);
+        if (body.length > 0) {
+            exchange.getResponseHeaders().add(CONTENT_TYPE, APPLICATION_JSON);
+        }
+        reply.getHeaders().forEach(exchange.getResponseHeaders()::add);
+        exchange.sendResponseHeaders(reply.getStatusCode(), body.length == 0 ? NO_BODY : body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    /**
+     * Answers the requests of a stand-in.
+     */
+    public interface Route {
+
+        /**
+         * Names the operation of a request, which it is counted as.
+         *
+         * @param method  the HTTP method
+         * @param path    the decoded path
+         * @param headers the request headers
+         * @return the operation
+         */
+        String operationOf(String method, String path, Headers headers);
+
+        /**
+         * Answers a request.
+         *
+         * @param method  the HTTP method
+         * @param path    the decoded path
+         * @param headers the request headers
+         * @param body    the request body
+         * @return the reply
+         * @throws IOException if the request body cannot be parsed
+         */
+        Reply answer(String method, String path, Headers headers, byte[] body) throws IOException;
+    }
+
+    /**
+     * The answer to a request.
+     */
+    public static class Reply {
+
+        public static final String EMPTY = "";
+
+        private final int statusCode;
+        private final String body;
+        private final Map<String, String> headers;
+
+        public Reply(int statusCode, String body) {
+            this(statusCode, body, Map.of());
+        }
+
+        public Reply(int statusCode, String body, Map<String, String> headers) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.headers = headers;
+        }
+
+        public static Reply withoutBody(int statusCode) {
+            return new Reply(statusCode, EMPTY);
+        }
+
+        public static Reply withoutBody(int statusCode, Map<String, String> headers) {
+            return new Reply(statusCode, EMPTY, headers);
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package no.unit.nva.cognito.loadtest;
+
+import static no.unit.nva.cognito.service.UserApiClient.ETAG;
+import static no.unit.nva.cognito.service.UserApiClient.IF_NONE_MATCH;
+import static no.unit.nva.cognito.service.UserApiClient.PATH;
+import static no.unit.nva.cognito.service.UserApiClient.UPDATE_POLICY_FIELD;
+import static no.unit.nva.cognito.service.UserApiClient.UPSERT;
+import static no.unit.nva.cognito.service.UserApiClient.USER_FIELD;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import no.unit.nva.cognito.loadtest.StandInServer.Reply;
+import no.unit.nva.cognito.loadtest.StandInServer.Route;
+import no.unit.nva.cognito.service.UpdatePolicy;
+import no.unit.nva.useraccessmanagement.model.UserDto;
+
+/**
+ * The internal API of the user-access service, keeping the users in memory. A stored user carries an entity tag, so
+ * that the cached lookups of the handler are revalidated like against the real service. Upserts can be turned off, to
+ * load the service the way a user service without upserts is loaded.
+ */
+public class UserServiceStandIn implements Route {
+
+    public static final String GET = "GET";
+    public static final String POST = "POST";
+    public static final String PUT = "PUT";
+    public static final String GET_USER = "GET user";
+    public static final String CREATE_USER = "POST user";
+    public static final String UPDATE_USER = "PUT user";
+    public static final String UPSERT_USER = "POST upsert";
+    public static final String UNKNOWN = "unknown";
+    public static final String UPSERT_SUFFIX = "/" + UPSERT;
+    public static final String USER_PREFIX = PATH + "/";
+
+    private final ObjectMapper objectMapper;
+    private final boolean upsertSupported;
+    private final Map<String, StoredUser> users = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    public UserServiceStandIn(ObjectMapper objectMapper, boolean upsertSupported) {
+        this.objectMapper = objectMapper;
+        this.upsertSupported = upsertSupported;
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public String operationOf(String method, String path, Headers headers) {
+        if (GET.equals(method) && path.startsWith(USER_PREFIX)) {
+            return GET_USER;
+        }
+        if (POST.equals(method) && path.startsWith(USER_PREFIX) && path.endsWith(UPSERT_SUFFIX)) {
+            return UPSERT_USER;
+        }
+        if (POST.equals(method) && (path.equals(PATH) || path.equals(USER_PREFIX))) {
+            return CREATE_USER;
+        }
+        if (PUT.equals(method) && path.startsWith(USER_PREFIX)) {
+            return UPDATE_USER;
+        }
+        return UNKNOWN;
+    }
+
+    @Override
+    public Reply answer(String method, String path, Headers headers, byte[] body) throws IOException {
+        switch (operationOf(method, path, headers)) {
+            case GET_USER:
+                return getUser(path.substring(USER_PREFIX.length()), headers.getFirst(IF_NONE_MATCH));
+            case CREATE_USER:
+                return reply(HttpURLConnection.HTTP_OK, store(objectMapper.readValue(body, UserDto.class)));
+            case UPDATE_USER:
+                store(objectMapper.readValue(body, UserDto.class));
+                return Reply.withoutBody(HttpURLConnection.HTTP_ACCEPTED);
+            case UPSERT_USER:
+                return upsertSupported ? upsertUser(body) : Reply.withoutBody(HttpURLConnection.HTTP_NOT_FOUND);
+            default:
+                return Reply.withoutBody(HttpURLConnection.HTTP_NOT_FOUND);
+        }
+    }
+
+    private Reply getUser(String username, String entityTag) {
+        StoredUser user = users.get(username);
+        if (user == null) {
+            return Reply.withoutBody(HttpURLConnection.HTTP_NOT_FOUND);
+        }
+        if (user.getEntityTag().equals(entityTag)) {
+            return Reply.withoutBody(HttpURLConnection.HTTP_NOT_MODIFIED, Map.of(ETAG, user.getEntityTag()));
+        }
+        return reply(HttpURLConnection.HTTP_OK, user);
+    }
+
+    private Reply upsertUser(byte[] body) throws IOException {
+        JsonNode request = objectMapper.readTree(body);
+        UserDto user = objectMapper.treeToValue(request.get(USER_FIELD), UserDto.class);
+        StoredUser existing = users.get(user.getUsername());
+        if (existing == null) {
+            return reply(HttpURLConnection.HTTP_CREATED, store(user));
+        }
+        UpdatePolicy updatePolicy = objectMapper.treeToValue(request.get(UPDATE_POLICY_FIELD), UpdatePolicy.class);
+        UserDto updated = updatePolicy.applyTo(objectMapper.readValue(existing.getJson(), UserDto.class));
+        return reply(HttpURLConnection.HTTP_OK, store(updated));
+    }
+
+    private StoredUser store(UserDto user) throws IOException {
+        StoredUser stored = new StoredUser(objectMapper.writeValueAsString(user),
+                                           "\"" + versions.incrementAndGet() + "\"");
+        users.put(user.getUsername(), stored);
+        return stored;
+    }
+
+    private static Reply reply(int statusCode, StoredUser user) {
+        return new Reply(statusCode, user.getJson(), Map.of(ETAG, user.getEntityTag()));
+    }
+
+    /**
+     * A user as the service stores it, and the entity tag of that version.
+     */
+    private static class StoredUser {
+
+        private final String json;
+        private final String entityTag;
+
+        public StoredUser(String json, String entityTag) {
+            this.json = json;
+            this.entityTag = entityTag;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        public String getEntityTag() {
+            return entityTag;
+        }
+    }
+}